@@ -0,0 +1,59 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A SELECT summing a column of the whole table per group: grouped by
+ * {@code n} there are 100 groups, grouped by {@code id} a group per row,
+ * and grouped by {@code name} a group per row with a string key.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AggregateBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    public int rows;
+
+    @Param({ "n", "id", "name" })
+    public String group;
+
+    private BenchmarkDatabase database;
+    private CountingSink sink;
+    private String statement;
+
+    @Setup
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create(rows);
+        sink = new CountingSink();
+        database.getSession().setResultSink(sink);
+        statement = "SELECT " + group + ", COUNT(*), SUM(n) FROM " + BenchmarkDatabase.TABLE + " GROUP BY " + group;
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        database.delete();
+    }
+
+    @Benchmark
+    public long aggregate() throws Exception {
+        database.run(statement);
+        return sink.getRows();
+    }
+}
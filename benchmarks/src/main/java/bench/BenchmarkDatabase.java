@@ -0,0 +1,128 @@
+package bench;
+
+import account.Database;
+import account.Engine;
+import account.Session;
+import account.Table;
+import account.User;
+import storage.PagedStorageEngine;
+import utils.Query;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Scratch database for a benchmark: a storage directory of its own holding
+ * one table,
+ *
+ * <pre>
+ * bench (id int primary key, n int, name varchar)
+ * </pre>
+ *
+ * filled with rows {@code (i, i % 100, 'name' + i)}, so {@code n < p}
+ * selects p percent of them. Statements print their results, so the
+ * console is silenced while benchmarks run.
+ */
+final class BenchmarkDatabase {
+
+    static final String TABLE = "bench";
+    private static final int LOAD_BATCH_SIZE = 10_000;
+
+    private final Path directory;
+    private final Session session;
+
+    private BenchmarkDatabase(Path directory, Session session) {
+        this.directory = directory;
+        this.session = session;
+    }
+
+    /**
+     * creates the database and loads the table
+     *
+     * @param rows - number of rows to load
+     * @return BenchmarkDatabase
+     * @throws Exception
+     */
+    static BenchmarkDatabase create(int rows) throws Exception {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Path directory = Files.createTempDirectory("bench");
+        Engine engine = new Engine(directory.toString(), new Database("bench", "bench"));
+        Session session = engine.openSession(new User("bench", "bench", ""));
+        BenchmarkDatabase database = new BenchmarkDatabase(directory, session);
+        database.run("CREATE TABLE " + TABLE + " (id int primary key, n int, name varchar)");
+        Table table = database.getTable();
+        List<Object[]> batch = new ArrayList<Object[]>(LOAD_BATCH_SIZE);
+        for (int i = 0; i < rows; i++) {
+            batch.add(row(i));
+            if (batch.size() == LOAD_BATCH_SIZE || i == rows - 1) {
+                session.runInTransaction(() -> session.insertRows(table, batch));
+                batch.clear();
+            }
+        }
+        return database;
+    }
+
+    /**
+     * @param id
+     * @return the row the table is loaded with for an id
+     */
+    static Object[] row(int id) {
+        return new Object[] { id, id % 100, "name" + id };
+    }
+
+    /**
+     * runs a statement the way the console does
+     *
+     * @param statement
+     * @throws Exception
+     */
+    void run(String statement) throws Exception {
+        new Query(List.of(statement), session);
+    }
+
+    Session getSession() {
+        return session;
+    }
+
+    Table getTable() {
+        return session.getDatabase().fetchTable(TABLE);
+    }
+
+    PagedStorageEngine getStorage() {
+        return session.getDatabase().getStorage();
+    }
+
+    /**
+     * closes the storage, which writes every page to the heap files, and
+     * opens it again as an engine starting up would
+     *
+     * @return PagedStorageEngine whose pages are all on disk
+     * @throws IOException
+     */
+    PagedStorageEngine reopenStorage() throws IOException {
+        PagedStorageEngine.closeEngine(directory.toString());
+        return PagedStorageEngine.open(directory.toString());
+    }
+
+    /**
+     * closes the storage and deletes the directory
+     *
+     * @throws IOException
+     */
+    void delete() throws IOException {
+        session.close();
+        PagedStorageEngine.closeEngine(directory.toString());
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
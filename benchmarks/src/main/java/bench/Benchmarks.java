@@ -0,0 +1,22 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks with JMH's usual options. Results are written to
+ * jmh-result.json unless another format is asked for with -rf. A smaller
+ * set of table sizes is chosen with, for example, -p rows=1000,100000.
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<String>(Arrays.asList(args));
+        if (!options.contains("-rf")) {
+            options.add("-rf");
+            options.add("json");
+        }
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,79 @@
+package bench;
+
+import account.Session;
+import models.DatabaseManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import utils.Condition;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Updating and deleting one row found through the primary key, calling
+ * {@link DatabaseManager} directly with an already compiled condition. The
+ * deletes are rolled back so the table keeps its size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChangeBenchmark {
+
+    @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+    public int rows;
+
+    private BenchmarkDatabase database;
+    private Session session;
+    private String[] columns;
+    private Map<String, String> tableColumns;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create(rows);
+        session = database.getSession();
+        tableColumns = database.getTable().getColumns();
+        columns = tableColumns.keySet().toArray(new String[0]);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        database.delete();
+    }
+
+    private Condition byId() throws Exception {
+        return Condition.parse("id = " + random.nextInt(rows), tableColumns);
+    }
+
+    @Benchmark
+    public void update() throws Exception {
+        Condition condition = byId();
+        session.runInTransaction(() -> DatabaseManager.updateRecordInTable(session, BenchmarkDatabase.TABLE,
+                columns, condition, Map.of("name", "renamed")));
+    }
+
+    @Benchmark
+    public void delete() throws Exception {
+        Condition condition = byId();
+        session.beginTransaction();
+        try {
+            DatabaseManager.deleteRecordInTable(session, BenchmarkDatabase.TABLE, columns, condition);
+        } finally {
+            session.abortTransaction();
+        }
+    }
+}
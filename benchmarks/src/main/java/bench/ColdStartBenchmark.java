@@ -0,0 +1,57 @@
+package bench;
+
+import account.Database;
+import account.Table;
+import storage.PagedStorageEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the table into memory from its heap file, as an engine does when
+ * it starts, with every page on disk rather than held by the storage.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColdStartBenchmark {
+
+    @Param({ "100000", "1000000" })
+    public int rows;
+
+    private BenchmarkDatabase database;
+    private PagedStorageEngine storage;
+
+    @Setup
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create(rows);
+        storage = database.reopenStorage();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        database.delete();
+    }
+
+    @Benchmark
+    public int load() throws Exception {
+        List<Table> tables = Database.prepareTables(storage);
+        return tables.get(0).getRowCount();
+    }
+}
@@ -0,0 +1,45 @@
+package bench;
+
+import cursor.Cursor;
+import cursor.ResultSink;
+
+import java.util.List;
+
+/**
+ * Result sink that reads every row of a result and only counts them, so a
+ * SELECT is measured without the cost of printing it.
+ */
+final class CountingSink implements ResultSink {
+
+    private long rows;
+
+    @Override
+    public void begin(String tableName, List<String> columns) {
+        rows = 0;
+    }
+
+    @Override
+    public long writeAll(Cursor cursor) {
+        long written = 0;
+        int columnCount = cursor.getColumnCount();
+        while (cursor.next()) {
+            for (int i = 0; i < columnCount; i++) {
+                cursor.get(i);
+            }
+            written++;
+        }
+        rows += written;
+        return written;
+    }
+
+    @Override
+    public void end() {
+    }
+
+    /**
+     * @return number of rows of the last result
+     */
+    long getRows() {
+        return rows;
+    }
+}
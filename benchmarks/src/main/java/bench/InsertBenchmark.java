@@ -0,0 +1,53 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One INSERT statement, parsed, checked against the primary key, written
+ * and committed the way the console runs it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InsertBenchmark {
+
+    @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+    public int rows;
+
+    private BenchmarkDatabase database;
+    private int nextId;
+
+    @Setup
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create(rows);
+        nextId = rows;
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        database.delete();
+    }
+
+    @Benchmark
+    public void insert() throws Exception {
+        int id = nextId++;
+        database.run("INSERT INTO " + BenchmarkDatabase.TABLE + " VALUES (" + id + ", " + id % 100 + ", 'name"
+                + id + "')");
+    }
+}
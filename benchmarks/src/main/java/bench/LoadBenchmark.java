@@ -0,0 +1,52 @@
+package bench;
+
+import account.Database;
+import account.Table;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the tables of a storage into memory, as the engine does when it
+ * starts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadBenchmark {
+
+    @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+    public int rows;
+
+    private BenchmarkDatabase database;
+
+    @Setup
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create(rows);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        database.delete();
+    }
+
+    @Benchmark
+    public List<Table> prepareTables() throws Exception {
+        return Database.prepareTables(database.getStorage());
+    }
+}
@@ -0,0 +1,65 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full scans of the whole table with at most the given number of morsels
+ * in flight, 1 being the sequential scan: a SELECT returning 1% of the rows
+ * and a SELECT summing a column per group of {@code n}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelScanBenchmark {
+
+    @Param({ "1000000", "10000000" })
+    public int rows;
+
+    @Param({ "1", "2", "4", "8" })
+    public int threads;
+
+    private BenchmarkDatabase database;
+    private CountingSink sink;
+
+    @Setup
+    public void setUp() throws Exception {
+        System.setProperty("scan.parallelism", String.valueOf(threads));
+        database = BenchmarkDatabase.create(rows);
+        sink = new CountingSink();
+        database.getSession().setResultSink(sink);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        database.delete();
+        System.clearProperty("scan.parallelism");
+    }
+
+    @Benchmark
+    public long select() throws Exception {
+        database.run("SELECT * FROM " + BenchmarkDatabase.TABLE + " WHERE n < 1");
+        return sink.getRows();
+    }
+
+    @Benchmark
+    public long aggregate() throws Exception {
+        database.run("SELECT n, COUNT(*), SUM(id) FROM " + BenchmarkDatabase.TABLE + " GROUP BY n");
+        return sink.getRows();
+    }
+}
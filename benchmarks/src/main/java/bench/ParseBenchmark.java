@@ -0,0 +1,68 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sql.NormalizedStatement;
+import sql.Parser;
+import sql.Statement;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a statement, on its own and as the plan cache does it: literals
+ * lifted out into parameters first. Neither depends on the size of a
+ * table, so this is the one benchmark without a row count.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({ "select", "insert", "update", "delete", "create" })
+    public String kind;
+
+    private String statement;
+
+    @Setup
+    public void setUp() {
+        switch (kind) {
+            case "select":
+                statement = "SELECT id, name FROM bench WHERE n < 50 AND name = 'name42' LIMIT 10";
+                break;
+            case "insert":
+                statement = "INSERT INTO bench (id, n, name) VALUES (42, 42, 'name42')";
+                break;
+            case "update":
+                statement = "UPDATE bench SET name = 'renamed', n = 7 WHERE id = 42";
+                break;
+            case "delete":
+                statement = "DELETE FROM bench WHERE id BETWEEN 10 AND 20";
+                break;
+            default:
+                statement = "CREATE TABLE bench (id int primary key, n int, name varchar)";
+                break;
+        }
+    }
+
+    @Benchmark
+    public Statement parse() throws Exception {
+        return Parser.parse(statement);
+    }
+
+    @Benchmark
+    public NormalizedStatement normalize() throws Exception {
+        return NormalizedStatement.of(statement);
+    }
+}
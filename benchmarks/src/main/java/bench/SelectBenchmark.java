@@ -0,0 +1,58 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A SELECT scanning the whole table and returning the given percentage of
+ * its rows, read through a sink that only counts them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelectBenchmark {
+
+    @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+    public int rows;
+
+    @Param({ "1", "50", "100" })
+    public int selectivity;
+
+    private BenchmarkDatabase database;
+    private CountingSink sink;
+    private String statement;
+
+    @Setup
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create(rows);
+        sink = new CountingSink();
+        database.getSession().setResultSink(sink);
+        statement = "SELECT * FROM " + BenchmarkDatabase.TABLE + " WHERE n < " + selectivity;
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        database.delete();
+    }
+
+    @Benchmark
+    public long select() throws Exception {
+        database.run(statement);
+        return sink.getRows();
+    }
+}
@@ -0,0 +1,66 @@
+package bench;
+
+import account.Session;
+import account.Table;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BEGIN TRANSACTION followed by COMMIT, with nothing in between and with
+ * one inserted row, whose commit waits for the write-ahead log.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionBenchmark {
+
+    @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+    public int rows;
+
+    private BenchmarkDatabase database;
+    private Session session;
+    private Table table;
+    private int nextId;
+
+    @Setup
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create(rows);
+        session = database.getSession();
+        table = database.getTable();
+        nextId = rows;
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        database.delete();
+    }
+
+    @Benchmark
+    public void empty() throws Exception {
+        session.beginTransaction();
+        session.endTransaction();
+    }
+
+    @Benchmark
+    public void insert() throws Exception {
+        session.beginTransaction();
+        session.insertRows(table, Collections.singletonList(BenchmarkDatabase.row(nextId++)));
+        session.endTransaction();
+    }
+}
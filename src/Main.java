@@ -1,7 +1,10 @@
 import utils.Query;
+import account.Engine;
 import account.User;
 import models.UserManager;
 import account.Authentication;
+import account.Session;
+import server.Server;
 
 import java.util.List;
 import java.util.Scanner;
@@ -10,17 +13,23 @@ import java.util.ArrayList;
 public class Main {
 
     private static final Scanner globalScanner = new Scanner(System.in);
-    private static final Authentication auth = new Authentication();
-    private static final List<User> users = UserManager.fetchUsers();
-
-    private static User currentUser = null;
+    private static final String STORAGE_PATH = "tables";
 
     /**
      * Entry point for the program.
      * 
-     * @param args - Command line arguments
+     * @param args - Command line arguments: {@code --server [port]} serves
+     *             network clients instead of the console
      */
     public static void main(String[] args) throws Exception {
+        Engine engine = Engine.open(STORAGE_PATH);
+        if (args.length > 0 && args[0].equals("--server")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : Server.DEFAULT_PORT;
+            try (Server server = new Server(port, engine)) {
+                server.serve();
+            }
+            return;
+        }
         System.out.print(
                 """
                         1. REGISTER
@@ -34,12 +43,12 @@ public class Main {
             String command = scanner.nextLine().trim();
             switch (command) {
                 case "1":
-                    register();
+                    register(engine);
                     break;
                 case "":
                     continue;
                 case "2":
-                    login();
+                    login(engine);
                     break;
                 case "3":
                     System.out.println("Goodbye!");
@@ -53,31 +62,37 @@ public class Main {
     /**
      * Register the user with Auth. If registration fails no action is taken and
      * null is returned.
+     * 
+     * @param engine
      */
-    private static void register() throws Exception {
-        currentUser = auth.register(globalScanner);
-        if (currentUser == null)
+    private static void register(Engine engine) throws Exception {
+        User user = new Authentication().register(globalScanner);
+        if (user == null)
             return;
-        processQuery();
+        processQuery(engine.openSession(user));
     }
 
     /**
      * Login to the database. If the user is logged in
      * process the query
+     * 
+     * @param engine
      */
-    public static void login() throws Exception {
+    public static void login(Engine engine) throws Exception {
         System.out.print("Please enter your login credentials>>");
-        currentUser = auth.login(globalScanner, users);
-        if (currentUser == null)
+        User user = new Authentication().login(globalScanner, UserManager.fetchUsers());
+        if (user == null)
             return;
-        processQuery();
+        processQuery(engine.openSession(user));
     }
 
     /**
      * Processes queries from the user and creates a Query object to be used in the
      * execution of the query
+     * 
+     * @param session - the session of the logged in user
      */
-    public static void processQuery() throws Exception {
+    public static void processQuery(Session session) throws Exception {
         Scanner scanner = new Scanner(System.in);
         List<String> queryInput = new ArrayList<>();
         System.out.println("Authentication Successful. Enter SQL queries or 'EXIT;' to exit the console.");
@@ -98,7 +113,7 @@ public class Main {
                 System.exit(0);
             }
 
-            new Query(queryInput, auth);
+            new Query(queryInput, session);
             queryInput.clear();
         }
     }
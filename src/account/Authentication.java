@@ -1,6 +1,5 @@
 package account;
 
-import models.DatabaseManager;
 import models.UserManager;
 import utils.Logger;
 
@@ -12,13 +11,11 @@ import java.security.NoSuchAlgorithmException;
 /**
  * This class is used for Authenticating user with Multi-Factor
  * authentication. This class extends UserManager Class for accessing
- * user variables
+ * user variables. It only checks credentials; what the user does once
+ * logged in is kept in a {@link Session}.
  */
 public class Authentication extends UserManager {
 
-    public User user;
-    public Database selectedDatabase;
-    public String DB_FILE_PATH = "tables.txt";
     private static final int MAX_LOGIN_ATTEMPTS = 3;
 
     /**
@@ -38,7 +35,7 @@ public class Authentication extends UserManager {
             return null;
         }
 
-        char[] passwordChars = readPasswordFromConsole();
+        char[] passwordChars = readPasswordFromConsole(scanner);
         String password = new String(passwordChars);
         String passwordHash = null;
         try {
@@ -56,7 +53,6 @@ public class Authentication extends UserManager {
         User newUser = new User(userId, username, passwordHash);
         try {
             saveUsers(newUser);
-            this.user = newUser;
             new Logger("REGISTER", newUser).log();
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -105,7 +101,7 @@ public class Authentication extends UserManager {
             }
             int attempts = 0;
             while (attempts < MAX_LOGIN_ATTEMPTS) {
-                char[] passwordChars = readPasswordFromConsole();
+                char[] passwordChars = readPasswordFromConsole(scanner);
                 String password = new String(passwordChars);
                 String inputPasswordHash = null;
                 try {
@@ -115,8 +111,6 @@ public class Authentication extends UserManager {
                 }
                 if (user.getPassword().equals(inputPasswordHash) && validateCaptcha(scanner)) {
                     System.out.println("Login successful.");
-                    this.setCurrentDatabase(DatabaseManager.getDatabaseFromFile());
-                    this.user = user;
                     new Logger("LOGIN", user).log();
                     return user;
                 } else {
@@ -131,16 +125,41 @@ public class Authentication extends UserManager {
     }
 
     /**
-     * common util for reading password from console
+     * logs in a user of a network connection with the credentials it sent.
+     * The captcha is only asked on the console.
      * 
+     * @param username
+     * @param password
+     * @param users
+     * @return User or null if the credentials are wrong
+     * @throws IOException
+     */
+    public User authenticate(String username, String password, List<User> users) throws IOException {
+        String passwordHash;
+        try {
+            passwordHash = hashPassword(password);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        for (User user : users) {
+            if (Objects.equals(user.getUsername(), username) && user.getPassword().equals(passwordHash)) {
+                new Logger("LOGIN", user).log();
+                return user;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * common util for reading password from console. The console's scanner
+     * is reused, since closing a scanner of its own would close stdin.
+     * 
+     * @param scanner
      * @return char[]
      */
-    private static char[] readPasswordFromConsole() {
+    private static char[] readPasswordFromConsole(Scanner scanner) {
         System.out.print("Enter password: ");
-        Scanner scanner = new Scanner(System.in);
-        char[] input = scanner.nextLine().toCharArray();
-        scanner.close();
-        return input;
+        return scanner.nextLine().toCharArray();
     }
 
     /**
@@ -160,25 +179,4 @@ public class Authentication extends UserManager {
 
         return hexString.toString();
     }
-
-    /**
-     * sets current database every time the user is authenticated
-     * 
-     * @param selectedDatabase
-     */
-    public void setCurrentDatabase(Database selectedDatabase) {
-        this.selectedDatabase = selectedDatabase;
-        if (selectedDatabase != null) {
-            selectedDatabase.prepareDatabase(this.DB_FILE_PATH);
-        }
-    }
-
-    /**
-     * returns the current selected database
-     * 
-     * @return Database
-     */
-    public Database getCurrentDatabase() {
-        return selectedDatabase;
-    }
 }
@@ -0,0 +1,55 @@
+package account;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The tables of a database at one point in time. A catalog never changes;
+ * creating a table publishes a new one, so a session can look tables up
+ * without locking while another creates one.
+ */
+public final class Catalog {
+
+    private final Map<String, Table> tables;
+    private final List<Table> tableList;
+
+    /**
+     * @param tables - in creation order
+     */
+    Catalog(List<Table> tables) {
+        Map<String, Table> byName = new LinkedHashMap<String, Table>();
+        for (Table table : tables) {
+            byName.put(table.getTableName(), table);
+        }
+        this.tables = Collections.unmodifiableMap(byName);
+        this.tableList = Collections.unmodifiableList(new ArrayList<Table>(byName.values()));
+    }
+
+    /**
+     * @param tableName
+     * @return the table or null if there is none of that name
+     */
+    public Table getTable(String tableName) {
+        return tables.get(tableName);
+    }
+
+    /**
+     * @return the tables in creation order
+     */
+    public List<Table> getTables() {
+        return tableList;
+    }
+
+    /**
+     * @param table
+     * @return a catalog with the table added
+     */
+    Catalog withTable(Table table) {
+        List<Table> tables = new ArrayList<Table>(tableList);
+        tables.add(table);
+        return new Catalog(tables);
+    }
+}
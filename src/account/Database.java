@@ -7,20 +7,26 @@ import java.util.ArrayList;
 import java.io.BufferedReader;
 import java.util.LinkedHashMap;
 
+import models.DatabaseManager;
+import storage.StorageEngine;
+import storage.PagedStorageEngine;
+
 /**
  * Entity class for Database, consists of all the
- * basic operations to perform on Database
+ * basic operations to perform on Database. One instance is shared by
+ * every session; what a session changes in it goes through its
+ * {@link Session}.
  */
 public class Database {
 
     private final String name;
-    private List<Table> tables;
     private final String databaseId;
+    private PagedStorageEngine storage;
+    private volatile Catalog catalog = new Catalog(List.of());
 
     public Database(String databaseId, String name) {
         this.databaseId = databaseId;
         this.name = name;
-        this.tables = new ArrayList<Table>();
     }
 
     /**
@@ -48,7 +54,33 @@ public class Database {
      *         <Table>
      */
     public List<Table> getTables() {
-        return tables;
+        return catalog.getTables();
+    }
+
+    /**
+     * @return the tables as they are now
+     */
+    public Catalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * adds a newly created table, publishing a new catalog
+     * 
+     * @param table
+     */
+    public synchronized void addTable(Table table) {
+        catalog = catalog.withTable(table);
+    }
+
+    /**
+     * returns the storage engine of the database. Sessions read and write
+     * through their transaction, see {@link Session#getStorage()}.
+     * 
+     * @return PagedStorageEngine
+     */
+    public PagedStorageEngine getStorage() {
+        return storage;
     }
 
     /**
@@ -56,34 +88,53 @@ public class Database {
      * @return Table
      */
     public Table fetchTable(String tableName) {
-        for (Table table : this.tables) {
-            if (table.getTableName().equals(tableName)) {
-                return table;
-            }
-        }
-        return null;
+        return catalog.getTable(tableName);
     }
 
     /**
-     * prepares database whenever the user is authenticated.
+     * opens the storage of the database and loads its tables, once when the
+     * engine starts. The tables are shared by every session, which reads
+     * them through its own snapshots.
      */
-    public void prepareDatabase(String fileName) {
+    public void prepareDatabase(String storagePath) {
         try {
-            this.tables = prepareTables(fileName);
+            this.storage = DatabaseManager.openStorage(storagePath);
+            this.catalog = new Catalog(prepareTables(this.storage));
         } catch (Exception ex) {
             System.out.println("Error while loading database.");
         }
     }
 
     /**
-     * parses the text file for tables and stores it in the instance
+     * loads every table of the storage engine into memory
+     * 
+     * @param storage
+     * @return List
+     *         <Table>
+     * @throws Exception
+     */
+    public static List<Table> prepareTables(StorageEngine storage) throws Exception {
+        List<Table> tables = new ArrayList<Table>();
+        for (Map.Entry<String, Map<String, String>> definition : storage.getTables().entrySet()) {
+            Table table = new Table(definition.getKey());
+            table.setColumns(new LinkedHashMap<String, String>(definition.getValue()));
+            table.setPrimaryKey(storage.getPrimaryKey(table.getTableName()));
+            storage.scan(table.getTableName(), table::loadRow);
+            tables.add(table);
+        }
+        return tables;
+    }
+
+    /**
+     * parses the legacy text file for tables. Only used to import an old
+     * tables.txt into the storage engine.
      * 
      * @param fileName
      * @return List
      *         <Table>
      * @throws Exception
      */
-    public static List<Table> prepareTables(String fileName) throws Exception {
+    public static List<Table> prepareLegacyTables(String fileName) throws Exception {
         List<Table> tables = new ArrayList<Table>();
         Table currentTable = null;
         try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
@@ -107,14 +158,7 @@ public class Database {
                         }
                         currentTable.setColumns(columns);
                     } else {
-                        String[] values = line.split(",");
-                        Map<String, Object> row = new LinkedHashMap<String, Object>();
-                        Object[] columNames = currentTable.getColumns().keySet().toArray();
-                        for (int i = 0; i < values.length; i++) {
-                            String columnName = (String) columNames[i];
-                            row.put(columnName, values[i].trim());
-                        }
-                        currentTable.addRecord(row);
+                        currentTable.addRecord(line.split(","));
                     }
                 }
             }
@@ -132,12 +176,7 @@ public class Database {
      * @return boolean
      */
     public boolean isValidTable(String tableName) {
-        for (Table table : this.tables) {
-            if (table.getTableName().equals(tableName)) {
-                return true;
-            }
-        }
-        return false;
+        return catalog.getTable(tableName) != null;
     }
 
 }
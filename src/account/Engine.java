@@ -0,0 +1,99 @@
+package account;
+
+import models.DatabaseManager;
+import sql.PlanCache;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * State shared by every session of the process: the database with its
+ * storage and tables, and the cache of parsed statements. Anything that
+ * belongs to one user's connection lives in a {@link Session} instead.
+ */
+public class Engine {
+
+    private static final int PLAN_CACHE_SIZE = 256;
+
+    private final String storagePath;
+    private final PlanCache plans = new PlanCache(PLAN_CACHE_SIZE);
+    private volatile Database database;
+
+    /**
+     * @param storagePath - the directory holding the table heap files
+     */
+    public Engine(String storagePath) {
+        this.storagePath = storagePath;
+    }
+
+    /**
+     * creates an engine over a database that is not recorded in
+     * database.txt, such as a scratch database
+     *
+     * @param storagePath
+     * @param database    - prepared on the storage path here
+     */
+    public Engine(String storagePath, Database database) {
+        this(storagePath);
+        database.prepareDatabase(storagePath);
+        this.database = database;
+    }
+
+    /**
+     * opens the engine with the database recorded in database.txt, if any
+     *
+     * @param storagePath
+     * @return Engine
+     */
+    public static Engine open(String storagePath) {
+        Engine engine = new Engine(storagePath);
+        List<Database> databases = DatabaseManager.fetchDatabase();
+        if (!databases.isEmpty()) {
+            Database database = databases.get(0);
+            database.prepareDatabase(storagePath);
+            engine.database = database;
+        }
+        return engine;
+    }
+
+    /**
+     * @return the database or null if none was created yet
+     */
+    public Database getDatabase() {
+        return database;
+    }
+
+    /**
+     * creates the database. Only one database is supported.
+     *
+     * @param databaseName
+     * @return the new database or null if one already exists
+     * @throws IOException
+     */
+    public synchronized Database createDatabase(String databaseName) throws IOException {
+        if (database != null) {
+            return null;
+        }
+        Database created = new Database(String.valueOf(UUID.randomUUID()), databaseName);
+        DatabaseManager.saveDatabase(created);
+        created.prepareDatabase(storagePath);
+        database = created;
+        return created;
+    }
+
+    /**
+     * @return the parsed statements, shared by all sessions
+     */
+    public PlanCache getPlans() {
+        return plans;
+    }
+
+    /**
+     * @param user - the authenticated user
+     * @return a new session for the user
+     */
+    public Session openSession(User user) {
+        return new Session(this, user);
+    }
+}
@@ -0,0 +1,393 @@
+package account;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cursor.ResultSink;
+import cursor.RowWriter;
+import lock.DeadlockException;
+import lock.LockManager;
+import lock.LockMode;
+import mvcc.Snapshot;
+import mvcc.VersionManager;
+import sql.PreparedStatement;
+import storage.RowId;
+import storage.StorageEngine;
+import storage.Transaction;
+
+/**
+ * State of one user's connection: the open transaction with the row
+ * versions it wrote, the prepared statements and where results go. A
+ * session is used by one thread at a time; everything it shares with other
+ * sessions is reached through its {@link Engine}.
+ */
+public class Session {
+
+    private final Engine engine;
+    private final User user;
+    private final Map<String, PreparedStatement> preparedStatements = new HashMap<String, PreparedStatement>();
+    private ResultSink resultSink;
+    private Transaction transaction;
+    private WriteSet writes;
+
+    Session(Engine engine, User user) {
+        this.engine = engine;
+        this.user = user;
+    }
+
+    /**
+     * @return Engine
+     */
+    public Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * @return the user the session belongs to
+     */
+    public User getUser() {
+        return user;
+    }
+
+    /**
+     * @return the database or null if none was created yet
+     */
+    public Database getDatabase() {
+        return engine.getDatabase();
+    }
+
+    /**
+     * returns the storage the tables are read and written through. Inside a
+     * transaction this is the transaction, so its own changes are visible.
+     * 
+     * @return StorageEngine
+     */
+    public StorageEngine getStorage() {
+        return transaction != null ? transaction : engine.getDatabase().getStorage();
+    }
+
+    /**
+     * @return true between BEGIN TRANSACTION and END TRANSACTION
+     */
+    public boolean isInTransaction() {
+        return transaction != null;
+    }
+
+    /**
+     * starts a transaction block. The block reads through one snapshot, so
+     * it sees the tables as of its start, plus its own changes, until it
+     * commits.
+     * 
+     * @throws Exception
+     */
+    public void beginTransaction() throws Exception {
+        if (transaction != null) {
+            System.out.println("Transaction already in progress.");
+            throw new Exception("Transaction already in progress.");
+        }
+        transaction = engine.getDatabase().getStorage().begin();
+        writes = newWriteSet();
+    }
+
+    /**
+     * commits the changes made so far and keeps the transaction block open
+     * with a new snapshot. The changes are made durable first and then
+     * stamped with a commit timestamp, which makes them visible to other
+     * sessions all at once.
+     * 
+     * @throws Exception
+     */
+    public void commit() throws Exception {
+        if (transaction == null) {
+            return;
+        }
+        Map<String, Map<RowId, RowId>> committedRowIds;
+        try {
+            committedRowIds = transaction.commit();
+        } catch (Exception ex) {
+            // the failed commit discarded the changes, so their versions go too
+            writes.abort();
+            renewWriteSet();
+            throw ex;
+        }
+        for (Map.Entry<String, Map<RowId, RowId>> tableRowIds : committedRowIds.entrySet()) {
+            Table table = engine.getDatabase().fetchTable(tableRowIds.getKey());
+            if (table != null) {
+                table.moveRows(tableRowIds.getValue());
+            }
+        }
+        WriteSet committed = writes;
+        versions().commit(committed::commit);
+        List<Table> written = committed.getTables();
+        committed.release();
+        renewWriteSet();
+        long horizon = versions().horizon();
+        for (Table table : written) {
+            table.vacuum(horizon);
+        }
+    }
+
+    /**
+     * discards the changes made since the last commit and keeps the
+     * transaction block open with a new snapshot
+     */
+    public void rollback() {
+        if (transaction != null) {
+            transaction.rollback();
+            writes.abort();
+            renewWriteSet();
+        }
+    }
+
+    private WriteSet newWriteSet() {
+        VersionManager versions = versions();
+        return new WriteSet(versions.snapshot(versions.begin()));
+    }
+
+    private void renewWriteSet() {
+        locks().releaseAll(writes.getSnapshot().getTransactionId());
+        versions().release(writes.getSnapshot());
+        writes = newWriteSet();
+    }
+
+    /**
+     * commits the remaining changes and closes the transaction block
+     * 
+     * @throws Exception
+     */
+    public void endTransaction() throws Exception {
+        try {
+            commit();
+        } finally {
+            closeTransaction();
+        }
+    }
+
+    /**
+     * discards the remaining changes and closes the transaction block
+     */
+    public void abortTransaction() {
+        try {
+            rollback();
+        } finally {
+            closeTransaction();
+        }
+    }
+
+    private void closeTransaction() {
+        if (writes != null) {
+            writes.release();
+            locks().releaseAll(writes.getSnapshot().getTransactionId());
+            versions().release(writes.getSnapshot());
+        }
+        writes = null;
+        transaction = null;
+    }
+
+    /**
+     * runs a statement that changes several rows as one unit. Outside a
+     * transaction block the statement gets its own transaction, committed
+     * once it succeeded, so all of its rows go to the log in one commit.
+     * 
+     * @param work
+     * @throws Exception
+     */
+    public void runInTransaction(Work work) throws Exception {
+        if (isInTransaction()) {
+            work.run();
+            return;
+        }
+        beginTransaction();
+        try {
+            work.run();
+            endTransaction();
+        } finally {
+            if (isInTransaction()) {
+                abortTransaction();
+            }
+        }
+    }
+
+    /**
+     * body of a statement run by {@link #runInTransaction(Work)}
+     */
+    public interface Work {
+        void run() throws Exception;
+    }
+
+    /**
+     * takes the snapshot a statement reads through: the transaction block's
+     * own one inside a block and a new one otherwise. Give it back through
+     * {@link #release(Snapshot)}.
+     * 
+     * @return Snapshot
+     */
+    public Snapshot snapshot() {
+        return writes != null ? writes.getSnapshot() : versions().snapshot(0);
+    }
+
+    /**
+     * @param snapshot - a snapshot taken by {@link #snapshot()}
+     */
+    public void release(Snapshot snapshot) {
+        if (writes == null || snapshot != writes.getSnapshot()) {
+            versions().release(snapshot);
+        }
+    }
+
+    /**
+     * inserts rows into a table as part of the current transaction. The
+     * primary keys are locked, so a concurrent insert of the same key waits
+     * for this transaction to finish.
+     * 
+     * @param table
+     * @param rows
+     * @throws Exception
+     */
+    public void insertRows(Table table, List<Object[]> rows) throws Exception {
+        int keyColumn = table.getPrimaryKey() == null ? -1 : table.getColumnIndex(table.getPrimaryKey());
+        if (keyColumn != -1) {
+            List<Object> keys = new ArrayList<Object>(rows.size());
+            for (Object[] values : rows) {
+                if (values[keyColumn] != null) {
+                    keys.add(values[keyColumn]);
+                }
+            }
+            lockRows(table, keys);
+        }
+        List<RowId> rowIds = transaction.insertAll(table.getTableName(), rows);
+        long transactionId = writes.getSnapshot().getTransactionId();
+        for (int i = 0; i < rows.size(); i++) {
+            writes.created(table, table.addVersion(rowIds.get(i), rows.get(i), transactionId));
+        }
+    }
+
+    /**
+     * replaces a row version visible to the current transaction with a new
+     * one
+     * 
+     * @param table
+     * @param row    - position of the version
+     * @param values - the new values in column order
+     * @throws Exception
+     */
+    public void updateRow(Table table, int row, Object[] values) throws Exception {
+        Object key = rowKey(table, row);
+        lockRow(table, key);
+        int keyColumn = table.getPrimaryKey() == null ? -1 : table.getColumnIndex(table.getPrimaryKey());
+        if (keyColumn != -1 && !key.equals(values[keyColumn]) && values[keyColumn] != null) {
+            lockRow(table, values[keyColumn]);
+        }
+        claim(table, row);
+        RowId rowId = table.getRowId(row);
+        transaction.update(table.getTableName(), rowId, values);
+        writes.created(table, table.addVersion(rowId, values, writes.getSnapshot().getTransactionId()));
+    }
+
+    /**
+     * deletes a row version visible to the current transaction
+     * 
+     * @param table
+     * @param row   - position of the version
+     * @throws Exception
+     */
+    public void deleteRow(Table table, int row) throws Exception {
+        lockRow(table, rowKey(table, row));
+        claim(table, row);
+        transaction.delete(table.getTableName(), table.getRowId(row));
+    }
+
+    /**
+     * @return what a row is locked by: its primary key, or its location if
+     *         the table has none
+     */
+    private static Object rowKey(Table table, int row) {
+        if (table.getPrimaryKey() == null) {
+            return table.getRowId(row);
+        }
+        return table.getValue(row, table.getColumnIndex(table.getPrimaryKey()));
+    }
+
+    /**
+     * locks a row exclusively until the transaction ends, waiting for the
+     * transaction holding it. A transaction chosen to break a deadlock is
+     * rolled back.
+     */
+    private void lockRow(Table table, Object key) throws Exception {
+        lockRows(table, List.of(key));
+    }
+
+    private void lockRows(Table table, List<Object> keys) throws Exception {
+        long transactionId = writes.getSnapshot().getTransactionId();
+        try {
+            locks().lockRows(transactionId, table.getTableName(), keys, LockMode.EXCLUSIVE);
+        } catch (DeadlockException ex) {
+            rollback();
+            System.out.println(ex.getMessage() + ", its changes were rolled back");
+            throw new Exception(ex.getMessage() + ", its changes were rolled back");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            System.out.println("Interrupted while waiting for a lock on " + table.getTableName());
+            throw new Exception("Interrupted while waiting for a lock on " + table.getTableName());
+        }
+    }
+
+    /**
+     * writers only conflict on the same row: the first to claim a row keeps
+     * it, and a row another transaction changed after this transaction's
+     * snapshot cannot be changed
+     */
+    private void claim(Table table, int row) throws Exception {
+        if (!writes.claim(table, row)) {
+            System.out.println("Could not serialize access to " + table.getTableName()
+                    + ": the row was changed by a concurrent transaction");
+            throw new Exception("Could not serialize access to " + table.getTableName()
+                    + ": the row was changed by a concurrent transaction");
+        }
+    }
+
+    private VersionManager versions() {
+        return engine.getDatabase().getStorage().getVersions();
+    }
+
+    private LockManager locks() {
+        return engine.getDatabase().getStorage().getLocks();
+    }
+
+    /**
+     * rolls back whatever the session left open, when its connection ends
+     */
+    public void close() {
+        if (isInTransaction()) {
+            abortTransaction();
+        }
+    }
+
+    /**
+     * returns where the rows of a SELECT go, the console unless a network
+     * connection set its own
+     * 
+     * @return ResultSink
+     */
+    public ResultSink getResultSink() {
+        return resultSink != null ? resultSink : new RowWriter(System.out);
+    }
+
+    /**
+     * @param resultSink
+     */
+    public void setResultSink(ResultSink resultSink) {
+        this.resultSink = resultSink;
+    }
+
+    /**
+     * returns the statements prepared in this session, keyed by name
+     * 
+     * @return Map
+     */
+    public Map<String, PreparedStatement> getPreparedStatements() {
+        return preparedStatements;
+    }
+}
@@ -1,21 +1,57 @@
 package account;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+import column.ColumnVector;
+import storage.RowId;
+import storage.ColumnType;
+import mvcc.Snapshot;
 
 /**
- * Table entity in database
+ * Table entity in database. Rows are held column by column in
+ * {@link ColumnVector}s, and a row is addressed by its position, which is the
+ * same in every column. The storage location of each row is kept alongside
+ * in two int arrays.
+ * <p>
+ * A table is shared by all sessions of a database and keeps several versions
+ * of a row: an update appends a new version and stamps the old one as
+ * replaced, see {@link Snapshot}. Changes only ever append rows or stamp
+ * existing ones, under the table's monitor, so readers scan without locking.
+ * Versions no snapshot can see any more are dropped by {@link #vacuum(long)}
+ * while no reader or writer has the table pinned.
  */
 public class Table {
+    private static final int VACUUM_RATIO = 8;
+
     private String tableName = null;
     private Map<String, String> columns = new HashMap<String, String>();
-    private List<Map<String, Object>> values;
+    private String[] columnNames = new String[0];
+    private ColumnVector[] vectors = new ColumnVector[0];
+    private volatile int rowCount;
+    private int[] rowPages = new int[0];
+    private int[] rowSlots = new int[0];
+    private long[] xmin = new long[0];
+    private long[] xmax = new long[0];
+    private int[] deadRows = new int[0];
+    private long[] deadStamps = new long[0];
+    private int deadRowCount;
+    private int[] claimedRows = new int[0];
+    private int claimedRowCount;
+    private int finishedClaims;
+    private int deadCount;
+    private int retainedDeadCount;
+    private int abortedCount;
+    private final StampedLock pins = new StampedLock();
+    private boolean isRowIdOrdered = true;
+    private Map<RowId, Integer> rowPositions;
+    private String primaryKey = null;
 
     public Table(String tableName) {
         this.tableName = tableName;
-        this.values = new ArrayList<Map<String, Object>>();
     }
 
     /**
@@ -26,23 +62,22 @@ public class Table {
     }
 
     /**
-     * inserts new record in the table
+     * inserts new record in the table from its textual values, given in
+     * column order
      *
      * @param row
      * @throws Exception
      */
-    public void addRecord(Map<String, Object> row) throws Exception {
-        Map<String, Object> insertRow = new HashMap<String, Object>();
-        for (String column : row.keySet()) {
-            if (isColumn(column)) {
-                String type = columns.get(column);
-                insertRow.put(column, typeCast((String) row.get(column), type));
-            } else {
-                System.out.println("Insert Failed");
-                throw new Exception("Insert Failed");
-            }
+    public void addRecord(String[] row) throws Exception {
+        if (row.length > columnNames.length) {
+            System.out.println("Insert Failed");
+            throw new Exception("Insert Failed");
+        }
+        Object[] values = new Object[columnNames.length];
+        for (int i = 0; i < row.length; i++) {
+            values[i] = typeCast(row[i].trim(), columns.get(columnNames[i]));
         }
-        values.add(insertRow);
+        loadRow(null, values);
     }
 
     /**
@@ -54,93 +89,540 @@ public class Table {
      * @throws Exception
      */
     private Object typeCast(String value, String type) throws Exception {
-        switch (type.toUpperCase()) {
-            case "INT":
-            case "TINYINT":
-            case "INTEGER":
-            case "SMALLINT":
-                return Integer.parseInt(value);
-            case "BIGINT":
-                return Long.parseLong(value);
-            case "FLOAT":
-            case "DOUBLE":
-            case "DECIMAL":
-                return Double.parseDouble(value);
-            case "DATE":
-            case "TIME":
-            case "DATETIME":
-            case "TIMESTAMP":
-                return java.sql.Date.valueOf(value);
-            case "CHAR":
-            case "TEXT":
-            case "VARCHAR":
-            case "LONGTEXT":
-                return value;
-            default:
-                throw new IllegalArgumentException("Unsupported data type: " + type);
-        }
-    }
-
-    /**
-     * Sets columns
+        return ColumnType.of(type).parse(value);
+    }
+
+    /**
+     * adds a row that was read back from storage. Values are already typed
+     * and given in column order.
      *
-     * @param columns
+     * @param rowId - storage location of the row or null if it has none
+     * @param values
      */
-    public void setColumns(Map<String, String> columns) {
-        this.columns = columns;
+    public void loadRow(RowId rowId, Object[] values) {
+        addVersion(rowId, values, 0);
     }
 
     /**
-     * deletes rows in a table
+     * appends a row version written by a running transaction. It stays
+     * invisible to other transactions until
+     * {@link #commitVersions(int[], int, int[], int, long)} stamps it.
      *
-     * @param whereClause
+     * @param rowId         - storage location of the row
+     * @param values
+     * @param transactionId - the writing transaction, 0 for a committed row
+     * @return position of the new version
      */
-    public void deleteRecord(String whereClause) {
-        String[] condition = whereClause.split("=");
-        String col = condition[0].trim();
-        String val = condition[1].trim();
-        for (Map<String, Object> row : this.values) {
-            if (row.containsKey(col) && row.get(col).toString().equals(val)) {
-                row.remove(col);
+    public synchronized int addVersion(RowId rowId, Object[] values, long transactionId) {
+        int row = rowCount;
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i].add(values[i]);
+        }
+        if (row == rowPages.length) {
+            int capacity = Math.max(16, row * 2);
+            rowPages = Arrays.copyOf(rowPages, capacity);
+            rowSlots = Arrays.copyOf(rowSlots, capacity);
+            xmin = Arrays.copyOf(xmin, capacity);
+            xmax = Arrays.copyOf(xmax, capacity);
+        }
+        int page = rowId == null ? -1 : rowId.getPage();
+        int slot = rowId == null ? -1 : rowId.getSlot();
+        if (row > 0 && compareRowIds(rowPages[row - 1], rowSlots[row - 1], page, slot) >= 0) {
+            isRowIdOrdered = false;
+        }
+        rowPages[row] = page;
+        rowSlots[row] = slot;
+        xmin[row] = -transactionId;
+        xmax[row] = Snapshot.INFINITY;
+        if (rowPositions != null && rowId != null) {
+            rowPositions.put(rowId, row);
+        }
+        // publishes the row to readers, which read rowCount first
+        rowCount = row + 1;
+        return row;
+    }
+
+    /**
+     * marks a visible row version as deleted or replaced by a transaction.
+     * Only one transaction can hold a version, and a version another
+     * transaction replaced after the snapshot was taken cannot be written.
+     *
+     * @param row
+     * @param snapshot - snapshot of the writing transaction
+     * @return false if the version was changed by a concurrent transaction
+     */
+    public synchronized boolean claim(int row, Snapshot snapshot) {
+        long deletedBy = xmax[row];
+        if (deletedBy == -snapshot.getTransactionId()) {
+            return true;
+        }
+        if (deletedBy != Snapshot.INFINITY) {
+            return false;
+        }
+        xmax[row] = -snapshot.getTransactionId();
+        if (claimedRowCount == claimedRows.length) {
+            claimedRows = Arrays.copyOf(claimedRows, Math.max(16, claimedRowCount * 2));
+        }
+        claimedRows[claimedRowCount++] = row;
+        deadCount++;
+        return true;
+    }
+
+    /**
+     * stamps the versions a transaction created and claimed with its commit
+     * timestamp
+     *
+     * @param created
+     * @param createdCount
+     * @param claimed
+     * @param claimedCount
+     * @param timestamp
+     */
+    public synchronized void commitVersions(int[] created, int createdCount, int[] claimed, int claimedCount,
+            long timestamp) {
+        for (int i = 0; i < createdCount; i++) {
+            xmin[created[i]] = timestamp;
+        }
+        for (int i = 0; i < claimedCount; i++) {
+            int row = claimed[i];
+            if (xmax[row] != timestamp) {
+                xmax[row] = timestamp;
+                addDeadRow(row, timestamp);
             }
         }
+        finishClaims(claimedCount);
     }
 
     /**
-     * @param columnName
-     * @return true if the column exists.
+     * appends a version deleted by a commit; commits are stamped in order,
+     * so the list stays ordered by {@code xmax}
      */
-    public boolean isColumn(String columnName) {
-        for (String column : columns.keySet()) {
-            if (column.equals(column)) {
-                return true;
+    private void addDeadRow(int row, long timestamp) {
+        if (deadRowCount == deadRows.length) {
+            deadRows = Arrays.copyOf(deadRows, Math.max(16, deadRowCount * 2));
+            deadStamps = Arrays.copyOf(deadStamps, deadRows.length);
+        }
+        deadRows[deadRowCount] = row;
+        deadStamps[deadRowCount++] = timestamp;
+    }
+
+    /**
+     * drops the claims of finished transactions from the claimed versions
+     * once they make up half of them
+     */
+    private void finishClaims(int count) {
+        finishedClaims += count;
+        if (finishedClaims * 2 < claimedRowCount) {
+            return;
+        }
+        int kept = 0;
+        for (int i = 0; i < claimedRowCount; i++) {
+            if (xmax[claimedRows[i]] < 0) {
+                claimedRows[kept++] = claimedRows[i];
+            }
+        }
+        claimedRowCount = kept;
+        finishedClaims = 0;
+    }
+
+    /**
+     * undoes the versions of an aborted transaction: the ones it created are
+     * never visible and the ones it claimed are live again
+     *
+     * @param created
+     * @param createdCount
+     * @param claimed
+     * @param claimedCount
+     */
+    public synchronized void abortVersions(int[] created, int createdCount, int[] claimed, int claimedCount) {
+        for (int i = 0; i < createdCount; i++) {
+            xmin[created[i]] = Snapshot.INFINITY;
+        }
+        abortedCount += createdCount;
+        for (int i = 0; i < claimedCount; i++) {
+            int row = claimed[i];
+            if (xmax[row] == Snapshot.INFINITY) {
+                continue;
+            }
+            xmax[row] = Snapshot.INFINITY;
+            deadCount--;
+            if (rowPositions != null) {
+                // the replacing version had taken over the row id
+                rowPositions.put(new RowId(rowPages[row], rowSlots[row]), row);
+            }
+        }
+        finishClaims(claimedCount);
+    }
+
+    /**
+     * @param row
+     * @param snapshot
+     * @return true if the row version belongs to the snapshot
+     */
+    public boolean isVisible(int row, Snapshot snapshot) {
+        return snapshot.isVisible(xmin[row], xmax[row]);
+    }
+
+    /**
+     * @param row
+     * @return storage location of a row version
+     */
+    public synchronized RowId getRowId(int row) {
+        return new RowId(rowPages[row], rowSlots[row]);
+    }
+
+    /**
+     * @param snapshot
+     * @return positions of versions that were deleted or replaced after the
+     *         snapshot was taken or by a transaction still running, which
+     *         the snapshot may still see although an index no longer leads
+     *         to them
+     */
+    public synchronized int[] getDeadRows(Snapshot snapshot) {
+        int low = 0;
+        int high = deadRowCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (deadStamps[middle] <= snapshot.getTimestamp()) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int[] rows = Arrays.copyOfRange(deadRows, low, deadRowCount + claimedRowCount);
+        int count = deadRowCount - low;
+        for (int i = 0; i < claimedRowCount; i++) {
+            if (xmax[claimedRows[i]] < 0) {
+                rows[count++] = claimedRows[i];
             }
         }
-        return false;
+        return count == rows.length ? rows : Arrays.copyOf(rows, count);
     }
 
     /**
-     * returns the values in the table
+     * keeps row positions stable until {@link #unpin(long)}, for a scan or a
+     * transaction that remembers positions
      *
-     * @param whereStatement
-     * @return list of values
+     * @return stamp to unpin with
      */
-    public List<Map<String, Object>> getTableValues(String whereStatement) {
-        List<Map<String, Object>> returnValues = new ArrayList<>();
-        if (whereStatement == null) {
-            return this.values;
+    public long pin() {
+        return pins.readLock();
+    }
+
+    /**
+     * @param stamp
+     */
+    public void unpin(long stamp) {
+        pins.unlockRead(stamp);
+    }
+
+    /**
+     * drops the versions no snapshot can see any more: those deleted at or
+     * before the horizon and those of aborted transactions. Only runs when
+     * nobody has the table pinned and at least an eighth of the versions
+     * died since the last run, which makes it worth compacting the columns.
+     *
+     * @param horizon - oldest commit a snapshot still sees
+     * @return number of versions dropped
+     */
+    public int vacuum(long horizon) {
+        if (!isWorthVacuum()) {
+            return 0;
+        }
+        long stamp = pins.tryWriteLock();
+        if (stamp == 0) {
+            return 0;
+        }
+        try {
+            synchronized (this) {
+                return compact(horizon);
+            }
+        } finally {
+            pins.unlockWrite(stamp);
         }
-        String[] condition = whereStatement.split("=");
-        String conditionCol = condition[0].trim();
-        String conditionVal = condition[1].trim();
+    }
+
+    /**
+     * @return true if at least an eighth of the versions died since the last
+     *         vacuum
+     */
+    private synchronized boolean isWorthVacuum() {
+        int dead = deadCount - retainedDeadCount + abortedCount;
+        return dead > 0 && (long) dead * VACUUM_RATIO >= rowCount;
+    }
 
-        for (Map<String, Object> row : this.values) {
-            if (row.containsKey(conditionCol) && String.valueOf(row.get(conditionCol)).equals((String) conditionVal)) {
-                returnValues.add(row);
+    private int compact(long horizon) {
+        boolean[] keep = new boolean[rowCount];
+        int kept = 0;
+        int dead = 0;
+        int claimed = 0;
+        for (int row = 0; row < rowCount; row++) {
+            keep[row] = xmin[row] != Snapshot.INFINITY && !(xmax[row] >= 0 && xmax[row] <= horizon);
+            if (keep[row]) {
+                rowPages[kept] = rowPages[row];
+                rowSlots[kept] = rowSlots[row];
+                xmin[kept] = xmin[row];
+                xmax[kept] = xmax[row];
+                if (xmax[kept] < 0) {
+                    claimedRows[claimed++] = kept;
+                } else if (xmax[kept] != Snapshot.INFINITY) {
+                    deadRows[dead++] = kept;
+                }
+                kept++;
             }
         }
+        sortDeadRows(dead);
+        for (ColumnVector column : vectors) {
+            column.retain(keep);
+        }
+        int dropped = rowCount - kept;
+        deadRowCount = dead;
+        claimedRowCount = claimed;
+        finishedClaims = 0;
+        deadCount = dead + claimed;
+        retainedDeadCount = dead;
+        abortedCount = 0;
+        rowCount = kept;
+        rowPositions = null;
+        isRowIdOrdered = true;
+        for (int row = 1; row < kept && isRowIdOrdered; row++) {
+            isRowIdOrdered = compareRowIds(rowPages[row - 1], rowSlots[row - 1], rowPages[row], rowSlots[row]) < 0;
+        }
+        return dropped;
+    }
 
-        return returnValues;
+    /**
+     * orders the first versions of the dead list, which are in position
+     * order after a vacuum, by the commit that deleted them
+     */
+    private void sortDeadRows(int count) {
+        Integer[] rows = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = deadRows[i];
+        }
+        Arrays.sort(rows, (row, other) -> Long.compare(xmax[row], xmax[other]));
+        for (int i = 0; i < count; i++) {
+            deadRows[i] = rows[i];
+            deadStamps[i] = xmax[rows[i]];
+        }
+    }
+
+    /**
+     * gives rows their new storage location after a commit placed inserted
+     * rows or moved updated ones. All rows are found before any is changed,
+     * so one row may take over the old location of another.
+     *
+     * @param rowIds - new row ids keyed by the old ones
+     */
+    public synchronized void moveRows(Map<RowId, RowId> rowIds) {
+        int[] rows = new int[rowIds.size()];
+        RowId[] targets = new RowId[rowIds.size()];
+        int count = 0;
+        for (Map.Entry<RowId, RowId> move : rowIds.entrySet()) {
+            int row = positionOf(move.getKey());
+            if (row != -1) {
+                rows[count] = row;
+                targets[count++] = move.getValue();
+            }
+        }
+        if (rowPositions != null) {
+            for (int i = 0; i < count; i++) {
+                rowPositions.remove(new RowId(rowPages[rows[i]], rowSlots[rows[i]]));
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            rowPages[rows[i]] = targets[i].getPage();
+            rowSlots[rows[i]] = targets[i].getSlot();
+            if (rowPositions != null) {
+                rowPositions.put(targets[i], rows[i]);
+            }
+        }
+        for (int i = 0; i < count && isRowIdOrdered; i++) {
+            int row = rows[i];
+            if (row > 0 && compareRowIds(rowPages[row - 1], rowSlots[row - 1], rowPages[row], rowSlots[row]) >= 0
+                    || row + 1 < rowCount
+                            && compareRowIds(rowPages[row], rowSlots[row], rowPages[row + 1], rowSlots[row + 1]) >= 0) {
+                isRowIdOrdered = false;
+            }
+        }
+    }
+
+    /**
+     * orders row ids by page and slot, with the provisional ids of
+     * uncommitted inserts after all committed rows, in the order they were
+     * handed out
+     */
+    private static int compareRowIds(int page, int slot, int otherPage, int otherSlot) {
+        if ((page < 0) != (otherPage < 0)) {
+            return page < 0 ? 1 : -1;
+        }
+        int cmp = Integer.compare(page, otherPage);
+        return cmp != 0 ? cmp : Integer.compare(slot, otherSlot);
+    }
+
+    /**
+     * finds the current versions of the rows stored at the given locations,
+     * as found through an index
+     *
+     * @param rowIds
+     * @return positions of the rows that are loaded
+     */
+    public synchronized int[] getRows(List<RowId> rowIds) {
+        int[] rows = new int[rowIds.size()];
+        int count = 0;
+        for (RowId rowId : rowIds) {
+            int row = positionOf(rowId);
+            if (row != -1) {
+                rows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * rows are normally loaded in storage order, which allows a binary search
+     * over the row ids. Otherwise a hash map is built on first use.
+     */
+    private int positionOf(RowId rowId) {
+        if (isRowIdOrdered) {
+            int low = 0;
+            int high = rowCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int cmp = compareRowIds(rowPages[middle], rowSlots[middle], rowId.getPage(), rowId.getSlot());
+                if (cmp == 0) {
+                    return middle;
+                } else if (cmp < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return -1;
+        }
+        if (rowPositions == null) {
+            rowPositions = new HashMap<RowId, Integer>();
+            for (int row = 0; row < rowCount; row++) {
+                rowPositions.put(new RowId(rowPages[row], rowSlots[row]), row);
+            }
+        }
+        return rowPositions.getOrDefault(rowId, -1);
+    }
+
+    /**
+     * @return primary key column of the table or null if it has none
+     */
+    public String getPrimaryKey() {
+        return primaryKey;
+    }
+
+    /**
+     * Sets the primary key column
+     *
+     * @param primaryKey
+     */
+    public void setPrimaryKey(String primaryKey) {
+        this.primaryKey = primaryKey;
+    }
+
+    /**
+     * type casts the values of an insert into a row in column order. When no
+     * column names are given the values are taken in table order.
+     *
+     * @param columnNames
+     * @param rowValues
+     * @return Object[]
+     * @throws Exception
+     */
+    public Object[] castValues(List<String> columnNames, List<String> rowValues) throws Exception {
+        List<String> names = columnNames.isEmpty() ? Arrays.asList(this.columnNames) : columnNames;
+        if (names.size() != rowValues.size()) {
+            System.out.println("Insert Failed: column count doesn't match value count");
+            throw new Exception("Insert Failed: column count doesn't match value count");
+        }
+        Object[] row = new Object[columns.size()];
+        for (int i = 0; i < names.size(); i++) {
+            int index = getColumnIndex(names.get(i));
+            if (index == -1) {
+                System.out.println("Insert Failed: unknown column " + names.get(i));
+                throw new Exception("Insert Failed: unknown column " + names.get(i));
+            }
+            try {
+                row[index] = typeCast(rowValues.get(i), columns.get(names.get(i)));
+            } catch (IllegalArgumentException ex) {
+                System.out.println("Insert Failed: invalid value for column " + names.get(i) + ": " + rowValues.get(i));
+                throw new Exception("Insert Failed: invalid value for column " + names.get(i) + ": " + rowValues.get(i));
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Sets columns and creates an empty vector for each of them
+     *
+     * @param columns
+     */
+    public void setColumns(Map<String, String> columns) {
+        this.columns = columns;
+        this.columnNames = columns.keySet().toArray(new String[0]);
+        this.vectors = new ColumnVector[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            vectors[i] = ColumnVector.of(ColumnType.of(columns.get(columnNames[i])));
+        }
+        this.rowCount = 0;
+        this.deadRowCount = 0;
+        this.claimedRowCount = 0;
+        this.finishedClaims = 0;
+        this.deadCount = 0;
+        this.retainedDeadCount = 0;
+        this.abortedCount = 0;
+        this.rowPositions = null;
+        this.isRowIdOrdered = true;
+    }
+
+    /**
+     * @param columnName
+     * @return position of the column or -1 if the table has no such column
+     */
+    public int getColumnIndex(String columnName) {
+        for (int i = 0; i < columnNames.length; i++) {
+            if (columnNames[i].equals(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param column - position of the column
+     * @return the vector holding the column's values
+     */
+    public ColumnVector getColumn(int column) {
+        return vectors[column];
+    }
+
+    /**
+     * @return number of row versions in the table, visible or not
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @param row    - position of the row
+     * @param column - position of the column
+     * @return the typed value of a cell or null
+     */
+    public Object getValue(int row, int column) {
+        return vectors[column].get(row);
+    }
+
+    /**
+     * @param columnName
+     * @return true if the column exists.
+     */
+    public boolean isColumn(String columnName) {
+        return columns.containsKey(columnName);
     }
 
     @Override
@@ -157,4 +639,4 @@ public class Table {
     public String getTableName() {
         return tableName;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,131 @@
+package account;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import mvcc.Snapshot;
+
+/**
+ * Row versions a transaction created and claimed, by table, so they can be
+ * stamped when it commits or undone when it aborts. A table is pinned from
+ * the first write until then, since the set holds row positions.
+ */
+final class WriteSet {
+
+    private final Snapshot snapshot;
+    private final Map<String, TableWrites> tables = new LinkedHashMap<String, TableWrites>();
+
+    /**
+     * versions written to one table
+     */
+    private static final class TableWrites {
+        final Table table;
+        final long stamp;
+        int[] created = new int[16];
+        int createdCount;
+        int[] claimed = new int[16];
+        int claimedCount;
+
+        TableWrites(Table table) {
+            this.table = table;
+            this.stamp = table.pin();
+        }
+    }
+
+    WriteSet(Snapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * @return the snapshot the transaction reads and writes through
+     */
+    Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * claims a visible row version for an update or delete
+     *
+     * @param table
+     * @param row
+     * @return false if a concurrent transaction changed the row
+     */
+    boolean claim(Table table, int row) {
+        TableWrites writes = writes(table);
+        if (!table.claim(row, snapshot)) {
+            return false;
+        }
+        if (writes.claimedCount == writes.claimed.length) {
+            writes.claimed = Arrays.copyOf(writes.claimed, writes.claimedCount * 2);
+        }
+        writes.claimed[writes.claimedCount++] = row;
+        return true;
+    }
+
+    /**
+     * @param table
+     * @param row   - position of a version the transaction appended
+     */
+    void created(Table table, int row) {
+        TableWrites writes = writes(table);
+        if (writes.createdCount == writes.created.length) {
+            writes.created = Arrays.copyOf(writes.created, writes.createdCount * 2);
+        }
+        writes.created[writes.createdCount++] = row;
+    }
+
+    /**
+     * stamps every version with the commit timestamp
+     *
+     * @param timestamp
+     */
+    void commit(long timestamp) {
+        for (TableWrites writes : tables.values()) {
+            writes.table.commitVersions(writes.created, writes.createdCount, writes.claimed, writes.claimedCount,
+                    timestamp);
+        }
+    }
+
+    /**
+     * undoes every version and unpins the tables
+     */
+    void abort() {
+        for (TableWrites writes : tables.values()) {
+            writes.table.abortVersions(writes.created, writes.createdCount, writes.claimed, writes.claimedCount);
+        }
+        release();
+    }
+
+    /**
+     * unpins the tables written to
+     */
+    void release() {
+        for (TableWrites writes : tables.values()) {
+            writes.table.unpin(writes.stamp);
+        }
+        tables.clear();
+    }
+
+    /**
+     * @return the tables written to
+     */
+    List<Table> getTables() {
+        List<Table> written = new ArrayList<Table>();
+        for (TableWrites writes : tables.values()) {
+            written.add(writes.table);
+        }
+        return written;
+    }
+
+    private TableWrites writes(Table table) {
+        TableWrites writes = tables.get(table.getTableName());
+        if (writes == null) {
+            writes = new TableWrites(table);
+            tables.put(table.getTableName(), writes);
+        }
+        return writes;
+    }
+}
@@ -0,0 +1,105 @@
+package audit;
+
+import cursor.Cursor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Entries of the audit log matching a filter, read segment by segment in
+ * sequence order. Only one segment is open at a time.
+ */
+public final class AuditCursor implements Cursor {
+
+    public static final List<String> COLUMNS = List.of("seq", "ts", "user", "database", "table", "type", "query");
+
+    private final AuditLog log;
+    private final Iterator<Long> segments;
+    private final AuditFilter filter;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private SegmentReader reader;
+    private AuditEntry entry;
+
+    /**
+     * @param log
+     * @param segments - first sequence numbers of the segments to read
+     * @param filter
+     */
+    AuditCursor(AuditLog log, List<Long> segments, AuditFilter filter) {
+        this.log = log;
+        this.segments = segments.iterator();
+        this.filter = filter;
+    }
+
+    @Override
+    public boolean next() {
+        try {
+            while (true) {
+                if (reader == null) {
+                    if (!segments.hasNext()) {
+                        entry = null;
+                        return false;
+                    }
+                    reader = log.openSegment(segments.next());
+                }
+                entry = reader.next(filter);
+                if (entry != null) {
+                    return true;
+                }
+                reader.close();
+                reader = null;
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.size();
+    }
+
+    @Override
+    public Object get(int column) {
+        switch (column) {
+            case 0:
+                return entry.getSequence();
+            case 1:
+                long timestamp = entry.getTimestamp();
+                return LocalDateTime.ofInstant(Instant.ofEpochSecond(Math.floorDiv(timestamp, 1_000_000_000L),
+                        Math.floorMod(timestamp, 1_000_000_000L)), zone);
+            case 2:
+                return entry.getUsername();
+            case 3:
+                return entry.getDatabaseName();
+            case 4:
+                return entry.getTableName();
+            case 5:
+                return entry.getType();
+            default:
+                return entry.getQuery();
+        }
+    }
+
+    @Override
+    public void appendTo(StringBuilder out, int column) {
+        out.append(get(column));
+    }
+
+    @Override
+    public void close() {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException ex) {
+                // nothing was written
+            }
+            reader = null;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package audit;
+
+import java.time.Instant;
+
+/**
+ * One audited action: a statement run by a user, or a login or register.
+ * The time is taken when the entry is made; everything else about writing
+ * it out happens on the audit log's writer thread, which also gives it its
+ * sequence number.
+ */
+public final class AuditEntry {
+
+    private final String type;
+    private final String username;
+    private final String databaseName;
+    private final String tableName;
+    private final String query;
+    private final long timestamp;
+    private final long sequence;
+
+    /**
+     * @param type         - kind of action, e.g. SELECT or LOGIN
+     * @param username
+     * @param databaseName - null if the action has none
+     * @param tableName    - null if the action has none
+     * @param query
+     */
+    public AuditEntry(String type, String username, String databaseName, String tableName, String query) {
+        Instant now = Instant.now();
+        this.type = type;
+        this.username = username;
+        this.databaseName = databaseName;
+        this.tableName = tableName;
+        this.query = query;
+        this.timestamp = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+        this.sequence = -1;
+    }
+
+    /**
+     * an entry read back from the log
+     */
+    AuditEntry(long sequence, long timestamp, String type, String username, String databaseName,
+            String tableName, String query) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.type = type;
+        this.username = username;
+        this.databaseName = databaseName;
+        this.tableName = tableName;
+        this.query = query;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * @return nanoseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return position of the entry in the log, or -1 before it was written
+     */
+    public long getSequence() {
+        return sequence;
+    }
+}
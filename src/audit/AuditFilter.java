@@ -0,0 +1,187 @@
+package audit;
+
+import sql.Expression;
+import sql.Statement;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+
+/**
+ * WHERE clause of {@code SHOW AUDIT}: conditions joined by AND, each an
+ * equality on {@code user}, {@code database}, {@code table} or {@code type},
+ * or a comparison or BETWEEN on {@code ts} or {@code seq}. Timestamps are
+ * written as local date-times such as {@code '2024-05-01 12:00'} or as
+ * nanoseconds since the epoch.
+ */
+public final class AuditFilter {
+
+    private String user;
+    private String database;
+    private String table;
+    private String type;
+    private long fromTimestamp = Long.MIN_VALUE;
+    private long toTimestamp = Long.MAX_VALUE;
+    private long fromSequence = Long.MIN_VALUE;
+    private long toSequence = Long.MAX_VALUE;
+
+    /**
+     * @param where      - the clause or null for every entry
+     * @param parameters - values of the clause's placeholders
+     * @return AuditFilter
+     * @throws Exception
+     */
+    public static AuditFilter of(Expression where, Object[] parameters) throws Exception {
+        AuditFilter filter = new AuditFilter();
+        if (where != null) {
+            filter.add(where, parameters);
+        }
+        return filter;
+    }
+
+    private void add(Expression expression, Object[] parameters) throws Exception {
+        if (expression instanceof Expression.Logical && ((Expression.Logical) expression).isAnd()) {
+            for (Expression operand : ((Expression.Logical) expression).getOperands()) {
+                add(operand, parameters);
+            }
+        } else if (expression instanceof Expression.Comparison) {
+            Expression.Comparison comparison = (Expression.Comparison) expression;
+            Expression.Operator operator = comparison.getOperator();
+            Expression column = comparison.getLeft();
+            Expression value = comparison.getRight();
+            if (!isColumn(column) && isColumn(value)) {
+                column = comparison.getRight();
+                value = comparison.getLeft();
+                operator = operator.flip();
+            }
+            restrict(column, operator, value, parameters);
+        } else if (expression instanceof Expression.Between && !((Expression.Between) expression).isNegated()) {
+            Expression.Between between = (Expression.Between) expression;
+            restrict(between.getOperand(), Expression.Operator.GE, between.getLow(), parameters);
+            restrict(between.getOperand(), Expression.Operator.LE, between.getHigh(), parameters);
+        } else {
+            fail("SHOW AUDIT only supports conditions joined by AND");
+        }
+    }
+
+    private void restrict(Expression column, Expression.Operator operator, Expression value, Object[] parameters)
+            throws Exception {
+        if (!isColumn(column)) {
+            fail("Unknown audit column at position " + column.getPosition()
+                    + ", expected user, database, table, type, ts or seq");
+        }
+        String name = ((Expression.Name) column).getName().toLowerCase();
+        String text = Statement.text(value, parameters);
+        if (text == null) {
+            fail("Cannot compare " + name + " with NULL");
+        }
+        if (name.equals("ts") || name.equals("seq")) {
+            long bound = name.equals("ts") ? timestamp(text) : number(text);
+            long low = Long.MIN_VALUE;
+            long high = Long.MAX_VALUE;
+            switch (operator) {
+                case EQ -> {
+                    low = bound;
+                    high = bound;
+                }
+                case LT -> high = bound == Long.MIN_VALUE ? bound : bound - 1;
+                case LE -> high = bound;
+                case GT -> low = bound == Long.MAX_VALUE ? bound : bound + 1;
+                case GE -> low = bound;
+                default -> fail("Unsupported operator " + operator + " on " + name);
+            }
+            if (name.equals("ts")) {
+                fromTimestamp = Math.max(fromTimestamp, low);
+                toTimestamp = Math.min(toTimestamp, high);
+            } else {
+                fromSequence = Math.max(fromSequence, low);
+                toSequence = Math.min(toSequence, high);
+            }
+            return;
+        }
+        if (operator != Expression.Operator.EQ) {
+            fail("Only = is supported on " + name);
+        }
+        switch (name) {
+            case "user" -> user = equal(user, text);
+            case "database" -> database = equal(database, text);
+            case "table" -> table = equal(table, text);
+            default -> type = equal(type, text.toUpperCase());
+        }
+    }
+
+    /**
+     * @return the value, or a value no entry has if another equality on the
+     *         same column asks for something else
+     */
+    private static String equal(String current, String value) {
+        return current == null || current.equals(value) ? value : "\0";
+    }
+
+    private static boolean isColumn(Expression expression) {
+        if (!(expression instanceof Expression.Name)) {
+            return false;
+        }
+        switch (((Expression.Name) expression).getName().toLowerCase()) {
+            case "user", "database", "table", "type", "ts", "seq":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static long timestamp(String text) throws Exception {
+        String value = text.trim();
+        if (!value.isEmpty() && value.chars().allMatch(Character::isDigit)) {
+            return number(value);
+        }
+        try {
+            LocalDateTime dateTime = value.length() <= 10 ? LocalDate.parse(value).atStartOfDay()
+                    : LocalDateTime.parse(value.replace(' ', 'T'));
+            Instant instant = dateTime.atZone(ZoneId.systemDefault()).toInstant();
+            return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+        } catch (DateTimeParseException ex) {
+            return fail("Invalid timestamp: " + text);
+        }
+    }
+
+    private static long number(String text) throws Exception {
+        try {
+            return Long.parseLong(text.trim());
+        } catch (NumberFormatException ex) {
+            return fail("Invalid number: " + text);
+        }
+    }
+
+    private static long fail(String message) throws Exception {
+        System.out.println(message);
+        throw new Exception(message);
+    }
+
+    /**
+     * @param index
+     * @return false if no entry of the segment can match
+     */
+    boolean mayMatch(SegmentIndex index) {
+        return index.getCount() > 0
+                && index.getFirstSequence() <= toSequence && index.getLastSequence() >= fromSequence
+                && index.getMinTimestamp() <= toTimestamp && index.getMaxTimestamp() >= fromTimestamp
+                && (user == null || index.getUsers().contains(user));
+    }
+
+    /**
+     * @return true if an entry with these fields matches
+     */
+    boolean matches(long sequence, long timestamp, String entryType, String username, String databaseName,
+            String tableName) {
+        return sequence >= fromSequence && sequence <= toSequence
+                && timestamp >= fromTimestamp && timestamp <= toTimestamp
+                && (user == null || user.equals(username))
+                && (database == null || database.equals(databaseName))
+                && (table == null || table.equals(tableName))
+                && (type == null || Objects.equals(type, entryType));
+    }
+}
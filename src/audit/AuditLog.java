@@ -0,0 +1,415 @@
+package audit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Audit trail of the statements users run. Logging an entry only puts it
+ * in a {@link MpscRingBuffer}; a single writer thread takes the entries out
+ * in batches, numbers them and appends each batch to the current segment
+ * with one write, so a statement never waits for the file unless the
+ * {@link Durability} asks it to.
+ *
+ * The log is a directory of segments in the format of
+ * {@link SegmentWriter}, each named after the sequence number of its first
+ * entry. A segment is sealed once it grows past a size or age limit: its
+ * {@link SegmentIndex} is written next to it and a background thread
+ * compresses it. Segments an earlier run left open are sealed on open.
+ *
+ * <pre>
+ * audit/00000000000000000000.seg.gz   sealed and compressed
+ * audit/00000000000000000000.idx      its index
+ * audit/00000000000000052113.seg      being written
+ * </pre>
+ */
+public final class AuditLog implements Closeable {
+
+    public static final String LOG_DIRECTORY = "audit";
+    public static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+    public static final long DEFAULT_SEGMENT_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String COMPRESSED_SUFFIX = ".seg.gz";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int NAME_LENGTH = 20;
+    private static final int CAPACITY = 1 << 14;
+    private static final int BATCH_SIZE = 4096;
+    private static final int COPY_BUFFER_SIZE = 1 << 16;
+    private static final long MIN_IDLE_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long FULL_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long CLOSE_WAIT_SECONDS = 10;
+
+    private static AuditLog shared;
+
+    private final MpscRingBuffer<AuditEntry> entries = new MpscRingBuffer<AuditEntry>(CAPACITY);
+    private final Path directory;
+    private final Durability durability;
+    private final long maxSegmentBytes;
+    private final long maxSegmentNanos;
+    private final Map<Long, SegmentIndex> sealed = new ConcurrentSkipListMap<Long, SegmentIndex>();
+    private final ExecutorService compressor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "audit-compressor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Thread writer;
+    private final ReentrantLock writtenLock = new ReentrantLock();
+    private final Condition written = writtenLock.newCondition();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private volatile long writtenCount;
+    private volatile long activeSegment = -1;
+    private volatile boolean isClosed;
+    private SegmentWriter segment;
+    private long nextSequence;
+
+    /**
+     * opens the log, sealing the segments an earlier run left open, and
+     * starts its writer thread
+     *
+     * @param directory
+     * @param durability
+     * @param maxSegmentBytes  - size after which a segment is sealed
+     * @param maxSegmentMillis - age after which a segment is sealed
+     * @throws IOException
+     */
+    public AuditLog(Path directory, Durability durability, long maxSegmentBytes, long maxSegmentMillis)
+            throws IOException {
+        this.directory = directory;
+        this.durability = durability;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentNanos = TimeUnit.MILLISECONDS.toNanos(maxSegmentMillis);
+        Files.createDirectories(directory);
+        recover();
+        this.writer = new Thread(this::write, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * returns the log of the process, opened on first use and configured by
+     * the {@code audit.durability}, {@code audit.segment.bytes} and
+     * {@code audit.segment.millis} system properties. It is closed, writing
+     * out what is still buffered, when the process exits.
+     *
+     * @return AuditLog
+     * @throws IOException
+     */
+    public static synchronized AuditLog shared() throws IOException {
+        if (shared == null) {
+            AuditLog log = new AuditLog(Paths.get(LOG_DIRECTORY),
+                    Durability.of(System.getProperty("audit.durability")),
+                    Long.getLong("audit.segment.bytes", DEFAULT_SEGMENT_BYTES),
+                    Long.getLong("audit.segment.millis", DEFAULT_SEGMENT_MILLIS));
+            Runtime.getRuntime().addShutdownHook(new Thread(log::close, "audit-shutdown"));
+            shared = log;
+        }
+        return shared;
+    }
+
+    /**
+     * @return Durability
+     */
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * queues an entry for the writer. Waits only if the buffer is full, or
+     * in SYNC mode until the entry is on disk. Entries logged after the log
+     * was closed are dropped.
+     *
+     * @param entry
+     * @throws IOException
+     */
+    public void append(AuditEntry entry) throws IOException {
+        if (isClosed) {
+            return;
+        }
+        long position;
+        while ((position = entries.offer(entry)) < 0) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(FULL_WAIT_NANOS);
+        }
+        if (durability == Durability.SYNC) {
+            awaitWritten(position + 1);
+        }
+    }
+
+    /**
+     * opens a cursor over the entries matching a filter, including every
+     * entry logged before the call. Sealed segments whose index rules the
+     * filter out are not read.
+     *
+     * @param filter
+     * @return AuditCursor
+     * @throws IOException
+     */
+    public AuditCursor read(AuditFilter filter) throws IOException {
+        awaitWritten(entries.offered());
+        long active = activeSegment;
+        List<SegmentIndex> indexes = new ArrayList<SegmentIndex>(sealed.values());
+        List<Long> segments = new ArrayList<Long>();
+        boolean isActiveSealed = false;
+        for (SegmentIndex index : indexes) {
+            isActiveSealed |= index.getFirstSequence() == active;
+            if (filter.mayMatch(index)) {
+                segments.add(index.getFirstSequence());
+            }
+        }
+        if (active >= 0 && !isActiveSealed) {
+            segments.add(active);
+        }
+        return new AuditCursor(this, segments, filter);
+    }
+
+    /**
+     * @param firstSequence
+     * @return a reader over the segment starting at a sequence number
+     * @throws IOException
+     */
+    SegmentReader openSegment(long firstSequence) throws IOException {
+        return SegmentReader.open(file(firstSequence, SEGMENT_SUFFIX), file(firstSequence, COMPRESSED_SUFFIX));
+    }
+
+    /**
+     * waits until the writer wrote a number of entries, which in SYNC mode
+     * also means it synced them
+     */
+    private void awaitWritten(long count) throws IOException {
+        if (writtenCount >= count) {
+            return;
+        }
+        waiters.incrementAndGet();
+        LockSupport.unpark(writer);
+        writtenLock.lock();
+        try {
+            while (writtenCount < count && writer.isAlive()) {
+                written.await(MAX_IDLE_NANOS, TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the audit log");
+        } finally {
+            writtenLock.unlock();
+            waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * body of the writer thread. Sleeps longer the longer the buffer stays
+     * empty, and runs until the log is closed and drained.
+     */
+    private void write() {
+        long idleNanos = MIN_IDLE_NANOS;
+        while (true) {
+            boolean isClosing = isClosed;
+            int count = entries.drain(this::encode, BATCH_SIZE);
+            if (count > 0) {
+                flush(count);
+                idleNanos = MIN_IDLE_NANOS;
+            } else if (isClosing) {
+                seal();
+                return;
+            } else {
+                LockSupport.parkNanos(idleNanos);
+                idleNanos = Math.min(idleNanos * 2, MAX_IDLE_NANOS);
+            }
+            if (segment != null && (segment.size() >= maxSegmentBytes || segment.age() >= maxSegmentNanos)) {
+                seal();
+            }
+        }
+    }
+
+    /**
+     * numbers an entry and encodes it into the current segment, starting a
+     * segment if there is none
+     */
+    private void encode(AuditEntry entry) {
+        try {
+            if (segment == null) {
+                segment = new SegmentWriter(file(nextSequence, SEGMENT_SUFFIX), nextSequence);
+                activeSegment = nextSequence;
+            }
+            segment.append(entry, nextSequence++);
+        } catch (IOException ex) {
+            System.out.println("Error while writing transaction log: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * writes the encoded batch with one write and, unless in ASYNC mode,
+     * syncs it
+     */
+    private void flush(int count) {
+        try {
+            if (segment != null) {
+                segment.flush(durability != Durability.ASYNC);
+            }
+        } catch (IOException ex) {
+            System.out.println("Error while writing transaction log: " + ex.getMessage());
+        }
+        writtenCount += count;
+        if (waiters.get() > 0) {
+            writtenLock.lock();
+            try {
+                written.signalAll();
+            } finally {
+                writtenLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * closes the current segment, writes its index and hands it to the
+     * compressor. The next entry starts a new segment.
+     */
+    private void seal() {
+        if (segment == null) {
+            return;
+        }
+        SegmentIndex index = segment.getIndex();
+        long firstSequence = index.getFirstSequence();
+        try {
+            segment.close();
+            index.write(file(firstSequence, INDEX_SUFFIX));
+        } catch (IOException ex) {
+            System.out.println("Error while sealing transaction log segment: " + ex.getMessage());
+        }
+        segment = null;
+        sealed.put(firstSequence, index);
+        activeSegment = -1;
+        compressor.execute(() -> compress(firstSequence));
+    }
+
+    /**
+     * replaces a sealed segment with its compressed copy. The copy only
+     * takes the segment's place once it is complete, so readers see one or
+     * the other.
+     */
+    private void compress(long firstSequence) {
+        Path plain = file(firstSequence, SEGMENT_SUFFIX);
+        Path compressed = file(firstSequence, COMPRESSED_SUFFIX);
+        Path temporary = file(firstSequence, COMPRESSED_SUFFIX + TEMPORARY_SUFFIX);
+        try {
+            try (InputStream in = Files.newInputStream(plain);
+                    OutputStream out = new GZIPOutputStream(Files.newOutputStream(temporary), COPY_BUFFER_SIZE)) {
+                in.transferTo(out);
+            }
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temporary, compressed, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(plain);
+        } catch (IOException ex) {
+            System.out.println("Error while compressing transaction log segment: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * loads the indexes of the segments on disk. A segment without an index
+     * was still being written when the last run ended; it is read to build
+     * one and sealed, or removed if it holds no entry. New entries are
+     * numbered after the last one found.
+     */
+    private void recover() throws IOException {
+        Set<Long> found = new TreeSet<Long>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMPORARY_SUFFIX)) {
+                    Files.delete(file);
+                } else if (name.length() > NAME_LENGTH && name.charAt(NAME_LENGTH) == '.') {
+                    try {
+                        found.add(Long.parseLong(name.substring(0, NAME_LENGTH)));
+                    } catch (NumberFormatException ex) {
+                        // not a segment
+                    }
+                }
+            }
+        }
+        for (long firstSequence : found) {
+            Path indexFile = file(firstSequence, INDEX_SUFFIX);
+            SegmentIndex index;
+            if (Files.exists(indexFile)) {
+                index = SegmentIndex.read(indexFile);
+            } else {
+                index = scan(firstSequence);
+                index.write(indexFile);
+            }
+            if (index.getCount() == 0) {
+                Files.deleteIfExists(file(firstSequence, SEGMENT_SUFFIX));
+                Files.deleteIfExists(file(firstSequence, COMPRESSED_SUFFIX));
+                Files.delete(indexFile);
+                continue;
+            }
+            sealed.put(firstSequence, index);
+            nextSequence = Math.max(nextSequence, index.getLastSequence() + 1);
+            if (Files.exists(file(firstSequence, SEGMENT_SUFFIX))) {
+                compressor.execute(() -> compress(firstSequence));
+            }
+        }
+    }
+
+    /**
+     * builds the index of a segment from its entries, up to where it was cut
+     * off
+     */
+    private SegmentIndex scan(long firstSequence) {
+        SegmentIndex index = new SegmentIndex(firstSequence);
+        try (SegmentReader reader = openSegment(firstSequence)) {
+            AuditEntry entry;
+            while ((entry = reader.next(null)) != null) {
+                index.add(entry.getSequence(), entry.getTimestamp(), entry.getUsername());
+            }
+        } catch (IOException ex) {
+            // a segment cut off in its header has no entries
+        }
+        return index;
+    }
+
+    private Path file(long firstSequence, String suffix) {
+        return directory.resolve(String.format("%020d", firstSequence) + suffix);
+    }
+
+    /**
+     * stops the writer once it wrote out every queued entry and sealed the
+     * last segment, then waits a while for the compressor
+     */
+    @Override
+    public void close() {
+        isClosed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+            compressor.shutdown();
+            compressor.awaitTermination(CLOSE_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
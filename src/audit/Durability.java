@@ -0,0 +1,38 @@
+package audit;
+
+/**
+ * How far an audit entry has to get before the statement that logged it
+ * goes on. Set with the {@code audit.durability} system property.
+ */
+public enum Durability {
+    /**
+     * the writer hands each batch to the operating system; entries still
+     * buffered are lost if the process dies
+     */
+    ASYNC,
+    /**
+     * the writer also syncs each batch to disk, so a crash of the machine
+     * loses at most the last batch
+     */
+    BATCH,
+    /**
+     * the statement waits until its entry is synced to disk. Entries that
+     * arrive together share the sync.
+     */
+    SYNC;
+
+    /**
+     * @param name - a mode name in any case or null
+     * @return the mode or ASYNC if the name is null or unknown
+     */
+    public static Durability of(String name) {
+        if (name != null) {
+            for (Durability durability : values()) {
+                if (durability.name().equalsIgnoreCase(name.trim())) {
+                    return durability;
+                }
+            }
+        }
+        return ASYNC;
+    }
+}
@@ -0,0 +1,121 @@
+package audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue for many producers and a single consumer that takes no
+ * locks. Every slot carries a sequence number telling whose turn it is: a
+ * producer claims the next position with one compare-and-set on the tail
+ * and publishes its element by advancing the slot's sequence, and the
+ * consumer frees the slot for the producer one lap later the same way.
+ *
+ * @param <E> - type of the elements
+ */
+public final class MpscRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    /**
+     * @param capacity - a power of two
+     */
+    public MpscRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.elements = new AtomicReferenceArray<E>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * adds an element unless the buffer is full. Safe to call from any
+     * thread.
+     *
+     * @param element
+     * @return position of the element, counting from 0, or -1 if the buffer
+     *         is full
+     */
+    public long offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int slot = (int) (position & mask);
+            long distance = sequences.get(slot) - position;
+            if (distance == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(slot, element);
+                    sequences.lazySet(slot, position + 1);
+                    return position;
+                }
+            } else if (distance < 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * removes the oldest element. Only the consumer thread may call this.
+     *
+     * @return the element or null if none is published yet
+     */
+    public E poll() {
+        int slot = (int) (head & mask);
+        if (sequences.get(slot) != head + 1) {
+            return null;
+        }
+        E element = elements.get(slot);
+        elements.lazySet(slot, null);
+        sequences.lazySet(slot, head + mask + 1);
+        head++;
+        return element;
+    }
+
+    /**
+     * removes published elements in order. Only the consumer thread may
+     * call this.
+     *
+     * @param consumer - gets each removed element
+     * @param limit    - most elements to remove
+     * @return number of elements removed
+     */
+    public int drain(Consumer<E> consumer, int limit) {
+        int count = 0;
+        E element;
+        while (count < limit && (element = poll()) != null) {
+            consumer.accept(element);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return true if no element was added after the last one removed.
+     *         Only the consumer thread may call this.
+     */
+    public boolean isEmpty() {
+        return tail.get() == head;
+    }
+
+    /**
+     * @return number of elements added so far. Safe to call from any thread.
+     */
+    public long offered() {
+        return tail.get();
+    }
+
+    /**
+     * @return number of elements the buffer holds when full
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+}
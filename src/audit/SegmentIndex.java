@@ -0,0 +1,137 @@
+package audit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Summary of the entries of one log segment: the range of their sequence
+ * numbers and timestamps and the users who made them. A query skips a
+ * segment whose summary rules out every entry it asks for, without opening
+ * the segment.
+ */
+final class SegmentIndex {
+
+    private static final int MAGIC = 0x41554458;
+
+    private final long firstSequence;
+    private long lastSequence;
+    private long minTimestamp = Long.MAX_VALUE;
+    private long maxTimestamp = Long.MIN_VALUE;
+    private long count;
+    private final Set<String> users;
+
+    SegmentIndex(long firstSequence) {
+        this.firstSequence = firstSequence;
+        this.lastSequence = firstSequence - 1;
+        this.users = new HashSet<String>();
+    }
+
+    private SegmentIndex(long firstSequence, long lastSequence, long minTimestamp, long maxTimestamp, long count,
+            Set<String> users) {
+        this.firstSequence = firstSequence;
+        this.lastSequence = lastSequence;
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+        this.count = count;
+        this.users = users;
+    }
+
+    /**
+     * takes an entry into the summary
+     *
+     * @param sequence
+     * @param timestamp
+     * @param username
+     */
+    void add(long sequence, long timestamp, String username) {
+        lastSequence = sequence;
+        minTimestamp = Math.min(minTimestamp, timestamp);
+        maxTimestamp = Math.max(maxTimestamp, timestamp);
+        users.add(String.valueOf(username));
+        count++;
+    }
+
+    long getFirstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * @return sequence number of the last entry, one less than the first if
+     *         the segment is empty
+     */
+    long getLastSequence() {
+        return lastSequence;
+    }
+
+    long getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    Set<String> getUsers() {
+        return Collections.unmodifiableSet(users);
+    }
+
+    /**
+     * writes the summary to a file, replacing it in one step
+     *
+     * @param file
+     * @throws IOException
+     */
+    void write(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(firstSequence);
+            out.writeLong(lastSequence);
+            out.writeLong(minTimestamp);
+            out.writeLong(maxTimestamp);
+            out.writeLong(count);
+            out.writeInt(users.size());
+            for (String user : users) {
+                out.writeUTF(user);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param file
+     * @return the summary written by {@link #write(Path)}
+     * @throws IOException
+     */
+    static SegmentIndex read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an audit segment index: " + file);
+            }
+            long firstSequence = in.readLong();
+            long lastSequence = in.readLong();
+            long minTimestamp = in.readLong();
+            long maxTimestamp = in.readLong();
+            long count = in.readLong();
+            int userCount = in.readInt();
+            Set<String> users = new HashSet<String>();
+            for (int i = 0; i < userCount; i++) {
+                users.add(in.readUTF());
+            }
+            return new SegmentIndex(firstSequence, lastSequence, minTimestamp, maxTimestamp, count, users);
+        }
+    }
+}
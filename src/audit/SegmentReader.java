@@ -0,0 +1,171 @@
+package audit;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the entries of a segment written by {@link SegmentWriter}, sealed
+ * and compressed or still being written. Reading stops quietly at a record
+ * cut short, which is where a crash or the writer left off.
+ */
+final class SegmentReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private final List<String> names = new ArrayList<String>();
+    private long sequence;
+    private long timestamp;
+
+    private SegmentReader(InputStream in) throws IOException {
+        this.in = in;
+        try {
+            if (readInt() != SegmentWriter.MAGIC || readByte() != SegmentWriter.VERSION) {
+                throw new IOException("Not an audit log segment");
+            }
+            long firstSequence = 0;
+            for (int i = 0; i < 8; i++) {
+                firstSequence = (firstSequence << 8) | readByte();
+            }
+            this.sequence = firstSequence - 1;
+        } catch (IOException ex) {
+            in.close();
+            throw ex;
+        }
+        names.add(null);
+    }
+
+    /**
+     * opens a segment, preferring its compressed file. The plain file may
+     * be compressed and removed meanwhile, in which case the compressed one
+     * is opened instead.
+     *
+     * @param plain      - the segment as written
+     * @param compressed - the segment once sealed
+     * @return SegmentReader
+     * @throws IOException
+     */
+    static SegmentReader open(Path plain, Path compressed) throws IOException {
+        if (!Files.exists(compressed)) {
+            try {
+                return new SegmentReader(new BufferedInputStream(Files.newInputStream(plain), BUFFER_SIZE));
+            } catch (NoSuchFileException ex) {
+                // compressed since the check
+            }
+        }
+        return new SegmentReader(new GZIPInputStream(Files.newInputStream(compressed), BUFFER_SIZE));
+    }
+
+    /**
+     * reads up to the next entry the filter may match. The query text of
+     * entries it rules out by their other fields is skipped undecoded.
+     *
+     * @param filter - or null for every entry
+     * @return the entry or null at the end of the segment
+     * @throws IOException
+     */
+    AuditEntry next(AuditFilter filter) throws IOException {
+        try {
+            while (true) {
+                int kind = in.read();
+                if (kind == SegmentWriter.NAME) {
+                    readVarLong();
+                    names.add(new String(readBytes(), StandardCharsets.UTF_8));
+                } else if (kind == SegmentWriter.ENTRY) {
+                    long entrySequence = sequence + readVarLong();
+                    long delta = readVarLong();
+                    long entryTimestamp = timestamp + ((delta >>> 1) ^ -(delta & 1));
+                    String type = name();
+                    String username = name();
+                    String databaseName = name();
+                    String tableName = name();
+                    sequence = entrySequence;
+                    timestamp = entryTimestamp;
+                    if (filter != null && !filter.matches(entrySequence, entryTimestamp, type, username,
+                            databaseName, tableName)) {
+                        skipBytes();
+                        continue;
+                    }
+                    String query = new String(readBytes(), StandardCharsets.UTF_8);
+                    return new AuditEntry(entrySequence, entryTimestamp, type, username, databaseName, tableName,
+                            query);
+                } else {
+                    return null;
+                }
+            }
+        } catch (EOFException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * @return sequence number of the last entry read or skipped
+     */
+    long getSequence() {
+        return sequence;
+    }
+
+    private String name() throws IOException {
+        long id = readVarLong();
+        if (id >= names.size()) {
+            throw new EOFException("Unknown name " + id);
+        }
+        return names.get((int) id);
+    }
+
+    private byte[] readBytes() throws IOException {
+        long length = readVarLong();
+        if (length > Integer.MAX_VALUE) {
+            throw new EOFException("Bad length " + length);
+        }
+        byte[] bytes = in.readNBytes((int) length);
+        if (bytes.length < length) {
+            throw new EOFException();
+        }
+        return bytes;
+    }
+
+    private void skipBytes() throws IOException {
+        long length = readVarLong();
+        in.skipNBytes(length);
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new EOFException("Bad number");
+    }
+
+    private int readInt() throws IOException {
+        return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
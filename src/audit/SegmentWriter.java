@@ -0,0 +1,181 @@
+package audit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Appends entries to a log segment in the binary format. Type, user,
+ * database and table names are interned: the first entry of a segment that
+ * uses a name is preceded by a record giving the name its number, and
+ * entries store the numbers. Sequence numbers and timestamps are stored as
+ * differences to the entry before, so an entry is mostly a few bytes and
+ * its query text.
+ *
+ * <pre>
+ * segment := magic version firstSequence { record }
+ * record  := NAME id length bytes
+ *          | ENTRY sequenceDelta timestampDelta typeId userId databaseId tableId length query
+ * </pre>
+ *
+ * Numbers after the header are variable length, timestamp deltas zigzag
+ * encoded; name id 0 stands for null. Only the writer thread uses this
+ * class.
+ */
+final class SegmentWriter implements Closeable {
+
+    static final int MAGIC = 0x41554454;
+    static final byte VERSION = 1;
+    static final byte NAME = 1;
+    static final byte ENTRY = 2;
+    static final int HEADER_SIZE = 13;
+
+    private final FileChannel channel;
+    private final SegmentIndex index;
+    private final long openedAt = System.nanoTime();
+    private final Map<String, Integer> names = new HashMap<String, Integer>();
+    private byte[] pending = new byte[1 << 16];
+    private int pendingLength;
+    private long size;
+    private long lastTimestamp;
+
+    /**
+     * creates a segment file
+     *
+     * @param file
+     * @param firstSequence - sequence number of the first entry
+     * @throws IOException
+     */
+    SegmentWriter(Path file, long firstSequence) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        this.index = new SegmentIndex(firstSequence);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).put(VERSION).putLong(firstSequence).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        this.size = HEADER_SIZE;
+    }
+
+    /**
+     * encodes an entry. It reaches the file with the next {@link #flush}.
+     *
+     * @param entry
+     * @param sequence
+     */
+    void append(AuditEntry entry, long sequence) {
+        int type = intern(entry.getType());
+        int user = intern(entry.getUsername());
+        int database = intern(entry.getDatabaseName());
+        int table = intern(entry.getTableName());
+        byte[] query = String.valueOf(entry.getQuery()).getBytes(StandardCharsets.UTF_8);
+        writeByte(ENTRY);
+        writeVarLong(sequence - index.getLastSequence());
+        long delta = entry.getTimestamp() - lastTimestamp;
+        writeVarLong((delta << 1) ^ (delta >> 63));
+        writeVarLong(type);
+        writeVarLong(user);
+        writeVarLong(database);
+        writeVarLong(table);
+        writeBytes(query);
+        lastTimestamp = entry.getTimestamp();
+        index.add(sequence, entry.getTimestamp(), entry.getUsername());
+    }
+
+    private int intern(String name) {
+        if (name == null) {
+            return 0;
+        }
+        Integer id = names.get(name);
+        if (id == null) {
+            id = names.size() + 1;
+            names.put(name, id);
+            writeByte(NAME);
+            writeVarLong(id);
+            writeBytes(name.getBytes(StandardCharsets.UTF_8));
+        }
+        return id;
+    }
+
+    /**
+     * writes the encoded entries with one write
+     *
+     * @param isForced - also sync them to disk
+     * @throws IOException
+     */
+    void flush(boolean isForced) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(pending, 0, pendingLength);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        size += pendingLength;
+        pendingLength = 0;
+        if (isForced) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * @return bytes written so far
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * @return nanoseconds since the segment was created
+     */
+    long age() {
+        return System.nanoTime() - openedAt;
+    }
+
+    SegmentIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * writes what is still encoded, syncs the file and closes it
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeBytes(byte[] bytes) {
+        writeVarLong(bytes.length);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, pending, pendingLength, bytes.length);
+        pendingLength += bytes.length;
+    }
+
+    private void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            pending[pendingLength++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        pending[pendingLength++] = (byte) value;
+    }
+
+    private void writeByte(byte value) {
+        ensure(1);
+        pending[pendingLength++] = value;
+    }
+
+    private void ensure(int length) {
+        if (pendingLength + length > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + length));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package column;
+
+import storage.ColumnType;
+
+/**
+ * In-memory column of a table. Values are kept in a primitive array of the
+ * column's type, in row order, with a bitmap marking the rows that are null,
+ * so a cell costs a few bytes instead of a boxed object inside a map. Row
+ * positions line up across all columns of a table.
+ */
+public abstract class ColumnVector {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    protected int size;
+    private long[] nulls = new long[1];
+
+    /**
+     * creates an empty column for a storage type
+     *
+     * @param type
+     * @return ColumnVector
+     */
+    public static ColumnVector of(ColumnType type) {
+        return switch (type) {
+            case INT -> new IntColumn();
+            case DATE -> new DateColumn();
+            case BIGINT -> new LongColumn();
+            case DOUBLE -> new DoubleColumn();
+            case VARCHAR -> new DictionaryColumn();
+        };
+    }
+
+    /**
+     * @return number of rows in the column
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param row
+     * @return true if the value of the row is null
+     */
+    public boolean isNull(int row) {
+        return (nulls[row >>> 6] & (1L << row)) != 0;
+    }
+
+    private void setNull(int row, boolean isNull) {
+        if (isNull) {
+            nulls[row >>> 6] |= 1L << row;
+        } else {
+            nulls[row >>> 6] &= ~(1L << row);
+        }
+    }
+
+    /**
+     * appends a typed value, or null, as a new row
+     *
+     * @param value
+     */
+    public void add(Object value) {
+        if (size == capacity()) {
+            int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+            resize(capacity);
+            if (nulls.length * 64 < capacity) {
+                long[] grown = new long[(capacity + 63) / 64];
+                System.arraycopy(nulls, 0, grown, 0, nulls.length);
+                nulls = grown;
+            }
+        }
+        set(size++, value);
+    }
+
+    /**
+     * replaces the value of a row
+     *
+     * @param row
+     * @param value
+     */
+    public void set(int row, Object value) {
+        setNull(row, value == null);
+        if (value != null) {
+            store(row, value);
+        }
+    }
+
+    /**
+     * @param row
+     * @return the typed value of the row or null
+     */
+    public Object get(int row) {
+        return isNull(row) ? null : load(row);
+    }
+
+    /**
+     * @param row
+     * @return the value of a non-null row of a whole number column
+     */
+    public long getLong(int row) {
+        throw new UnsupportedOperationException("Not a whole number column");
+    }
+
+    /**
+     * @param row
+     * @return the value of a non-null row of a numeric column
+     */
+    public double getDouble(int row) {
+        return getLong(row);
+    }
+
+    /**
+     * compares the value of a non-null row with a typed value of the column
+     * type without boxing the row's value
+     *
+     * @param row
+     * @param value
+     * @return negative, zero or positive as the row's value is smaller, equal
+     *         or larger
+     */
+    public abstract int compare(int row, Object value);
+
+    /**
+     * writes the value of a row as text, {@code null} for nulls
+     *
+     * @param out
+     * @param row
+     */
+    public void appendTo(StringBuilder out, int row) {
+        if (isNull(row)) {
+            out.append("null");
+        } else {
+            appendValue(out, row);
+        }
+    }
+
+    /**
+     * keeps only the rows flagged in {@code keep}, closing the gaps so row
+     * positions stay dense
+     *
+     * @param keep
+     */
+    public void retain(boolean[] keep) {
+        int to = 0;
+        for (int from = 0; from < size; from++) {
+            if (keep[from]) {
+                if (from != to) {
+                    move(from, to);
+                    setNull(to, isNull(from));
+                }
+                to++;
+            }
+        }
+        size = to;
+    }
+
+    protected abstract int capacity();
+
+    protected abstract void resize(int capacity);
+
+    protected abstract Object load(int row);
+
+    protected abstract void store(int row, Object value);
+
+    protected abstract void move(int from, int to);
+
+    protected abstract void appendValue(StringBuilder out, int row);
+}
@@ -0,0 +1,35 @@
+package column;
+
+import java.sql.Date;
+import java.time.LocalDate;
+
+/**
+ * Column of DATE values stored as days since the epoch in an {@code int[]},
+ * the same form the row codec writes them in
+ */
+public class DateColumn extends IntColumn {
+
+    @Override
+    public int compare(int row, Object value) {
+        return Integer.compare(values[row], epochDay(value));
+    }
+
+    @Override
+    protected Object load(int row) {
+        return Date.valueOf(LocalDate.ofEpochDay(values[row]));
+    }
+
+    @Override
+    protected void store(int row, Object value) {
+        values[row] = epochDay(value);
+    }
+
+    @Override
+    protected void appendValue(StringBuilder out, int row) {
+        out.append(LocalDate.ofEpochDay(values[row]));
+    }
+
+    private static int epochDay(Object value) {
+        return (int) ((Date) value).toLocalDate().toEpochDay();
+    }
+}
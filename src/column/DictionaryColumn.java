@@ -0,0 +1,87 @@
+package column;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Column of VARCHAR values, dictionary encoded: every distinct string is
+ * kept once and rows hold its code in an {@code int[]}. Codes are handed out
+ * in order of first appearance and stay valid for the life of the column.
+ * Lookups by value may run while rows are appended.
+ */
+public class DictionaryColumn extends ColumnVector {
+
+    private int[] codes = new int[0];
+    private final List<String> dictionary = new ArrayList<String>();
+    private final Map<String, Integer> codesByValue = new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * @param row
+     * @return dictionary code of a non-null row
+     */
+    public int getCode(int row) {
+        return codes[row];
+    }
+
+    /**
+     * @param value
+     * @return code of a string or -1 if no row ever held it
+     */
+    public int codeOf(String value) {
+        Integer code = codesByValue.get(value);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * @param code
+     * @return the string a code stands for
+     */
+    public String decode(int code) {
+        return dictionary.get(code);
+    }
+
+    @Override
+    public int compare(int row, Object value) {
+        return dictionary.get(codes[row]).compareTo((String) value);
+    }
+
+    @Override
+    protected int capacity() {
+        return codes.length;
+    }
+
+    @Override
+    protected void resize(int capacity) {
+        codes = Arrays.copyOf(codes, capacity);
+    }
+
+    @Override
+    protected Object load(int row) {
+        return dictionary.get(codes[row]);
+    }
+
+    @Override
+    protected void store(int row, Object value) {
+        String string = (String) value;
+        Integer code = codesByValue.get(string);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add(string);
+            codesByValue.put(string, code);
+        }
+        codes[row] = code;
+    }
+
+    @Override
+    protected void move(int from, int to) {
+        codes[to] = codes[from];
+    }
+
+    @Override
+    protected void appendValue(StringBuilder out, int row) {
+        out.append(dictionary.get(codes[row]));
+    }
+}
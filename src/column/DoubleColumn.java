@@ -0,0 +1,55 @@
+package column;
+
+import java.util.Arrays;
+
+/**
+ * Column of DOUBLE values backed by a {@code double[]}
+ */
+public class DoubleColumn extends ColumnVector {
+
+    private double[] values = new double[0];
+
+    /**
+     * @param row
+     * @return the value of a non-null row
+     */
+    @Override
+    public double getDouble(int row) {
+        return values[row];
+    }
+
+    @Override
+    public int compare(int row, Object value) {
+        return Double.compare(values[row], (Double) value);
+    }
+
+    @Override
+    protected int capacity() {
+        return values.length;
+    }
+
+    @Override
+    protected void resize(int capacity) {
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override
+    protected Object load(int row) {
+        return values[row];
+    }
+
+    @Override
+    protected void store(int row, Object value) {
+        values[row] = (Double) value;
+    }
+
+    @Override
+    protected void move(int from, int to) {
+        values[to] = values[from];
+    }
+
+    @Override
+    protected void appendValue(StringBuilder out, int row) {
+        out.append(values[row]);
+    }
+}
@@ -0,0 +1,59 @@
+package column;
+
+import java.util.Arrays;
+
+/**
+ * Column of INT values backed by an {@code int[]}
+ */
+public class IntColumn extends ColumnVector {
+
+    protected int[] values = new int[0];
+
+    /**
+     * @param row
+     * @return the value of a non-null row
+     */
+    public int getInt(int row) {
+        return values[row];
+    }
+
+    @Override
+    public long getLong(int row) {
+        return values[row];
+    }
+
+    @Override
+    public int compare(int row, Object value) {
+        return Integer.compare(values[row], (Integer) value);
+    }
+
+    @Override
+    protected int capacity() {
+        return values.length;
+    }
+
+    @Override
+    protected void resize(int capacity) {
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override
+    protected Object load(int row) {
+        return values[row];
+    }
+
+    @Override
+    protected void store(int row, Object value) {
+        values[row] = (Integer) value;
+    }
+
+    @Override
+    protected void move(int from, int to) {
+        values[to] = values[from];
+    }
+
+    @Override
+    protected void appendValue(StringBuilder out, int row) {
+        out.append(values[row]);
+    }
+}
@@ -0,0 +1,55 @@
+package column;
+
+import java.util.Arrays;
+
+/**
+ * Column of BIGINT values backed by a {@code long[]}
+ */
+public class LongColumn extends ColumnVector {
+
+    private long[] values = new long[0];
+
+    /**
+     * @param row
+     * @return the value of a non-null row
+     */
+    @Override
+    public long getLong(int row) {
+        return values[row];
+    }
+
+    @Override
+    public int compare(int row, Object value) {
+        return Long.compare(values[row], (Long) value);
+    }
+
+    @Override
+    protected int capacity() {
+        return values.length;
+    }
+
+    @Override
+    protected void resize(int capacity) {
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override
+    protected Object load(int row) {
+        return values[row];
+    }
+
+    @Override
+    protected void store(int row, Object value) {
+        values[row] = (Long) value;
+    }
+
+    @Override
+    protected void move(int from, int to) {
+        values[to] = values[from];
+    }
+
+    @Override
+    protected void appendValue(StringBuilder out, int row) {
+        out.append(values[row]);
+    }
+}
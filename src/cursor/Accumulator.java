@@ -0,0 +1,365 @@
+package cursor;
+
+import sql.Expression;
+import storage.ColumnType;
+
+import java.util.Arrays;
+
+/**
+ * State of one aggregate for every group of a {@link HashAggregateCursor}.
+ * The state of all groups is kept in primitive arrays indexed by group
+ * number, so adding a row reads the input column through
+ * {@link Cursor#getLong(int)} or {@link Cursor#getDouble(int)} and allocates
+ * nothing. Nulls are skipped; an aggregate over no values is null, except
+ * for COUNT, which is 0.
+ *
+ * When rows are aggregated in parts, such as the morsels of a
+ * {@link ParallelScan}, each part gives its groups' state as partial
+ * columns, and the accumulators of the final aggregation merge them: the
+ * count of COUNT, the sum and the count of AVG, and the aggregate itself
+ * for the others.
+ */
+public abstract class Accumulator {
+
+    /**
+     * input column the aggregate reads, -1 for {@code COUNT(*)}
+     */
+    protected final int column;
+
+    protected Accumulator(int column) {
+        this.column = column;
+    }
+
+    /**
+     * creates the accumulator of an aggregate
+     *
+     * @param function
+     * @param column   - input column or -1 for {@code COUNT(*)}
+     * @param type     - type of the input column, null for {@code COUNT(*)}
+     * @return Accumulator
+     */
+    public static Accumulator of(Expression.Aggregate.Function function, int column, ColumnType type) {
+        boolean isWhole = type == ColumnType.INT || type == ColumnType.BIGINT;
+        boolean isMax = function == Expression.Aggregate.Function.MAX;
+        return switch (function) {
+            case COUNT -> new Count(column);
+            case SUM -> isWhole ? new LongSum(column) : new DoubleSum(column);
+            case AVG -> new Average(column);
+            case MIN, MAX -> isWhole ? new LongExtreme(column, isMax, type)
+                    : type == ColumnType.DOUBLE ? new DoubleExtreme(column, isMax) : new ObjectExtreme(column, isMax);
+        };
+    }
+
+    /**
+     * @param function
+     * @param type     - type of the input column, null for {@code COUNT(*)}
+     * @return type of the aggregate's values, or null if it cannot be taken
+     *         of a column of the type
+     */
+    public static ColumnType resultType(Expression.Aggregate.Function function, ColumnType type) {
+        boolean isNumber = type == ColumnType.INT || type == ColumnType.BIGINT || type == ColumnType.DOUBLE;
+        return switch (function) {
+            case COUNT -> ColumnType.BIGINT;
+            case SUM -> !isNumber ? null : type == ColumnType.DOUBLE ? ColumnType.DOUBLE : ColumnType.BIGINT;
+            case AVG -> isNumber ? ColumnType.DOUBLE : null;
+            case MIN, MAX -> type;
+        };
+    }
+
+    /**
+     * @param function
+     * @param type     - type of the input column, null for {@code COUNT(*)}
+     * @return types of the partial columns of the aggregate
+     */
+    public static ColumnType[] partialTypes(Expression.Aggregate.Function function, ColumnType type) {
+        return function == Expression.Aggregate.Function.AVG
+                ? new ColumnType[] { ColumnType.DOUBLE, ColumnType.BIGINT }
+                : new ColumnType[] { resultType(function, type) };
+    }
+
+    /**
+     * makes room for groups numbered below a capacity
+     *
+     * @param capacity
+     */
+    abstract void resize(int capacity);
+
+    /**
+     * adds the current row of the input to a group
+     *
+     * @param group
+     * @param input
+     */
+    abstract void add(int group, Cursor input);
+
+    /**
+     * @param group
+     * @return the aggregate of a group
+     */
+    abstract Object get(int group);
+
+    /**
+     * adds the partial columns of the current row of the input, starting
+     * at the accumulator's column, to a group
+     *
+     * @param group
+     * @param input
+     */
+    void merge(int group, Cursor input) {
+        add(group, input);
+    }
+
+    /**
+     * writes the partial columns of a group
+     *
+     * @param group
+     * @param row
+     * @param offset - position of the first partial column in the row
+     */
+    void partial(int group, Object[] row, int offset) {
+        row[offset] = get(group);
+    }
+
+    private static final class Count extends Accumulator {
+        private long[] counts = new long[0];
+
+        Count(int column) {
+            super(column);
+        }
+
+        @Override
+        void resize(int capacity) {
+            counts = Arrays.copyOf(counts, capacity);
+        }
+
+        @Override
+        void add(int group, Cursor input) {
+            if (column == -1 || !input.isNull(column)) {
+                counts[group]++;
+            }
+        }
+
+        @Override
+        void merge(int group, Cursor input) {
+            counts[group] += input.getLong(column);
+        }
+
+        @Override
+        Object get(int group) {
+            return counts[group];
+        }
+    }
+
+    private static final class LongSum extends Accumulator {
+        private long[] sums = new long[0];
+        private boolean[] seen = new boolean[0];
+
+        LongSum(int column) {
+            super(column);
+        }
+
+        @Override
+        void resize(int capacity) {
+            sums = Arrays.copyOf(sums, capacity);
+            seen = Arrays.copyOf(seen, capacity);
+        }
+
+        @Override
+        void add(int group, Cursor input) {
+            if (!input.isNull(column)) {
+                sums[group] = Math.addExact(sums[group], input.getLong(column));
+                seen[group] = true;
+            }
+        }
+
+        @Override
+        Object get(int group) {
+            return seen[group] ? (Object) sums[group] : null;
+        }
+    }
+
+    private static final class DoubleSum extends Accumulator {
+        private double[] sums = new double[0];
+        private boolean[] seen = new boolean[0];
+
+        DoubleSum(int column) {
+            super(column);
+        }
+
+        @Override
+        void resize(int capacity) {
+            sums = Arrays.copyOf(sums, capacity);
+            seen = Arrays.copyOf(seen, capacity);
+        }
+
+        @Override
+        void add(int group, Cursor input) {
+            if (!input.isNull(column)) {
+                sums[group] += input.getDouble(column);
+                seen[group] = true;
+            }
+        }
+
+        @Override
+        Object get(int group) {
+            return seen[group] ? (Object) sums[group] : null;
+        }
+    }
+
+    private static final class Average extends Accumulator {
+        private double[] sums = new double[0];
+        private long[] counts = new long[0];
+
+        Average(int column) {
+            super(column);
+        }
+
+        @Override
+        void resize(int capacity) {
+            sums = Arrays.copyOf(sums, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+
+        @Override
+        void add(int group, Cursor input) {
+            if (!input.isNull(column)) {
+                sums[group] += input.getDouble(column);
+                counts[group]++;
+            }
+        }
+
+        @Override
+        Object get(int group) {
+            return counts[group] == 0 ? null : (Object) (sums[group] / counts[group]);
+        }
+
+        @Override
+        void merge(int group, Cursor input) {
+            sums[group] += input.getDouble(column);
+            counts[group] += input.getLong(column + 1);
+        }
+
+        @Override
+        void partial(int group, Object[] row, int offset) {
+            row[offset] = sums[group];
+            row[offset + 1] = counts[group];
+        }
+    }
+
+    /**
+     * MIN or MAX of an INT or BIGINT column
+     */
+    private static final class LongExtreme extends Accumulator {
+        private final boolean isMax;
+        private final ColumnType type;
+        private long[] values = new long[0];
+        private boolean[] seen = new boolean[0];
+
+        LongExtreme(int column, boolean isMax, ColumnType type) {
+            super(column);
+            this.isMax = isMax;
+            this.type = type;
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+            seen = Arrays.copyOf(seen, capacity);
+        }
+
+        @Override
+        void add(int group, Cursor input) {
+            if (!input.isNull(column)) {
+                long value = input.getLong(column);
+                if (!seen[group] || (isMax ? value > values[group] : value < values[group])) {
+                    values[group] = value;
+                    seen[group] = true;
+                }
+            }
+        }
+
+        @Override
+        Object get(int group) {
+            if (!seen[group]) {
+                return null;
+            }
+            return type == ColumnType.INT ? (Object) (int) values[group] : (Object) values[group];
+        }
+    }
+
+    /**
+     * MIN or MAX of a DOUBLE column
+     */
+    private static final class DoubleExtreme extends Accumulator {
+        private final boolean isMax;
+        private double[] values = new double[0];
+        private boolean[] seen = new boolean[0];
+
+        DoubleExtreme(int column, boolean isMax) {
+            super(column);
+            this.isMax = isMax;
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+            seen = Arrays.copyOf(seen, capacity);
+        }
+
+        @Override
+        void add(int group, Cursor input) {
+            if (!input.isNull(column)) {
+                double value = input.getDouble(column);
+                if (!seen[group] || (isMax ? value > values[group] : value < values[group])) {
+                    values[group] = value;
+                    seen[group] = true;
+                }
+            }
+        }
+
+        @Override
+        Object get(int group) {
+            return seen[group] ? (Object) values[group] : null;
+        }
+    }
+
+    /**
+     * MIN or MAX of a DATE or VARCHAR column, which are compared as objects
+     */
+    private static final class ObjectExtreme extends Accumulator {
+        private final boolean isMax;
+        private Object[] values = new Object[0];
+
+        ObjectExtreme(int column, boolean isMax) {
+            super(column);
+            this.isMax = isMax;
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void add(int group, Cursor input) {
+            Object value = input.get(column);
+            if (value != null) {
+                Object current = values[group];
+                if (current == null) {
+                    values[group] = value;
+                } else {
+                    int cmp = ((Comparable<Object>) value).compareTo(current);
+                    if (isMax ? cmp > 0 : cmp < 0) {
+                        values[group] = value;
+                    }
+                }
+            }
+        }
+
+        @Override
+        Object get(int group) {
+            return values[group];
+        }
+    }
+}
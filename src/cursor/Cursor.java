@@ -0,0 +1,72 @@
+package cursor;
+
+/**
+ * Pull-based stream of result rows. A cursor produces one row per call to
+ * {@link #next()} and does no work for rows that are never asked for, so
+ * cursors can be stacked (scan, filter, projection, limit) and a consumer
+ * that stops early stops the whole chain.
+ */
+public interface Cursor extends AutoCloseable {
+
+    /**
+     * moves to the next row
+     *
+     * @return false once there are no more rows
+     */
+    boolean next();
+
+    /**
+     * @return number of columns of every row
+     */
+    int getColumnCount();
+
+    /**
+     * @param column
+     * @return the typed value of a column of the current row or null
+     */
+    Object get(int column);
+
+    /**
+     * @param column
+     * @return true if a column of the current row is null
+     */
+    default boolean isNull(int column) {
+        return get(column) == null;
+    }
+
+    /**
+     * reads a non-null INT or BIGINT column, without boxing where the
+     * cursor can avoid it
+     *
+     * @param column
+     * @return long
+     */
+    default long getLong(int column) {
+        return ((Number) get(column)).longValue();
+    }
+
+    /**
+     * reads a non-null numeric column, without boxing where the cursor can
+     * avoid it
+     *
+     * @param column
+     * @return double
+     */
+    default double getDouble(int column) {
+        return ((Number) get(column)).doubleValue();
+    }
+
+    /**
+     * writes a column of the current row as text, {@code null} for nulls
+     *
+     * @param out
+     * @param column
+     */
+    void appendTo(StringBuilder out, int column);
+
+    /**
+     * releases what the cursor holds on to, such as a pinned table
+     */
+    @Override
+    void close();
+}
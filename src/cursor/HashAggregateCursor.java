@@ -0,0 +1,431 @@
+package cursor;
+
+import sql.Expression;
+import storage.ColumnType;
+import storage.RowCodec;
+import utils.Condition;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Groups the rows of another cursor and computes aggregates per group with
+ * a hash table. The input is read in full on the first call to
+ * {@link #next()}; each row is looked up by its group columns and added to
+ * the {@link Accumulator}s of its group. A single INT or BIGINT group column
+ * is looked up in a table of primitive keys, so rows only box their values
+ * when they start a new group.
+ *
+ * The groups are estimated to cost a number of bytes each, and once they
+ * reach the memory budget rows of new groups are no longer added to the
+ * table but written to one of several spill files by the hash of their
+ * group. After the groups in memory have been returned, each spill file is
+ * aggregated the same way in turn, splitting it again by other bits of the
+ * hash if its groups do not fit either.
+ *
+ * Result rows have the group columns followed by the aggregates; groups
+ * that do not meet the HAVING condition are skipped. Rows can also be
+ * aggregated in two phases, the partial phase giving the partial columns of
+ * each aggregate for a part of the rows and the final phase merging the
+ * partial rows of all parts by their group columns.
+ */
+public class HashAggregateCursor implements Cursor {
+
+    /**
+     * COMPLETE aggregates rows into results, PARTIAL aggregates rows into
+     * the partial columns of each aggregate and FINAL merges partial rows
+     * into results
+     */
+    public enum Phase {
+        COMPLETE, PARTIAL, FINAL
+    }
+
+    private static final int PARTITION_BITS = 4;
+    private static final int PARTITIONS = 1 << PARTITION_BITS;
+    /**
+     * levels of spill files after which groups are kept in memory whatever
+     * their size, as the hash has no more bits to split them by
+     */
+    private static final int MAX_LEVEL = 64 / PARTITION_BITS - 1;
+    private static final int GROUP_BYTES = 64;
+    private static final int AGGREGATE_BYTES = 16;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Cursor input;
+    private final ColumnType[] types;
+    private final int[] groupColumns;
+    private final Expression.Aggregate.Function[] functions;
+    private final int[] aggregateColumns;
+    private final Condition having;
+    private final long memoryBudget;
+    private final Phase phase;
+    private final int level;
+    /**
+     * columns of each aggregate in a result row
+     */
+    private final int[] widths;
+    private final int columnCount;
+
+    private final Accumulator[] accumulators;
+    private final LongGroups longGroups;
+    private final Map<Object, Integer> groups;
+    private Object[][] keys = new Object[0][];
+    private int groupCount;
+    private int nullGroup = -1;
+    private long memory;
+
+    private Path[] spillFiles;
+    private DataOutputStream[] spills;
+    private RowCodec codec;
+
+    private boolean isBuilt;
+    private int group = -1;
+    private Object[] row;
+    private int partition;
+    private HashAggregateCursor child;
+
+    /**
+     * @param input            - the rows to group
+     * @param types            - types of the input columns
+     * @param groupColumns     - input columns rows are grouped by, none for a
+     *                         single group of all rows
+     * @param functions        - function of each aggregate
+     * @param aggregateColumns - input column of each aggregate, -1 for
+     *                         {@code COUNT(*)}, or in the final phase its
+     *                         first partial column
+     * @param having           - condition on result rows or null
+     * @param memoryBudget     - bytes the groups may take before rows are
+     *                         spilled
+     * @param phase
+     */
+    public HashAggregateCursor(Cursor input, ColumnType[] types, int[] groupColumns,
+            Expression.Aggregate.Function[] functions, int[] aggregateColumns, Condition having, long memoryBudget,
+            Phase phase) {
+        this(input, types, groupColumns, functions, aggregateColumns, having, memoryBudget, phase, 0);
+    }
+
+    private HashAggregateCursor(Cursor input, ColumnType[] types, int[] groupColumns,
+            Expression.Aggregate.Function[] functions, int[] aggregateColumns, Condition having, long memoryBudget,
+            Phase phase, int level) {
+        this.input = input;
+        this.types = types;
+        this.groupColumns = groupColumns;
+        this.functions = functions;
+        this.aggregateColumns = aggregateColumns;
+        this.having = having;
+        this.memoryBudget = memoryBudget;
+        this.phase = phase;
+        this.level = level;
+        this.accumulators = new Accumulator[functions.length];
+        this.widths = new int[functions.length];
+        int width = groupColumns.length;
+        for (int i = 0; i < functions.length; i++) {
+            ColumnType type = aggregateColumns[i] == -1 ? null : types[aggregateColumns[i]];
+            accumulators[i] = Accumulator.of(functions[i], aggregateColumns[i], type);
+            widths[i] = phase == Phase.PARTIAL ? Accumulator.partialTypes(functions[i], type).length : 1;
+            width += widths[i];
+        }
+        this.columnCount = width;
+        boolean isLongKey = groupColumns.length == 1
+                && (types[groupColumns[0]] == ColumnType.INT || types[groupColumns[0]] == ColumnType.BIGINT);
+        this.longGroups = isLongKey ? new LongGroups() : null;
+        this.groups = isLongKey ? null : new HashMap<Object, Integer>();
+    }
+
+    @Override
+    public boolean next() {
+        if (!isBuilt) {
+            build();
+            isBuilt = true;
+        }
+        while (true) {
+            if (child != null) {
+                if (child.next()) {
+                    return true;
+                }
+                child.close();
+                child = null;
+            }
+            if (group + 1 < groupCount) {
+                row = result(++group);
+                if (having == null || having.matches(row)) {
+                    return true;
+                }
+                continue;
+            }
+            row = null;
+            if (spillFiles == null || partition == PARTITIONS) {
+                return false;
+            }
+            if (keys != null) {
+                // the groups in memory are done with, so their space goes to the spilled ones
+                keys = null;
+                Arrays.fill(accumulators, null);
+            }
+            Path file = spillFiles[partition++];
+            if (file != null) {
+                child = new HashAggregateCursor(new SpillCursor(file, codec), types, groupColumns, functions,
+                        aggregateColumns, having, memoryBudget, phase, level + 1);
+            }
+        }
+    }
+
+    private void build() {
+        while (input.next()) {
+            int id = find();
+            if (id != -1) {
+                for (Accumulator accumulator : accumulators) {
+                    if (phase == Phase.FINAL) {
+                        accumulator.merge(id, input);
+                    } else {
+                        accumulator.add(id, input);
+                    }
+                }
+            }
+        }
+        if (groupColumns.length == 0 && groupCount == 0) {
+            // without GROUP BY there is a result row even when no rows are read
+            newGroup();
+        }
+        if (spills != null) {
+            try {
+                for (DataOutputStream spill : spills) {
+                    if (spill != null) {
+                        spill.close();
+                    }
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    /**
+     * @return the group of the current input row, or -1 if the row was
+     *         spilled
+     */
+    private int find() {
+        if (groupColumns.length == 0) {
+            return groupCount == 0 ? newGroup() : 0;
+        }
+        if (longGroups != null) {
+            int column = groupColumns[0];
+            if (input.isNull(column)) {
+                if (nullGroup == -1) {
+                    if (isFull()) {
+                        spill(mix(0));
+                        return -1;
+                    }
+                    nullGroup = newGroup();
+                }
+                return nullGroup;
+            }
+            long key = input.getLong(column);
+            int id = longGroups.get(key);
+            if (id == -1) {
+                if (isFull()) {
+                    spill(mix(key));
+                    return -1;
+                }
+                id = newGroup();
+                longGroups.put(key, id);
+            }
+            return id;
+        }
+        Object key;
+        if (groupColumns.length == 1) {
+            key = input.get(groupColumns[0]);
+        } else {
+            Object[] values = new Object[groupColumns.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = input.get(groupColumns[i]);
+            }
+            key = Arrays.asList(values);
+        }
+        Integer id = groups.get(key);
+        if (id == null) {
+            if (isFull()) {
+                spill(mix(Objects.hashCode(key)));
+                return -1;
+            }
+            id = newGroup();
+            groups.put(key, id);
+        }
+        return id;
+    }
+
+    private boolean isFull() {
+        return memory >= memoryBudget && level < MAX_LEVEL;
+    }
+
+    /**
+     * starts a group for the current input row
+     *
+     * @return its number
+     */
+    private int newGroup() {
+        if (groupCount == keys.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, groupCount * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            for (Accumulator accumulator : accumulators) {
+                accumulator.resize(capacity);
+            }
+        }
+        Object[] key = new Object[groupColumns.length];
+        memory += GROUP_BYTES + AGGREGATE_BYTES * accumulators.length;
+        for (int i = 0; i < key.length; i++) {
+            key[i] = input.get(groupColumns[i]);
+            if (key[i] instanceof String) {
+                memory += 40 + 2L * ((String) key[i]).length();
+            }
+        }
+        keys[groupCount] = key;
+        return groupCount++;
+    }
+
+    /**
+     * writes the current input row to the spill file its hash picks. The
+     * file is picked by the high bits of the hash, one group of bits per
+     * level, as the hash table of a spilled input picks slots by the low
+     * ones.
+     */
+    private void spill(long hash) {
+        int index = (int) (hash >>> (64 - (level + 1) * PARTITION_BITS)) & (PARTITIONS - 1);
+        try {
+            if (spills == null) {
+                spills = new DataOutputStream[PARTITIONS];
+                spillFiles = new Path[PARTITIONS];
+                codec = new RowCodec(types);
+            }
+            if (spills[index] == null) {
+                spillFiles[index] = Files.createTempFile("aggregate", ".spill");
+                spills[index] = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(spillFiles[index])));
+            }
+            Object[] values = new Object[types.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = input.get(i);
+            }
+            SpillCursor.write(spills[index], codec, values);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * spreads the bits of a hash code so every group of bits is as likely
+     * to differ between keys
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+
+    private Object[] result(int id) {
+        Object[] result = new Object[columnCount];
+        System.arraycopy(keys[id], 0, result, 0, groupColumns.length);
+        int offset = groupColumns.length;
+        for (int i = 0; i < accumulators.length; i++) {
+            if (phase == Phase.PARTIAL) {
+                accumulators[i].partial(id, result, offset);
+                offset += widths[i];
+            } else {
+                result[offset++] = accumulators[i].get(id);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    @Override
+    public Object get(int column) {
+        return child != null ? child.get(column) : row[column];
+    }
+
+    @Override
+    public void appendTo(StringBuilder out, int column) {
+        out.append(get(column));
+    }
+
+    @Override
+    public void close() {
+        if (child != null) {
+            child.close();
+            child = null;
+        }
+        input.close();
+        if (spills != null) {
+            for (int i = 0; i < PARTITIONS; i++) {
+                try {
+                    if (spills[i] != null) {
+                        spills[i].close();
+                    }
+                    if (spillFiles[i] != null) {
+                        Files.deleteIfExists(spillFiles[i]);
+                    }
+                } catch (IOException ex) {
+                    // the file is a temporary one
+                }
+            }
+            spills = null;
+        }
+    }
+
+    /**
+     * open addressing table from a long group key to the group's number
+     */
+    private static final class LongGroups {
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private int[] ids = new int[INITIAL_CAPACITY];
+        private int size;
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int slot = (int) mix(key) & mask; ids[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return ids[slot] - 1;
+                }
+            }
+            return -1;
+        }
+
+        void put(long key, int id) {
+            if (2 * (size + 1) > keys.length) {
+                long[] oldKeys = keys;
+                int[] oldIds = ids;
+                keys = new long[oldKeys.length * 2];
+                ids = new int[oldIds.length * 2];
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldIds[i] != 0) {
+                        insert(oldKeys[i], oldIds[i]);
+                    }
+                }
+            }
+            insert(key, id + 1);
+            size++;
+        }
+
+        private void insert(long key, int storedId) {
+            int mask = keys.length - 1;
+            int slot = (int) mix(key) & mask;
+            while (ids[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            ids[slot] = storedId;
+        }
+    }
+}
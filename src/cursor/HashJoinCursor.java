@@ -0,0 +1,83 @@
+package cursor;
+
+import utils.Condition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash join: the rows of one input are read into a hash table by key when
+ * the first row is asked for, then the other input is read once and each of
+ * its rows looks up its matches. Either input can be the one hashed, which
+ * should be the smaller; the joined rows keep the left input's columns
+ * first either way.
+ */
+public class HashJoinCursor extends JoinCursor {
+
+    private final Cursor right;
+    private final boolean isLeftBuilt;
+    private Map<Object, List<Object[]>> table;
+    private Object[] probeRow;
+    private List<Object[]> matches;
+    private int match;
+
+    /**
+     * @param left
+     * @param right
+     * @param keys
+     * @param isLeftBuilt - true to hash the left input, false the right one
+     * @param residual    - condition on the joined row or null
+     */
+    public HashJoinCursor(Cursor left, Cursor right, JoinKeys keys, boolean isLeftBuilt, Condition residual) {
+        super(left, right.getColumnCount(), keys, residual);
+        this.right = right;
+        this.isLeftBuilt = isLeftBuilt;
+    }
+
+    private void build() {
+        table = new HashMap<Object, List<Object[]>>();
+        Cursor input = isLeftBuilt ? left : right;
+        while (input.next()) {
+            Object[] values = read(input);
+            Object key = isLeftBuilt ? keys.left(values) : keys.right(values);
+            if (key != null) {
+                table.computeIfAbsent(key, k -> new ArrayList<Object[]>(1)).add(values);
+            }
+        }
+    }
+
+    @Override
+    public boolean next() {
+        if (table == null) {
+            build();
+        }
+        Cursor probe = isLeftBuilt ? right : left;
+        while (true) {
+            while (matches != null && match < matches.size()) {
+                Object[] built = matches.get(match++);
+                if (isLeftBuilt ? join(built, probeRow) : join(probeRow, built)) {
+                    return true;
+                }
+            }
+            if (!probe.next()) {
+                matches = null;
+                return false;
+            }
+            probeRow = read(probe);
+            Object key = isLeftBuilt ? keys.right(probeRow) : keys.left(probeRow);
+            matches = key == null ? null : table.get(key);
+            match = 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            super.close();
+        } finally {
+            right.close();
+        }
+    }
+}
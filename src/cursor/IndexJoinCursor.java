@@ -0,0 +1,181 @@
+package cursor;
+
+import account.Table;
+import column.ColumnVector;
+import metrics.Metrics;
+import mvcc.Snapshot;
+import storage.ColumnType;
+import storage.RowId;
+import storage.StorageEngine;
+import utils.Condition;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index nested-loop join: for each left row the right table's index on a
+ * key column is asked for the rows with that key, which are then read the
+ * way a SELECT reads them, as of a snapshot and checked against the right
+ * table's own condition. Nothing is read up front, so a join that stops
+ * early, such as one with a LIMIT, does little work.
+ *
+ * The right table is pinned for the whole join, and the dead versions the
+ * snapshot can still see, which the index no longer leads to, are grouped
+ * by key once, so a probe reads only the index hits and the dead versions
+ * with its key. The join is recorded as one index scan of the table.
+ */
+public class IndexJoinCursor extends JoinCursor {
+
+    private static final int[] NO_ROWS = new int[0];
+
+    private final StorageEngine storage;
+    private final Table table;
+    private final Snapshot snapshot;
+    private final Condition condition;
+    private final int leftColumn;
+    private final String column;
+    private final ColumnType columnType;
+    private final boolean isPrimaryKey;
+    private final ColumnVector[] vectors;
+    private final Map<Object, int[]> deadRows = new HashMap<Object, int[]>();
+    private long stamp;
+    private long scanned;
+    private long returned;
+    private Object[] leftRow;
+    private Object leftKey;
+    private ScanCursor matches;
+
+    /**
+     * @param left
+     * @param storage      - storage holding the right table's indexes
+     * @param table        - the right table
+     * @param snapshot     - snapshot the right rows must belong to
+     * @param condition    - condition on the right table's rows or null
+     * @param keys         - every key pair, checked on each row found
+     * @param leftColumn   - left column whose value is looked up
+     * @param column       - indexed column of the right table
+     * @param isPrimaryKey - true to look up through the primary key
+     * @param residual     - condition on the joined row or null
+     */
+    public IndexJoinCursor(Cursor left, StorageEngine storage, Table table, Snapshot snapshot, Condition condition,
+            JoinKeys keys, int leftColumn, String column, boolean isPrimaryKey, Condition residual) {
+        super(left, table.getColumns().size(), keys, residual);
+        this.storage = storage;
+        this.table = table;
+        this.snapshot = snapshot;
+        this.condition = condition;
+        this.leftColumn = leftColumn;
+        this.column = column;
+        this.columnType = ColumnType.of(table.getColumns().get(column));
+        this.isPrimaryKey = isPrimaryKey;
+        this.stamp = table.pin();
+        this.vectors = new ColumnVector[table.getColumns().size()];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = table.getColumn(i);
+        }
+        groupDeadRows(table.getDeadRows(snapshot), vectors[table.getColumnIndex(column)]);
+    }
+
+    private void groupDeadRows(int[] rows, ColumnVector keys) {
+        Map<Object, List<Integer>> groups = new HashMap<Object, List<Integer>>();
+        for (int row : rows) {
+            Object key = keys.get(row);
+            if (key != null) {
+                groups.computeIfAbsent(key, k -> new ArrayList<Integer>()).add(row);
+            }
+        }
+        for (Map.Entry<Object, List<Integer>> group : groups.entrySet()) {
+            deadRows.put(group.getKey(), group.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    @Override
+    public boolean next() {
+        while (true) {
+            if (matches != null) {
+                while (matches.next()) {
+                    Object[] rightRow = read(matches);
+                    // older versions found through the index may carry another key
+                    if (leftKey.equals(keys.right(rightRow)) && join(leftRow, rightRow)) {
+                        return true;
+                    }
+                }
+                closeMatches();
+            }
+            if (!left.next()) {
+                return false;
+            }
+            leftRow = read(left);
+            leftKey = keys.left(leftRow);
+            Object value = cast(leftRow[leftColumn], columnType);
+            if (leftKey != null && value != null) {
+                int[] rows = ScanCursor.candidates(table.getRows(lookup(value)),
+                        deadRows.getOrDefault(value, NO_ROWS));
+                matches = new ScanCursor(table, vectors, rows, snapshot, condition);
+                scanned += rows.length;
+            }
+        }
+    }
+
+    private void closeMatches() {
+        returned += matches.getReturned();
+        matches.close();
+        matches = null;
+    }
+
+    private List<RowId> lookup(Object value) {
+        try {
+            if (isPrimaryKey) {
+                RowId rowId = storage.lookup(table.getTableName(), value);
+                return rowId == null ? List.of() : List.of(rowId);
+            }
+            return storage.indexScan(table.getTableName(), column, value, true, value, true);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * @return a left key value in the type of the indexed column, or null if
+     *         no value of that type can equal it
+     */
+    private static Object cast(Object value, ColumnType type) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Number) {
+            Number number = (Number) value;
+            switch (type) {
+                case INT:
+                    return number.doubleValue() == number.intValue() ? (Object) number.intValue() : null;
+                case BIGINT:
+                    return number.doubleValue() == number.longValue() ? (Object) number.longValue() : null;
+                case DOUBLE:
+                    return number.doubleValue();
+                default:
+                    return null;
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (matches != null) {
+                closeMatches();
+            }
+            if (stamp != 0) {
+                table.unpin(stamp);
+                stamp = 0;
+                Metrics.shared().table(table.getTableName()).recordScan(true, scanned, returned);
+            }
+        } finally {
+            super.close();
+        }
+    }
+}
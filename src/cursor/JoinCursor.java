@@ -0,0 +1,76 @@
+package cursor;
+
+import utils.Condition;
+
+/**
+ * Rows of two inputs joined on equal keys. Each output row is the left
+ * row's columns followed by the right row's, checked against the parts of
+ * the condition that need columns of both before it is returned.
+ */
+public abstract class JoinCursor implements Cursor {
+
+    protected final Cursor left;
+    protected final JoinKeys keys;
+    private final Object[] row;
+    private final int leftWidth;
+    private final Condition residual;
+
+    /**
+     * @param left       - the left input
+     * @param rightWidth - number of columns of the right input
+     * @param keys
+     * @param residual   - condition on the joined row or null
+     */
+    protected JoinCursor(Cursor left, int rightWidth, JoinKeys keys, Condition residual) {
+        this.left = left;
+        this.keys = keys;
+        this.leftWidth = left.getColumnCount();
+        this.row = new Object[leftWidth + rightWidth];
+        this.residual = residual;
+    }
+
+    /**
+     * @param input
+     * @return the current row of a cursor as values
+     */
+    protected static Object[] read(Cursor input) {
+        Object[] values = new Object[input.getColumnCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = input.get(i);
+        }
+        return values;
+    }
+
+    /**
+     * makes the joined row of a pair of rows the current one
+     *
+     * @param leftRow
+     * @param rightRow
+     * @return false if the joined row does not match the condition
+     */
+    protected boolean join(Object[] leftRow, Object[] rightRow) {
+        System.arraycopy(leftRow, 0, row, 0, leftWidth);
+        System.arraycopy(rightRow, 0, row, leftWidth, row.length - leftWidth);
+        return residual == null || residual.matches(row);
+    }
+
+    @Override
+    public int getColumnCount() {
+        return row.length;
+    }
+
+    @Override
+    public Object get(int column) {
+        return row[column];
+    }
+
+    @Override
+    public void appendTo(StringBuilder out, int column) {
+        out.append(row[column]);
+    }
+
+    @Override
+    public void close() {
+        left.close();
+    }
+}
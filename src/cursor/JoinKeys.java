@@ -0,0 +1,103 @@
+package cursor;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columns two inputs of a join are matched on, one pair per equality of the
+ * ON clause. Keys are compared in a common form: whole numbers of any width
+ * as longs, and as doubles when the other side of the pair is a double, so
+ * an int column joins with a bigint one.
+ */
+public final class JoinKeys {
+
+    private final int[] left;
+    private final int[] right;
+    private final boolean[] asDouble;
+
+    /**
+     * @param left     - key columns of the left input
+     * @param right    - the matching columns of the right input
+     * @param asDouble - for each pair, whether it is compared as doubles
+     */
+    public JoinKeys(int[] left, int[] right, boolean[] asDouble) {
+        this.left = left;
+        this.right = right;
+        this.asDouble = asDouble;
+    }
+
+    /**
+     * @return key columns of the left input
+     */
+    public int[] getLeftColumns() {
+        return left;
+    }
+
+    /**
+     * @return key columns of the right input
+     */
+    public int[] getRightColumns() {
+        return right;
+    }
+
+    /**
+     * @param row - a row of the left input
+     * @return its key or null if a key column is null, which matches nothing
+     */
+    public Object left(Object[] row) {
+        return key(row, left);
+    }
+
+    /**
+     * @param row - a row of the right input
+     * @return its key or null if a key column is null, which matches nothing
+     */
+    public Object right(Object[] row) {
+        return key(row, right);
+    }
+
+    private Object key(Object[] row, int[] columns) {
+        if (columns.length == 1) {
+            return part(row[columns[0]], asDouble[0]);
+        }
+        Object[] parts = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            parts[i] = part(row[columns[i]], asDouble[i]);
+            if (parts[i] == null) {
+                return null;
+            }
+        }
+        return Arrays.asList(parts);
+    }
+
+    private static Object part(Object value, boolean asDouble) {
+        if (!(value instanceof Number)) {
+            return value;
+        }
+        Number number = (Number) value;
+        return asDouble ? (Object) number.doubleValue() : (Object) number.longValue();
+    }
+
+    /**
+     * orders keys, for a sort-merge join
+     *
+     * @param key
+     * @param other
+     * @return int
+     */
+    @SuppressWarnings("unchecked")
+    public int compare(Object key, Object other) {
+        if (!(key instanceof List)) {
+            return ((Comparable<Object>) key).compareTo(other);
+        }
+        List<Object> parts = (List<Object>) key;
+        List<Object> otherParts = (List<Object>) other;
+        for (int i = 0; i < parts.size(); i++) {
+            int cmp = ((Comparable<Object>) parts.get(i)).compareTo(otherParts.get(i));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,64 @@
+package cursor;
+
+/**
+ * Skips the first {@code offset} rows of another cursor and ends after
+ * {@code limit} more. Once the limit is reached the input is not advanced
+ * again, so the scan underneath stops there.
+ */
+public class LimitCursor implements Cursor {
+
+    private final Cursor input;
+    private long offset;
+    private long remaining;
+
+    /**
+     * @param input
+     * @param offset - number of rows to skip
+     * @param limit  - maximum number of rows to return
+     */
+    public LimitCursor(Cursor input, long offset, long limit) {
+        this.input = input;
+        this.offset = offset;
+        this.remaining = limit;
+    }
+
+    @Override
+    public boolean next() {
+        if (remaining <= 0) {
+            return false;
+        }
+        while (offset > 0) {
+            if (!input.next()) {
+                remaining = 0;
+                return false;
+            }
+            offset--;
+        }
+        if (!input.next()) {
+            remaining = 0;
+            return false;
+        }
+        remaining--;
+        return true;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return input.getColumnCount();
+    }
+
+    @Override
+    public Object get(int column) {
+        return input.get(column);
+    }
+
+    @Override
+    public void appendTo(StringBuilder out, int column) {
+        input.appendTo(out, column);
+    }
+
+    @Override
+    public void close() {
+        input.close();
+    }
+}
@@ -0,0 +1,50 @@
+package cursor;
+
+import java.util.List;
+
+/**
+ * Reads rows that are already in memory, such as a short listing built by
+ * a SHOW statement.
+ */
+public class ListCursor implements Cursor {
+
+    private final List<Object[]> rows;
+    private final int columnCount;
+    private int index = -1;
+
+    /**
+     * @param rows
+     * @param columnCount - length of every row
+     */
+    public ListCursor(List<Object[]> rows, int columnCount) {
+        this.rows = rows;
+        this.columnCount = columnCount;
+    }
+
+    @Override
+    public boolean next() {
+        if (index < rows.size()) {
+            index++;
+        }
+        return index < rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    @Override
+    public Object get(int column) {
+        return rows.get(index)[column];
+    }
+
+    @Override
+    public void appendTo(StringBuilder out, int column) {
+        out.append(get(column));
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,124 @@
+package cursor;
+
+import storage.ColumnType;
+import utils.Condition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sort-merge join: both inputs are sorted by key through a
+ * {@link SortCursor}, which spills to disk past its memory budget, and the
+ * two sorted streams are walked side by side. Only the right rows of the
+ * current key are held, and each left row of that key is joined with every
+ * one of them. Rows with a null key part match nothing and are skipped.
+ */
+public class MergeJoinCursor extends JoinCursor {
+
+    private final Cursor right;
+    private final List<Object[]> run = new ArrayList<Object[]>();
+    private Object runKey;
+    private Object[] nextRight;
+    private Object nextRightKey;
+    private boolean isRightRead;
+    private Object[] leftRow;
+    private int runIndex;
+
+    /**
+     * @param left
+     * @param leftTypes    - types of the left input's columns
+     * @param right
+     * @param rightTypes   - types of the right input's columns
+     * @param keys
+     * @param residual     - condition on the joined row or null
+     * @param memoryBudget - bytes each input may take while it is sorted
+     *                     before it is spilled
+     */
+    public MergeJoinCursor(Cursor left, ColumnType[] leftTypes, Cursor right, ColumnType[] rightTypes,
+            JoinKeys keys, Condition residual, long memoryBudget) {
+        super(sorted(left, leftTypes, keys.getLeftColumns(), memoryBudget), right.getColumnCount(), keys,
+                residual);
+        this.right = sorted(right, rightTypes, keys.getRightColumns(), memoryBudget);
+    }
+
+    /**
+     * @return cursor over the rows of an input in ascending key order. Keys
+     *         compared as doubles on one side are whole numbers or doubles
+     *         on the other, which sort alike.
+     */
+    private static Cursor sorted(Cursor input, ColumnType[] types, int[] keyColumns, long memoryBudget) {
+        return new SortCursor(input, types, keyColumns, new boolean[keyColumns.length], Long.MAX_VALUE,
+                memoryBudget);
+    }
+
+    @Override
+    public boolean next() {
+        while (true) {
+            while (leftRow != null && runIndex < run.size()) {
+                if (join(leftRow, run.get(runIndex++))) {
+                    return true;
+                }
+            }
+            if (!left.next()) {
+                leftRow = null;
+                return false;
+            }
+            leftRow = read(left);
+            Object key = keys.left(leftRow);
+            if (key == null) {
+                leftRow = null;
+                continue;
+            }
+            if (runKey == null || keys.compare(key, runKey) != 0) {
+                readRun(key);
+            }
+            runIndex = 0;
+        }
+    }
+
+    /**
+     * reads the right rows with a key, skipping those with smaller keys,
+     * which no later left row can match
+     */
+    private void readRun(Object key) {
+        run.clear();
+        runKey = key;
+        if (!isRightRead) {
+            isRightRead = true;
+            readRight();
+        }
+        while (nextRight != null && keys.compare(nextRightKey, key) < 0) {
+            readRight();
+        }
+        while (nextRight != null && keys.compare(nextRightKey, key) == 0) {
+            run.add(nextRight);
+            readRight();
+        }
+    }
+
+    /**
+     * moves to the next right row with a key, or to the end
+     */
+    private void readRight() {
+        nextRight = null;
+        nextRightKey = null;
+        while (right.next()) {
+            Object[] values = read(right);
+            Object key = keys.right(values);
+            if (key != null) {
+                nextRight = values;
+                nextRightKey = key;
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            super.close();
+        } finally {
+            right.close();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package cursor;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Reads the rows the morsels of a {@link ParallelScan} turn their rows
+ * into, such as partial aggregates, morsel by morsel in table order. Only
+ * the rows of the morsels in flight are held at a time.
+ */
+public class MorselCursor implements Cursor {
+
+    private final ParallelScan scan;
+    private final Iterator<List<Object[]>> morsels;
+    private final int columnCount;
+    private List<Object[]> rows = List.of();
+    private int index = -1;
+
+    /**
+     * @param scan        - a scan that has not been read yet
+     * @param task        - turns the rows of a morsel into rows of this
+     *                    cursor
+     * @param columnCount - length of every row the task returns
+     */
+    public MorselCursor(ParallelScan scan, Function<Cursor, List<Object[]>> task, int columnCount) {
+        this.scan = scan;
+        this.morsels = scan.map(task);
+        this.columnCount = columnCount;
+    }
+
+    @Override
+    public boolean next() {
+        while (index + 1 >= rows.size()) {
+            if (!morsels.hasNext()) {
+                index = rows.size();
+                return false;
+            }
+            rows = morsels.next();
+            index = -1;
+        }
+        index++;
+        return true;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    @Override
+    public Object get(int column) {
+        return rows.get(index)[column];
+    }
+
+    @Override
+    public void appendTo(StringBuilder out, int column) {
+        out.append(get(column));
+    }
+
+    @Override
+    public void close() {
+        scan.close();
+    }
+}
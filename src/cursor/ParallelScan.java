@@ -0,0 +1,177 @@
+package cursor;
+
+import account.Table;
+import column.ColumnVector;
+import metrics.Metrics;
+import mvcc.Snapshot;
+import utils.Condition;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Full scan of a table split into morsels, runs of consecutive row
+ * positions that are each read by a {@link ScanCursor} on a fork/join pool
+ * shared by all scans. A task is given the cursor over its morsel and
+ * returns what it makes of the rows, such as the positions of the rows that
+ * match the condition or partial aggregates; the results are handed back
+ * in table order. At most as many morsels as the scan's parallelism are in
+ * flight at once, so a scan only runs ahead of its reader by that much and
+ * one query cannot take every thread of the pool.
+ *
+ * The table is pinned from the time the scan is opened until it is closed,
+ * which waits for the morsels still running, and the scan is then added to
+ * the table's metrics as one full scan.
+ */
+public final class ParallelScan implements AutoCloseable {
+
+    private static final int MORSEL_ROWS = 1 << 14;
+    /**
+     * rows of the table per thread; smaller tables are scanned by fewer
+     * threads, and one as small as this by the caller alone
+     */
+    private static final int ROWS_PER_THREAD = 1 << 16;
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private final Table table;
+    private final ColumnVector[] vectors;
+    private final int end;
+    private final Snapshot snapshot;
+    private final Condition condition;
+    private final int parallelism;
+    private final Deque<ForkJoinTask<?>> running = new ArrayDeque<ForkJoinTask<?>>();
+    private final LongAdder scanned = new LongAdder();
+    private final LongAdder returned = new LongAdder();
+    private volatile boolean isClosed;
+    private long stamp;
+
+    /**
+     * @param table
+     * @param snapshot    - the snapshot rows must belong to
+     * @param condition   - the condition rows must match or null
+     * @param parallelism - morsels to run at once
+     */
+    public ParallelScan(Table table, Snapshot snapshot, Condition condition, int parallelism) {
+        this.table = table;
+        this.stamp = table.pin();
+        this.vectors = new ColumnVector[table.getColumns().size()];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = table.getColumn(i);
+        }
+        this.end = table.getRowCount();
+        this.snapshot = snapshot;
+        this.condition = condition;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Morsels to run at once when scanning a table: one per
+     * {@value #ROWS_PER_THREAD} rows, at most as many as the pool has
+     * threads or the system property {@code scan.parallelism} allows.
+     *
+     * @param table
+     * @return 1 if the table is better scanned by the caller alone
+     */
+    public static int parallelism(Table table) {
+        int threads = Integer.getInteger("scan.parallelism", POOL.getParallelism());
+        return Math.max(1, Math.min(threads, table.getRowCount() / ROWS_PER_THREAD));
+    }
+
+    /**
+     * starts the morsels; a scan can only be read once
+     *
+     * @param task - work to do with the rows of a morsel
+     * @return the result of every morsel in table order
+     */
+    public <T> Iterator<T> map(Function<Cursor, T> task) {
+        return new Morsels<T>(task);
+    }
+
+    /**
+     * results of the morsels of a scan, keeping as many morsels in flight as
+     * its parallelism allows
+     */
+    private final class Morsels<T> implements Iterator<T> {
+        private final Function<Cursor, T> task;
+        private int next;
+
+        Morsels(Function<Cursor, T> task) {
+            this.task = task;
+            submit();
+        }
+
+        private void submit() {
+            while (running.size() < parallelism && next < end) {
+                int from = next;
+                int to = Math.min(end, from + MORSEL_ROWS);
+                next = to;
+                running.add(POOL.submit(() -> {
+                    if (isClosed) {
+                        return null;
+                    }
+                    ScanCursor cursor = new ScanCursor(table, vectors, from, to, snapshot, condition);
+                    T result = task.apply(cursor);
+                    scanned.add(to - from);
+                    returned.add(cursor.getReturned());
+                    return result;
+                }));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !running.isEmpty();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (running.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            T result;
+            try {
+                result = (T) running.peek().join();
+            } catch (RuntimeException ex) {
+                // join rethrows a copy made on this thread; the original has the message
+                throw ex.getCause() != null && ex.getCause().getClass() == ex.getClass()
+                        ? (RuntimeException) ex.getCause() : ex;
+            } finally {
+                running.poll();
+            }
+            submit();
+            return result;
+        }
+    }
+
+    /**
+     * @return the columns of the table, whose rows up to the end of the
+     *         scan stay in place while it is open
+     */
+    ColumnVector[] getVectors() {
+        return vectors;
+    }
+
+    @Override
+    public void close() {
+        if (stamp == 0) {
+            return;
+        }
+        isClosed = true;
+        // a morsel that has started still reads the columns, so it is waited for rather than cancelled
+        for (ForkJoinTask<?> task : running) {
+            task.quietlyJoin();
+        }
+        running.clear();
+        table.unpin(stamp);
+        stamp = 0;
+        Metrics.shared().table(table.getTableName()).recordScan(false, scanned.sum(), returned.sum());
+        Metrics.shared().recordParallelScan();
+    }
+}
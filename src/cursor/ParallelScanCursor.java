@@ -0,0 +1,95 @@
+package cursor;
+
+import column.ColumnVector;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Reads the rows of a {@link ParallelScan} in table order. The snapshot and
+ * the condition are checked by the morsels in parallel, each returning the
+ * positions of its matching rows, and the values of a row are only read
+ * from the columns once the cursor reaches it.
+ */
+public class ParallelScanCursor implements Cursor {
+
+    private static final int[] NO_ROWS = new int[0];
+
+    private final ParallelScan scan;
+    private final ColumnVector[] vectors;
+    private final Iterator<int[]> morsels;
+    private int[] rows = NO_ROWS;
+    private int index = -1;
+    private int row = -1;
+
+    /**
+     * @param scan - a scan that has not been read yet
+     */
+    public ParallelScanCursor(ParallelScan scan) {
+        this.scan = scan;
+        this.vectors = scan.getVectors();
+        this.morsels = scan.map(ParallelScanCursor::matchingRows);
+    }
+
+    private static int[] matchingRows(Cursor morsel) {
+        ScanCursor cursor = (ScanCursor) morsel;
+        int[] rows = new int[16];
+        int count = 0;
+        while (cursor.next()) {
+            if (count == rows.length) {
+                rows = Arrays.copyOf(rows, count * 2);
+            }
+            rows[count++] = cursor.getRow();
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    @Override
+    public boolean next() {
+        while (index + 1 >= rows.length) {
+            if (!morsels.hasNext()) {
+                index = rows.length;
+                return false;
+            }
+            rows = morsels.next();
+            index = -1;
+        }
+        row = rows[++index];
+        return true;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return vectors.length;
+    }
+
+    @Override
+    public Object get(int column) {
+        return vectors[column].get(row);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return vectors[column].isNull(row);
+    }
+
+    @Override
+    public long getLong(int column) {
+        return vectors[column].getLong(row);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return vectors[column].getDouble(row);
+    }
+
+    @Override
+    public void appendTo(StringBuilder out, int column) {
+        vectors[column].appendTo(out, row);
+    }
+
+    @Override
+    public void close() {
+        scan.close();
+    }
+}
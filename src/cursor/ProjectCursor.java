@@ -0,0 +1,64 @@
+package cursor;
+
+/**
+ * Picks and reorders the columns of the rows of another cursor. A column
+ * index of -1 stands for a column the input does not have and reads as null.
+ */
+public class ProjectCursor implements Cursor {
+
+    private final Cursor input;
+    private final int[] columns;
+
+    /**
+     * @param input
+     * @param columns - input column of each output column, -1 for null
+     */
+    public ProjectCursor(Cursor input, int[] columns) {
+        this.input = input;
+        this.columns = columns;
+    }
+
+    @Override
+    public boolean next() {
+        return input.next();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public Object get(int column) {
+        return columns[column] == -1 ? null : input.get(columns[column]);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return columns[column] == -1 || input.isNull(columns[column]);
+    }
+
+    @Override
+    public long getLong(int column) {
+        return input.getLong(columns[column]);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return input.getDouble(columns[column]);
+    }
+
+    @Override
+    public void appendTo(StringBuilder out, int column) {
+        if (columns[column] == -1) {
+            out.append("null");
+        } else {
+            input.appendTo(out, columns[column]);
+        }
+    }
+
+    @Override
+    public void close() {
+        input.close();
+    }
+}
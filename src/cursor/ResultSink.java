@@ -0,0 +1,36 @@
+package cursor;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination of the rows of a SELECT: the console, or the connection of a
+ * network client.
+ */
+public interface ResultSink {
+
+    /**
+     * starts a result
+     *
+     * @param tableName
+     * @param columns   - names of the result's columns
+     * @throws IOException
+     */
+    void begin(String tableName, List<String> columns) throws IOException;
+
+    /**
+     * writes every remaining row of a cursor
+     *
+     * @param cursor
+     * @return number of rows written
+     * @throws IOException
+     */
+    long writeAll(Cursor cursor) throws IOException;
+
+    /**
+     * finishes the result and writes out whatever is still buffered
+     *
+     * @throws IOException
+     */
+    void end() throws IOException;
+}
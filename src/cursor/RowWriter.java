@@ -0,0 +1,91 @@
+package cursor;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes result rows as comma separated lines through a buffer, so a large
+ * result costs a few large writes instead of one console write per row.
+ * Nothing is guaranteed to be written until {@link #flush()}.
+ */
+public class RowWriter implements ResultSink, Flushable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Writer out;
+    private final StringBuilder line = new StringBuilder();
+
+    public RowWriter(OutputStream out) {
+        this.out = new BufferedWriter(new OutputStreamWriter(out), BUFFER_SIZE);
+    }
+
+    /**
+     * writes a line of text
+     *
+     * @param text
+     * @throws IOException
+     */
+    public void writeLine(String text) throws IOException {
+        out.write(text);
+        out.write(System.lineSeparator());
+    }
+
+    /**
+     * writes the table name and a line with the column names
+     */
+    @Override
+    public void begin(String tableName, List<String> columns) throws IOException {
+        writeLine("Table: " + tableName);
+        writeLine(String.join(", ", columns));
+    }
+
+    /**
+     * writes the current row of a cursor
+     *
+     * @param cursor
+     * @throws IOException
+     */
+    public void writeRow(Cursor cursor) throws IOException {
+        line.setLength(0);
+        for (int i = 0; i < cursor.getColumnCount(); i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            cursor.appendTo(line, i);
+        }
+        line.append(System.lineSeparator());
+        out.append(line);
+    }
+
+    /**
+     * writes every remaining row of a cursor
+     *
+     * @param cursor
+     * @return number of rows written
+     * @throws IOException
+     */
+    @Override
+    public long writeAll(Cursor cursor) throws IOException {
+        long count = 0;
+        while (cursor.next()) {
+            writeRow(cursor);
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public void end() throws IOException {
+        flush();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+}
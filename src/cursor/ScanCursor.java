@@ -0,0 +1,186 @@
+package cursor;
+
+import account.Table;
+import column.ColumnVector;
+import metrics.Metrics;
+import mvcc.Snapshot;
+import storage.RowId;
+import utils.Condition;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Reads the rows of an in-memory {@link Table}, either all of them in table
+ * order or the rows at the locations an index returned, and skips the rows
+ * that do not belong to a snapshot or do not match a condition. The condition
+ * is checked on the column vectors as each row is reached. The table is
+ * pinned while the cursor is open, and rows added after it was opened are not
+ * read. How many rows the cursor looked at and returned is added to the
+ * table's metrics when it is closed.
+ *
+ * A cursor can also read one range of row positions for a morsel of a
+ * {@link ParallelScan}, or the rows one probe of an {@link IndexJoinCursor}
+ * found, which pins the table and records the scan in its place.
+ */
+public class ScanCursor implements Cursor {
+
+    private final Table table;
+    private final ColumnVector[] vectors;
+    private final int[] rows;
+    private final int end;
+    private final Snapshot snapshot;
+    private final Condition condition;
+    private long stamp;
+    private int index = -1;
+    private int row = -1;
+    private long returned;
+
+    /**
+     * @param table
+     * @param rowIds    - locations to read or null for every row
+     * @param snapshot  - the snapshot rows must belong to
+     * @param condition - the condition rows must match or null
+     */
+    public ScanCursor(Table table, List<RowId> rowIds, Snapshot snapshot, Condition condition) {
+        this.table = table;
+        this.stamp = table.pin();
+        this.vectors = new ColumnVector[table.getColumns().size()];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = table.getColumn(i);
+        }
+        this.rows = rowIds == null ? null : candidates(table.getRows(rowIds), table.getDeadRows(snapshot));
+        this.end = rows == null ? table.getRowCount() : rows.length;
+        this.snapshot = snapshot;
+        this.condition = condition;
+    }
+
+    /**
+     * @param table     - a table pinned by the caller
+     * @param vectors   - the table's columns
+     * @param from      - first row position to read
+     * @param to        - row position to stop before
+     * @param snapshot  - the snapshot rows must belong to
+     * @param condition - the condition rows must match or null
+     */
+    ScanCursor(Table table, ColumnVector[] vectors, int from, int to, Snapshot snapshot, Condition condition) {
+        this.table = table;
+        this.vectors = vectors;
+        this.rows = null;
+        this.index = from - 1;
+        this.end = to;
+        this.snapshot = snapshot;
+        this.condition = condition;
+    }
+
+    /**
+     * @param table     - a table pinned by the caller
+     * @param vectors   - the table's columns
+     * @param rows      - row positions to read
+     * @param snapshot  - the snapshot rows must belong to
+     * @param condition - the condition rows must match or null
+     */
+    ScanCursor(Table table, ColumnVector[] vectors, int[] rows, Snapshot snapshot, Condition condition) {
+        this.table = table;
+        this.vectors = vectors;
+        this.rows = rows;
+        this.end = rows.length;
+        this.snapshot = snapshot;
+        this.condition = condition;
+    }
+
+    /**
+     * an index only knows the current version of a row, so the versions
+     * that were replaced or deleted, which the snapshot may still see under
+     * a different key, are read as well
+     *
+     * @param current - positions of the rows the index returned
+     * @param dead    - dead versions the snapshot may see
+     */
+    static int[] candidates(int[] current, int[] dead) {
+        if (dead.length == 0) {
+            return current;
+        }
+        int[] rows = Arrays.copyOf(current, current.length + dead.length);
+        BitSet seen = new BitSet();
+        for (int row : current) {
+            seen.set(row);
+        }
+        int count = current.length;
+        for (int row : dead) {
+            if (!seen.get(row)) {
+                seen.set(row);
+                rows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    @Override
+    public boolean next() {
+        while (++index < end) {
+            row = rows == null ? index : rows[index];
+            if (table.isVisible(row, snapshot) && (condition == null || condition.matches(vectors, row))) {
+                returned++;
+                return true;
+            }
+        }
+        index = end;
+        return false;
+    }
+
+    /**
+     * @return number of rows returned so far
+     */
+    long getReturned() {
+        return returned;
+    }
+
+    /**
+     * @return position of the current row in the table
+     */
+    public int getRow() {
+        return row;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return vectors.length;
+    }
+
+    @Override
+    public Object get(int column) {
+        return vectors[column].get(row);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return vectors[column].isNull(row);
+    }
+
+    @Override
+    public long getLong(int column) {
+        return vectors[column].getLong(row);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return vectors[column].getDouble(row);
+    }
+
+    @Override
+    public void appendTo(StringBuilder out, int column) {
+        vectors[column].appendTo(out, row);
+    }
+
+    @Override
+    public void close() {
+        if (stamp != 0) {
+            table.unpin(stamp);
+            stamp = 0;
+            Metrics.shared().table(table.getTableName()).recordScan(rows != null, Math.min(index + 1, end),
+                    returned);
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package cursor;
+
+import storage.ColumnType;
+import storage.RowCodec;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts the rows of another cursor by some of their columns. The input is
+ * read in full on the first call to {@link #next()}. Values are compared by
+ * the type of their column, and nulls sort after every value, so they come
+ * last in ascending order and first in descending order. Rows with equal
+ * keys keep the order they were read in.
+ *
+ * When only the first rows are wanted, as for ORDER BY with LIMIT, the rows
+ * are kept in a bounded heap once that many have been read, and a row only
+ * replaces the greatest of them if it sorts before it.
+ *
+ * Rows are estimated to cost a number of bytes each, and once they reach
+ * the memory budget they are sorted and written to a spill file as a run.
+ * The runs are then merged, {@value #MERGE_WIDTH} at a time, into further
+ * runs until a single merge of the remaining ones gives the result.
+ */
+public class SortCursor implements Cursor {
+
+    private static final int ROW_BYTES = 32;
+    private static final int VALUE_BYTES = 24;
+    private static final int MERGE_WIDTH = 64;
+
+    private final Cursor input;
+    private final ColumnType[] types;
+    private final Comparator<Object[]> order;
+    private final Comparator<Ranked> rankOrder;
+    private final long limit;
+    private final long memoryBudget;
+
+    private List<Object[]> rows = new ArrayList<Object[]>();
+    private long memory;
+    private PriorityQueue<Ranked> heap;
+    private RowCodec codec;
+    private List<Path> runs;
+    private final List<Path> spillFiles = new ArrayList<Path>();
+
+    private boolean isSorted;
+    private int index = -1;
+    private Merge merge;
+    private Object[] row;
+    private long returned;
+
+    /**
+     * @param input        - the rows to sort
+     * @param types        - types of the input columns
+     * @param keyColumns   - input columns rows are sorted by, in order
+     * @param isDescending - for each key column, whether larger values come
+     *                     first
+     * @param limit        - number of rows wanted, Long.MAX_VALUE for all
+     * @param memoryBudget - bytes the rows may take before they are spilled
+     */
+    public SortCursor(Cursor input, ColumnType[] types, int[] keyColumns, boolean[] isDescending, long limit,
+            long memoryBudget) {
+        this.input = input;
+        this.types = types;
+        this.order = order(types, keyColumns, isDescending);
+        this.rankOrder = (ranked, other) -> {
+            int cmp = order.compare(ranked.row, other.row);
+            return cmp != 0 ? cmp : Long.compare(ranked.position, other.position);
+        };
+        this.limit = limit;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * @return comparator of rows by their key columns
+     */
+    private static Comparator<Object[]> order(ColumnType[] types, int[] keyColumns, boolean[] isDescending) {
+        Comparator<Object[]> order = null;
+        for (int i = 0; i < keyColumns.length; i++) {
+            int column = keyColumns[i];
+            Comparator<Object> values = Comparator.nullsLast(comparator(types[column]));
+            if (isDescending[i]) {
+                values = values.reversed();
+            }
+            Comparator<Object> key = values;
+            Comparator<Object[]> byColumn = (row, other) -> key.compare(row[column], other[column]);
+            order = order == null ? byColumn : order.thenComparing(byColumn);
+        }
+        return order == null ? (row, other) -> 0 : order;
+    }
+
+    /**
+     * @return comparator of the non-null values of a column type
+     */
+    @SuppressWarnings("unchecked")
+    private static Comparator<Object> comparator(ColumnType type) {
+        return switch (type) {
+            case INT, BIGINT -> (value, other) -> Long.compare(((Number) value).longValue(),
+                    ((Number) other).longValue());
+            case DOUBLE -> (value, other) -> Double.compare(((Number) value).doubleValue(),
+                    ((Number) other).doubleValue());
+            case DATE, VARCHAR -> (value, other) -> ((Comparable<Object>) value).compareTo(other);
+        };
+    }
+
+    @Override
+    public boolean next() {
+        if (!isSorted) {
+            sort();
+            isSorted = true;
+        }
+        if (returned == limit) {
+            row = null;
+            return false;
+        }
+        if (merge != null) {
+            row = merge.next();
+        } else {
+            row = ++index < rows.size() ? rows.get(index) : null;
+        }
+        if (row == null) {
+            return false;
+        }
+        returned++;
+        return true;
+    }
+
+    private void sort() {
+        if (limit == 0) {
+            return;
+        }
+        long position = 0;
+        while (input.next()) {
+            Object[] values = new Object[types.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = input.get(i);
+            }
+            if (heap != null) {
+                Ranked ranked = new Ranked(values, position++);
+                if (rankOrder.compare(ranked, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(ranked);
+                }
+                continue;
+            }
+            rows.add(values);
+            position++;
+            memory += size(values);
+            if (runs == null && rows.size() == limit && memory < memoryBudget) {
+                startHeap();
+            } else if (memory >= memoryBudget) {
+                spill();
+            }
+        }
+        if (heap != null) {
+            rows = new ArrayList<Object[]>(heap.size());
+            List<Ranked> ranked = new ArrayList<Ranked>(heap);
+            ranked.sort(rankOrder);
+            for (Ranked entry : ranked) {
+                rows.add(entry.row);
+            }
+            heap = null;
+        } else if (runs == null) {
+            rows.sort(order);
+        } else {
+            if (!rows.isEmpty()) {
+                spill();
+            }
+            rows = null;
+            while (runs.size() > MERGE_WIDTH) {
+                mergePass();
+            }
+            merge = new Merge(runs);
+        }
+    }
+
+    /**
+     * keeps the rows read so far in a heap with the greatest on top, as no
+     * more of them are wanted
+     */
+    private void startHeap() {
+        heap = new PriorityQueue<Ranked>(rows.size(), rankOrder.reversed());
+        for (int i = 0; i < rows.size(); i++) {
+            heap.add(new Ranked(rows.get(i), i));
+        }
+        rows = null;
+    }
+
+    /**
+     * @return estimated bytes a row takes in memory
+     */
+    private static long size(Object[] values) {
+        long size = ROW_BYTES + VALUE_BYTES * values.length;
+        for (Object value : values) {
+            if (value instanceof String) {
+                size += 40 + 2L * ((String) value).length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * sorts the rows in memory and writes them to a new run, at most as many
+     * as are wanted
+     */
+    private void spill() {
+        rows.sort(order);
+        if (runs == null) {
+            runs = new ArrayList<Path>();
+            codec = new RowCodec(types);
+        }
+        Path run = newRun();
+        runs.add(run);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+            for (int i = 0; i < rows.size() && i < limit; i++) {
+                SpillCursor.write(out, codec, rows.get(i));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        rows.clear();
+        memory = 0;
+    }
+
+    private Path newRun() {
+        try {
+            Path run = Files.createTempFile("sort", ".spill");
+            spillFiles.add(run);
+            return run;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * merges each {@value #MERGE_WIDTH} consecutive runs into one, so the
+     * runs stay in the order their rows were read
+     */
+    private void mergePass() {
+        List<Path> merged = new ArrayList<Path>();
+        for (int from = 0; from < runs.size(); from += MERGE_WIDTH) {
+            List<Path> group = new ArrayList<Path>(runs.subList(from, Math.min(runs.size(), from + MERGE_WIDTH)));
+            if (group.size() == 1) {
+                merged.add(group.get(0));
+                continue;
+            }
+            Path run = newRun();
+            merged.add(run);
+            try (Merge merge = new Merge(group);
+                    DataOutputStream out = new DataOutputStream(
+                            new BufferedOutputStream(Files.newOutputStream(run)))) {
+                Object[] values;
+                for (long i = 0; i < limit && (values = merge.next()) != null; i++) {
+                    SpillCursor.write(out, codec, values);
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        runs = merged;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return types.length;
+    }
+
+    @Override
+    public Object get(int column) {
+        return row[column];
+    }
+
+    @Override
+    public void appendTo(StringBuilder out, int column) {
+        out.append(row[column]);
+    }
+
+    @Override
+    public void close() {
+        input.close();
+        if (merge != null) {
+            merge.close();
+            merge = null;
+        }
+        for (Path file : spillFiles) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+                // the file is a temporary one
+            }
+        }
+        spillFiles.clear();
+    }
+
+    /**
+     * a row with its position in the input, which orders rows with equal
+     * keys
+     */
+    private static final class Ranked {
+        private final Object[] row;
+        private final long position;
+
+        Ranked(Object[] row, long position) {
+            this.row = row;
+            this.position = position;
+        }
+    }
+
+    /**
+     * merges sorted runs, taking the row of the earliest run among equal
+     * ones; each run's file is deleted once it is read
+     */
+    private final class Merge implements AutoCloseable {
+        private final List<Path> files;
+        private final SpillCursor[] cursors;
+        private final PriorityQueue<Integer> heads;
+
+        Merge(List<Path> files) {
+            this.files = files;
+            this.cursors = new SpillCursor[files.size()];
+            this.heads = new PriorityQueue<Integer>(Math.max(1, files.size()), (run, other) -> {
+                int cmp = order.compare(cursors[run].getRow(), cursors[other].getRow());
+                return cmp != 0 ? cmp : Integer.compare(run, other);
+            });
+            for (int i = 0; i < cursors.length; i++) {
+                cursors[i] = new SpillCursor(files.get(i), codec);
+                if (cursors[i].next()) {
+                    heads.add(i);
+                }
+            }
+        }
+
+        /**
+         * @return the next row or null when every run is read
+         */
+        Object[] next() {
+            Integer run = heads.poll();
+            if (run == null) {
+                return null;
+            }
+            Object[] values = cursors[run].getRow();
+            if (cursors[run].next()) {
+                heads.add(run);
+            }
+            return values;
+        }
+
+        @Override
+        public void close() {
+            for (int i = 0; i < cursors.length; i++) {
+                cursors[i].close();
+                try {
+                    Files.deleteIfExists(files.get(i));
+                } catch (IOException ex) {
+                    // the file is a temporary one
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package cursor;
+
+import storage.RowCodec;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads back the rows a cursor wrote to a spill file, each as its length
+ * followed by the row encoded with a {@link RowCodec}. Spilled rows may be
+ * joined rows, so they are not limited to the size of a page.
+ */
+final class SpillCursor implements Cursor {
+
+    private final RowCodec codec;
+    private final DataInputStream in;
+    private Object[] row;
+
+    /**
+     * @param file
+     * @param codec - the codec the rows were encoded with
+     */
+    SpillCursor(Path file, RowCodec codec) {
+        this.codec = codec;
+        try {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * writes a row to a spill file the way this cursor reads it
+     *
+     * @param out
+     * @param codec
+     * @param row
+     * @throws IOException
+     */
+    static void write(DataOutputStream out, RowCodec codec, Object[] row) throws IOException {
+        byte[] bytes = codec.encodeUnbounded(row);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Override
+    public boolean next() {
+        try {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException ex) {
+                row = null;
+                return false;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            row = codec.decode(bytes);
+            return true;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * @return the current row
+     */
+    Object[] getRow() {
+        return row;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return codec.getTypes().length;
+    }
+
+    @Override
+    public Object get(int column) {
+        return row[column];
+    }
+
+    @Override
+    public void appendTo(StringBuilder out, int column) {
+        out.append(row[column]);
+    }
+
+    @Override
+    public void close() {
+        try {
+            in.close();
+        } catch (IOException ex) {
+            // nothing was written
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package index;
+
+import storage.Page;
+import storage.RowId;
+import storage.RowCodec;
+import storage.ColumnType;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * On-disk B+tree mapping column values to row locations. Every node occupies
+ * one page of the index file; page 0 holds the root page number. Entries are
+ * ordered by value and then by row id, which keeps duplicate values apart and
+ * lets a delete find the exact entry of a row. Leaves are linked left to
+ * right so range scans walk the leaf level once the first key is found.
+ * Deletes only remove the leaf entry; nodes are never merged.
+ */
+public class BPlusTree implements Closeable {
+
+    private static final byte LEAF = 0;
+    private static final byte INTERNAL = 1;
+    private static final int NODE_HEADER_SIZE = 7;
+    private static final int MAX_KEY_SIZE = 1024;
+    private static final int CACHE_SIZE = 1024;
+
+    private final FileChannel channel;
+    private final ColumnType keyType;
+    private int rootPage;
+    private int pageCount;
+    private final Map<Integer, Node> cache = new LinkedHashMap<Integer, Node>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Node> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private static final class Entry {
+        final Object key;
+        final RowId rowId;
+
+        Entry(Object key, RowId rowId) {
+            this.key = key;
+            this.rowId = rowId;
+        }
+    }
+
+    private static final class Node {
+        final boolean leaf;
+        List<Entry> entries = new ArrayList<Entry>();
+        List<Integer> children = new ArrayList<Integer>();
+        int next = -1;
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+    }
+
+    private static final class Split {
+        final Entry separator;
+        final int rightPage;
+
+        Split(Entry separator, int rightPage) {
+            this.separator = separator;
+            this.rightPage = rightPage;
+        }
+    }
+
+    public BPlusTree(Path file, ColumnType keyType) throws IOException {
+        this.keyType = keyType;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.pageCount = (int) (channel.size() / Page.PAGE_SIZE);
+        if (pageCount == 0) {
+            pageCount = 1;
+            rootPage = allocate(new Node(true));
+            writeMeta();
+        } else {
+            ByteBuffer meta = readPage(0);
+            rootPage = meta.getInt(0);
+        }
+    }
+
+    /**
+     * adds an entry for a row. Null values are not indexed.
+     *
+     * @param key
+     * @param rowId
+     * @throws IOException
+     */
+    public void insert(Object key, RowId rowId) throws IOException {
+        if (key == null) {
+            return;
+        }
+        Entry entry = new Entry(key, rowId);
+        if (entrySize(entry, false) > MAX_KEY_SIZE) {
+            throw new IOException("Index key too large: " + entrySize(entry, false) + " bytes");
+        }
+        Split split = insert(rootPage, entry);
+        if (split != null) {
+            Node root = new Node(false);
+            root.entries.add(split.separator);
+            root.children.add(rootPage);
+            root.children.add(split.rightPage);
+            rootPage = allocate(root);
+            writeMeta();
+        }
+    }
+
+    private Split insert(int pageNo, Entry entry) throws IOException {
+        Node node = readNode(pageNo);
+        if (node.leaf) {
+            int position = lowerBound(node.entries, entry);
+            if (position < node.entries.size() && compare(node.entries.get(position), entry) == 0) {
+                return null;
+            }
+            node.entries.add(position, entry);
+        } else {
+            int child = childIndex(node, entry);
+            Split split = insert(node.children.get(child), entry);
+            if (split == null) {
+                return null;
+            }
+            node.entries.add(child, split.separator);
+            node.children.add(child + 1, split.rightPage);
+        }
+        if (nodeSize(node) <= Page.PAGE_SIZE) {
+            writeNode(pageNo, node);
+            return null;
+        }
+        return split(pageNo, node);
+    }
+
+    /**
+     * splits an overflowing node roughly in half by size. Leaves copy their
+     * first right entry up as separator, internal nodes move the middle key up.
+     */
+    private Split split(int pageNo, Node node) throws IOException {
+        int middle = splitPoint(node);
+        Node right = new Node(node.leaf);
+        Entry separator;
+        if (node.leaf) {
+            right.entries = new ArrayList<Entry>(node.entries.subList(middle, node.entries.size()));
+            node.entries = new ArrayList<Entry>(node.entries.subList(0, middle));
+            right.next = node.next;
+            separator = right.entries.get(0);
+            int rightPage = allocate(right);
+            node.next = rightPage;
+            writeNode(pageNo, node);
+            return new Split(separator, rightPage);
+        }
+        separator = node.entries.get(middle);
+        right.entries = new ArrayList<Entry>(node.entries.subList(middle + 1, node.entries.size()));
+        right.children = new ArrayList<Integer>(node.children.subList(middle + 1, node.children.size()));
+        node.entries = new ArrayList<Entry>(node.entries.subList(0, middle));
+        node.children = new ArrayList<Integer>(node.children.subList(0, middle + 1));
+        int rightPage = allocate(right);
+        writeNode(pageNo, node);
+        return new Split(separator, rightPage);
+    }
+
+    private int splitPoint(Node node) {
+        int total = nodeSize(node) - NODE_HEADER_SIZE;
+        int size = 0;
+        for (int i = 0; i < node.entries.size(); i++) {
+            size += entrySize(node.entries.get(i), !node.leaf);
+            if (size > total / 2) {
+                return Math.max(1, Math.min(i, node.entries.size() - (node.leaf ? 1 : 2)));
+            }
+        }
+        return node.entries.size() / 2;
+    }
+
+    /**
+     * removes the entry of a row
+     *
+     * @param key
+     * @param rowId
+     * @throws IOException
+     */
+    public void delete(Object key, RowId rowId) throws IOException {
+        if (key == null) {
+            return;
+        }
+        Entry entry = new Entry(key, rowId);
+        int pageNo = rootPage;
+        Node node = readNode(pageNo);
+        while (!node.leaf) {
+            pageNo = node.children.get(childIndex(node, entry));
+            node = readNode(pageNo);
+        }
+        int position = lowerBound(node.entries, entry);
+        if (position < node.entries.size() && compare(node.entries.get(position), entry) == 0) {
+            node.entries.remove(position);
+            writeNode(pageNo, node);
+        }
+    }
+
+    /**
+     * finds the rows whose value lies in a range. A null bound leaves that side
+     * of the range open.
+     *
+     * @param low
+     * @param lowInclusive
+     * @param high
+     * @param highInclusive
+     * @return List of matching row ids in value order
+     * @throws IOException
+     */
+    public List<RowId> search(Object low, boolean lowInclusive, Object high, boolean highInclusive)
+            throws IOException {
+        List<RowId> rowIds = new ArrayList<RowId>();
+        int pageNo = rootPage;
+        Node node = readNode(pageNo);
+        while (!node.leaf) {
+            int child = 0;
+            if (low != null) {
+                while (child < node.entries.size() && compareKeys(low, node.entries.get(child).key) > 0) {
+                    child++;
+                }
+            }
+            pageNo = node.children.get(child);
+            node = readNode(pageNo);
+        }
+        while (true) {
+            for (Entry entry : node.entries) {
+                if (low != null) {
+                    int cmp = compareKeys(entry.key, low);
+                    if (cmp < 0 || cmp == 0 && !lowInclusive) {
+                        continue;
+                    }
+                }
+                if (high != null) {
+                    int cmp = compareKeys(entry.key, high);
+                    if (cmp > 0 || cmp == 0 && !highInclusive) {
+                        return rowIds;
+                    }
+                }
+                rowIds.add(entry.rowId);
+            }
+            if (node.next == -1) {
+                return rowIds;
+            }
+            node = readNode(node.next);
+        }
+    }
+
+    /**
+     * checks a value against a range the way {@link #search} does. Nulls are
+     * never in range.
+     *
+     * @param value
+     * @param low
+     * @param lowInclusive
+     * @param high
+     * @param highInclusive
+     * @return boolean
+     */
+    public static boolean inRange(Object value, Object low, boolean lowInclusive, Object high,
+            boolean highInclusive) {
+        if (value == null) {
+            return false;
+        }
+        if (low != null) {
+            int cmp = compareKeys(value, low);
+            if (cmp < 0 || cmp == 0 && !lowInclusive) {
+                return false;
+            }
+        }
+        if (high != null) {
+            int cmp = compareKeys(value, high);
+            if (cmp > 0 || cmp == 0 && !highInclusive) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int lowerBound(List<Entry> entries, Entry entry) {
+        int low = 0;
+        int high = entries.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(entries.get(middle), entry) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int childIndex(Node node, Entry entry) {
+        int low = 0;
+        int high = node.entries.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(entry, node.entries.get(middle)) < 0) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private int compare(Entry a, Entry b) {
+        int cmp = compareKeys(a.key, b.key);
+        if (cmp != 0) {
+            return cmp;
+        }
+        cmp = Integer.compare(a.rowId.getPage(), b.rowId.getPage());
+        return cmp != 0 ? cmp : Integer.compare(a.rowId.getSlot(), b.rowId.getSlot());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareKeys(Object a, Object b) {
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+    private int entrySize(Entry entry, boolean internal) {
+        int keySize = switch (keyType) {
+            case INT, DATE -> 4;
+            case BIGINT, DOUBLE -> 8;
+            case VARCHAR -> 2 + entry.key.toString().getBytes(StandardCharsets.UTF_8).length;
+        };
+        return keySize + 8 + (internal ? 4 : 0);
+    }
+
+    private int nodeSize(Node node) {
+        int size = NODE_HEADER_SIZE;
+        for (Entry entry : node.entries) {
+            size += entrySize(entry, !node.leaf);
+        }
+        return size;
+    }
+
+    private int allocate(Node node) throws IOException {
+        int pageNo = pageCount++;
+        writeNode(pageNo, node);
+        return pageNo;
+    }
+
+    private void writeMeta() throws IOException {
+        ByteBuffer meta = ByteBuffer.allocate(Page.PAGE_SIZE);
+        meta.putInt(0, rootPage);
+        writePage(0, meta.array());
+    }
+
+    private Node readNode(int pageNo) throws IOException {
+        Node node = cache.get(pageNo);
+        if (node != null) {
+            return node;
+        }
+        ByteBuffer in = readPage(pageNo);
+        node = new Node(in.get() == LEAF);
+        int count = in.getShort() & 0xFFFF;
+        int link = in.getInt();
+        if (node.leaf) {
+            node.next = link;
+        } else {
+            node.children.add(link);
+        }
+        for (int i = 0; i < count; i++) {
+            Object key = RowCodec.readValue(in, keyType);
+            node.entries.add(new Entry(key, new RowId(in.getInt(), in.getInt())));
+            if (!node.leaf) {
+                node.children.add(in.getInt());
+            }
+        }
+        cache.put(pageNo, node);
+        return node;
+    }
+
+    private void writeNode(int pageNo, Node node) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Page.PAGE_SIZE);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(node.leaf ? LEAF : INTERNAL);
+        out.writeShort(node.entries.size());
+        out.writeInt(node.leaf ? node.next : node.children.get(0));
+        for (int i = 0; i < node.entries.size(); i++) {
+            Entry entry = node.entries.get(i);
+            RowCodec.writeValue(out, keyType, entry.key);
+            out.writeInt(entry.rowId.getPage());
+            out.writeInt(entry.rowId.getSlot());
+            if (!node.leaf) {
+                out.writeInt(node.children.get(i + 1));
+            }
+        }
+        out.flush();
+        byte[] page = new byte[Page.PAGE_SIZE];
+        System.arraycopy(bytes.toByteArray(), 0, page, 0, bytes.size());
+        writePage(pageNo, page);
+        cache.put(pageNo, node);
+    }
+
+    private ByteBuffer readPage(int pageNo) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Page.PAGE_SIZE);
+        long position = (long) pageNo * Page.PAGE_SIZE;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of index file at page " + pageNo);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void writePage(int pageNo, byte[] page) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(page);
+        long position = (long) pageNo * Page.PAGE_SIZE;
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * forces written nodes to the disk
+     *
+     * @throws IOException
+     */
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
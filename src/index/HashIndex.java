@@ -0,0 +1,161 @@
+package index;
+
+import storage.RowId;
+import storage.RowCodec;
+import storage.ColumnType;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.BufferUnderflowException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.HashMap;
+
+/**
+ * Unique hash index from a primary key value to the location of its row. The
+ * mapping is held in a hash map for constant time lookups and persisted as an
+ * append-only log of put and remove entries that is replayed on open.
+ */
+public class HashIndex implements Closeable {
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    private final Path file;
+    private final ColumnType keyType;
+    private final Map<Object, RowId> entries = new HashMap<Object, RowId>();
+    private final FileOutputStream logFile;
+    private final DataOutputStream log;
+
+    public HashIndex(Path file, ColumnType keyType) throws IOException {
+        this.file = file;
+        this.keyType = keyType;
+        int logEntries = load();
+        if (logEntries < 0 || logEntries > 2 * entries.size() + 1024) {
+            compact();
+        }
+        this.logFile = new FileOutputStream(file.toFile(), true);
+        this.log = new DataOutputStream(new BufferedOutputStream(logFile));
+    }
+
+    /**
+     * replays the log into memory
+     *
+     * @return number of entries in the log or -1 if it ends in a torn entry
+     */
+    private int load() throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+        int logEntries = 0;
+        try {
+            while (in.hasRemaining()) {
+                byte op = in.get();
+                Object key = RowCodec.readValue(in, keyType);
+                if (op == PUT) {
+                    entries.put(key, new RowId(in.getInt(), in.getInt()));
+                } else {
+                    entries.remove(key);
+                }
+                logEntries++;
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+            return -1;
+        }
+        return logEntries;
+    }
+
+    /**
+     * rewrites the log with only the live entries
+     */
+    private void compact() throws IOException {
+        Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(compacted.toFile())))) {
+            for (Map.Entry<Object, RowId> entry : entries.entrySet()) {
+                writePut(out, entry.getKey(), entry.getValue());
+            }
+        }
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return true if the index holds no keys
+     */
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * @param key
+     * @return location of the row with the key or null
+     */
+    public RowId get(Object key) {
+        return entries.get(key);
+    }
+
+    /**
+     * @param key
+     * @return true if a row with the key exists
+     */
+    public boolean containsKey(Object key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * maps a key to a row location
+     *
+     * @param key
+     * @param rowId
+     * @throws IOException
+     */
+    public void put(Object key, RowId rowId) throws IOException {
+        entries.put(key, rowId);
+        writePut(log, key, rowId);
+    }
+
+    /**
+     * @param key
+     * @throws IOException
+     */
+    public void remove(Object key) throws IOException {
+        if (entries.remove(key) != null) {
+            log.writeByte(REMOVE);
+            RowCodec.writeValue(log, keyType, key);
+        }
+    }
+
+    private void writePut(DataOutputStream out, Object key, RowId rowId) throws IOException {
+        out.writeByte(PUT);
+        RowCodec.writeValue(out, keyType, key);
+        out.writeInt(rowId.getPage());
+        out.writeInt(rowId.getSlot());
+    }
+
+    /**
+     * writes the buffered log entries to disk
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        log.flush();
+    }
+
+    /**
+     * writes the buffered log entries and forces them to the disk
+     *
+     * @throws IOException
+     */
+    public void force() throws IOException {
+        log.flush();
+        logFile.getFD().sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+}
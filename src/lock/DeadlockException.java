@@ -0,0 +1,24 @@
+package lock;
+
+/**
+ * Thrown to the transaction chosen to break a cycle of lock waits. The
+ * transaction has to roll back, which releases its locks.
+ */
+public class DeadlockException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long transactionId;
+
+    public DeadlockException(long transactionId) {
+        super("Deadlock detected: transaction " + transactionId + " was chosen as the victim");
+        this.transactionId = transactionId;
+    }
+
+    /**
+     * @return id of the aborted transaction
+     */
+    public long getTransactionId() {
+        return transactionId;
+    }
+}
@@ -0,0 +1,431 @@
+package lock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Row and table locks of the writing transactions of one storage directory.
+ * Locks are held until the transaction commits or rolls back and are then
+ * released together by {@link #releaseAll(long)}.
+ * <p>
+ * The lock table is split into stripes, each with its own lock, so
+ * transactions working on different rows rarely meet on the same one.
+ * Requests for a lock are granted in the order they arrived, except that a
+ * holder upgrading its lock goes first. A transaction that has to wait looks
+ * for a cycle in the graph of who waits for whom, and again every
+ * {@value #DETECTION_INTERVAL} ms while it keeps waiting; the youngest
+ * transaction of a cycle is chosen as the victim and gets a
+ * {@link DeadlockException}.
+ */
+public class LockManager {
+
+    private static final int STRIPES = 64;
+    private static final long DETECTION_INTERVAL = 50;
+    private static final int ESCALATION_THRESHOLD = 5000;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final Map<Long, Owner> owners = new ConcurrentHashMap<Long, Owner>();
+
+    /**
+     * a table, or a row of it identified by its primary key or location
+     */
+    private static final class Resource {
+        final String table;
+        final Object row;
+
+        Resource(String table, Object row) {
+            this.table = table;
+            this.row = row;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Resource)) {
+                return false;
+            }
+            Resource resource = (Resource) other;
+            return table.equals(resource.table) && Objects.equals(row, resource.row);
+        }
+
+        @Override
+        public int hashCode() {
+            return table.hashCode() * 31 + Objects.hashCode(row);
+        }
+    }
+
+    /**
+     * a transaction's request for a lock, queued while it cannot be granted
+     */
+    private static final class Request {
+        final long transactionId;
+        final LockMode mode;
+        final boolean isUpgrade;
+
+        Request(long transactionId, LockMode mode, boolean isUpgrade) {
+            this.transactionId = transactionId;
+            this.mode = mode;
+            this.isUpgrade = isUpgrade;
+        }
+    }
+
+    /**
+     * holders and waiters of one lock
+     */
+    private static final class Entry {
+        final Map<Long, LockMode> holders = new LinkedHashMap<Long, LockMode>();
+        final List<Request> queue = new ArrayList<Request>();
+
+        /**
+         * @return the transactions a request has to wait for: holders in a
+         *         conflicting mode and, unless it upgrades a held lock,
+         *         conflicting requests queued before it
+         */
+        List<Long> blockers(Request request) {
+            List<Long> blockers = new ArrayList<Long>();
+            for (Map.Entry<Long, LockMode> holder : holders.entrySet()) {
+                if (holder.getKey() != request.transactionId && !request.mode.isCompatible(holder.getValue())) {
+                    blockers.add(holder.getKey());
+                }
+            }
+            if (!request.isUpgrade) {
+                for (Request queued : queue) {
+                    if (queued == request) {
+                        break;
+                    }
+                    if (queued.transactionId != request.transactionId && !request.mode.isCompatible(queued.mode)) {
+                        blockers.add(queued.transactionId);
+                    }
+                }
+            }
+            return blockers;
+        }
+    }
+
+    /**
+     * part of the lock table. Waiting goes through a {@link Condition}
+     * rather than a monitor, so a virtual thread waiting for a lock gives
+     * up its carrier thread.
+     */
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition changed = lock.newCondition();
+        final Map<Resource, Entry> entries = new HashMap<Resource, Entry>();
+    }
+
+    /**
+     * locks held by one transaction. Only its own thread changes them; the
+     * request it waits on is read by the deadlock detection of others.
+     */
+    private static final class Owner {
+        final long transactionId;
+        final Set<Resource> held = new LinkedHashSet<Resource>();
+        final Map<String, LockMode> tableModes = new HashMap<String, LockMode>();
+        final Map<String, Integer> rowCounts = new HashMap<String, Integer>();
+        volatile Resource waitingFor;
+        volatile Request request;
+        volatile boolean isVictim;
+
+        Owner(long transactionId) {
+            this.transactionId = transactionId;
+        }
+    }
+
+    public LockManager() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * locks a whole table
+     *
+     * @param transactionId
+     * @param table
+     * @param mode
+     * @throws DeadlockException
+     * @throws InterruptedException
+     */
+    public void lockTable(long transactionId, String table, LockMode mode)
+            throws DeadlockException, InterruptedException {
+        Owner owner = owners.computeIfAbsent(transactionId, Owner::new);
+        LockMode held = owner.tableModes.get(table);
+        if (held != null && held.covers(mode)) {
+            return;
+        }
+        acquire(owner, new Resource(table, null), mode);
+        owner.tableModes.put(table, held == null ? mode : held.combine(mode));
+    }
+
+    /**
+     * locks a row after locking its table in the matching intention mode.
+     * Once a transaction holds {@value #ESCALATION_THRESHOLD} row locks on a
+     * table the table itself is locked instead, which keeps bulk changes
+     * from filling the lock table.
+     *
+     * @param transactionId
+     * @param table
+     * @param row           - the row's primary key, or its location if the
+     *                      table has none
+     * @param mode          - {@link LockMode#SHARED} or
+     *                      {@link LockMode#EXCLUSIVE}
+     * @throws DeadlockException
+     * @throws InterruptedException
+     */
+    public void lockRow(long transactionId, String table, Object row, LockMode mode)
+            throws DeadlockException, InterruptedException {
+        Owner owner = owners.computeIfAbsent(transactionId, Owner::new);
+        LockMode held = owner.tableModes.get(table);
+        if (held != null && held.covers(mode)) {
+            return;
+        }
+        if (owner.rowCounts.getOrDefault(table, 0) >= ESCALATION_THRESHOLD) {
+            lockTable(transactionId, table, mode);
+            return;
+        }
+        lockTable(transactionId, table, mode.intention());
+        Resource resource = new Resource(table, row);
+        boolean isNew = !owner.held.contains(resource);
+        acquire(owner, resource, mode);
+        if (isNew) {
+            owner.rowCounts.merge(table, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * locks several rows of a table, or the table itself straight away when
+     * they would take the transaction past the escalation threshold
+     *
+     * @param transactionId
+     * @param table
+     * @param rows
+     * @param mode
+     * @throws DeadlockException
+     * @throws InterruptedException
+     */
+    public void lockRows(long transactionId, String table, List<Object> rows, LockMode mode)
+            throws DeadlockException, InterruptedException {
+        Owner owner = owners.computeIfAbsent(transactionId, Owner::new);
+        if (owner.rowCounts.getOrDefault(table, 0) + rows.size() > ESCALATION_THRESHOLD) {
+            lockTable(transactionId, table, mode);
+            return;
+        }
+        for (Object row : rows) {
+            lockRow(transactionId, table, row, mode);
+        }
+    }
+
+    /**
+     * releases every lock of a transaction and wakes the transactions
+     * waiting for them
+     *
+     * @param transactionId
+     */
+    public void releaseAll(long transactionId) {
+        Owner owner = owners.remove(transactionId);
+        if (owner == null) {
+            return;
+        }
+        for (Resource resource : owner.held) {
+            Stripe stripe = stripe(resource);
+            stripe.lock.lock();
+            try {
+                Entry entry = stripe.entries.get(resource);
+                entry.holders.remove(transactionId);
+                if (entry.holders.isEmpty() && entry.queue.isEmpty()) {
+                    stripe.entries.remove(resource);
+                }
+                stripe.changed.signalAll();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return number of locks held or waited for, for monitoring
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.entries.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private void acquire(Owner owner, Resource resource, LockMode mode)
+            throws DeadlockException, InterruptedException {
+        Stripe stripe = stripe(resource);
+        Request request;
+        stripe.lock.lock();
+        try {
+            Entry entry = stripe.entries.computeIfAbsent(resource, key -> new Entry());
+            LockMode held = entry.holders.get(owner.transactionId);
+            if (held != null && held.covers(mode)) {
+                return;
+            }
+            request = new Request(owner.transactionId, held == null ? mode : held.combine(mode), held != null);
+            if (entry.blockers(request).isEmpty()) {
+                grant(owner, resource, entry, request);
+                return;
+            }
+            if (request.isUpgrade) {
+                int position = 0;
+                while (position < entry.queue.size() && entry.queue.get(position).isUpgrade) {
+                    position++;
+                }
+                entry.queue.add(position, request);
+            } else {
+                entry.queue.add(request);
+            }
+            owner.request = request;
+            owner.waitingFor = resource;
+        } finally {
+            stripe.lock.unlock();
+        }
+        boolean isDetected = false;
+        try {
+            while (true) {
+                stripe.lock.lock();
+                try {
+                    Entry entry = stripe.entries.get(resource);
+                    if (entry.blockers(request).isEmpty()) {
+                        entry.queue.remove(request);
+                        grant(owner, resource, entry, request);
+                        // requests queued behind this one may be free to go now
+                        stripe.changed.signalAll();
+                        return;
+                    }
+                    if (owner.isVictim) {
+                        throw new DeadlockException(owner.transactionId);
+                    }
+                    if (isDetected) {
+                        stripe.changed.await(DETECTION_INTERVAL, TimeUnit.MILLISECONDS);
+                        isDetected = false;
+                        continue;
+                    }
+                } finally {
+                    stripe.lock.unlock();
+                }
+                detectDeadlock(owner);
+                isDetected = true;
+            }
+        } finally {
+            owner.request = null;
+            owner.waitingFor = null;
+            owner.isVictim = false;
+            stripe.lock.lock();
+            try {
+                Entry entry = stripe.entries.get(resource);
+                if (entry.queue.remove(request)) {
+                    if (entry.holders.isEmpty() && entry.queue.isEmpty()) {
+                        stripe.entries.remove(resource);
+                    }
+                    stripe.changed.signalAll();
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    private static void grant(Owner owner, Resource resource, Entry entry, Request request) {
+        entry.holders.put(owner.transactionId, request.mode);
+        owner.held.add(resource);
+    }
+
+    /**
+     * searches the wait-for graph for a cycle through a waiting transaction
+     * and picks the youngest transaction on it as the victim. The graph is
+     * read one lock at a time, never holding two stripes at once.
+     */
+    private void detectDeadlock(Owner start) {
+        List<Long> cycle = findCycle(start.transactionId, start.transactionId, new ArrayList<Long>(),
+                new LinkedHashSet<Long>());
+        if (cycle == null) {
+            return;
+        }
+        long victimId = start.transactionId;
+        for (long transactionId : cycle) {
+            victimId = Math.max(victimId, transactionId);
+        }
+        Owner victim = owners.get(victimId);
+        if (victim == null) {
+            return;
+        }
+        victim.isVictim = true;
+        Resource resource = victim.waitingFor;
+        if (resource != null) {
+            Stripe stripe = stripe(resource);
+            stripe.lock.lock();
+            try {
+                stripe.changed.signalAll();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    private List<Long> findCycle(long start, long transactionId, List<Long> path, Set<Long> visited) {
+        path.add(transactionId);
+        for (long blocker : waitsFor(transactionId)) {
+            if (blocker == start) {
+                return path;
+            }
+            if (visited.add(blocker)) {
+                List<Long> cycle = findCycle(start, blocker, path, visited);
+                if (cycle != null) {
+                    return cycle;
+                }
+            }
+        }
+        path.remove(path.size() - 1);
+        return null;
+    }
+
+    /**
+     * @return the transactions a transaction is waiting for, empty if it
+     *         does not wait
+     */
+    private List<Long> waitsFor(long transactionId) {
+        Owner owner = owners.get(transactionId);
+        if (owner == null) {
+            return List.of();
+        }
+        Resource resource = owner.waitingFor;
+        Request request = owner.request;
+        if (resource == null || request == null) {
+            return List.of();
+        }
+        Stripe stripe = stripe(resource);
+        stripe.lock.lock();
+        try {
+            Entry entry = stripe.entries.get(resource);
+            if (entry == null || !entry.queue.contains(request)) {
+                return List.of();
+            }
+            return entry.blockers(request);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private Stripe stripe(Resource resource) {
+        int hash = resource.hashCode();
+        return stripes[((hash ^ (hash >>> 16)) & 0x7fffffff) % STRIPES];
+    }
+}
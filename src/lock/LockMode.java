@@ -0,0 +1,73 @@
+package lock;
+
+/**
+ * Modes a lock is held in. Rows are locked shared or exclusive; a table is
+ * locked in the matching intention mode first, so a lock on the whole table
+ * only has to look at the table's own entry to find conflicting row locks.
+ *
+ * <pre>
+ *        IS   IX   S    X
+ *   IS   +    +    +    -
+ *   IX   +    +    -    -
+ *   S    +    -    +    -
+ *   X    -    -    -    -
+ * </pre>
+ */
+public enum LockMode {
+    INTENTION_SHARED, INTENTION_EXCLUSIVE, SHARED, EXCLUSIVE;
+
+    /**
+     * @param other
+     * @return true if two transactions may hold the modes at the same time
+     */
+    public boolean isCompatible(LockMode other) {
+        switch (this) {
+            case INTENTION_SHARED:
+                return other != EXCLUSIVE;
+            case INTENTION_EXCLUSIVE:
+                return other == INTENTION_SHARED || other == INTENTION_EXCLUSIVE;
+            case SHARED:
+                return other == INTENTION_SHARED || other == SHARED;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param other
+     * @return true if holding this mode grants everything the other does
+     */
+    public boolean covers(LockMode other) {
+        switch (this) {
+            case INTENTION_SHARED:
+                return other == INTENTION_SHARED;
+            case INTENTION_EXCLUSIVE:
+                return other == INTENTION_SHARED || other == INTENTION_EXCLUSIVE;
+            case SHARED:
+                return other == INTENTION_SHARED || other == SHARED;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * the mode a lock is upgraded to when its holder asks for another one.
+     * Shared together with intention exclusive becomes exclusive.
+     *
+     * @param other
+     * @return LockMode
+     */
+    public LockMode combine(LockMode other) {
+        if (covers(other)) {
+            return this;
+        }
+        return other.covers(this) ? other : EXCLUSIVE;
+    }
+
+    /**
+     * @return the mode the table is locked in before a row in this mode
+     */
+    public LockMode intention() {
+        return this == SHARED || this == INTENTION_SHARED ? INTENTION_SHARED : INTENTION_EXCLUSIVE;
+    }
+}
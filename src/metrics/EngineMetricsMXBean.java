@@ -0,0 +1,31 @@
+package metrics;
+
+/**
+ * Totals over every table and storage file, as seen over JMX.
+ */
+public interface EngineMetricsMXBean {
+
+    long getRowsScanned();
+
+    long getRowsReturned();
+
+    long getIndexScans();
+
+    long getFullScans();
+
+    long getParallelScans();
+
+    long getHashJoins();
+
+    long getIndexJoins();
+
+    long getMergeJoins();
+
+    long getHeapBytesRead();
+
+    long getHeapBytesWritten();
+
+    long getLogBytesRead();
+
+    long getLogBytesWritten();
+}
@@ -0,0 +1,236 @@
+package metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the engine kept for the life of the process: latencies per
+ * statement type, rows scanned and returned per table, parallel scans,
+ * joins by strategy, and bytes moved by the heap files and the write-ahead
+ * log. Everything is counted with adders, so recording stays cheap under
+ * concurrent sessions. The counters are published over JMX under
+ * {@value #DOMAIN} and listed by {@code SHOW METRICS}.
+ */
+public final class Metrics implements EngineMetricsMXBean {
+
+    static final String DOMAIN = "customdbmanager";
+
+    private static final Metrics SHARED = new Metrics();
+
+    private final Map<String, StatementMetrics> statements = new ConcurrentHashMap<String, StatementMetrics>();
+    private final Map<String, TableMetrics> tables = new ConcurrentHashMap<String, TableMetrics>();
+    private final Map<String, LongAdder> joins = new ConcurrentHashMap<String, LongAdder>();
+    private final LongAdder parallelScans = new LongAdder();
+    private final LongAdder heapBytesRead = new LongAdder();
+    private final LongAdder heapBytesWritten = new LongAdder();
+    private final LongAdder logBytesRead = new LongAdder();
+    private final LongAdder logBytesWritten = new LongAdder();
+
+    private Metrics() {
+        register("type=Engine", this);
+    }
+
+    /**
+     * @return the metrics of this process
+     */
+    public static Metrics shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param type - statement type such as SELECT or CREATE TABLE
+     * @return StatementMetrics of the type, created on first use
+     */
+    public StatementMetrics statement(String type) {
+        StatementMetrics metrics = statements.get(type);
+        return metrics != null ? metrics : statements.computeIfAbsent(type, key -> {
+            StatementMetrics created = new StatementMetrics();
+            register("type=Statement,name=" + key, created);
+            return created;
+        });
+    }
+
+    /**
+     * @param tableName
+     * @return TableMetrics of the table, created on first use
+     */
+    public TableMetrics table(String tableName) {
+        TableMetrics metrics = tables.get(tableName);
+        return metrics != null ? metrics : tables.computeIfAbsent(tableName, key -> {
+            TableMetrics created = new TableMetrics();
+            register("type=Table,name=" + key, created);
+            return created;
+        });
+    }
+
+    /**
+     * publishes a bean on the platform MBean server. Metrics are only
+     * informational, so a bean that cannot be published is left out.
+     */
+    private static void register(String properties, Object bean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(bean, new ObjectName(DOMAIN + ":" + properties));
+        } catch (JMException ex) {
+            // not visible over JMX, still counted
+        }
+    }
+
+    /**
+     * counts a full scan that was split into morsels, which is also counted
+     * as a full scan of its table
+     */
+    public void recordParallelScan() {
+        parallelScans.increment();
+    }
+
+    /**
+     * counts a join as it is opened
+     *
+     * @param strategy - HASH, INDEX or MERGE
+     */
+    public void recordJoin(String strategy) {
+        joins.computeIfAbsent(strategy, key -> new LongAdder()).increment();
+    }
+
+    private long getJoins(String strategy) {
+        LongAdder count = joins.get(strategy);
+        return count == null ? 0 : count.sum();
+    }
+
+    public void addHeapBytesRead(long bytes) {
+        heapBytesRead.add(bytes);
+    }
+
+    public void addHeapBytesWritten(long bytes) {
+        heapBytesWritten.add(bytes);
+    }
+
+    public void addLogBytesRead(long bytes) {
+        logBytesRead.add(bytes);
+    }
+
+    public void addLogBytesWritten(long bytes) {
+        logBytesWritten.add(bytes);
+    }
+
+    @Override
+    public long getRowsScanned() {
+        return tables.values().stream().mapToLong(TableMetrics::getRowsScanned).sum();
+    }
+
+    @Override
+    public long getRowsReturned() {
+        return tables.values().stream().mapToLong(TableMetrics::getRowsReturned).sum();
+    }
+
+    @Override
+    public long getIndexScans() {
+        return tables.values().stream().mapToLong(TableMetrics::getIndexScans).sum();
+    }
+
+    @Override
+    public long getFullScans() {
+        return tables.values().stream().mapToLong(TableMetrics::getFullScans).sum();
+    }
+
+    @Override
+    public long getParallelScans() {
+        return parallelScans.sum();
+    }
+
+    @Override
+    public long getHashJoins() {
+        return getJoins("HASH");
+    }
+
+    @Override
+    public long getIndexJoins() {
+        return getJoins("INDEX");
+    }
+
+    @Override
+    public long getMergeJoins() {
+        return getJoins("MERGE");
+    }
+
+    @Override
+    public long getHeapBytesRead() {
+        return heapBytesRead.sum();
+    }
+
+    @Override
+    public long getHeapBytesWritten() {
+        return heapBytesWritten.sum();
+    }
+
+    @Override
+    public long getLogBytesRead() {
+        return logBytesRead.sum();
+    }
+
+    @Override
+    public long getLogBytesWritten() {
+        return logBytesWritten.sum();
+    }
+
+    /**
+     * lists every metric as a name and a value: the engine totals, then
+     * each statement type and each table by name
+     *
+     * @return List of {name, value} rows
+     */
+    public List<Object[]> rows() {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        add(rows, "rows.scanned", getRowsScanned());
+        add(rows, "rows.returned", getRowsReturned());
+        add(rows, "scans.index", getIndexScans());
+        add(rows, "scans.full", getFullScans());
+        add(rows, "scans.parallel", getParallelScans());
+        add(rows, "joins.hash", getHashJoins());
+        add(rows, "joins.index", getIndexJoins());
+        add(rows, "joins.merge", getMergeJoins());
+        add(rows, "heap.bytes_read", getHeapBytesRead());
+        add(rows, "heap.bytes_written", getHeapBytesWritten());
+        add(rows, "log.bytes_read", getLogBytesRead());
+        add(rows, "log.bytes_written", getLogBytesWritten());
+        for (Map.Entry<String, StatementMetrics> entry : new TreeMap<String, StatementMetrics>(statements)
+                .entrySet()) {
+            String prefix = "statement." + entry.getKey() + ".";
+            StatementMetrics metrics = entry.getValue();
+            add(rows, prefix + "count", metrics.getCount());
+            add(rows, prefix + "errors", metrics.getErrors());
+            add(rows, prefix + "mean_us", metrics.getMeanMicros());
+            add(rows, prefix + "p50_us", metrics.getP50Micros());
+            add(rows, prefix + "p90_us", metrics.getP90Micros());
+            add(rows, prefix + "p99_us", metrics.getP99Micros());
+            add(rows, prefix + "max_us", metrics.getMaxMicros());
+        }
+        for (Map.Entry<String, TableMetrics> entry : new TreeMap<String, TableMetrics>(tables).entrySet()) {
+            String prefix = "table." + entry.getKey() + ".";
+            TableMetrics metrics = entry.getValue();
+            add(rows, prefix + "rows_scanned", metrics.getRowsScanned());
+            add(rows, prefix + "rows_returned", metrics.getRowsReturned());
+            add(rows, prefix + "index_scans", metrics.getIndexScans());
+            add(rows, prefix + "full_scans", metrics.getFullScans());
+        }
+        return rows;
+    }
+
+    /**
+     * @param rows
+     * @param name
+     * @param value
+     */
+    public static void add(List<Object[]> rows, String name, long value) {
+        rows.add(new Object[] { name, value });
+    }
+}
@@ -0,0 +1,63 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies of the statements of one type, such as SELECT, and how many of
+ * them failed. A failed statement's latency is recorded too.
+ */
+public final class StatementMetrics implements StatementMetricsMXBean {
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * @param nanos     - time the statement took
+     * @param succeeded
+     */
+    public void record(long nanos, boolean succeeded) {
+        latencies.record(nanos);
+        if (!succeeded) {
+            errors.increment();
+        }
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    @Override
+    public long getCount() {
+        return latencies.getCount();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getMeanMicros() {
+        return latencies.getMean() / 1000;
+    }
+
+    @Override
+    public long getP50Micros() {
+        return latencies.getValueAtPercentile(50) / 1000;
+    }
+
+    @Override
+    public long getP90Micros() {
+        return latencies.getValueAtPercentile(90) / 1000;
+    }
+
+    @Override
+    public long getP99Micros() {
+        return latencies.getValueAtPercentile(99) / 1000;
+    }
+
+    @Override
+    public long getMaxMicros() {
+        return latencies.getMax() / 1000;
+    }
+}
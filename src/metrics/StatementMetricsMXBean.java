@@ -0,0 +1,22 @@
+package metrics;
+
+/**
+ * Latency of one type of statement, as seen over JMX. Times are in
+ * microseconds and cover parsing as well as running the statement.
+ */
+public interface StatementMetricsMXBean {
+
+    long getCount();
+
+    long getErrors();
+
+    long getMeanMicros();
+
+    long getP50Micros();
+
+    long getP90Micros();
+
+    long getP99Micros();
+
+    long getMaxMicros();
+}
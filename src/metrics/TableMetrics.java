@@ -0,0 +1,49 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rows read from one table and how they were found. A scan reads either
+ * the rows an index returned or the whole table; the rows it scanned but
+ * did not return are the ones its snapshot or condition ruled out.
+ */
+public final class TableMetrics implements TableMetricsMXBean {
+
+    private final LongAdder rowsScanned = new LongAdder();
+    private final LongAdder rowsReturned = new LongAdder();
+    private final LongAdder indexScans = new LongAdder();
+    private final LongAdder fullScans = new LongAdder();
+
+    /**
+     * records a finished scan
+     *
+     * @param usedIndex - false for a full scan
+     * @param scanned   - rows looked at
+     * @param returned  - rows that matched
+     */
+    public void recordScan(boolean usedIndex, long scanned, long returned) {
+        (usedIndex ? indexScans : fullScans).increment();
+        rowsScanned.add(scanned);
+        rowsReturned.add(returned);
+    }
+
+    @Override
+    public long getRowsScanned() {
+        return rowsScanned.sum();
+    }
+
+    @Override
+    public long getRowsReturned() {
+        return rowsReturned.sum();
+    }
+
+    @Override
+    public long getIndexScans() {
+        return indexScans.sum();
+    }
+
+    @Override
+    public long getFullScans() {
+        return fullScans.sum();
+    }
+}
@@ -0,0 +1,15 @@
+package metrics;
+
+/**
+ * Reads of one table, as seen over JMX.
+ */
+public interface TableMetricsMXBean {
+
+    long getRowsScanned();
+
+    long getRowsReturned();
+
+    long getIndexScans();
+
+    long getFullScans();
+}
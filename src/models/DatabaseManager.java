@@ -1,7 +1,19 @@
 package models;
 
+import account.Table;
 import account.Database;
-import account.Authentication;
+import account.Session;
+import cursor.Cursor;
+import cursor.ParallelScan;
+import cursor.ParallelScanCursor;
+import cursor.ScanCursor;
+import mvcc.Snapshot;
+import storage.RowId;
+import storage.ColumnType;
+import storage.StorageEngine;
+import storage.PagedStorageEngine;
+import utils.Condition;
+import utils.CsvReader;
 
 import java.io.*;
 import java.util.Map;
@@ -12,6 +24,8 @@ public class DatabaseManager {
 
     private static final String FILE_PATH = "database.txt";
     private static final String DATABASE_SEPARATOR = "|";
+    private static final String LEGACY_TABLES_PATH = "tables.txt";
+    private static final int LOAD_BATCH_SIZE = 10000;
 
     /**
      * Fetches the list of databases from the file.
@@ -75,106 +89,235 @@ public class DatabaseManager {
     }
 
     /**
-     * Evaluates a condition in the form column1 = value1 column2 = value2. This is
-     * used to determine if there is a row that matches the condition
+     * Opens the storage engine for a storage directory. The first time the
+     * directory is opened the tables of a legacy tables.txt, if present, are
+     * imported into it.
      * 
-     * @param row          - the row to be evaluated
-     * @param tableColumns - the columns in the table that match the condition
-     * @param whereClause  - the where clause for the query ( " WHERE " )
+     * @param storagePath - The directory holding the table heap files
      * 
-     * @return true if the row matches the condition false otherwise ( no match or
-     *         no row found in the where clause
+     * @return StorageEngine for the directory
      */
-    private static boolean evaluateCondition(String row, String[] tableColumns, String whereClause) {
-        String[] values = row.split(",");
-        String[] condition = whereClause.split("=");
-        String conditionCol = condition[0].trim();
-        String conditionVal = condition[1].trim();
-        // Returns true if the conditionCol and value are equal to the conditionCol and
-        // conditionVal.
-        for (int i = 0; i < tableColumns.length; i++) {
-            // Check if the condition column and value are equal.
-            if (tableColumns[i].trim().equals(conditionCol) && values[i].trim().equals(conditionVal)) {
-                return true;
+    public static PagedStorageEngine openStorage(String storagePath) throws Exception {
+        boolean isNewStorage = !new File(storagePath).exists();
+        PagedStorageEngine storage = PagedStorageEngine.open(storagePath);
+        if (isNewStorage && new File(LEGACY_TABLES_PATH).exists()) {
+            importLegacyTables(storage, LEGACY_TABLES_PATH);
+        }
+        return storage;
+    }
+
+    /**
+     * Imports the tables of the old text format into a storage engine.
+     * 
+     * @param storage  - The storage engine to import into
+     * @param fileName - The legacy text file with the tables
+     */
+    private static void importLegacyTables(StorageEngine storage, String fileName) throws Exception {
+        for (Table table : Database.prepareLegacyTables(fileName)) {
+            int columnCount = table.getColumns().size();
+            storage.createTable(table.getTableName(), table.getColumns(), null);
+            List<Object[]> rows = new ArrayList<>();
+            for (int row = 0; row < table.getRowCount(); row++) {
+                Object[] values = new Object[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    values[i] = table.getValue(row, i);
+                }
+                rows.add(values);
             }
+            storage.insertAll(table.getTableName(), rows);
         }
-        return false;
     }
 
     /**
-     * Updates a record in a table. This method is used to update an existing record
-     * in the database.
+     * Picks an access path for a condition. An equality on the primary key is
+     * answered by the table's hash index, otherwise the first range of the
+     * condition on a column with a secondary index, equalities first, by a
+     * B+tree range scan. The rows found still have to be checked against the
+     * whole condition.
+     * 
+     * @param storage   - The storage engine holding the table
+     * @param tableName - The name of the table
+     * @param condition - The compiled where clause
      * 
-     * @param auth         - The authentication object used to authenticate the
-     *                     request.
+     * @return row ids of candidate rows or null if a full scan is needed
+     */
+    public static List<RowId> findRowIds(StorageEngine storage, String tableName, Condition condition)
+            throws Exception {
+        Condition.Range range = accessRange(storage, tableName, condition);
+        if (range == null) {
+            return null;
+        }
+        if (range.isEquality() && range.getColumn().equals(storage.getPrimaryKey(tableName))) {
+            RowId rowId = storage.lookup(tableName, range.getLow());
+            return rowId == null ? List.of() : List.of(rowId);
+        }
+        return storage.indexScan(tableName, range.getColumn(), range.getLow(), range.isLowInclusive(),
+                range.getHigh(), range.isHighInclusive());
+    }
+
+    /**
+     * @return the range of a condition an index answers, or null if there
+     *         is none
+     */
+    private static Condition.Range accessRange(StorageEngine storage, String tableName, Condition condition)
+            throws Exception {
+        String primaryKey = storage.getPrimaryKey(tableName);
+        for (Condition.Range range : condition.getRanges()) {
+            if (range.isEquality() && range.getColumn().equals(primaryKey)) {
+                return range;
+            }
+        }
+        for (boolean isEquality : new boolean[] { true, false }) {
+            for (Condition.Range range : condition.getRanges()) {
+                if (range.isEquality() == isEquality && storage.hasIndex(tableName, range.getColumn())) {
+                    return range;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Opens a cursor over the rows of a table matching a where clause as of
+     * a snapshot. When an index covers part of the condition only the rows
+     * it returns are read, otherwise the in-memory table is scanned. Rows are
+     * checked against the condition as the cursor reaches them.
+     * 
+     * @param storage     - The storage holding the table's indexes
+     * @param table       - The table to select from
+     * @param condition - The compiled where clause or null for all rows
+     * @param snapshot    - The snapshot the rows must be visible to
+     * 
+     * @return ScanCursor over the matching rows
+     */
+    public static ScanCursor openCursor(StorageEngine storage, Table table, Condition condition, Snapshot snapshot)
+            throws Exception {
+        if (condition == null) {
+            return new ScanCursor(table, null, snapshot, null);
+        }
+        List<RowId> rowIds = findRowIds(storage, table.getTableName(), condition);
+        return new ScanCursor(table, rowIds, snapshot, condition);
+    }
+
+    /**
+     * Opens a parallel scan of a table for a where clause when no index
+     * covers it and the table is large enough for its morsels to be read by
+     * more than one thread.
+     * 
+     * @param storage   - The storage holding the table's indexes
+     * @param table     - The table to select from
+     * @param condition - The compiled where clause or null for all rows
+     * @param snapshot  - The snapshot the rows must be visible to
+     * 
+     * @return ParallelScan of the table or null if it is better read by
+     *         {@link #openCursor}
+     */
+    public static ParallelScan openParallelScan(StorageEngine storage, Table table, Condition condition,
+            Snapshot snapshot) throws Exception {
+        int parallelism = ParallelScan.parallelism(table);
+        if (parallelism < 2 || condition != null && accessRange(storage, table.getTableName(), condition) != null) {
+            return null;
+        }
+        return new ParallelScan(table, snapshot, condition, parallelism);
+    }
+
+    /**
+     * Opens a cursor over the rows of a table matching a where clause for
+     * reading only, scanning the table in parallel where
+     * {@link #openParallelScan} allows.
+     * 
+     * @param storage   - The storage holding the table's indexes
+     * @param table     - The table to select from
+     * @param condition - The compiled where clause or null for all rows
+     * @param snapshot  - The snapshot the rows must be visible to
+     * 
+     * @return Cursor over the matching rows in table order
+     */
+    public static Cursor openReadCursor(StorageEngine storage, Table table, Condition condition, Snapshot snapshot)
+            throws Exception {
+        ParallelScan scan = openParallelScan(storage, table, condition, snapshot);
+        return scan != null ? new ParallelScanCursor(scan) : openCursor(storage, table, condition, snapshot);
+    }
+
+    /**
+     * Changes the row versions of a table that the current transaction sees
+     * and that match the where clause. The matching rows are all found
+     * before the first is changed, and the table stays pinned meanwhile so
+     * their positions cannot be moved by a vacuum.
+     * 
+     * @param session   - The session making the change
+     * @param tableName - The name of the table
+     * @param condition - The compiled where clause to match
+     * @param change    - The change to make to each matching row
+     */
+    private static void changeMatchingRows(Session session, String tableName, Condition condition,
+            RowChange change) throws Exception {
+        Table table = session.getDatabase().fetchTable(tableName);
+        if (table == null) {
+            System.out.println("Table not found: " + tableName);
+            throw new Exception("Table not found: " + tableName);
+        }
+        long stamp = table.pin();
+        try {
+            List<Integer> rows = new ArrayList<>();
+            Snapshot snapshot = session.snapshot();
+            try (ScanCursor cursor = openCursor(session.getStorage(), table, condition, snapshot)) {
+                while (cursor.next()) {
+                    rows.add(cursor.getRow());
+                }
+            } finally {
+                session.release(snapshot);
+            }
+            for (int row : rows) {
+                change.apply(table, row);
+            }
+        } finally {
+            table.unpin(stamp);
+        }
+    }
+
+    /**
+     * change made to one row by {@link #changeMatchingRows}
+     */
+    private interface RowChange {
+        void apply(Table table, int row) throws Exception;
+    }
+
+    /**
+     * Updates a record in a table. Every matching row gets a new version
+     * written through the current transaction; a row changed by a concurrent
+     * transaction fails the update.
+     * 
+     * @param session      - The session of the user making the request.
      * @param tableName    - The name of the table to update. This must be a table
      *                     in the database.
      * @param tableColumns - The columns that should be updated in the table.
-     * @param whereClause  - The where clause for the update. If null or empty all
-     *                     columns will be updated.
+     * @param condition    - The compiled where clause selecting the rows to
+     *                     update.
      * @param setClause    - The set clause to be used for the
      */
-    public static void updateRecordInTable(Authentication auth, String tableName, String[] tableColumns,
-            String whereClause, Map<String, String> setClause) throws Exception {
+    public static void updateRecordInTable(Session session, String tableName, String[] tableColumns,
+            Condition condition, Map<String, String> setClause) throws Exception {
         try {
-            BufferedReader reader = new BufferedReader(new FileReader(auth.DB_FILE_PATH));
-            StringBuilder databaseContent = new StringBuilder();
-            String line;
-            // Read a line from the reader and append it to the databaseContent.
-            while ((line = reader.readLine()) != null) {
-                databaseContent.append(line).append('\n');
-            }
-            reader.close();
-            int tableStartIndex = databaseContent.indexOf("startTable - " + tableName);
-            // Check if the table is found.
-            if (tableStartIndex == -1) {
-                System.out.println("Table not found: " + tableName);
-                throw new Exception("Table not found: " + tableName);
-            }
-            int tableEndIndex = databaseContent.indexOf("endTable - " + tableName, tableStartIndex);
-            // Check if the table has conflicts.
-            if (tableEndIndex == -1) {
-                System.out.println("Database error:" + tableName + " has conflicts");
-                throw new Exception("Database error:" + tableName + " has conflicts");
-            }
-            String tableContent = databaseContent.substring(tableStartIndex, tableEndIndex);
-            String[] rows = tableContent.split("\n");
-            List<String> updatedRows = new ArrayList<>();
-            int count = 0;
-            for (String row : rows) {
-                count++;
-                // Evaluate the condition of a row.
-                if (count >= 3 && evaluateCondition(row, tableColumns, whereClause)) {
-                    String eachRow = "";
-                    String[] values = row.split(",");
-                    // Generates a comma separated list of column names and values.
-                    for (int i = 0; i < values.length; i++) {
-                        String colName = tableColumns[i].trim();
-                        String colVal = values[i].trim();
-                        // concatenate the column name to the row
-                        if (setClause.containsKey(colName)) {
-                            eachRow = eachRow.concat(setClause.get(colName).trim() + ",");
-                        } else {
-                            eachRow = eachRow.concat(colVal + ",");
-                        }
+            changeMatchingRows(session, tableName, condition, (table, row) -> {
+                Map<String, String> columnTypes = table.getColumns();
+                Object[] values = new Object[tableColumns.length];
+                for (int i = 0; i < tableColumns.length; i++) {
+                    values[i] = table.getValue(row, i);
+                }
+                // Replace the values of the columns named in the set clause.
+                for (int i = 0; i < tableColumns.length; i++) {
+                    String colName = tableColumns[i].trim();
+                    if (setClause.containsKey(colName)) {
+                        String value = setClause.get(colName);
+                        values[i] = ColumnType.of(columnTypes.get(colName)).parse(value == null ? null : value.trim());
                     }
-                    eachRow = eachRow.substring(0, eachRow.length() - 1);// removing the last ,
-                    updatedRows.add(eachRow);
-                    continue;
                 }
-                updatedRows.add(row);
-            }
-            StringBuilder updatedTableContent = new StringBuilder();
-            for (String row : updatedRows) {
-                updatedTableContent.append(row).append('\n');
-            }
-            databaseContent.replace(tableStartIndex, tableEndIndex, updatedTableContent.toString());
-            BufferedWriter writer = new BufferedWriter(new FileWriter(auth.DB_FILE_PATH));
-            writer.write(databaseContent.toString());
-            writer.close();
+                session.updateRow(table, row, values);
+            });
             System.out.println("Row(s) updated successfully.");
         } catch (Exception ex) {
-            throw new Exception("Error while updating rows");
+            throw new Exception("Error while updating rows: " + ex.getMessage());
         }
     }
 
@@ -182,79 +325,99 @@ public class DatabaseManager {
      * Deletes records from a table. This method is used to delete records from a
      * table that match the where clause and column names
      * 
-     * @param auth         - The authentication object for the user
+     * @param session      - The session of the user
      * @param tableName    - The name of the table
      * @param tableColumns - The columns that should be deleted from the table
-     * @param whereClause  - The where clause to be used in the
+     * @param condition    - The compiled where clause selecting the rows to
+     *                     delete
      */
-    public static void deleteRecordInTable(Authentication auth, String tableName, String[] tableColumns,
-            String whereClause) throws Exception {
+    public static void deleteRecordInTable(Session session, String tableName, String[] tableColumns,
+            Condition condition) throws Exception {
         try {
-            BufferedReader reader = new BufferedReader(new FileReader(auth.DB_FILE_PATH));
-            StringBuilder databaseContext = new StringBuilder();
-            String line;
-            // Read a line from the reader and append it to the database context.
-            while ((line = reader.readLine()) != null) {
-                databaseContext.append(line).append("\n");
-            }
-            reader.close();
-            int tableStartIndex = databaseContext.indexOf("startTable - " + tableName);
-            // Check if the table is found.
-            if (tableStartIndex == -1) {
-                throw new Exception("Table not found: " + tableName);
-            }
-            int tableEndIndex = databaseContext.indexOf("endTable - " + tableName, tableStartIndex);
-            // Check if the table has conflicts.
-            if (tableEndIndex == -1) {
-                throw new Exception("Database error:" + tableName + " is improperly configured");
-            }
-            String tableContent = databaseContext.substring(tableStartIndex, tableEndIndex);
-            String[] rows = tableContent.split("\n");
-            List<String> updatedRows = new ArrayList<>();
-            int count = 0;
-            for (String row : rows) {
-                count++;
-                // If count 3 and count 3 evaluate the condition.
-                if (count >= 3 && evaluateCondition(row, tableColumns, whereClause)) {
-                    continue;
-                }
-                updatedRows.add(row);
-            }
-            StringBuilder updatedTableContent = new StringBuilder();
-            for (String row : updatedRows) {
-                updatedTableContent.append(row).append('\n');
-            }
-            databaseContext.replace(tableStartIndex, tableEndIndex, updatedTableContent.toString());
-            BufferedWriter writer = new BufferedWriter(new FileWriter(auth.DB_FILE_PATH));
-            writer.write(databaseContext.toString());
-            writer.close();
+            changeMatchingRows(session, tableName, condition, session::deleteRow);
             System.out.println("Rows deleted successfully.");
         } catch (Exception ex) {
-            throw new Exception("Error while deleting rows");
+            throw new Exception("Error while deleting rows: " + ex.getMessage());
         }
     }
 
-    public static void copyFile(String file1, String file2, Boolean shouldDeleteSourceFile) throws Exception {
-        File fromFile = new File(file1);
-        File toFile = new File(file2);
-        StringBuilder content = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new FileReader(fromFile))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                content.append(line).append("\n");
+    /**
+     * Loads the records of a delimited file into a table. Every field is
+     * checked against the type of its column as it is read, and rows go to
+     * storage in batches of {@value #LOAD_BATCH_SIZE}, each written with one
+     * commit outside a transaction block. A bad record stops the load; the
+     * batches before it stay in the table.
+     * 
+     * @param session  - The session loading the records
+     * @param table    - The table to load into
+     * @param reader   - The records to load, positioned at the first one
+     * @param columns  - The columns the fields go to, empty for all columns in
+     *                 table order
+     */
+    public static void loadRecordsIntoTable(Session session, Table table, CsvReader reader, List<String> columns)
+            throws Exception {
+        String tableName = table.getTableName();
+        List<String> names = columns.isEmpty() ? new ArrayList<>(table.getColumns().keySet()) : columns;
+        int[] indexes = new int[names.size()];
+        ColumnType[] types = new ColumnType[names.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = table.getColumnIndex(names.get(i));
+            if (indexes[i] == -1) {
+                System.out.println("Load Failed: unknown column " + names.get(i));
+                throw new Exception("Load Failed: unknown column " + names.get(i));
             }
-        } catch (Exception ex) {
-            throw new Exception("Error reading copy file.");
+            types[i] = ColumnType.of(table.getColumns().get(names.get(i)));
         }
-        try (FileWriter writer = new FileWriter(toFile)) {
-            writer.write(content.toString());
-        } catch (IOException e) {
-            throw new Exception("Error writing to original file.");
+        int columnCount = table.getColumns().size();
+        List<Object[]> batch = new ArrayList<>(LOAD_BATCH_SIZE);
+        long loaded = 0;
+        String[] fields;
+        while ((fields = reader.next()) != null) {
+            if (fields.length != indexes.length) {
+                String message = "Load Failed: line " + reader.getLineNumber() + " has " + fields.length
+                        + " fields, expected " + indexes.length;
+                System.out.println(message);
+                throw new Exception(message);
+            }
+            Object[] row = new Object[columnCount];
+            for (int i = 0; i < indexes.length; i++) {
+                String value = fields[i];
+                try {
+                    row[indexes[i]] = types[i].parse(value == null || types[i] == ColumnType.VARCHAR ? value
+                            : value.trim());
+                } catch (IllegalArgumentException ex) {
+                    String message = "Load Failed: line " + reader.getLineNumber() + ": invalid value for column "
+                            + names.get(i) + ": " + value;
+                    System.out.println(message);
+                    throw new Exception(message);
+                }
+            }
+            batch.add(row);
+            if (batch.size() == LOAD_BATCH_SIZE) {
+                loaded += writeBatch(session, table, batch);
+            }
         }
-        if (shouldDeleteSourceFile) {
-            fromFile.delete();
+        if (!batch.isEmpty()) {
+            loaded += writeBatch(session, table, batch);
         }
+        System.out.println(loaded + " records loaded into " + tableName + ".");
     }
 
-    public static void lockDatabase() {}
+    /**
+     * writes a batch of rows to storage and the in-memory table in one
+     * commit, then empties the batch
+     * 
+     * @return number of rows written
+     */
+    private static int writeBatch(Session session, Table table, List<Object[]> batch) throws Exception {
+        try {
+            session.runInTransaction(() -> session.insertRows(table, batch));
+        } catch (IOException ex) {
+            System.out.println("Load Failed: " + ex.getMessage());
+            throw new Exception("Load Failed: " + ex.getMessage());
+        }
+        int count = batch.size();
+        batch.clear();
+        return count;
+    }
 }
@@ -0,0 +1,56 @@
+package mvcc;
+
+/**
+ * Consistent view of the tables as of one commit. Every row version carries
+ * the commit timestamps of the transactions that created it ({@code xmin})
+ * and deleted or replaced it ({@code xmax}). While a transaction is running
+ * it marks the versions it writes with its negated transaction id instead,
+ * and stamps them with its commit timestamp once it commits.
+ * A version is visible to a snapshot if it was created by a commit the
+ * snapshot includes, or by the snapshot's own transaction, and not deleted
+ * by either.
+ */
+public final class Snapshot {
+
+    /**
+     * {@code xmax} of a version nobody deleted, and {@code xmin} of a version
+     * whose transaction aborted, which no snapshot sees
+     */
+    public static final long INFINITY = Long.MAX_VALUE;
+
+    private final long timestamp;
+    private final long transactionId;
+
+    /**
+     * @param timestamp     - last commit the snapshot includes
+     * @param transactionId - transaction reading through the snapshot, or 0
+     *                      for a read-only statement
+     */
+    Snapshot(long timestamp, long transactionId) {
+        this.timestamp = timestamp;
+        this.transactionId = transactionId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * @param xmin
+     * @param xmax
+     * @return true if a version with these stamps belongs to the snapshot
+     */
+    public boolean isVisible(long xmin, long xmax) {
+        if (xmin >= 0 ? xmin > timestamp : xmin != -transactionId) {
+            return false;
+        }
+        if (xmax == INFINITY) {
+            return true;
+        }
+        return xmax >= 0 ? xmax > timestamp : xmax != -transactionId;
+    }
+}
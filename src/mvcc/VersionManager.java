@@ -0,0 +1,78 @@
+package mvcc;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Hands out transaction ids and commit timestamps for the row versions of
+ * one storage directory and keeps track of the snapshots in use, so old
+ * versions are only discarded once no snapshot can see them.
+ * Rows that were committed before the process started have timestamp 0.
+ */
+public class VersionManager {
+
+    private final AtomicLong nextTransactionId = new AtomicLong(1);
+    private final Object commitLock = new Object();
+    private final TreeMap<Long, Integer> activeSnapshots = new TreeMap<Long, Integer>();
+    private volatile long lastCommit;
+
+    /**
+     * @return id for a new writing transaction
+     */
+    public long begin() {
+        return nextTransactionId.getAndIncrement();
+    }
+
+    /**
+     * takes a snapshot of everything committed so far. It has to be given
+     * back through {@link #release(Snapshot)}.
+     *
+     * @param transactionId - the transaction reading, or 0 for none
+     * @return Snapshot
+     */
+    public Snapshot snapshot(long transactionId) {
+        synchronized (activeSnapshots) {
+            Snapshot snapshot = new Snapshot(lastCommit, transactionId);
+            activeSnapshots.merge(snapshot.getTimestamp(), 1, Integer::sum);
+            return snapshot;
+        }
+    }
+
+    /**
+     * @param snapshot - a snapshot that is no longer read through
+     */
+    public void release(Snapshot snapshot) {
+        synchronized (activeSnapshots) {
+            activeSnapshots.computeIfPresent(snapshot.getTimestamp(), (timestamp, count) -> count == 1 ? null
+                    : count - 1);
+        }
+    }
+
+    /**
+     * @return oldest commit any snapshot still sees; versions deleted at or
+     *         before it are invisible to every snapshot
+     */
+    public long horizon() {
+        synchronized (activeSnapshots) {
+            Map.Entry<Long, Integer> oldest = activeSnapshots.firstEntry();
+            return oldest == null ? lastCommit : oldest.getKey();
+        }
+    }
+
+    /**
+     * gives a committing transaction the next timestamp. The versions are
+     * stamped before the timestamp is published, so a snapshot sees either
+     * all of a transaction's changes or none of them.
+     *
+     * @param stamp - writes the timestamp into the transaction's versions
+     */
+    public void commit(LongConsumer stamp) {
+        synchronized (commitLock) {
+            long timestamp = lastCommit + 1;
+            stamp.accept(timestamp);
+            lastCommit = timestamp;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Client side of the protocol described in {@link Protocol}: logs in to a
+ * {@link Server} and runs statements on it one at a time.
+ */
+public class Client implements Closeable {
+
+    private final Socket socket;
+    private final FrameReader in;
+    private final FrameWriter out;
+
+    /**
+     * response to a statement
+     */
+    public static final class Result {
+        private final List<String> messages = new ArrayList<String>();
+        private final List<String> columns = new ArrayList<String>();
+        private final List<String[]> rows = new ArrayList<String[]>();
+        private String tableName;
+        private String error;
+
+        /**
+         * @return the lines the statement printed
+         */
+        public List<String> getMessages() {
+            return messages;
+        }
+
+        /**
+         * @return the table selected from or null if there are no rows
+         */
+        public String getTableName() {
+            return tableName;
+        }
+
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        /**
+         * @return the selected rows, values as text and null for NULL
+         */
+        public List<String[]> getRows() {
+            return rows;
+        }
+
+        /**
+         * @return the error the statement failed with or null
+         */
+        public String getError() {
+            return error;
+        }
+    }
+
+    /**
+     * @param host
+     * @param port
+     * @throws IOException
+     */
+    public Client(String host, int port) throws IOException {
+        this.socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        this.in = new FrameReader(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        this.out = new FrameWriter(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+    }
+
+    /**
+     * @param username
+     * @param password
+     * @throws IOException - also if the server refused the credentials
+     */
+    public void login(String username, String password) throws IOException {
+        out.writeString(username);
+        out.writeString(password);
+        out.send(Protocol.AUTH);
+        out.flush();
+        byte type = in.next();
+        if (type != Protocol.READY) {
+            throw new IOException(type == Protocol.ERROR ? in.readString() : "Unexpected frame type " + (char) type);
+        }
+    }
+
+    /**
+     * runs a statement and reads the whole response
+     *
+     * @param statement
+     * @return Result
+     * @throws IOException
+     */
+    public Result execute(String statement) throws IOException {
+        out.writeString(statement);
+        out.send(Protocol.QUERY);
+        out.flush();
+        Result result = new Result();
+        while (true) {
+            byte type = in.next();
+            switch (type) {
+                case Protocol.MESSAGE:
+                    result.messages.add(in.readString());
+                    break;
+                case Protocol.COLUMNS:
+                    result.tableName = in.readString();
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        result.columns.add(in.readString());
+                    }
+                    break;
+                case Protocol.ROWS:
+                    while (in.hasRemaining()) {
+                        String[] row = new String[result.columns.size()];
+                        for (int i = 0; i < row.length; i++) {
+                            row[i] = in.readString();
+                        }
+                        result.rows.add(row);
+                    }
+                    break;
+                case Protocol.ERROR:
+                    result.error = in.readString();
+                    return result;
+                case Protocol.DONE:
+                    return result;
+                default:
+                    throw new IOException("Unexpected frame type " + (char) type);
+            }
+        }
+    }
+
+    /**
+     * ends the session and closes the connection
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            out.send(Protocol.TERMINATE);
+            out.flush();
+        } finally {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package server;
+
+import account.Authentication;
+import account.Engine;
+import account.Session;
+import account.User;
+import models.UserManager;
+import utils.Query;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One client connection of the {@link Server}, run on its own virtual
+ * thread. The client authenticates first and then sends statements one at
+ * a time; each gets the engine's console output back as MESSAGE frames and
+ * the rows of a SELECT as COLUMNS and ROWS frames, see {@link Protocol}.
+ */
+final class Connection implements Runnable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Socket socket;
+    private final Engine engine;
+
+    Connection(Socket socket, Engine engine) {
+        this.socket = socket;
+        this.engine = engine;
+    }
+
+    @Override
+    public void run() {
+        Session session = null;
+        try (Socket socket = this.socket) {
+            socket.setTcpNoDelay(true);
+            FrameReader in = new FrameReader(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+            FrameWriter out = new FrameWriter(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+            session = authenticate(in, out);
+            if (session == null) {
+                return;
+            }
+            session.setResultSink(new FrameResultSink(out));
+            while (true) {
+                byte type = in.next();
+                if (type == Protocol.TERMINATE) {
+                    return;
+                }
+                if (type != Protocol.QUERY) {
+                    sendError(out, "Unexpected frame type " + (char) type);
+                    return;
+                }
+                runQuery(session, in.readString(), out);
+            }
+        } catch (EOFException ex) {
+            // the client went away
+        } catch (IOException ex) {
+            ConsoleRouter.console().println("Connection from " + socket.getRemoteSocketAddress() + " failed: "
+                    + ex.getMessage());
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    /**
+     * @return the authenticated session or null if the credentials were
+     *         wrong, which ends the connection
+     */
+    private Session authenticate(FrameReader in, FrameWriter out) throws IOException {
+        if (in.next() != Protocol.AUTH) {
+            sendError(out, "Expected authentication");
+            return null;
+        }
+        String username = in.readString();
+        String password = in.readString();
+        User user = null;
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        ConsoleRouter.route(console);
+        try {
+            if (password != null) {
+                user = new Authentication().authenticate(username, password, UserManager.fetchUsers());
+            }
+            if (user == null) {
+                sendError(out, "Invalid username or password");
+                return null;
+            }
+        } finally {
+            ConsoleRouter.route(null);
+        }
+        out.writeString("Login successful.");
+        out.send(Protocol.READY);
+        out.flush();
+        return engine.openSession(user);
+    }
+
+    /**
+     * runs a statement. What it prints is sent once it finished, without
+     * the last line if that only repeats the error.
+     */
+    private void runQuery(Session session, String statement, FrameWriter out) throws IOException {
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        String error = null;
+        ConsoleRouter.route(console);
+        try {
+            new Query(List.of(statement == null ? "" : statement), session);
+        } catch (Exception ex) {
+            error = ex.getMessage() != null ? ex.getMessage() : ex.toString();
+        } finally {
+            ConsoleRouter.route(null);
+        }
+        List<String> lines = new ArrayList<String>(
+                Arrays.asList(console.toString(StandardCharsets.UTF_8).split("\\R")));
+        if (!lines.isEmpty() && lines.get(lines.size() - 1).isEmpty()) {
+            lines.remove(lines.size() - 1);
+        }
+        if (error != null && !lines.isEmpty() && lines.get(lines.size() - 1).equals(error)) {
+            lines.remove(lines.size() - 1);
+        }
+        for (String line : lines) {
+            out.writeString(line);
+            out.send(Protocol.MESSAGE);
+        }
+        if (error != null) {
+            sendError(out, error);
+        } else {
+            out.send(Protocol.DONE);
+            out.flush();
+        }
+    }
+
+    private static void sendError(FrameWriter out, String message) throws IOException {
+        out.writeString(message);
+        out.send(Protocol.ERROR);
+        out.flush();
+    }
+}
@@ -0,0 +1,74 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Stand-in for {@code System.out} while the server runs. The engine reports
+ * to the console, so whatever a connection's thread prints goes to the
+ * stream the connection routed it to, and everything else to the real
+ * console.
+ */
+final class ConsoleRouter extends OutputStream {
+
+    private static final ThreadLocal<OutputStream> TARGETS = new ThreadLocal<OutputStream>();
+    private static ConsoleRouter installed;
+
+    private final PrintStream console;
+
+    private ConsoleRouter(PrintStream console) {
+        this.console = console;
+    }
+
+    /**
+     * replaces {@code System.out}, once per process
+     */
+    static synchronized void install() {
+        if (installed == null) {
+            installed = new ConsoleRouter(System.out);
+            System.setOut(new PrintStream(installed, true, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * @return the console as it was before {@link #install()}
+     */
+    static synchronized PrintStream console() {
+        return installed != null ? installed.console : System.out;
+    }
+
+    /**
+     * sends what the current thread prints to a stream
+     *
+     * @param target - the stream or null for the console
+     */
+    static void route(OutputStream target) {
+        if (target == null) {
+            TARGETS.remove();
+        } else {
+            TARGETS.set(target);
+        }
+    }
+
+    private OutputStream target() {
+        OutputStream target = TARGETS.get();
+        return target != null ? target : console;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        target().write(b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        target().write(bytes, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        target().flush();
+    }
+}
@@ -0,0 +1,77 @@
+package server;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads frames, see {@link Protocol}, and the values in their payload.
+ */
+public class FrameReader {
+
+    private final DataInputStream in;
+    private byte[] frame = new byte[256];
+    private ByteBuffer payload = ByteBuffer.allocate(0);
+
+    public FrameReader(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    /**
+     * reads the next frame
+     *
+     * @return the frame's type
+     * @throws IOException - an EOFException once the other side closed the
+     *                     connection
+     */
+    public byte next() throws IOException {
+        int length = in.readInt();
+        if (length < 1 || length > Protocol.MAX_FRAME_SIZE) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        byte type = in.readByte();
+        if (frame.length < length - 1) {
+            frame = new byte[Math.max(length - 1, frame.length * 2)];
+        }
+        in.readFully(frame, 0, length - 1);
+        payload = ByteBuffer.wrap(frame, 0, length - 1);
+        return type;
+    }
+
+    /**
+     * @return true if the payload of the current frame has more values
+     */
+    public boolean hasRemaining() {
+        return payload.hasRemaining();
+    }
+
+    /**
+     * @return int
+     * @throws IOException
+     */
+    public int readInt() throws IOException {
+        if (payload.remaining() < Integer.BYTES) {
+            throw new IOException("Truncated frame");
+        }
+        return payload.getInt();
+    }
+
+    /**
+     * @return the string or null
+     * @throws IOException
+     */
+    public String readString() throws IOException {
+        int length = readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > payload.remaining()) {
+            throw new IOException("Truncated frame");
+        }
+        String value = new String(frame, payload.position(), length, StandardCharsets.UTF_8);
+        payload.position(payload.position() + length);
+        return value;
+    }
+}
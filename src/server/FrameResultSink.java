@@ -0,0 +1,63 @@
+package server;
+
+import cursor.Cursor;
+import cursor.ResultSink;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Sends the rows of a SELECT to a network client as a COLUMNS frame
+ * followed by ROWS frames of up to {@value #ROWS_FRAME_SIZE} bytes each.
+ * Values go as text in the same form the console shows them.
+ */
+final class FrameResultSink implements ResultSink {
+
+    private static final int ROWS_FRAME_SIZE = 1 << 15;
+
+    private final FrameWriter out;
+    private final StringBuilder value = new StringBuilder();
+
+    FrameResultSink(FrameWriter out) {
+        this.out = out;
+    }
+
+    @Override
+    public void begin(String tableName, List<String> columns) throws IOException {
+        out.writeString(tableName);
+        out.writeInt(columns.size());
+        for (String column : columns) {
+            out.writeString(column);
+        }
+        out.send(Protocol.COLUMNS);
+    }
+
+    @Override
+    public long writeAll(Cursor cursor) throws IOException {
+        long count = 0;
+        while (cursor.next()) {
+            for (int i = 0; i < cursor.getColumnCount(); i++) {
+                if (cursor.get(i) == null) {
+                    out.writeString(null);
+                } else {
+                    value.setLength(0);
+                    cursor.appendTo(value, i);
+                    out.writeString(value.toString());
+                }
+            }
+            count++;
+            if (out.size() >= ROWS_FRAME_SIZE) {
+                out.send(Protocol.ROWS);
+            }
+        }
+        if (out.size() > 0) {
+            out.send(Protocol.ROWS);
+        }
+        return count;
+    }
+
+    @Override
+    public void end() {
+        // the rows go out with the rest of the response
+    }
+}
@@ -0,0 +1,71 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds the payload of a frame and writes it out with its length and
+ * type, see {@link Protocol}. Frames are buffered until {@link #flush()}.
+ */
+public class FrameWriter {
+
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final DataOutputStream payload = new DataOutputStream(buffer);
+
+    public FrameWriter(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    /**
+     * @param value
+     * @throws IOException
+     */
+    public void writeInt(int value) throws IOException {
+        payload.writeInt(value);
+    }
+
+    /**
+     * @param value - the string or null
+     * @throws IOException
+     */
+    public void writeString(String value) throws IOException {
+        if (value == null) {
+            payload.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        payload.writeInt(bytes.length);
+        payload.write(bytes);
+    }
+
+    /**
+     * @return bytes in the payload of the frame being built
+     */
+    public int size() {
+        return buffer.size();
+    }
+
+    /**
+     * writes the frame built so far and starts the next one
+     *
+     * @param type
+     * @throws IOException
+     */
+    public void send(byte type) throws IOException {
+        out.writeInt(buffer.size() + 1);
+        out.writeByte(type);
+        buffer.writeTo(out);
+        buffer.reset();
+    }
+
+    /**
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+}
@@ -0,0 +1,45 @@
+package server;
+
+/**
+ * Frame types of the wire protocol between {@link Server} and
+ * {@link Client}. Every frame is a 4 byte big-endian length, counting the
+ * type byte and the payload, followed by a type byte and the payload.
+ * Numbers are big-endian; a string is its length in UTF-8 bytes followed by
+ * the bytes, with length -1 for null.
+ *
+ * <pre>
+ * client                              server
+ * AUTH      username, password  -->
+ *                               <--   READY message | ERROR message
+ * QUERY     statement           -->
+ *                               <--   COLUMNS table, count, name...
+ *                               <--   ROWS value... (count values per row)
+ *                               <--   MESSAGE line
+ *                               <--   DONE | ERROR message
+ * TERMINATE                     -->
+ * </pre>
+ *
+ * Every QUERY is answered by any number of COLUMNS, ROWS and MESSAGE frames
+ * and then exactly one DONE or ERROR frame. A result's rows may be split
+ * over several ROWS frames.
+ */
+public final class Protocol {
+
+    public static final byte AUTH = 'A';
+    public static final byte QUERY = 'Q';
+    public static final byte TERMINATE = 'X';
+    public static final byte READY = 'R';
+    public static final byte COLUMNS = 'T';
+    public static final byte ROWS = 'D';
+    public static final byte MESSAGE = 'M';
+    public static final byte DONE = 'Z';
+    public static final byte ERROR = 'E';
+
+    /**
+     * largest frame either side accepts
+     */
+    public static final int MAX_FRAME_SIZE = 16 << 20;
+
+    private Protocol() {
+    }
+}
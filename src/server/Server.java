@@ -0,0 +1,71 @@
+package server;
+
+import account.Engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+
+/**
+ * Serves the database to network clients over the protocol described in
+ * {@link Protocol}. Every connection runs on its own virtual thread with
+ * its own session, and all of them share one {@link Engine}, so a blocked
+ * client only parks its own thread.
+ */
+public class Server implements Closeable {
+
+    public static final int DEFAULT_PORT = 6543;
+
+    private final ServerSocket serverSocket;
+    private final Engine engine;
+    private long connections;
+
+    /**
+     * @param port   - the port to listen on, 0 for any free one
+     * @param engine - the engine the connections share
+     * @throws IOException
+     */
+    public Server(int port, Engine engine) throws IOException {
+        this.serverSocket = new ServerSocket(port);
+        this.engine = engine;
+        ConsoleRouter.install();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * accepts connections until the server is closed
+     *
+     * @throws IOException
+     */
+    public void serve() throws IOException {
+        ConsoleRouter.console().println("Listening on port " + getPort() + ".");
+        while (true) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException ex) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                throw ex;
+            }
+            Thread.ofVirtual().name("connection-" + ++connections).start(new Connection(socket, engine));
+        }
+    }
+
+    /**
+     * stops accepting connections; open ones run until their clients leave
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
@@ -0,0 +1,331 @@
+package sql;
+
+import java.util.List;
+
+/**
+ * Syntax tree of a boolean expression as written in a WHERE clause. Names
+ * are not resolved here; {@link utils.Condition} binds the tree to the
+ * columns of a table and compiles it into a predicate.
+ */
+public abstract class Expression {
+
+    private final int position;
+
+    protected Expression(int position) {
+        this.position = position;
+    }
+
+    /**
+     * @return position in the statement the expression starts at
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * comparison operators, {@code <>} and {@code !=} both being NE
+     */
+    public enum Operator {
+        EQ("="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">=");
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        /**
+         * @return the operator that gives the same result with its operands
+         *         swapped
+         */
+        public Operator flip() {
+            return switch (this) {
+                case LT -> GT;
+                case LE -> GE;
+                case GT -> LT;
+                case GE -> LE;
+                default -> this;
+            };
+        }
+
+        @Override
+        public String toString() {
+            return symbol;
+        }
+    }
+
+    /**
+     * bare name; usually a column, though a word that names no column is
+     * taken as an unquoted string
+     */
+    public static final class Name extends Expression {
+        private final String name;
+
+        public Name(String name, int position) {
+            super(position);
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * aggregate of a column over the rows of a group, {@code COUNT(*)}
+     * counting the rows themselves. Outside the select list it can be used
+     * wherever a column can, and is named the way it is written with the
+     * function in capitals, such as {@code SUM(quantity)}.
+     */
+    public static final class Aggregate extends Expression {
+        public enum Function {
+            COUNT, SUM, AVG, MIN, MAX
+        }
+
+        private final Function function;
+        private final String column;
+
+        /**
+         * @param function
+         * @param column   - the column or null for {@code COUNT(*)}
+         * @param position
+         */
+        public Aggregate(Function function, String column, int position) {
+            super(position);
+            this.function = function;
+            this.column = column;
+        }
+
+        public Function getFunction() {
+            return function;
+        }
+
+        /**
+         * @return the column or null for {@code COUNT(*)}
+         */
+        public String getColumn() {
+            return column;
+        }
+
+        /**
+         * @return name of the result column
+         */
+        public String getName() {
+            return function + "(" + (column == null ? "*" : column) + ")";
+        }
+    }
+
+    /**
+     * constant value, kept as text until the type of the column it is
+     * compared with is known
+     */
+    public static final class Literal extends Expression {
+        /**
+         * STRING for quoted text, NUMBER for numbers, dates and other
+         * unquoted values, NULL for the NULL keyword and PARAMETER for
+         * {@code ?} placeholders
+         */
+        public enum Kind {
+            STRING, NUMBER, NULL, PARAMETER
+        }
+
+        private final Kind kind;
+        private final String text;
+
+        public Literal(Kind kind, String text, int position) {
+            super(position);
+            this.kind = kind;
+            this.text = text;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the value as text, or for a parameter its index counted
+         *         from 0
+         */
+        public String getText() {
+            return text;
+        }
+    }
+
+    /**
+     * {@code left op right}
+     */
+    public static final class Comparison extends Expression {
+        private final Expression left;
+        private final Operator operator;
+        private final Expression right;
+
+        public Comparison(Expression left, Operator operator, Expression right) {
+            super(left.getPosition());
+            this.left = left;
+            this.operator = operator;
+            this.right = right;
+        }
+
+        public Expression getLeft() {
+            return left;
+        }
+
+        public Operator getOperator() {
+            return operator;
+        }
+
+        public Expression getRight() {
+            return right;
+        }
+    }
+
+    /**
+     * {@code operand [NOT] BETWEEN low AND high}
+     */
+    public static final class Between extends Expression {
+        private final Expression operand;
+        private final Expression low;
+        private final Expression high;
+        private final boolean isNegated;
+
+        public Between(Expression operand, Expression low, Expression high, boolean isNegated) {
+            super(operand.getPosition());
+            this.operand = operand;
+            this.low = low;
+            this.high = high;
+            this.isNegated = isNegated;
+        }
+
+        public Expression getOperand() {
+            return operand;
+        }
+
+        public Expression getLow() {
+            return low;
+        }
+
+        public Expression getHigh() {
+            return high;
+        }
+
+        public boolean isNegated() {
+            return isNegated;
+        }
+    }
+
+    /**
+     * {@code operand [NOT] IN (value, ...)}
+     */
+    public static final class In extends Expression {
+        private final Expression operand;
+        private final List<Expression> values;
+        private final boolean isNegated;
+
+        public In(Expression operand, List<Expression> values, boolean isNegated) {
+            super(operand.getPosition());
+            this.operand = operand;
+            this.values = values;
+            this.isNegated = isNegated;
+        }
+
+        public Expression getOperand() {
+            return operand;
+        }
+
+        public List<Expression> getValues() {
+            return values;
+        }
+
+        public boolean isNegated() {
+            return isNegated;
+        }
+    }
+
+    /**
+     * {@code operand [NOT] LIKE pattern}
+     */
+    public static final class Like extends Expression {
+        private final Expression operand;
+        private final Expression pattern;
+        private final boolean isNegated;
+
+        public Like(Expression operand, Expression pattern, boolean isNegated) {
+            super(operand.getPosition());
+            this.operand = operand;
+            this.pattern = pattern;
+            this.isNegated = isNegated;
+        }
+
+        public Expression getOperand() {
+            return operand;
+        }
+
+        public Expression getPattern() {
+            return pattern;
+        }
+
+        public boolean isNegated() {
+            return isNegated;
+        }
+    }
+
+    /**
+     * {@code operand IS [NOT] NULL}
+     */
+    public static final class IsNull extends Expression {
+        private final Expression operand;
+        private final boolean isNegated;
+
+        public IsNull(Expression operand, boolean isNegated) {
+            super(operand.getPosition());
+            this.operand = operand;
+            this.isNegated = isNegated;
+        }
+
+        public Expression getOperand() {
+            return operand;
+        }
+
+        public boolean isNegated() {
+            return isNegated;
+        }
+    }
+
+    /**
+     * {@code AND} or {@code OR} of two or more operands
+     */
+    public static final class Logical extends Expression {
+        private final boolean isAnd;
+        private final List<Expression> operands;
+
+        public Logical(boolean isAnd, List<Expression> operands) {
+            super(operands.get(0).getPosition());
+            this.isAnd = isAnd;
+            this.operands = operands;
+        }
+
+        public boolean isAnd() {
+            return isAnd;
+        }
+
+        public List<Expression> getOperands() {
+            return operands;
+        }
+    }
+
+    /**
+     * {@code NOT operand}
+     */
+    public static final class Not extends Expression {
+        private final Expression operand;
+
+        public Not(Expression operand, int position) {
+            super(position);
+            this.operand = operand;
+        }
+
+        public Expression getOperand() {
+            return operand;
+        }
+    }
+}
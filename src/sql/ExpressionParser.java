@@ -0,0 +1,329 @@
+package sql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recursive descent parser for boolean expressions. NOT binds tighter than
+ * AND, which binds tighter than OR, and parentheses group as usual.
+ *
+ * <pre>
+ * expression := and { OR and }
+ * and        := not { AND not }
+ * not        := NOT not | '(' expression ')' | predicate
+ * predicate  := operand ( op operand | [NOT] BETWEEN operand AND operand
+ *             | [NOT] IN '(' operand { ',' operand } ')' | [NOT] LIKE operand
+ *             | IS [NOT] NULL )
+ * operand    := [ name '.' ] name | value | aggregate
+ * aggregate  := ( COUNT | SUM | AVG | MIN | MAX ) '(' ( '*' | [ name '.' ] name ) ')'
+ * </pre>
+ *
+ * Only COUNT takes {@code *}.
+ */
+public class ExpressionParser {
+
+    protected final Lexer lexer;
+    private int parameterCount;
+    private final List<Expression.Aggregate> aggregates = new ArrayList<Expression.Aggregate>();
+
+    public ExpressionParser(Lexer lexer) {
+        this.lexer = lexer;
+    }
+
+    /**
+     * parses a complete WHERE clause
+     *
+     * @param text
+     * @return Expression
+     * @throws SyntaxException
+     */
+    public static Expression parseCondition(String text) throws SyntaxException {
+        ExpressionParser parser = new ExpressionParser(new Lexer(text));
+        Expression expression = parser.parseExpression();
+        parser.expect(TokenType.EOF);
+        return expression;
+    }
+
+    /**
+     * @return number of {@code ?} parameters read so far
+     */
+    public int getParameterCount() {
+        return parameterCount;
+    }
+
+    /**
+     * @return the aggregates read so far, in order
+     */
+    public List<Expression.Aggregate> getAggregates() {
+        return aggregates;
+    }
+
+    /**
+     * parses an expression, stopping at the first token that cannot continue
+     * it
+     *
+     * @return Expression
+     * @throws SyntaxException
+     */
+    public Expression parseExpression() throws SyntaxException {
+        Expression first = parseAnd();
+        if (!lexer.peek().is("OR")) {
+            return first;
+        }
+        List<Expression> operands = new ArrayList<Expression>();
+        operands.add(first);
+        while (acceptKeyword("OR")) {
+            operands.add(parseAnd());
+        }
+        return new Expression.Logical(false, operands);
+    }
+
+    private Expression parseAnd() throws SyntaxException {
+        Expression first = parseNot();
+        if (!lexer.peek().is("AND")) {
+            return first;
+        }
+        List<Expression> operands = new ArrayList<Expression>();
+        operands.add(first);
+        while (acceptKeyword("AND")) {
+            operands.add(parseNot());
+        }
+        return new Expression.Logical(true, operands);
+    }
+
+    private Expression parseNot() throws SyntaxException {
+        Token token = lexer.peek();
+        if (token.is("NOT")) {
+            lexer.next();
+            return new Expression.Not(parseNot(), token.getStart());
+        }
+        if (token.getType() == TokenType.LEFT_PAREN) {
+            lexer.next();
+            Expression expression = parseExpression();
+            expect(TokenType.RIGHT_PAREN);
+            return expression;
+        }
+        return parsePredicate();
+    }
+
+    private Expression parsePredicate() throws SyntaxException {
+        Expression operand = parseOperand();
+        Token token = lexer.next();
+        Expression.Operator operator = operator(token.getType());
+        if (operator != null) {
+            return new Expression.Comparison(operand, operator, parseOperand());
+        }
+        if (token.is("IS")) {
+            boolean isNegated = acceptKeyword("NOT");
+            expectKeyword("NULL");
+            return new Expression.IsNull(operand, isNegated);
+        }
+        boolean isNegated = token.is("NOT");
+        if (isNegated) {
+            token = lexer.next();
+        }
+        if (token.is("BETWEEN")) {
+            Expression low = parseOperand();
+            expectKeyword("AND");
+            return new Expression.Between(operand, low, parseOperand(), isNegated);
+        }
+        if (token.is("IN")) {
+            expect(TokenType.LEFT_PAREN);
+            List<Expression> values = new ArrayList<Expression>();
+            do {
+                values.add(parseOperand());
+            } while (accept(TokenType.COMMA));
+            expect(TokenType.RIGHT_PAREN);
+            return new Expression.In(operand, values, isNegated);
+        }
+        if (token.is("LIKE")) {
+            return new Expression.Like(operand, parseOperand(), isNegated);
+        }
+        throw new SyntaxException("Expected a comparison but found " + token, token.getStart());
+    }
+
+    private static Expression.Operator operator(TokenType type) {
+        return switch (type) {
+            case EQ -> Expression.Operator.EQ;
+            case NE -> Expression.Operator.NE;
+            case LT -> Expression.Operator.LT;
+            case LE -> Expression.Operator.LE;
+            case GT -> Expression.Operator.GT;
+            case GE -> Expression.Operator.GE;
+            default -> null;
+        };
+    }
+
+    /**
+     * parses a name or a literal. Unquoted values written without spaces,
+     * such as {@code -5} or {@code 2020-01-31}, are read as one literal, and
+     * a name may be qualified with its table as {@code table.column}.
+     *
+     * @return Expression
+     * @throws SyntaxException
+     */
+    protected Expression parseOperand() throws SyntaxException {
+        Token token = lexer.next();
+        switch (token.getType()) {
+            case STRING:
+                return new Expression.Literal(Expression.Literal.Kind.STRING, token.value(), token.getStart());
+            case PARAMETER:
+                return new Expression.Literal(Expression.Literal.Kind.PARAMETER, String.valueOf(parameterCount++),
+                        token.getStart());
+            case NUMBER:
+            case MINUS:
+                return new Expression.Literal(Expression.Literal.Kind.NUMBER, unquoted(token), token.getStart());
+            case IDENTIFIER:
+                if (token.is("NULL")) {
+                    return new Expression.Literal(Expression.Literal.Kind.NULL, null, token.getStart());
+                }
+                if (lexer.peek().getType() == TokenType.LEFT_PAREN && function(token) != null) {
+                    return parseAggregate(token);
+                }
+                if (isAdjacent(token, lexer.peek()) && lexer.peek().getType() != TokenType.DOT) {
+                    return new Expression.Literal(Expression.Literal.Kind.NUMBER, unquoted(token), token.getStart());
+                }
+                if (accept(TokenType.DOT)) {
+                    return new Expression.Name(token.value() + "." + expect(TokenType.IDENTIFIER).value(),
+                            token.getStart());
+                }
+                return new Expression.Name(token.value(), token.getStart());
+            default:
+                throw new SyntaxException("Expected a column or value but found " + token, token.getStart());
+        }
+    }
+
+    /**
+     * parses the rest of an aggregate after its function name
+     *
+     * @param token - the function name
+     * @return Expression.Aggregate
+     * @throws SyntaxException
+     */
+    protected Expression.Aggregate parseAggregate(Token token) throws SyntaxException {
+        Expression.Aggregate.Function function = function(token);
+        expect(TokenType.LEFT_PAREN);
+        String column = null;
+        if (function != Expression.Aggregate.Function.COUNT || !accept(TokenType.STAR)) {
+            column = expectName();
+            if (accept(TokenType.DOT)) {
+                column = column + "." + expectName();
+            }
+        }
+        expect(TokenType.RIGHT_PAREN);
+        Expression.Aggregate aggregate = new Expression.Aggregate(function, column, token.getStart());
+        aggregates.add(aggregate);
+        return aggregate;
+    }
+
+    /**
+     * @return the aggregate function a name stands for or null
+     */
+    protected static Expression.Aggregate.Function function(Token token) {
+        for (Expression.Aggregate.Function function : Expression.Aggregate.Function.values()) {
+            if (token.is(function.name())) {
+                return function;
+            }
+        }
+        return null;
+    }
+
+    private String unquoted(Token first) throws SyntaxException {
+        Token last = first;
+        while (isAdjacent(last, lexer.peek())) {
+            last = lexer.next();
+        }
+        if (last.getType() == TokenType.MINUS) {
+            throw new SyntaxException("Expected a value but found " + lexer.peek(), lexer.peek().getStart());
+        }
+        return lexer.getSource().substring(first.getStart(), last.getEnd());
+    }
+
+    private static boolean isAdjacent(Token previous, Token next) {
+        if (next.getStart() != previous.getEnd()) {
+            return false;
+        }
+        return switch (next.getType()) {
+            case NUMBER, IDENTIFIER, MINUS, DOT -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * consumes the next token if it has the given type
+     *
+     * @param type
+     * @return boolean
+     * @throws SyntaxException
+     */
+    protected boolean accept(TokenType type) throws SyntaxException {
+        if (lexer.peek().getType() == type) {
+            lexer.next();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * consumes the next token if it is the given keyword
+     *
+     * @param keyword
+     * @return boolean
+     * @throws SyntaxException
+     */
+    protected boolean acceptKeyword(String keyword) throws SyntaxException {
+        if (lexer.peek().is(keyword)) {
+            lexer.next();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param type
+     * @return the next token, which must have the given type
+     * @throws SyntaxException
+     */
+    protected Token expect(TokenType type) throws SyntaxException {
+        Token token = lexer.next();
+        if (token.getType() != type) {
+            throw new SyntaxException("Expected " + describe(type) + " but found " + token, token.getStart());
+        }
+        return token;
+    }
+
+    /**
+     * @param keyword
+     * @return the next token, which must be the given keyword
+     * @throws SyntaxException
+     */
+    protected Token expectKeyword(String keyword) throws SyntaxException {
+        Token token = lexer.next();
+        if (!token.is(keyword)) {
+            throw new SyntaxException("Expected " + keyword + " but found " + token, token.getStart());
+        }
+        return token;
+    }
+
+    /**
+     * @return the name the next token, which must be a name, gives
+     * @throws SyntaxException
+     */
+    protected String expectName() throws SyntaxException {
+        return expect(TokenType.IDENTIFIER).value();
+    }
+
+    private static String describe(TokenType type) {
+        return switch (type) {
+            case EOF -> "end of statement";
+            case LEFT_PAREN -> "'('";
+            case RIGHT_PAREN -> "')'";
+            case COMMA -> "','";
+            case EQ -> "'='";
+            case STRING -> "a quoted string";
+            case IDENTIFIER -> "a name";
+            case SEMICOLON -> "';'";
+            default -> type.name().toLowerCase();
+        };
+    }
+}
@@ -0,0 +1,171 @@
+package sql;
+
+/**
+ * Single pass tokenizer for SQL statements. Tokens are produced on demand
+ * with one token of lookahead and never copy text out of the statement.
+ * Identifiers may be written plain or in backticks, string literals in
+ * single or double quotes with the quote doubled to escape it, and a
+ * {@code ?} stands for a statement parameter.
+ */
+public class Lexer {
+
+    private final String source;
+    private int position;
+    private Token peeked;
+
+    public Lexer(String source) {
+        this.source = source;
+    }
+
+    /**
+     * @return the statement being tokenized
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return the next token without consuming it
+     * @throws SyntaxException
+     */
+    public Token peek() throws SyntaxException {
+        if (peeked == null) {
+            peeked = scan();
+        }
+        return peeked;
+    }
+
+    /**
+     * @return the next token
+     * @throws SyntaxException
+     */
+    public Token next() throws SyntaxException {
+        Token token = peek();
+        peeked = null;
+        return token;
+    }
+
+    private Token scan() throws SyntaxException {
+        int length = source.length();
+        while (position < length && Character.isWhitespace(source.charAt(position))) {
+            position++;
+        }
+        int start = position;
+        if (position == length) {
+            return new Token(TokenType.EOF, source, start, start);
+        }
+        char c = source.charAt(position++);
+        switch (c) {
+            case ',':
+                return token(TokenType.COMMA, start);
+            case '.':
+                if (position < length && Character.isDigit(source.charAt(position))) {
+                    return number(start);
+                }
+                return token(TokenType.DOT, start);
+            case ';':
+                return token(TokenType.SEMICOLON, start);
+            case '(':
+                return token(TokenType.LEFT_PAREN, start);
+            case ')':
+                return token(TokenType.RIGHT_PAREN, start);
+            case '*':
+                return token(TokenType.STAR, start);
+            case '+':
+                return token(TokenType.PLUS, start);
+            case '-':
+                return token(TokenType.MINUS, start);
+            case '/':
+                return token(TokenType.SLASH, start);
+            case '?':
+                return token(TokenType.PARAMETER, start);
+            case '=':
+                return token(TokenType.EQ, start);
+            case '!':
+                if (match('=')) {
+                    return token(TokenType.NE, start);
+                }
+                throw new SyntaxException("Unexpected character '!'", start);
+            case '<':
+                if (match('=')) {
+                    return token(TokenType.LE, start);
+                }
+                if (match('>')) {
+                    return token(TokenType.NE, start);
+                }
+                return token(TokenType.LT, start);
+            case '>':
+                return token(match('=') ? TokenType.GE : TokenType.GT, start);
+            case '\'':
+            case '"':
+                return string(c, start);
+            case '`':
+                while (position < length && source.charAt(position) != '`') {
+                    position++;
+                }
+                if (position == length) {
+                    throw new SyntaxException("Unterminated quoted identifier", start);
+                }
+                position++;
+                return token(TokenType.IDENTIFIER, start);
+            default:
+                if (Character.isDigit(c)) {
+                    return number(start);
+                }
+                if (Character.isLetter(c) || c == '_') {
+                    while (position < length && (Character.isLetterOrDigit(source.charAt(position))
+                            || source.charAt(position) == '_')) {
+                        position++;
+                    }
+                    return token(TokenType.IDENTIFIER, start);
+                }
+                throw new SyntaxException("Unexpected character '" + c + "'", start);
+        }
+    }
+
+    private boolean match(char expected) {
+        if (position < source.length() && source.charAt(position) == expected) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private Token number(int start) {
+        int length = source.length();
+        while (position < length && (Character.isDigit(source.charAt(position)) || source.charAt(position) == '.')) {
+            position++;
+        }
+        if (position < length && (source.charAt(position) == 'e' || source.charAt(position) == 'E')) {
+            int exponent = position + 1;
+            if (exponent < length && (source.charAt(exponent) == '+' || source.charAt(exponent) == '-')) {
+                exponent++;
+            }
+            if (exponent < length && Character.isDigit(source.charAt(exponent))) {
+                position = exponent;
+                while (position < length && Character.isDigit(source.charAt(position))) {
+                    position++;
+                }
+            }
+        }
+        return token(TokenType.NUMBER, start);
+    }
+
+    private Token string(char quote, int start) throws SyntaxException {
+        int length = source.length();
+        while (position < length) {
+            if (source.charAt(position++) == quote) {
+                if (position < length && source.charAt(position) == quote) {
+                    position++;
+                } else {
+                    return token(TokenType.STRING, start);
+                }
+            }
+        }
+        throw new SyntaxException("Unterminated string literal", start);
+    }
+
+    private Token token(TokenType type, int start) {
+        return new Token(type, source, start, position);
+    }
+}
@@ -0,0 +1,129 @@
+package sql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Statement text in the form plans are cached under. Tokens are separated by
+ * single spaces and, in data statements, every literal is replaced by a
+ * {@code ?} placeholder, so statements that only differ in their values share
+ * one plan. The literals are kept and handed back as parameter values by
+ * {@link #bind(Object[])}, together with the values for placeholders the
+ * statement was written with.
+ */
+public final class NormalizedStatement {
+
+    private final String text;
+    private final String[] constants;
+    private final int[] arguments;
+    private final int argumentCount;
+
+    private NormalizedStatement(String text, String[] constants, int[] arguments, int argumentCount) {
+        this.text = text;
+        this.constants = constants;
+        this.arguments = arguments;
+        this.argumentCount = argumentCount;
+    }
+
+    /**
+     * normalizes a statement. Only SELECT, INSERT, UPDATE, DELETE and EXECUTE
+     * have their literals lifted out; other statements keep their text as
+     * written.
+     *
+     * @param statement
+     * @return NormalizedStatement
+     * @throws SyntaxException
+     */
+    public static NormalizedStatement of(String statement) throws SyntaxException {
+        Lexer lexer = new Lexer(statement);
+        Token first = lexer.peek();
+        if (!(first.is("SELECT") || first.is("INSERT") || first.is("UPDATE") || first.is("DELETE")
+                || first.is("EXECUTE"))) {
+            return new NormalizedStatement(statement.trim(), new String[0], new int[0], 0);
+        }
+        StringBuilder text = new StringBuilder(statement.length());
+        List<String> constants = new ArrayList<String>();
+        List<Integer> arguments = new ArrayList<Integer>();
+        int argumentCount = 0;
+        for (Token token = lexer.next(); token.getType() != TokenType.EOF; token = lexer.next()) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            String constant = null;
+            if (token.getType() == TokenType.STRING) {
+                constant = token.value();
+            } else if (token.getType() == TokenType.NUMBER
+                    || token.getType() == TokenType.MINUS && isAdjacent(token, lexer.peek())
+                    || token.getType() == TokenType.IDENTIFIER && isAdjacent(token, lexer.peek())
+                            && lexer.peek().getType() != TokenType.DOT) {
+                Token last = token;
+                while (isAdjacent(last, lexer.peek())) {
+                    last = lexer.next();
+                }
+                constant = statement.substring(token.getStart(), last.getEnd());
+            } else if (token.getType() == TokenType.PARAMETER) {
+                constants.add(null);
+                arguments.add(argumentCount++);
+                text.append('?');
+                continue;
+            }
+            if (constant == null) {
+                text.append(token.text());
+            } else {
+                constants.add(constant);
+                arguments.add(-1);
+                text.append('?');
+            }
+        }
+        int[] argumentIndexes = new int[arguments.size()];
+        for (int i = 0; i < argumentIndexes.length; i++) {
+            argumentIndexes[i] = arguments.get(i);
+        }
+        return new NormalizedStatement(text.toString(), constants.toArray(new String[0]), argumentIndexes,
+                argumentCount);
+    }
+
+    private static boolean isAdjacent(Token previous, Token next) {
+        if (next.getStart() != previous.getEnd()) {
+            return false;
+        }
+        return switch (next.getType()) {
+            case NUMBER, IDENTIFIER, MINUS, DOT -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * @return the text plans are cached under
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return number of placeholders the statement was written with
+     */
+    public int getArgumentCount() {
+        return argumentCount;
+    }
+
+    /**
+     * fills in the parameters of the normalized text
+     *
+     * @param values - values for the placeholders the statement was written
+     *               with, in order
+     * @return a value for every placeholder of the normalized text
+     * @throws Exception
+     */
+    public Object[] bind(Object[] values) throws Exception {
+        if (values.length != argumentCount) {
+            System.out.println("Expected " + argumentCount + " parameter(s) but got " + values.length);
+            throw new Exception("Expected " + argumentCount + " parameter(s) but got " + values.length);
+        }
+        Object[] parameters = new Object[constants.length];
+        for (int i = 0; i < parameters.length; i++) {
+            parameters[i] = arguments[i] == -1 ? constants[i] : values[arguments[i]];
+        }
+        return parameters;
+    }
+}
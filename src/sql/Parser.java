@@ -0,0 +1,379 @@
+package sql;
+
+import storage.ColumnType;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recursive descent parser for the statements the console accepts. It reads
+ * the statement in one pass over the tokens of a {@link Lexer} and builds a
+ * {@link Statement}; errors carry the position they were found at.
+ *
+ * <pre>
+ * statement := CREATE DATABASE name
+ *            | CREATE TABLE name '(' name type [ '(' size ')' ] [PRIMARY KEY] { ',' ... } ')'
+ *            | CREATE INDEX name ON name '(' name ')'
+ *            | INSERT INTO name [ '(' name { ',' name } ')' ] VALUES row { ',' row }
+ *            | LOAD DATA INFILE string INTO TABLE name [ FIELDS TERMINATED BY string ]
+ *              [ IGNORE number ( LINES | ROWS ) ] [ '(' name { ',' name } ')' ]
+ *            | SELECT ( '*' | item { ',' item } ) FROM name [ alias ]
+ *              { [INNER] JOIN name [ alias ] ON expression } [ WHERE expression ]
+ *              [ GROUP BY column { ',' column } ] [ HAVING expression ]
+ *              [ ORDER BY item [ ASC | DESC ] { ',' item [ ASC | DESC ] } ]
+ *              [ LIMIT value [ OFFSET value ] ]
+ *            | UPDATE name SET name '=' value { ',' name '=' value } [ WHERE expression ]
+ *            | DELETE FROM name [ WHERE expression ]
+ *            | BEGIN TRANSACTION | COMMIT | ROLLBACK | END TRANSACTION
+ *            | PREPARE name FROM string
+ *            | EXECUTE name [ USING value { ',' value } ]
+ *            | DEALLOCATE PREPARE name
+ *            | SHOW AUDIT [ WHERE expression ]
+ *            | SHOW METRICS
+ *
+ * row       := '(' value { ',' value } ')'
+ * item      := column | aggregate
+ * column    := [ name '.' ] name
+ * alias     := [AS] name
+ * </pre>
+ *
+ * Aggregates are written as in {@link ExpressionParser} and may not appear
+ * in ON or WHERE. A statement may end with a semicolon.
+ */
+public class Parser extends ExpressionParser {
+
+    public Parser(Lexer lexer) {
+        super(lexer);
+    }
+
+    /**
+     * parses a single statement
+     *
+     * @param text
+     * @return Statement
+     * @throws SyntaxException
+     */
+    public static Statement parse(String text) throws SyntaxException {
+        Parser parser = new Parser(new Lexer(text));
+        Statement statement = parser.parseStatement();
+        parser.accept(TokenType.SEMICOLON);
+        parser.expect(TokenType.EOF);
+        return statement;
+    }
+
+    /**
+     * @return the statement starting at the next token
+     * @throws SyntaxException
+     */
+    public Statement parseStatement() throws SyntaxException {
+        Token token = lexer.next();
+        if (token.is("CREATE")) {
+            return parseCreate();
+        } else if (token.is("INSERT")) {
+            return parseInsert();
+        } else if (token.is("LOAD")) {
+            return parseLoadData();
+        } else if (token.is("SELECT")) {
+            return parseSelect();
+        } else if (token.is("UPDATE")) {
+            return parseUpdate();
+        } else if (token.is("DELETE")) {
+            expectKeyword("FROM");
+            String tableName = expectName();
+            return new Statement.Delete(tableName, parseWhere(), getParameterCount());
+        } else if (token.is("BEGIN")) {
+            expectKeyword("TRANSACTION");
+            return new Statement.TransactionControl(Statement.TransactionControl.Kind.BEGIN);
+        } else if (token.is("COMMIT")) {
+            return new Statement.TransactionControl(Statement.TransactionControl.Kind.COMMIT);
+        } else if (token.is("ROLLBACK")) {
+            return new Statement.TransactionControl(Statement.TransactionControl.Kind.ROLLBACK);
+        } else if (token.is("END")) {
+            expectKeyword("TRANSACTION");
+            return new Statement.TransactionControl(Statement.TransactionControl.Kind.END);
+        } else if (token.is("PREPARE")) {
+            String name = expectName();
+            expectKeyword("FROM");
+            return new Statement.Prepare(name, expect(TokenType.STRING).value());
+        } else if (token.is("EXECUTE")) {
+            String name = expectName();
+            List<Expression> arguments = new ArrayList<Expression>();
+            if (acceptKeyword("USING")) {
+                arguments = parseValues();
+            }
+            return new Statement.Execute(name, arguments, getParameterCount());
+        } else if (token.is("DEALLOCATE")) {
+            expectKeyword("PREPARE");
+            return new Statement.Deallocate(expectName());
+        } else if (token.is("SHOW")) {
+            if (acceptKeyword("METRICS")) {
+                return new Statement.ShowMetrics();
+            }
+            expectKeyword("AUDIT");
+            return new Statement.ShowAudit(parseWhere(), getParameterCount());
+        }
+        throw new SyntaxException("Unknown statement " + token, token.getStart());
+    }
+
+    private Statement parseCreate() throws SyntaxException {
+        Token token = lexer.next();
+        if (token.is("DATABASE")) {
+            return new Statement.CreateDatabase(expectName());
+        } else if (token.is("TABLE")) {
+            return parseCreateTable();
+        } else if (token.is("INDEX")) {
+            String indexName = expectName();
+            expectKeyword("ON");
+            String tableName = expectName();
+            expect(TokenType.LEFT_PAREN);
+            String column = expectName();
+            expect(TokenType.RIGHT_PAREN);
+            return new Statement.CreateIndex(indexName, tableName, column);
+        }
+        throw new SyntaxException("Expected DATABASE, TABLE or INDEX but found " + token, token.getStart());
+    }
+
+    private Statement parseCreateTable() throws SyntaxException {
+        String tableName = expectName();
+        Map<String, String> columns = new LinkedHashMap<String, String>();
+        String primaryKey = null;
+        expect(TokenType.LEFT_PAREN);
+        do {
+            Token column = expect(TokenType.IDENTIFIER);
+            if (columns.containsKey(column.value())) {
+                throw new SyntaxException("Duplicate column " + column, column.getStart());
+            }
+            Token type = expect(TokenType.IDENTIFIER);
+            try {
+                ColumnType.of(type.value());
+            } catch (IllegalArgumentException ex) {
+                throw new SyntaxException(ex.getMessage(), type.getStart());
+            }
+            if (accept(TokenType.LEFT_PAREN)) {
+                do {
+                    expect(TokenType.NUMBER);
+                } while (accept(TokenType.COMMA));
+                expect(TokenType.RIGHT_PAREN);
+            }
+            columns.put(column.value(), type.value());
+            Token primary = lexer.peek();
+            if (acceptKeyword("PRIMARY")) {
+                expectKeyword("KEY");
+                if (primaryKey != null) {
+                    throw new SyntaxException("Only one primary key column is supported", primary.getStart());
+                }
+                primaryKey = column.value();
+            }
+        } while (accept(TokenType.COMMA));
+        expect(TokenType.RIGHT_PAREN);
+        return new Statement.CreateTable(tableName, columns, primaryKey);
+    }
+
+    private Statement parseInsert() throws SyntaxException {
+        expectKeyword("INTO");
+        String tableName = expectName();
+        List<String> columns = new ArrayList<String>();
+        if (accept(TokenType.LEFT_PAREN)) {
+            columns = parseNames();
+            expect(TokenType.RIGHT_PAREN);
+        }
+        expectKeyword("VALUES");
+        List<List<Expression>> rows = new ArrayList<List<Expression>>();
+        do {
+            Token start = expect(TokenType.LEFT_PAREN);
+            List<Expression> values = parseValues();
+            if (!rows.isEmpty() && values.size() != rows.get(0).size()) {
+                throw new SyntaxException("Expected " + rows.get(0).size() + " values in row", start.getStart());
+            }
+            rows.add(values);
+            expect(TokenType.RIGHT_PAREN);
+        } while (accept(TokenType.COMMA));
+        return new Statement.Insert(tableName, columns, rows, getParameterCount());
+    }
+
+    private Statement parseLoadData() throws SyntaxException {
+        expectKeyword("DATA");
+        expectKeyword("INFILE");
+        String fileName = expect(TokenType.STRING).value();
+        expectKeyword("INTO");
+        expectKeyword("TABLE");
+        String tableName = expectName();
+        char separator = ',';
+        if (acceptKeyword("FIELDS")) {
+            expectKeyword("TERMINATED");
+            expectKeyword("BY");
+            Token token = expect(TokenType.STRING);
+            String value = token.value().replace("\\t", "\t");
+            if (value.length() != 1) {
+                throw new SyntaxException("Field separator must be a single character", token.getStart());
+            }
+            separator = value.charAt(0);
+        }
+        int ignoredLines = 0;
+        if (acceptKeyword("IGNORE")) {
+            Token count = expect(TokenType.NUMBER);
+            try {
+                ignoredLines = Integer.parseInt(count.text());
+            } catch (NumberFormatException ex) {
+                throw new SyntaxException("Expected a line count but found " + count, count.getStart());
+            }
+            if (!acceptKeyword("LINES")) {
+                expectKeyword("ROWS");
+            }
+        }
+        List<String> columns = new ArrayList<String>();
+        if (accept(TokenType.LEFT_PAREN)) {
+            columns = parseNames();
+            expect(TokenType.RIGHT_PAREN);
+        }
+        return new Statement.LoadData(fileName, tableName, separator, ignoredLines, columns);
+    }
+
+    private Statement parseSelect() throws SyntaxException {
+        List<String> columns = new ArrayList<String>();
+        if (!accept(TokenType.STAR)) {
+            do {
+                columns.add(parseItem());
+            } while (accept(TokenType.COMMA));
+        }
+        expectKeyword("FROM");
+        String tableName = expectName();
+        String alias = parseAlias();
+        List<Statement.Join> joins = new ArrayList<Statement.Join>();
+        while (lexer.peek().is("JOIN") || lexer.peek().is("INNER")) {
+            acceptKeyword("INNER");
+            expectKeyword("JOIN");
+            String joinedTable = expectName();
+            String joinedAlias = parseAlias();
+            expectKeyword("ON");
+            joins.add(new Statement.Join(joinedTable, joinedAlias, parseClause("ON")));
+        }
+        Expression where = parseWhere();
+        List<String> groupBy = new ArrayList<String>();
+        if (acceptKeyword("GROUP")) {
+            expectKeyword("BY");
+            do {
+                String name = expectName();
+                groupBy.add(accept(TokenType.DOT) ? name + "." + expectName() : name);
+            } while (accept(TokenType.COMMA));
+        }
+        Expression having = acceptKeyword("HAVING") ? parseExpression() : null;
+        List<Statement.SortKey> orderBy = new ArrayList<Statement.SortKey>();
+        if (acceptKeyword("ORDER")) {
+            expectKeyword("BY");
+            do {
+                String column = parseItem();
+                boolean isDescending = acceptKeyword("DESC");
+                if (!isDescending) {
+                    acceptKeyword("ASC");
+                }
+                orderBy.add(new Statement.SortKey(column, isDescending));
+            } while (accept(TokenType.COMMA));
+        }
+        Map<String, Expression.Aggregate> aggregates = new LinkedHashMap<String, Expression.Aggregate>();
+        for (Expression.Aggregate aggregate : getAggregates()) {
+            aggregates.putIfAbsent(aggregate.getName(), aggregate);
+        }
+        Expression limit = null;
+        Expression offset = null;
+        if (acceptKeyword("LIMIT")) {
+            limit = parseOperand();
+            if (acceptKeyword("OFFSET")) {
+                offset = parseOperand();
+            }
+        }
+        return new Statement.Select(tableName, alias, joins, columns, where, groupBy, having,
+                new ArrayList<Expression.Aggregate>(aggregates.values()), orderBy, limit, offset,
+                getParameterCount());
+    }
+
+    /**
+     * @return a column of the select list or ORDER BY, {@code table.column}
+     *         where qualified, or an aggregate by its name
+     */
+    private String parseItem() throws SyntaxException {
+        Token token = expect(TokenType.IDENTIFIER);
+        if (lexer.peek().getType() == TokenType.LEFT_PAREN && function(token) != null) {
+            return parseAggregate(token).getName();
+        }
+        return accept(TokenType.DOT) ? token.value() + "." + expectName() : token.value();
+    }
+
+    private Statement parseUpdate() throws SyntaxException {
+        String tableName = expectName();
+        expectKeyword("SET");
+        Map<String, Expression> assignments = new LinkedHashMap<String, Expression>();
+        do {
+            Token column = expect(TokenType.IDENTIFIER);
+            expect(TokenType.EQ);
+            if (assignments.put(column.value(), parseOperand()) != null) {
+                throw new SyntaxException("Column " + column + " is set twice", column.getStart());
+            }
+        } while (accept(TokenType.COMMA));
+        return new Statement.Update(tableName, assignments, parseWhere(), getParameterCount());
+    }
+
+    /**
+     * @return the name a table of FROM or JOIN is given or null if it has
+     *         none
+     */
+    private String parseAlias() throws SyntaxException {
+        if (acceptKeyword("AS")) {
+            return expectName();
+        }
+        Token token = lexer.peek();
+        if (token.getType() != TokenType.IDENTIFIER) {
+            return null;
+        }
+        for (String keyword : new String[] { "WHERE", "JOIN", "INNER", "ON", "GROUP", "HAVING", "ORDER", "LIMIT" }) {
+            if (token.is(keyword)) {
+                return null;
+            }
+        }
+        return lexer.next().value();
+    }
+
+    /**
+     * @return the condition after WHERE or null if there is none
+     * @throws SyntaxException
+     */
+    private Expression parseWhere() throws SyntaxException {
+        return acceptKeyword("WHERE") ? parseClause("WHERE") : null;
+    }
+
+    /**
+     * parses a condition that is checked on single rows, where an
+     * aggregate has no value
+     *
+     * @param clause - the keyword the condition follows
+     * @return Expression
+     * @throws SyntaxException
+     */
+    private Expression parseClause(String clause) throws SyntaxException {
+        int count = getAggregates().size();
+        Expression expression = parseExpression();
+        if (getAggregates().size() > count) {
+            throw new SyntaxException("Aggregates are not allowed in " + clause,
+                    getAggregates().get(count).getPosition());
+        }
+        return expression;
+    }
+
+    private List<String> parseNames() throws SyntaxException {
+        List<String> names = new ArrayList<String>();
+        do {
+            names.add(expectName());
+        } while (accept(TokenType.COMMA));
+        return names;
+    }
+
+    private List<Expression> parseValues() throws SyntaxException {
+        List<Expression> values = new ArrayList<Expression>();
+        do {
+            values.add(parseOperand());
+        } while (accept(TokenType.COMMA));
+        return values;
+    }
+}
@@ -0,0 +1,70 @@
+package sql;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of parsed statements keyed by their
+ * {@link NormalizedStatement} text. Statements hold no state of their own
+ * while they run, so one cached statement can serve any number of callers.
+ */
+public class PlanCache {
+
+    private final int capacity;
+    private final Map<String, Statement> plans;
+    private long hits;
+    private long misses;
+
+    public PlanCache(int capacity) {
+        this.capacity = capacity;
+        this.plans = new LinkedHashMap<String, Statement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Statement> eldest) {
+                return size() > PlanCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @param text - normalized statement text
+     * @return the cached statement or null
+     */
+    public synchronized Statement get(String text) {
+        Statement plan = plans.get(text);
+        if (plan == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return plan;
+    }
+
+    /**
+     * @param text - normalized statement text
+     * @param plan
+     */
+    public synchronized void put(String text, Statement plan) {
+        plans.put(text, plan);
+    }
+
+    /**
+     * @return number of cached statements
+     */
+    public synchronized int size() {
+        return plans.size();
+    }
+
+    /**
+     * @return lookups that found a cached statement
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return lookups that had to parse the statement
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,36 @@
+package sql;
+
+/**
+ * Statement registered with {@code PREPARE}: the parsed plan together with
+ * the normalized text that maps the caller's parameters onto it
+ */
+public final class PreparedStatement {
+
+    private final NormalizedStatement text;
+    private final Statement plan;
+
+    public PreparedStatement(NormalizedStatement text, Statement plan) {
+        this.text = text;
+        this.plan = plan;
+    }
+
+    /**
+     * @return number of {@code ?} parameters to pass on EXECUTE
+     */
+    public int getParameterCount() {
+        return text.getArgumentCount();
+    }
+
+    public Statement getPlan() {
+        return plan;
+    }
+
+    /**
+     * @param values - the caller's parameter values, in order
+     * @return a value for every parameter of the plan
+     * @throws Exception
+     */
+    public Object[] bind(Object[] values) throws Exception {
+        return text.bind(values);
+    }
+}
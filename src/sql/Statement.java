@@ -0,0 +1,556 @@
+package sql;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parsed form of a statement. Values are kept as {@link Expression}s so a
+ * statement written with {@code ?} placeholders is parsed once and can be run
+ * with different parameters; table and column names are checked when the
+ * statement runs.
+ */
+public abstract class Statement {
+
+    private final int parameterCount;
+
+    protected Statement(int parameterCount) {
+        this.parameterCount = parameterCount;
+    }
+
+    /**
+     * @return number of {@code ?} placeholders in the statement
+     */
+    public int getParameterCount() {
+        return parameterCount;
+    }
+
+    /**
+     * resolves a value of the statement to text: a literal's own text, a
+     * parameter's value or an unquoted word
+     *
+     * @param value
+     * @param parameters
+     * @return the text or null for NULL
+     */
+    public static String text(Expression value, Object[] parameters) {
+        if (value instanceof Expression.Name) {
+            return ((Expression.Name) value).getName();
+        }
+        Expression.Literal literal = (Expression.Literal) value;
+        switch (literal.getKind()) {
+            case NULL:
+                return null;
+            case PARAMETER:
+                Object parameter = parameters[Integer.parseInt(literal.getText())];
+                return parameter == null ? null : parameter.toString();
+            default:
+                return literal.getText();
+        }
+    }
+
+    /**
+     * {@code CREATE DATABASE name}
+     */
+    public static final class CreateDatabase extends Statement {
+        private final String databaseName;
+
+        public CreateDatabase(String databaseName) {
+            super(0);
+            this.databaseName = databaseName;
+        }
+
+        public String getDatabaseName() {
+            return databaseName;
+        }
+    }
+
+    /**
+     * {@code CREATE TABLE name (column type [PRIMARY KEY], ...)}
+     */
+    public static final class CreateTable extends Statement {
+        private final String tableName;
+        private final Map<String, String> columns;
+        private final String primaryKey;
+
+        public CreateTable(String tableName, Map<String, String> columns, String primaryKey) {
+            super(0);
+            this.tableName = tableName;
+            this.columns = columns;
+            this.primaryKey = primaryKey;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        /**
+         * @return column types in table order
+         */
+        public Map<String, String> getColumns() {
+            return columns;
+        }
+
+        /**
+         * @return primary key column or null
+         */
+        public String getPrimaryKey() {
+            return primaryKey;
+        }
+    }
+
+    /**
+     * {@code CREATE INDEX name ON table (column)}
+     */
+    public static final class CreateIndex extends Statement {
+        private final String indexName;
+        private final String tableName;
+        private final String column;
+
+        public CreateIndex(String indexName, String tableName, String column) {
+            super(0);
+            this.indexName = indexName;
+            this.tableName = tableName;
+            this.column = column;
+        }
+
+        public String getIndexName() {
+            return indexName;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+    }
+
+    /**
+     * {@code INSERT INTO table [(column, ...)] VALUES (value, ...), ...}
+     */
+    public static final class Insert extends Statement {
+        private final String tableName;
+        private final List<String> columns;
+        private final List<List<Expression>> rows;
+
+        public Insert(String tableName, List<String> columns, List<List<Expression>> rows, int parameterCount) {
+            super(parameterCount);
+            this.tableName = tableName;
+            this.columns = columns;
+            this.rows = rows;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        /**
+         * @return the named columns, empty for all columns in table order
+         */
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        /**
+         * @return the values of each row to insert
+         */
+        public List<List<Expression>> getRows() {
+            return rows;
+        }
+    }
+
+    /**
+     * {@code LOAD DATA INFILE 'file' INTO TABLE table [FIELDS TERMINATED BY 'c']
+     * [IGNORE n LINES] [(column, ...)]}
+     */
+    public static final class LoadData extends Statement {
+        private final String fileName;
+        private final String tableName;
+        private final char separator;
+        private final int ignoredLines;
+        private final List<String> columns;
+
+        public LoadData(String fileName, String tableName, char separator, int ignoredLines, List<String> columns) {
+            super(0);
+            this.fileName = fileName;
+            this.tableName = tableName;
+            this.separator = separator;
+            this.ignoredLines = ignoredLines;
+            this.columns = columns;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        public char getSeparator() {
+            return separator;
+        }
+
+        /**
+         * @return number of records at the start of the file to skip, such as
+         *         a header
+         */
+        public int getIgnoredLines() {
+            return ignoredLines;
+        }
+
+        /**
+         * @return the columns the fields of a record go to, empty for all
+         *         columns in table order
+         */
+        public List<String> getColumns() {
+            return columns;
+        }
+    }
+
+    /**
+     * {@code SELECT column, ... | * FROM table [alias] [JOIN table [alias] ON
+     * condition ...] [WHERE condition] [GROUP BY column, ...] [HAVING
+     * condition] [ORDER BY column [ASC|DESC], ...] [LIMIT count [OFFSET
+     * skip]]}
+     */
+    public static final class Select extends Statement {
+        private final String tableName;
+        private final String alias;
+        private final List<Join> joins;
+        private final List<String> columns;
+        private final Expression where;
+        private final List<String> groupBy;
+        private final Expression having;
+        private final List<Expression.Aggregate> aggregates;
+        private final List<SortKey> orderBy;
+        private final Expression limit;
+        private final Expression offset;
+
+        public Select(String tableName, String alias, List<Join> joins, List<String> columns, Expression where,
+                List<String> groupBy, Expression having, List<Expression.Aggregate> aggregates,
+                List<SortKey> orderBy, Expression limit, Expression offset, int parameterCount) {
+            super(parameterCount);
+            this.tableName = tableName;
+            this.alias = alias;
+            this.joins = joins;
+            this.columns = columns;
+            this.where = where;
+            this.groupBy = groupBy;
+            this.having = having;
+            this.aggregates = aggregates;
+            this.orderBy = orderBy;
+            this.limit = limit;
+            this.offset = offset;
+        }
+
+        /**
+         * @return the table after FROM
+         */
+        public String getTableName() {
+            return tableName;
+        }
+
+        /**
+         * @return the name the table after FROM is given or null
+         */
+        public String getAlias() {
+            return alias;
+        }
+
+        /**
+         * @return the tables joined to it, in order
+         */
+        public List<Join> getJoins() {
+            return joins;
+        }
+
+        /**
+         * @return the selected columns, {@code table.column} where qualified,
+         *         aggregates by their name, empty for {@code *}
+         */
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        /**
+         * @return the condition or null to select every row
+         */
+        public Expression getWhere() {
+            return where;
+        }
+
+        /**
+         * @return the columns rows are grouped by, empty if they are not
+         */
+        public List<String> getGroupBy() {
+            return groupBy;
+        }
+
+        /**
+         * @return the condition groups must meet or null
+         */
+        public Expression getHaving() {
+            return having;
+        }
+
+        /**
+         * @return every aggregate of the select list, HAVING and ORDER BY,
+         *         each once
+         */
+        public List<Expression.Aggregate> getAggregates() {
+            return aggregates;
+        }
+
+        /**
+         * @return true if the result has a row per group rather than per row
+         */
+        public boolean isAggregate() {
+            return !groupBy.isEmpty() || !aggregates.isEmpty() || having != null;
+        }
+
+        /**
+         * @return the columns rows are sorted by, empty to leave them in the
+         *         order they are read
+         */
+        public List<SortKey> getOrderBy() {
+            return orderBy;
+        }
+
+        /**
+         * @return the maximum number of rows or null for no limit
+         */
+        public Expression getLimit() {
+            return limit;
+        }
+
+        /**
+         * @return the number of rows to skip or null
+         */
+        public Expression getOffset() {
+            return offset;
+        }
+    }
+
+    /**
+     * {@code column [ASC|DESC]} of the ORDER BY of a SELECT
+     */
+    public static final class SortKey {
+        private final String column;
+        private final boolean isDescending;
+
+        public SortKey(String column, boolean isDescending) {
+            this.column = column;
+            this.isDescending = isDescending;
+        }
+
+        /**
+         * @return the column, {@code table.column} where qualified, or an
+         *         aggregate by its name
+         */
+        public String getColumn() {
+            return column;
+        }
+
+        public boolean isDescending() {
+            return isDescending;
+        }
+    }
+
+    /**
+     * {@code [INNER] JOIN table [alias] ON condition} of a SELECT
+     */
+    public static final class Join {
+        private final String tableName;
+        private final String alias;
+        private final Expression on;
+
+        public Join(String tableName, String alias, Expression on) {
+            this.tableName = tableName;
+            this.alias = alias;
+            this.on = on;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        /**
+         * @return the name the table is given or null
+         */
+        public String getAlias() {
+            return alias;
+        }
+
+        public Expression getOn() {
+            return on;
+        }
+    }
+
+    /**
+     * {@code UPDATE table SET column = value, ... WHERE condition}
+     */
+    public static final class Update extends Statement {
+        private final String tableName;
+        private final Map<String, Expression> assignments;
+        private final Expression where;
+
+        public Update(String tableName, Map<String, Expression> assignments, Expression where,
+                int parameterCount) {
+            super(parameterCount);
+            this.tableName = tableName;
+            this.assignments = assignments;
+            this.where = where;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        /**
+         * @return new values keyed by column, in the order they were written
+         */
+        public Map<String, Expression> getAssignments() {
+            return assignments;
+        }
+
+        public Expression getWhere() {
+            return where;
+        }
+    }
+
+    /**
+     * {@code DELETE FROM table WHERE condition}
+     */
+    public static final class Delete extends Statement {
+        private final String tableName;
+        private final Expression where;
+
+        public Delete(String tableName, Expression where, int parameterCount) {
+            super(parameterCount);
+            this.tableName = tableName;
+            this.where = where;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        public Expression getWhere() {
+            return where;
+        }
+    }
+
+    /**
+     * {@code BEGIN TRANSACTION}, {@code COMMIT}, {@code ROLLBACK} or
+     * {@code END TRANSACTION}
+     */
+    public static final class TransactionControl extends Statement {
+        public enum Kind {
+            BEGIN, COMMIT, ROLLBACK, END
+        }
+
+        private final Kind kind;
+
+        public TransactionControl(Kind kind) {
+            super(0);
+            this.kind = kind;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+    }
+
+    /**
+     * {@code PREPARE name FROM 'statement'}
+     */
+    public static final class Prepare extends Statement {
+        private final String name;
+        private final String text;
+
+        public Prepare(String name, String text) {
+            super(0);
+            this.name = name;
+            this.text = text;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return text of the statement being prepared
+         */
+        public String getText() {
+            return text;
+        }
+    }
+
+    /**
+     * {@code EXECUTE name [USING value, ...]}
+     */
+    public static final class Execute extends Statement {
+        private final String name;
+        private final List<Expression> arguments;
+
+        public Execute(String name, List<Expression> arguments, int parameterCount) {
+            super(parameterCount);
+            this.name = name;
+            this.arguments = arguments;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<Expression> getArguments() {
+            return arguments;
+        }
+    }
+
+    /**
+     * {@code DEALLOCATE PREPARE name}
+     */
+    public static final class Deallocate extends Statement {
+        private final String name;
+
+        public Deallocate(String name) {
+            super(0);
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * {@code SHOW AUDIT [WHERE condition]}
+     */
+    public static final class ShowAudit extends Statement {
+        private final Expression where;
+
+        public ShowAudit(Expression where, int parameterCount) {
+            super(parameterCount);
+            this.where = where;
+        }
+
+        /**
+         * @return the condition or null to show every entry
+         */
+        public Expression getWhere() {
+            return where;
+        }
+    }
+
+    /**
+     * {@code SHOW METRICS}
+     */
+    public static final class ShowMetrics extends Statement {
+        public ShowMetrics() {
+            super(0);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package sql;
+
+/**
+ * Error in the text of a statement, with the position it was found at
+ */
+public class SyntaxException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int position;
+
+    public SyntaxException(String message, int position) {
+        super(message + " at position " + position);
+        this.position = position;
+    }
+
+    /**
+     * @return position in the statement, counted from 0
+     */
+    public int getPosition() {
+        return position;
+    }
+}
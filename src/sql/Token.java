@@ -0,0 +1,80 @@
+package sql;
+
+/**
+ * Token of a SQL statement. A token only records where it lies in the
+ * statement; its text is cut out of the statement when asked for.
+ */
+public final class Token {
+    private final TokenType type;
+    private final String source;
+    private final int start;
+    private final int end;
+
+    Token(TokenType type, String source, int start, int end) {
+        this.type = type;
+        this.source = source;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * @return TokenType
+     */
+    public TokenType getType() {
+        return type;
+    }
+
+    /**
+     * @return position of the first character in the statement
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return position right after the last character
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * @return the token as written in the statement
+     */
+    public String text() {
+        return source.substring(start, end);
+    }
+
+    /**
+     * @return value of a string literal without its quotes, or of a quoted
+     *         identifier without its backticks, otherwise the text
+     */
+    public String value() {
+        if (type == TokenType.STRING) {
+            char quote = source.charAt(start);
+            String value = source.substring(start + 1, end - 1);
+            return value.indexOf(quote) == -1 ? value
+                    : value.replace(String.valueOf(quote) + quote, String.valueOf(quote));
+        }
+        if (type == TokenType.IDENTIFIER && source.charAt(start) == '`') {
+            return source.substring(start + 1, end - 1);
+        }
+        return text();
+    }
+
+    /**
+     * checks for a keyword without allocating the token text
+     *
+     * @param keyword - upper case keyword
+     * @return true if the token is an identifier spelled like the keyword
+     */
+    public boolean is(String keyword) {
+        return type == TokenType.IDENTIFIER && end - start == keyword.length()
+                && source.regionMatches(true, start, keyword, 0, keyword.length());
+    }
+
+    @Override
+    public String toString() {
+        return type == TokenType.EOF ? "end of statement" : "'" + text() + "'";
+    }
+}
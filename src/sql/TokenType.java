@@ -0,0 +1,29 @@
+package sql;
+
+/**
+ * Kinds of tokens produced by the {@link Lexer}. Keywords are not told apart
+ * from identifiers by the lexer; the parser checks identifiers against the
+ * keyword it expects.
+ */
+public enum TokenType {
+    IDENTIFIER,
+    NUMBER,
+    STRING,
+    PARAMETER,
+    COMMA,
+    DOT,
+    SEMICOLON,
+    LEFT_PAREN,
+    RIGHT_PAREN,
+    STAR,
+    PLUS,
+    MINUS,
+    SLASH,
+    EQ,
+    NE,
+    LT,
+    LE,
+    GT,
+    GE,
+    EOF
+}
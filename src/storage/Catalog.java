@@ -0,0 +1,212 @@
+package storage;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * Keeps the table definitions of a storage directory. Each line of the
+ * catalog file describes one table in the same form the old text format used
+ * for its meta line: {@code name|col type primary key, col type}. Secondary
+ * indexes are kept in a separate file as {@code index|table|column}.
+ */
+public class Catalog {
+
+    private static final String CATALOG_FILE = "catalog.txt";
+    private static final String INDEX_CATALOG_FILE = "indexes.txt";
+    private static final String CATALOG_SEPARATOR = "|";
+
+    private final Path file;
+    private final Path indexFile;
+    private final Map<String, Map<String, String>> tables = new LinkedHashMap<String, Map<String, String>>();
+    private final Map<String, String> primaryKeys = new HashMap<String, String>();
+    private final Map<String, Map<String, String>> indexes = new HashMap<String, Map<String, String>>();
+
+    public Catalog(Path directory) throws IOException {
+        this.file = directory.resolve(CATALOG_FILE);
+        this.indexFile = directory.resolve(INDEX_CATALOG_FILE);
+        load();
+        loadIndexes();
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\\|");
+                if (parts.length == 2) {
+                    tables.put(parts[0], parseColumns(parts[1]));
+                    String primaryKey = parsePrimaryKey(parts[1]);
+                    if (primaryKey != null) {
+                        primaryKeys.put(parts[0], primaryKey);
+                    }
+                }
+            }
+        }
+    }
+
+    private void loadIndexes() throws IOException {
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(indexFile)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\\|");
+                if (parts.length == 3) {
+                    indexes.computeIfAbsent(parts[1], table -> new LinkedHashMap<String, String>())
+                            .put(parts[0], parts[2]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return all table definitions keyed by table name, in creation order
+     */
+    public Map<String, Map<String, String>> getTables() {
+        return tables;
+    }
+
+    /**
+     * @param tableName
+     * @return columns of the table or null if it does not exist
+     */
+    public Map<String, String> getColumns(String tableName) {
+        return tables.get(tableName);
+    }
+
+    /**
+     * @param tableName
+     * @return primary key column of the table or null if it has none
+     */
+    public String getPrimaryKey(String tableName) {
+        return primaryKeys.get(tableName);
+    }
+
+    /**
+     * @param tableName
+     * @return secondary indexes of the table as index name to column
+     */
+    public Map<String, String> getIndexes(String tableName) {
+        return indexes.getOrDefault(tableName, Map.of());
+    }
+
+    /**
+     * @param indexName
+     * @return true if any table has an index with this name
+     */
+    public boolean isIndex(String indexName) {
+        for (Map<String, String> tableIndexes : indexes.values()) {
+            if (tableIndexes.containsKey(indexName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * registers a secondary index and persists it to the index catalog file
+     *
+     * @param indexName
+     * @param tableName
+     * @param column
+     * @throws IOException
+     */
+    public void addIndex(String indexName, String tableName, String column) throws IOException {
+        if (isIndex(indexName)) {
+            throw new IOException("Index already exists: " + indexName);
+        }
+        try (PrintWriter writer = new PrintWriter(new FileWriter(indexFile.toFile(), true))) {
+            writer.println(indexName + CATALOG_SEPARATOR + tableName + CATALOG_SEPARATOR + column);
+        }
+        indexes.computeIfAbsent(tableName, table -> new LinkedHashMap<String, String>()).put(indexName, column);
+    }
+
+    /**
+     * registers a new table and persists it to the catalog file
+     *
+     * @param tableName
+     * @param columns
+     * @param primaryKey - primary key column or null
+     * @throws IOException
+     */
+    public void addTable(String tableName, Map<String, String> columns, String primaryKey) throws IOException {
+        if (tables.containsKey(tableName)) {
+            throw new IOException("Table already exists: " + tableName);
+        }
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file.toFile(), true))) {
+            writer.println(tableName + CATALOG_SEPARATOR + formatColumns(columns, primaryKey));
+        }
+        tables.put(tableName, columns);
+        if (primaryKey != null) {
+            primaryKeys.put(tableName, primaryKey);
+        }
+    }
+
+    /**
+     * parses column definitions of the form {@code id int, name varchar}
+     *
+     * @param definitions
+     * @return Map of column name to type
+     */
+    public static Map<String, String> parseColumns(String definitions) {
+        Map<String, String> columns = new LinkedHashMap<String, String>();
+        for (String column : definitions.split(",")) {
+            String[] meta = column.trim().split("\\s+");
+            if (meta.length < 2) {
+                throw new IllegalArgumentException("Invalid column definition: " + column.trim());
+            }
+            ColumnType.of(meta[1]);
+            columns.put(meta[0].trim(), meta[1].trim());
+        }
+        return columns;
+    }
+
+    /**
+     * finds the column declared with {@code PRIMARY KEY} in column definitions
+     *
+     * @param definitions
+     * @return primary key column or null if none is declared
+     */
+    public static String parsePrimaryKey(String definitions) {
+        String primaryKey = null;
+        for (String column : definitions.split(",")) {
+            String[] meta = column.trim().split("\\s+");
+            if (meta.length == 4 && "PRIMARY".equalsIgnoreCase(meta[2]) && "KEY".equalsIgnoreCase(meta[3])) {
+                if (primaryKey != null) {
+                    throw new IllegalArgumentException("Only one primary key column is supported");
+                }
+                primaryKey = meta[0];
+            } else if (meta.length > 2) {
+                throw new IllegalArgumentException("Invalid column definition: " + column.trim());
+            }
+        }
+        return primaryKey;
+    }
+
+    /**
+     * @param columns
+     * @param primaryKey
+     * @return column definitions in the form accepted by {@link #parseColumns(String)}
+     */
+    public static String formatColumns(Map<String, String> columns, String primaryKey) {
+        StringBuilder definitions = new StringBuilder();
+        for (Map.Entry<String, String> column : columns.entrySet()) {
+            if (definitions.length() > 0) {
+                definitions.append(", ");
+            }
+            definitions.append(column.getKey()).append(' ').append(column.getValue());
+            if (column.getKey().equals(primaryKey)) {
+                definitions.append(" primary key");
+            }
+        }
+        return definitions.toString();
+    }
+}
@@ -0,0 +1,71 @@
+package storage;
+
+/**
+ * Physical column types understood by the storage engine. Every SQL type
+ * accepted by {@link account.Table} maps onto exactly one of these.
+ */
+public enum ColumnType {
+    INT,
+    BIGINT,
+    DOUBLE,
+    DATE,
+    VARCHAR;
+
+    /**
+     * resolves the storage type for a SQL type name
+     *
+     * @param type
+     * @return ColumnType
+     */
+    public static ColumnType of(String type) {
+        switch (type.trim().toUpperCase()) {
+            case "INT":
+            case "TINYINT":
+            case "INTEGER":
+            case "SMALLINT":
+                return INT;
+            case "BIGINT":
+                return BIGINT;
+            case "FLOAT":
+            case "DOUBLE":
+            case "DECIMAL":
+                return DOUBLE;
+            case "DATE":
+            case "TIME":
+            case "DATETIME":
+            case "TIMESTAMP":
+                return DATE;
+            case "CHAR":
+            case "TEXT":
+            case "VARCHAR":
+            case "LONGTEXT":
+                return VARCHAR;
+            default:
+                throw new IllegalArgumentException("Unsupported data type: " + type);
+        }
+    }
+
+    /**
+     * converts the textual representation of a value into its typed form
+     *
+     * @param value
+     * @return Object
+     */
+    public Object parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        switch (this) {
+            case INT:
+                return Integer.parseInt(value);
+            case BIGINT:
+                return Long.parseLong(value);
+            case DOUBLE:
+                return Double.parseDouble(value);
+            case DATE:
+                return java.sql.Date.valueOf(value);
+            default:
+                return value;
+        }
+    }
+}
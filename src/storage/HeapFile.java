@@ -0,0 +1,304 @@
+package storage;
+
+import metrics.Metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Heap file holding the rows of a single table as a sequence of fixed size
+ * {@link Page}s. Changes are applied to pages held in memory and only written
+ * back by {@link #flush(long)} once the log records that produced them are
+ * durable, so the file never holds a change the write-ahead log could not
+ * redo. Pages that only had rows appended since they were last written go
+ * back as just the bytes the rows added.
+ *
+ * A scan reads the pages that are not held in memory from a read-only
+ * mapping of the file rather than copying them in, and hands each row over
+ * where it lies in its page.
+ */
+public class HeapFile implements Closeable {
+
+    /**
+     * pages mapped at once by a scan, 1 GB of the file
+     */
+    private static final int REGION_PAGES = (1 << 30) / Page.PAGE_SIZE;
+
+    private final FileChannel channel;
+    private int pageCount;
+    private final Map<Integer, DirtyPage> dirtyPages = new TreeMap<Integer, DirtyPage>();
+    private Page tailPage;
+    private int tailPageNo = -1;
+
+    /**
+     * callback for the rows of a scan
+     */
+    interface RowReader {
+        /**
+         * @param rowId
+         * @param page   - the bytes of the row's page, valid until the call
+         *               returns
+         * @param offset - position of the row in the page
+         * @throws Exception
+         */
+        void read(RowId rowId, ByteBuffer page, int offset) throws Exception;
+    }
+
+    /**
+     * page changed in memory, with the slot count and row area start it had
+     * when it was last written
+     */
+    private static final class DirtyPage {
+        final Page page;
+        final int flushedSlotCount;
+        final int flushedFreeEnd;
+        boolean isAppendOnly = true;
+
+        DirtyPage(Page page) {
+            this.page = page;
+            this.flushedSlotCount = page.getSlotCount();
+            this.flushedFreeEnd = page.getFreeEnd();
+        }
+    }
+
+    public HeapFile(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.pageCount = (int) (channel.size() / Page.PAGE_SIZE);
+    }
+
+    /**
+     * @return number of pages in the file, including pages not yet written
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * returns the current version of a page. The page must not be modified
+     * by the caller.
+     *
+     * @param pageNo
+     * @return Page
+     * @throws IOException
+     */
+    public Page getPage(int pageNo) throws IOException {
+        DirtyPage dirty = dirtyPages.get(pageNo);
+        if (dirty != null) {
+            return dirty.page;
+        }
+        if (pageNo == tailPageNo) {
+            return tailPage;
+        }
+        Page page = readPage(pageNo);
+        if (pageNo == pageCount - 1) {
+            tailPage = page;
+            tailPageNo = pageNo;
+        }
+        return page;
+    }
+
+    /**
+     * reads a page from disk. A page that was never written, such as a hole
+     * left by writing a later page first, reads back as an empty page.
+     */
+    private Page readPage(int pageNo) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Page.PAGE_SIZE);
+        long position = (long) pageNo * Page.PAGE_SIZE;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of heap file at page " + pageNo);
+            }
+        }
+        Metrics.shared().addHeapBytesRead(Page.PAGE_SIZE);
+        Page page = new Page(buffer.array());
+        return page.getFreeEnd() == 0 ? new Page() : page;
+    }
+
+    /**
+     * reads every live row in page order. Pages changed in memory are read
+     * as they are there, and the others in place from a read-only mapping
+     * of the file, a region at a time, so neither pages nor rows are copied
+     * out of the page cache.
+     *
+     * @param reader
+     * @throws Exception
+     */
+    void scan(RowReader reader) throws Exception {
+        long filePages = channel.size() / Page.PAGE_SIZE;
+        MappedByteBuffer region = null;
+        int regionStart = 0;
+        for (int pageNo = 0; pageNo < pageCount; pageNo++) {
+            Page page;
+            if (pageNo >= filePages || pageNo == tailPageNo || dirtyPages.containsKey(pageNo)) {
+                page = getPage(pageNo);
+            } else {
+                if (region == null || pageNo - regionStart >= REGION_PAGES) {
+                    regionStart = pageNo;
+                    long pages = Math.min(REGION_PAGES, filePages - pageNo);
+                    region = channel.map(FileChannel.MapMode.READ_ONLY, (long) pageNo * Page.PAGE_SIZE,
+                            pages * Page.PAGE_SIZE);
+                }
+                page = new Page(region.slice((pageNo - regionStart) * Page.PAGE_SIZE, Page.PAGE_SIZE));
+                Metrics.shared().addHeapBytesRead(Page.PAGE_SIZE);
+            }
+            ByteBuffer data = page.getBuffer();
+            for (int slot = 0; slot < page.getSlotCount(); slot++) {
+                if (page.slotLength(slot) > 0) {
+                    reader.read(new RowId(pageNo, slot), data, page.slotOffset(slot));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param rowId
+     * @return row bytes or null if the row does not exist
+     * @throws IOException
+     */
+    public byte[] read(RowId rowId) throws IOException {
+        if (rowId.getPage() < 0 || rowId.getPage() >= pageCount) {
+            return null;
+        }
+        return getPage(rowId.getPage()).read(rowId.getSlot());
+    }
+
+    /**
+     * stores a row at an exact location as a logged change. Changes the page
+     * already holds, going by its log sequence number, are skipped, which
+     * makes redo safe to repeat.
+     *
+     * @param rowId
+     * @param row
+     * @param lsn
+     * @return false if the page already held the change
+     * @throws IOException
+     */
+    public boolean put(RowId rowId, byte[] row, long lsn) throws IOException {
+        DirtyPage dirty = dirtyPage(rowId.getPage());
+        if (dirty.page.getLsn() >= lsn) {
+            return false;
+        }
+        if (rowId.getSlot() != dirty.page.getSlotCount()) {
+            dirty.isAppendOnly = false;
+        }
+        if (!dirty.page.put(rowId.getSlot(), row)) {
+            throw new IOException("Row does not fit at " + rowId);
+        }
+        dirty.page.setLsn(lsn);
+        return true;
+    }
+
+    /**
+     * removes the row at a location as a logged change
+     *
+     * @param rowId
+     * @param lsn
+     * @return false if the page already held the change
+     * @throws IOException
+     */
+    public boolean remove(RowId rowId, long lsn) throws IOException {
+        DirtyPage dirty = dirtyPage(rowId.getPage());
+        if (dirty.page.getLsn() >= lsn) {
+            return false;
+        }
+        dirty.isAppendOnly = false;
+        dirty.page.delete(rowId.getSlot());
+        dirty.page.setLsn(lsn);
+        return true;
+    }
+
+    private DirtyPage dirtyPage(int pageNo) throws IOException {
+        DirtyPage dirty = dirtyPages.get(pageNo);
+        if (dirty == null) {
+            dirty = new DirtyPage(pageNo < pageCount ? getPage(pageNo) : new Page());
+            dirtyPages.put(pageNo, dirty);
+            pageCount = Math.max(pageCount, pageNo + 1);
+        }
+        return dirty;
+    }
+
+    /**
+     * writes back the changed pages whose last change is covered by the given
+     * durable log position. Pages changed later stay in memory.
+     *
+     * @param durableLsn
+     * @throws IOException
+     */
+    public void flush(long durableLsn) throws IOException {
+        Iterator<Map.Entry<Integer, DirtyPage>> pages = dirtyPages.entrySet().iterator();
+        while (pages.hasNext()) {
+            Map.Entry<Integer, DirtyPage> entry = pages.next();
+            DirtyPage dirty = entry.getValue();
+            if (dirty.page.getLsn() > durableLsn) {
+                continue;
+            }
+            if (dirty.isAppendOnly) {
+                writeAppended(entry.getKey(), dirty);
+            } else {
+                write(dirty.page.getData(), 0, Page.PAGE_SIZE, (long) entry.getKey() * Page.PAGE_SIZE);
+            }
+            pages.remove();
+            if (entry.getKey() == pageCount - 1) {
+                tailPage = dirty.page;
+                tailPageNo = entry.getKey();
+            } else if (entry.getKey() == tailPageNo) {
+                tailPage = null;
+                tailPageNo = -1;
+            }
+        }
+    }
+
+    /**
+     * writes the regions of a page changed by appends only: the new rows,
+     * their slot entries and finally the page header. The header goes last
+     * so a torn write leaves the page pointing at its previous rows only.
+     */
+    private void writeAppended(int pageNo, DirtyPage dirty) throws IOException {
+        Page page = dirty.page;
+        byte[] data = page.getData();
+        long base = (long) pageNo * Page.PAGE_SIZE;
+        int freeEnd = page.getFreeEnd();
+        int slotStart = Page.HEADER_SIZE + dirty.flushedSlotCount * Page.SLOT_SIZE;
+        write(data, freeEnd, dirty.flushedFreeEnd - freeEnd, base);
+        write(data, slotStart, (page.getSlotCount() - dirty.flushedSlotCount) * Page.SLOT_SIZE, base);
+        write(data, 0, Page.HEADER_SIZE, base);
+    }
+
+    private void write(byte[] data, int offset, int length, long base) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, base + buffer.position());
+        }
+        Metrics.shared().addHeapBytesWritten(length);
+    }
+
+    /**
+     * @return true if changed pages are waiting to be written
+     */
+    public boolean isDirty() {
+        return !dirtyPages.isEmpty();
+    }
+
+    /**
+     * forces written pages to the disk
+     *
+     * @throws IOException
+     */
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
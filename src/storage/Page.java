@@ -0,0 +1,284 @@
+package storage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed size slotted page. The header holds the slot count, the start of
+ * the row area and the log sequence number of the last logged change applied
+ * to the page. The slot directory grows forward from the header and rows are
+ * packed backwards from the end of the page. Slot numbers never move, so a
+ * {@link RowId} stays valid for as long as the row lives on the page.
+ *
+ * <pre>
+ * | slotCount | freeEnd | lsn | slot 0 | slot 1 | ... free ... | row 1 | row 0 |
+ * </pre>
+ */
+public class Page {
+
+    public static final int PAGE_SIZE = 4096;
+    static final int HEADER_SIZE = 12;
+    static final int SLOT_SIZE = 4;
+    public static final int MAX_ROW_SIZE = PAGE_SIZE - HEADER_SIZE - SLOT_SIZE;
+
+    private final ByteBuffer data;
+
+    public Page() {
+        this.data = ByteBuffer.allocate(PAGE_SIZE);
+        setSlotCount(0);
+        setFreeEnd(PAGE_SIZE);
+    }
+
+    public Page(byte[] bytes) {
+        this.data = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * wraps page bytes held elsewhere, such as a region of a mapped file,
+     * without copying them. The page can only be read.
+     *
+     * @param data - the page's bytes from position 0
+     */
+    Page(ByteBuffer data) {
+        this.data = data;
+    }
+
+    /**
+     * @return the bytes of the page, which rows are read from in place at
+     *         the offsets of their slots
+     */
+    ByteBuffer getBuffer() {
+        return data;
+    }
+
+    /**
+     * @return an independent copy of this page
+     */
+    public Page copy() {
+        return new Page(data.array().clone());
+    }
+
+    /**
+     * @return the raw bytes backing this page
+     */
+    public byte[] getData() {
+        return data.array();
+    }
+
+    /**
+     * @return number of slots in the directory, including empty ones
+     */
+    public int getSlotCount() {
+        return data.getShort(0) & 0xFFFF;
+    }
+
+    private void setSlotCount(int count) {
+        data.putShort(0, (short) count);
+    }
+
+    int getFreeEnd() {
+        return data.getShort(2) & 0xFFFF;
+    }
+
+    private void setFreeEnd(int freeEnd) {
+        data.putShort(2, (short) freeEnd);
+    }
+
+    /**
+     * @return log sequence number of the last change applied to the page
+     */
+    public long getLsn() {
+        return data.getLong(4);
+    }
+
+    /**
+     * @param lsn
+     */
+    public void setLsn(long lsn) {
+        data.putLong(4, lsn);
+    }
+
+    /**
+     * @param slot
+     * @return position of a slot's row in the page
+     */
+    int slotOffset(int slot) {
+        return data.getShort(HEADER_SIZE + slot * SLOT_SIZE) & 0xFFFF;
+    }
+
+    /**
+     * @param slot
+     * @return length of a slot's row, 0 if the slot is empty
+     */
+    int slotLength(int slot) {
+        return data.getShort(HEADER_SIZE + slot * SLOT_SIZE + 2) & 0xFFFF;
+    }
+
+    private void setSlot(int slot, int offset, int length) {
+        data.putShort(HEADER_SIZE + slot * SLOT_SIZE, (short) offset);
+        data.putShort(HEADER_SIZE + slot * SLOT_SIZE + 2, (short) length);
+    }
+
+    /**
+     * @return contiguous bytes available between the slot directory and the rows
+     */
+    public int getFreeSpace() {
+        return getFreeEnd() - (HEADER_SIZE + getSlotCount() * SLOT_SIZE);
+    }
+
+    /**
+     * @return free bytes on the page once deleted rows are compacted away
+     */
+    private int getReclaimableSpace() {
+        int used = HEADER_SIZE + getSlotCount() * SLOT_SIZE;
+        for (int slot = 0; slot < getSlotCount(); slot++) {
+            used += slotLength(slot);
+        }
+        return PAGE_SIZE - used;
+    }
+
+    /**
+     * checks whether the slot holds a live row
+     *
+     * @param slot
+     * @return boolean
+     */
+    public boolean isLive(int slot) {
+        return slot >= 0 && slot < getSlotCount() && slotLength(slot) > 0;
+    }
+
+    /**
+     * reads the row stored in a slot
+     *
+     * @param slot
+     * @return row bytes or null if the slot is empty
+     */
+    public byte[] read(int slot) {
+        if (!isLive(slot)) {
+            return null;
+        }
+        byte[] row = new byte[slotLength(slot)];
+        data.get(slotOffset(slot), row);
+        return row;
+    }
+
+    /**
+     * stores a row in a new slot at the end of the slot directory without
+     * reusing empty slots or compacting. Only the header, the new slot entry
+     * and the row bytes change, which lets the caller write back just those
+     * regions.
+     *
+     * @param row
+     * @return slot number or -1 if the contiguous free space is too small
+     */
+    public int append(byte[] row) {
+        if (getFreeSpace() < row.length + SLOT_SIZE) {
+            return -1;
+        }
+        int slot = getSlotCount();
+        int offset = getFreeEnd() - row.length;
+        data.put(offset, row);
+        setSlotCount(slot + 1);
+        setFreeEnd(offset);
+        setSlot(slot, offset, row.length);
+        return slot;
+    }
+
+    /**
+     * replaces the row in a slot, keeping the slot number stable
+     *
+     * @param slot
+     * @param row
+     * @return false if the new row no longer fits on this page
+     */
+    public boolean update(int slot, byte[] row) {
+        if (!isLive(slot)) {
+            return false;
+        }
+        if (row.length <= slotLength(slot)) {
+            data.put(slotOffset(slot), row);
+            setSlot(slot, slotOffset(slot), row.length);
+            return true;
+        }
+        if (getFreeSpace() < row.length) {
+            if (getReclaimableSpace() + slotLength(slot) < row.length) {
+                return false;
+            }
+            setSlot(slot, 0, 0);
+            compact();
+        }
+        int offset = getFreeEnd() - row.length;
+        data.put(offset, row);
+        setFreeEnd(offset);
+        setSlot(slot, offset, row.length);
+        return true;
+    }
+
+    /**
+     * stores a row in a given slot, extending the slot directory when the slot
+     * lies past its end. Used to redo logged changes, which always name the
+     * slot a row went to. A slot right past the end is filled exactly like
+     * {@link #append(byte[])}, so redo reproduces the original layout.
+     *
+     * @param slot
+     * @param row
+     * @return false if the row does not fit on this page
+     */
+    public boolean put(int slot, byte[] row) {
+        int slotCount = getSlotCount();
+        if (isLive(slot)) {
+            return update(slot, row);
+        }
+        if (slot < slotCount) {
+            if (getFreeSpace() < row.length) {
+                if (getReclaimableSpace() < row.length) {
+                    return false;
+                }
+                compact();
+            }
+        } else if (getFreeSpace() < row.length + (slot + 1 - slotCount) * SLOT_SIZE) {
+            return false;
+        } else {
+            for (int empty = slotCount; empty < slot; empty++) {
+                setSlot(empty, 0, 0);
+            }
+            setSlotCount(slot + 1);
+        }
+        int offset = getFreeEnd() - row.length;
+        data.put(offset, row);
+        setFreeEnd(offset);
+        setSlot(slot, offset, row.length);
+        return true;
+    }
+
+    /**
+     * removes the row in a slot. The slot itself stays in the directory so
+     * other row ids on the page are unaffected.
+     *
+     * @param slot
+     */
+    public void delete(int slot) {
+        if (isLive(slot)) {
+            setSlot(slot, 0, 0);
+        }
+    }
+
+    /**
+     * packs live rows against the end of the page so the free space becomes
+     * contiguous again
+     */
+    private void compact() {
+        byte[] packed = new byte[PAGE_SIZE];
+        int freeEnd = PAGE_SIZE;
+        for (int slot = 0; slot < getSlotCount(); slot++) {
+            int length = slotLength(slot);
+            if (length == 0) {
+                continue;
+            }
+            freeEnd -= length;
+            data.get(slotOffset(slot), packed, freeEnd, length);
+            setSlot(slot, freeEnd, length);
+        }
+        data.put(freeEnd, packed, freeEnd, PAGE_SIZE - freeEnd);
+        setFreeEnd(freeEnd);
+    }
+}
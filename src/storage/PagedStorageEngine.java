@@ -0,0 +1,687 @@
+package storage;
+
+import index.HashIndex;
+import index.BPlusTree;
+import lock.LockManager;
+import mvcc.VersionManager;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link StorageEngine} keeping every table in its own {@link HeapFile}
+ * inside a storage directory, next to a {@link Catalog} of table definitions
+ * a {@link HashIndex} for every table with a primary key and a
+ * {@link BPlusTree} for every secondary index. Row changes are made through
+ * {@link Transaction}s and logged to a {@link WriteAheadLog} before any data
+ * file sees them; the log is replayed when the engine is opened.
+ * Engines are shared per directory so every user of the same directory sees
+ * the same open files.
+ */
+public class PagedStorageEngine implements StorageEngine {
+
+    private static final String TABLE_FILE_SUFFIX = ".tbl";
+    private static final String PRIMARY_INDEX_SUFFIX = ".pk";
+    private static final String SECONDARY_INDEX_SUFFIX = ".idx";
+    private static final String LOG_FILE = "wal.log";
+    private static final String INDEXES_DIRTY_FILE = "indexes.dirty";
+    private static final long CHECKPOINT_SIZE = 16L * 1024 * 1024;
+    private static final Map<Path, PagedStorageEngine> OPEN_ENGINES = new HashMap<Path, PagedStorageEngine>();
+
+    private final Path directory;
+    private final Catalog catalog;
+    private final Map<String, HeapFile> heapFiles = new HashMap<String, HeapFile>();
+    private final Map<String, RowCodec> codecs = new HashMap<String, RowCodec>();
+    private final Map<String, HashIndex> primaryIndexes = new HashMap<String, HashIndex>();
+    private final Map<String, BPlusTree> trees = new HashMap<String, BPlusTree>();
+    private final WriteAheadLog log;
+    private final VersionManager versions = new VersionManager();
+    private final LockManager locks = new LockManager();
+    private final AtomicInteger pendingSlots = new AtomicInteger();
+    private final Path indexesDirtyFile;
+    private boolean isIndexesDirty;
+
+    private PagedStorageEngine(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        this.catalog = new Catalog(directory);
+        this.log = new WriteAheadLog(directory.resolve(LOG_FILE));
+        this.indexesDirtyFile = directory.resolve(INDEXES_DIRTY_FILE);
+        this.isIndexesDirty = Files.exists(indexesDirtyFile);
+        recover();
+    }
+
+    /**
+     * opens the engine for a storage directory, creating the directory if needed
+     *
+     * @param directory
+     * @return PagedStorageEngine
+     * @throws IOException
+     */
+    public static synchronized PagedStorageEngine open(String directory) throws IOException {
+        Path path = Paths.get(directory).toAbsolutePath().normalize();
+        PagedStorageEngine engine = OPEN_ENGINES.get(path);
+        if (engine == null) {
+            engine = new PagedStorageEngine(path);
+            OPEN_ENGINES.put(path, engine);
+        }
+        return engine;
+    }
+
+    /**
+     * closes the engine of a storage directory if one is open
+     *
+     * @param directory
+     * @throws IOException
+     */
+    public static synchronized void closeEngine(String directory) throws IOException {
+        Path path = Paths.get(directory).toAbsolutePath().normalize();
+        PagedStorageEngine engine = OPEN_ENGINES.remove(path);
+        if (engine != null) {
+            engine.closeFiles();
+        }
+    }
+
+    @Override
+    public Map<String, Map<String, String>> getTables() {
+        return catalog.getTables();
+    }
+
+    @Override
+    public String getPrimaryKey(String tableName) {
+        return catalog.getPrimaryKey(tableName);
+    }
+
+    @Override
+    public synchronized void createTable(String tableName, Map<String, String> columns, String primaryKey)
+            throws IOException {
+        if (primaryKey != null && !columns.containsKey(primaryKey)) {
+            throw new IOException("Unknown primary key column: " + primaryKey);
+        }
+        catalog.addTable(tableName, columns, primaryKey);
+        heapFile(tableName);
+        primaryIndex(tableName);
+    }
+
+    @Override
+    public synchronized RowId lookup(String tableName, Object key) throws IOException {
+        HashIndex index = primaryIndex(tableName);
+        return index == null ? null : index.get(key);
+    }
+
+    @Override
+    public synchronized Object[] read(String tableName, RowId rowId) throws IOException {
+        byte[] row = heapFile(tableName).read(rowId);
+        return row == null ? null : codec(tableName).decode(row);
+    }
+
+    /**
+     * starts a transaction. Its changes stay invisible to other users of the
+     * engine until it commits.
+     *
+     * @return Transaction
+     */
+    public Transaction begin() {
+        return new Transaction(this);
+    }
+
+    /**
+     * @return the commit order of the row versions kept in memory for the
+     *         tables of this directory
+     */
+    public VersionManager getVersions() {
+        return versions;
+    }
+
+    /**
+     * @return the row and table locks of the transactions writing to this
+     *         directory
+     */
+    public LockManager getLocks() {
+        return locks;
+    }
+
+    /**
+     * @return slot of the next provisional row id of an uncommitted insert
+     */
+    int nextPendingSlot() {
+        return pendingSlots.getAndIncrement();
+    }
+
+    @Override
+    public RowId insert(String tableName, Object[] values) throws IOException {
+        return insertAll(tableName, List.<Object[]>of(values)).get(0);
+    }
+
+    @Override
+    public List<RowId> insertAll(String tableName, List<Object[]> rows) throws IOException {
+        Transaction transaction = begin();
+        List<RowId> pendingRowIds = transaction.insertAll(tableName, rows);
+        Map<RowId, RowId> committedRowIds = transaction.commit().get(tableName);
+        List<RowId> rowIds = new ArrayList<RowId>(pendingRowIds.size());
+        for (RowId rowId : pendingRowIds) {
+            rowIds.add(committedRowIds.get(rowId));
+        }
+        return rowIds;
+    }
+
+    @Override
+    public RowId update(String tableName, RowId rowId, Object[] values) throws IOException {
+        Transaction transaction = begin();
+        transaction.update(tableName, rowId, values);
+        return transaction.commit().getOrDefault(tableName, Map.of()).getOrDefault(rowId, rowId);
+    }
+
+    @Override
+    public void delete(String tableName, RowId rowId) throws IOException {
+        Transaction transaction = begin();
+        transaction.delete(tableName, rowId);
+        transaction.commit();
+    }
+
+    /**
+     * commits the changes of a transaction. The changes are turned into log
+     * records and applied to the in-memory pages and the indexes under the
+     * engine lock, then the log is synced outside of it so concurrent
+     * committers can share the fsync. Pages only go to the data files once
+     * the log covers them.
+     *
+     * @param changes
+     * @return final row ids of inserted and moved rows by table
+     * @throws IOException
+     */
+    Map<String, Map<RowId, RowId>> commit(Map<String, Transaction.TableChanges> changes) throws IOException {
+        CommitPlan plan = new CommitPlan();
+        long lsn;
+        synchronized (this) {
+            for (Map.Entry<String, Transaction.TableChanges> tableChanges : changes.entrySet()) {
+                plan.add(tableChanges.getKey(), tableChanges.getValue());
+            }
+            if (plan.records.isEmpty()) {
+                return plan.rowIds;
+            }
+            plan.records.add(WriteAheadLog.Record.commit());
+            markIndexesDirty();
+            lsn = log.append(plan.records);
+            for (WriteAheadLog.Record record : plan.records) {
+                redo(record, true);
+            }
+        }
+        log.sync(lsn);
+        synchronized (this) {
+            flush(log.getDurableLsn());
+            if (log.size() > CHECKPOINT_SIZE) {
+                checkpoint();
+            }
+        }
+        return plan.rowIds;
+    }
+
+    /**
+     * turns the changes of a transaction into log records. Rows are placed on
+     * copies of the affected pages, so every record names the exact slot its
+     * row goes to and redo reproduces the same page layout.
+     */
+    private final class CommitPlan {
+        final List<WriteAheadLog.Record> records = new ArrayList<WriteAheadLog.Record>();
+        final Map<String, Map<RowId, RowId>> rowIds = new HashMap<String, Map<RowId, RowId>>();
+        private final Map<String, Map<Integer, Page>> pages = new HashMap<String, Map<Integer, Page>>();
+        private final Map<String, Integer> tailPages = new HashMap<String, Integer>();
+        private final Map<String, Map<Object, Boolean>> keys = new HashMap<String, Map<Object, Boolean>>();
+
+        void add(String tableName, Transaction.TableChanges changes) throws IOException {
+            RowCodec codec = codec(tableName);
+            int keyColumn = primaryKeyColumn(tableName);
+            for (RowId rowId : changes.deleted) {
+                Object[] oldValues = committedRow(tableName, rowId);
+                page(tableName, rowId.getPage()).delete(rowId.getSlot());
+                records.add(WriteAheadLog.Record.remove(tableName, rowId));
+                if (keyColumn != -1) {
+                    setKey(tableName, oldValues[keyColumn], false);
+                }
+            }
+            for (Map.Entry<RowId, Object[]> row : changes.updated.entrySet()) {
+                RowId rowId = row.getKey();
+                Object[] values = row.getValue();
+                Object[] oldValues = committedRow(tableName, rowId);
+                if (keyColumn != -1 && !oldValues[keyColumn].equals(values[keyColumn])) {
+                    setKey(tableName, oldValues[keyColumn], false);
+                    checkKey(tableName, values[keyColumn]);
+                    setKey(tableName, values[keyColumn], true);
+                }
+                byte[] encoded = codec.encode(values);
+                Page page = page(tableName, rowId.getPage());
+                if (page.update(rowId.getSlot(), encoded)) {
+                    records.add(WriteAheadLog.Record.put(tableName, rowId, encoded));
+                } else {
+                    page.delete(rowId.getSlot());
+                    records.add(WriteAheadLog.Record.remove(tableName, rowId));
+                    tableRowIds(tableName).put(rowId, append(tableName, encoded));
+                }
+            }
+            for (Map.Entry<RowId, Object[]> row : changes.inserted.entrySet()) {
+                Object[] values = row.getValue();
+                if (keyColumn != -1) {
+                    checkKey(tableName, values[keyColumn]);
+                    setKey(tableName, values[keyColumn], true);
+                }
+                tableRowIds(tableName).put(row.getKey(), append(tableName, codec.encode(values)));
+            }
+        }
+
+        private Map<RowId, RowId> tableRowIds(String tableName) {
+            return rowIds.computeIfAbsent(tableName, table -> new HashMap<RowId, RowId>());
+        }
+
+        private RowId append(String tableName, byte[] row) throws IOException {
+            Integer tailPage = tailPages.get(tableName);
+            if (tailPage == null) {
+                tailPage = Math.max(0, heapFile(tableName).getPageCount() - 1);
+            }
+            int slot = page(tableName, tailPage).append(row);
+            if (slot == -1) {
+                tailPage++;
+                slot = page(tableName, tailPage).append(row);
+            }
+            tailPages.put(tableName, tailPage);
+            RowId rowId = new RowId(tailPage, slot);
+            records.add(WriteAheadLog.Record.put(tableName, rowId, row));
+            return rowId;
+        }
+
+        private Page page(String tableName, int pageNo) throws IOException {
+            Map<Integer, Page> tablePages = pages.computeIfAbsent(tableName, table -> new HashMap<Integer, Page>());
+            Page page = tablePages.get(pageNo);
+            if (page == null) {
+                HeapFile heapFile = heapFile(tableName);
+                page = pageNo < heapFile.getPageCount() ? heapFile.getPage(pageNo).copy() : new Page();
+                tablePages.put(pageNo, page);
+            }
+            return page;
+        }
+
+        private Object[] committedRow(String tableName, RowId rowId) throws IOException {
+            byte[] row = heapFile(tableName).read(rowId);
+            if (row == null) {
+                throw new IOException("Row " + rowId + " of " + tableName + " was changed by another transaction");
+            }
+            return codec(tableName).decode(row);
+        }
+
+        private void setKey(String tableName, Object key, boolean isPresent) {
+            keys.computeIfAbsent(tableName, table -> new HashMap<Object, Boolean>()).put(key, isPresent);
+        }
+
+        private void checkKey(String tableName, Object key) throws IOException {
+            Boolean isPresent = keys.getOrDefault(tableName, Map.of()).get(key);
+            if (isPresent == null ? primaryIndex(tableName).containsKey(key) : isPresent) {
+                throw new IOException("Duplicate primary key: " + key);
+            }
+        }
+    }
+
+    /**
+     * applies a logged change to the in-memory pages. Changes the page already
+     * holds are skipped. Outside of recovery the indexes are kept in step.
+     */
+    private void redo(WriteAheadLog.Record record, boolean isIndexed) throws IOException {
+        if (record.getType() == WriteAheadLog.COMMIT) {
+            return;
+        }
+        String tableName = record.getTableName();
+        HeapFile heapFile = heapFile(tableName);
+        boolean hasIndexes = isIndexed
+                && (catalog.getPrimaryKey(tableName) != null || !catalog.getIndexes(tableName).isEmpty());
+        byte[] oldRow = hasIndexes ? heapFile.read(record.getRowId()) : null;
+        boolean isApplied = record.getType() == WriteAheadLog.PUT
+                ? heapFile.put(record.getRowId(), record.getRow(), record.getLsn())
+                : heapFile.remove(record.getRowId(), record.getLsn());
+        if (isApplied && hasIndexes) {
+            RowCodec codec = codec(tableName);
+            reindex(tableName, record.getRowId(), oldRow == null ? null : codec.decode(oldRow),
+                    record.getRow() == null ? null : codec.decode(record.getRow()));
+        }
+    }
+
+    /**
+     * moves the index entries of a row from its old to its new values. Either
+     * side may be null for a row that appeared or went away.
+     */
+    private void reindex(String tableName, RowId rowId, Object[] oldValues, Object[] newValues) throws IOException {
+        HashIndex index = primaryIndex(tableName);
+        if (index != null) {
+            int keyColumn = primaryKeyColumn(tableName);
+            Object oldKey = oldValues == null ? null : oldValues[keyColumn];
+            Object newKey = newValues == null ? null : newValues[keyColumn];
+            if (!Objects.equals(oldKey, newKey)) {
+                if (oldKey != null && rowId.equals(index.get(oldKey))) {
+                    index.remove(oldKey);
+                }
+                if (newKey != null) {
+                    index.put(newKey, rowId);
+                }
+            }
+        }
+        for (Map.Entry<Integer, BPlusTree> tree : secondaryIndexes(tableName).entrySet()) {
+            int column = tree.getKey();
+            Object oldValue = oldValues == null ? null : oldValues[column];
+            Object newValue = newValues == null ? null : newValues[column];
+            if (!Objects.equals(oldValue, newValue)) {
+                tree.getValue().delete(oldValue, rowId);
+                tree.getValue().insert(newValue, rowId);
+            }
+        }
+    }
+
+    /**
+     * redoes the committed changes of the log that may not have reached the
+     * data files. The indexes are not logged, so after an unclean shutdown
+     * they are rebuilt from the rows.
+     */
+    private void recover() throws IOException {
+        List<WriteAheadLog.Record> records = log.recover();
+        for (WriteAheadLog.Record record : records) {
+            if (catalog.getColumns(record.getTableName()) != null) {
+                redo(record, false);
+            }
+        }
+        if (!records.isEmpty() || isIndexesDirty) {
+            rebuildIndexes();
+            checkpoint();
+        }
+    }
+
+    private void rebuildIndexes() throws IOException {
+        for (String tableName : catalog.getTables().keySet()) {
+            HashIndex index = primaryIndexes.remove(tableName);
+            if (index != null) {
+                index.close();
+            }
+            Files.deleteIfExists(directory.resolve(tableName + PRIMARY_INDEX_SUFFIX));
+            primaryIndex(tableName);
+            for (Map.Entry<String, String> secondary : catalog.getIndexes(tableName).entrySet()) {
+                BPlusTree tree = trees.remove(secondary.getKey());
+                if (tree != null) {
+                    tree.close();
+                }
+                Files.deleteIfExists(directory.resolve(secondary.getKey() + SECONDARY_INDEX_SUFFIX));
+                buildIndex(secondary.getKey(), tableName, secondary.getValue());
+            }
+        }
+    }
+
+    /**
+     * records that index files may get ahead of the durable log, so that a
+     * crash before the next checkpoint rebuilds them
+     */
+    private void markIndexesDirty() throws IOException {
+        if (isIndexesDirty) {
+            return;
+        }
+        Files.write(indexesDirtyFile, new byte[0]);
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        }
+        isIndexesDirty = true;
+    }
+
+    private void flush(long durableLsn) throws IOException {
+        for (HeapFile heapFile : heapFiles.values()) {
+            heapFile.flush(durableLsn);
+        }
+        for (HashIndex index : primaryIndexes.values()) {
+            index.flush();
+        }
+    }
+
+    /**
+     * writes every logged change to the data files and forces them to disk,
+     * after which the log starts over empty
+     */
+    private void checkpoint() throws IOException {
+        log.sync(log.getEndLsn());
+        flush(log.getDurableLsn());
+        for (HeapFile heapFile : heapFiles.values()) {
+            heapFile.force();
+        }
+        for (HashIndex index : primaryIndexes.values()) {
+            index.force();
+        }
+        for (BPlusTree tree : trees.values()) {
+            tree.force();
+        }
+        log.reset();
+        if (isIndexesDirty) {
+            Files.deleteIfExists(indexesDirtyFile);
+            isIndexesDirty = false;
+        }
+    }
+
+    @Override
+    public synchronized void createIndex(String indexName, String tableName, String column) throws IOException {
+        Map<String, String> columns = catalog.getColumns(tableName);
+        if (columns == null) {
+            throw new IOException("Table not found: " + tableName);
+        }
+        if (!columns.containsKey(column)) {
+            throw new IOException("Unknown column: " + column);
+        }
+        if (catalog.getIndexes(tableName).containsValue(column)) {
+            throw new IOException("Column " + column + " is already indexed");
+        }
+        markIndexesDirty();
+        catalog.addIndex(indexName, tableName, column);
+        buildIndex(indexName, tableName, column);
+    }
+
+    private void buildIndex(String indexName, String tableName, String column) throws IOException {
+        int columnIndex = columnIndex(tableName, column);
+        BPlusTree tree = secondaryIndex(indexName, tableName, column);
+        try {
+            scan(tableName, only(tableName, columnIndex), (rowId, values) -> tree.insert(values[columnIndex], rowId));
+        } catch (Exception ex) {
+            throw new IOException("Error while building index " + indexName);
+        }
+    }
+
+    @Override
+    public synchronized boolean hasIndex(String tableName, String column) {
+        return catalog.getIndexes(tableName).containsValue(column);
+    }
+
+    @Override
+    public synchronized List<RowId> indexScan(String tableName, String column, Object low, boolean lowInclusive,
+            Object high, boolean highInclusive) throws IOException {
+        for (Map.Entry<String, String> index : catalog.getIndexes(tableName).entrySet()) {
+            if (index.getValue().equals(column)) {
+                return secondaryIndex(index.getKey(), tableName, column).search(low, lowInclusive, high,
+                        highInclusive);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized void scan(String tableName, RowVisitor visitor) throws Exception {
+        scan(tableName, null, visitor);
+    }
+
+    /**
+     * visits every live row of a table, decoding the rows from the pages of
+     * its heap file where they lie
+     *
+     * @param tableName
+     * @param columns   - whether each column is wanted, null for all of them;
+     *                  the others are left null
+     * @param visitor
+     * @throws Exception
+     */
+    private synchronized void scan(String tableName, boolean[] columns, RowVisitor visitor) throws Exception {
+        RowCodec codec = codec(tableName);
+        heapFile(tableName).scan((rowId, page, offset) -> visitor.visit(rowId, codec.decode(page, offset, columns)));
+    }
+
+    /**
+     * @return a column mask of a table with only one column wanted
+     */
+    private boolean[] only(String tableName, int column) throws IOException {
+        boolean[] columns = new boolean[codec(tableName).getTypes().length];
+        columns[column] = true;
+        return columns;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeEngine(directory.toString());
+    }
+
+    private synchronized void closeFiles() throws IOException {
+        checkpoint();
+        log.close();
+        for (HeapFile heapFile : heapFiles.values()) {
+            heapFile.close();
+        }
+        for (HashIndex index : primaryIndexes.values()) {
+            index.close();
+        }
+        for (BPlusTree tree : trees.values()) {
+            tree.close();
+        }
+        heapFiles.clear();
+        primaryIndexes.clear();
+        trees.clear();
+    }
+
+    /**
+     * @param tableName
+     * @return open B+tree indexes of a table keyed by column position
+     */
+    private Map<Integer, BPlusTree> secondaryIndexes(String tableName) throws IOException {
+        Map<String, String> indexes = catalog.getIndexes(tableName);
+        if (indexes.isEmpty()) {
+            return Map.of();
+        }
+        Map<Integer, BPlusTree> tableTrees = new HashMap<Integer, BPlusTree>();
+        for (Map.Entry<String, String> index : indexes.entrySet()) {
+            tableTrees.put(columnIndex(tableName, index.getValue()),
+                    secondaryIndex(index.getKey(), tableName, index.getValue()));
+        }
+        return tableTrees;
+    }
+
+    private BPlusTree secondaryIndex(String indexName, String tableName, String column) throws IOException {
+        BPlusTree tree = trees.get(indexName);
+        if (tree == null) {
+            ColumnType keyType = ColumnType.of(catalog.getColumns(tableName).get(column));
+            tree = new BPlusTree(directory.resolve(indexName + SECONDARY_INDEX_SUFFIX), keyType);
+            trees.put(indexName, tree);
+        }
+        return tree;
+    }
+
+    /**
+     * opens the primary key index of a table. A missing index file is rebuilt
+     * from the heap file.
+     *
+     * @param tableName
+     * @return HashIndex or null if the table has no primary key
+     */
+    private HashIndex primaryIndex(String tableName) throws IOException {
+        String primaryKey = catalog.getPrimaryKey(tableName);
+        if (primaryKey == null) {
+            return null;
+        }
+        HashIndex index = primaryIndexes.get(tableName);
+        if (index == null) {
+            Path indexFile = directory.resolve(tableName + PRIMARY_INDEX_SUFFIX);
+            boolean isNewIndex = !Files.exists(indexFile);
+            ColumnType keyType = ColumnType.of(catalog.getColumns(tableName).get(primaryKey));
+            index = new HashIndex(indexFile, keyType);
+            if (isNewIndex) {
+                markIndexesDirty();
+                int keyColumn = primaryKeyColumn(tableName);
+                HashIndex newIndex = index;
+                try {
+                    scan(tableName, only(tableName, keyColumn),
+                            (rowId, values) -> newIndex.put(values[keyColumn], rowId));
+                } catch (Exception ex) {
+                    throw new IOException("Error while building primary key index of " + tableName);
+                }
+                index.flush();
+            }
+            primaryIndexes.put(tableName, index);
+        }
+        return index;
+    }
+
+    /**
+     * @param tableName
+     * @return position of the primary key column or -1 if there is none
+     */
+    int primaryKeyColumn(String tableName) {
+        return columnIndex(tableName, catalog.getPrimaryKey(tableName));
+    }
+
+    int columnIndex(String tableName, String columnName) {
+        int i = 0;
+        for (String column : catalog.getColumns(tableName).keySet()) {
+            if (column.equals(columnName)) {
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private HeapFile heapFile(String tableName) throws IOException {
+        HeapFile heapFile = heapFiles.get(tableName);
+        if (heapFile == null) {
+            if (catalog.getColumns(tableName) == null) {
+                throw new IOException("Table not found: " + tableName);
+            }
+            heapFile = new HeapFile(directory.resolve(tableName + TABLE_FILE_SUFFIX));
+            heapFiles.put(tableName, heapFile);
+        }
+        return heapFile;
+    }
+
+    /**
+     * encodes a row, failing early for rows that cannot be stored
+     *
+     * @param tableName
+     * @param values
+     * @return byte[]
+     * @throws IOException
+     */
+    synchronized byte[] encode(String tableName, Object[] values) throws IOException {
+        return codec(tableName).encode(values);
+    }
+
+    private RowCodec codec(String tableName) throws IOException {
+        RowCodec codec = codecs.get(tableName);
+        if (codec == null) {
+            Map<String, String> columns = catalog.getColumns(tableName);
+            if (columns == null) {
+                throw new IOException("Table not found: " + tableName);
+            }
+            ColumnType[] types = new ColumnType[columns.size()];
+            int i = 0;
+            for (String type : columns.values()) {
+                types[i++] = ColumnType.of(type);
+            }
+            codec = new RowCodec(types);
+            codecs.put(tableName, codec);
+        }
+        return codec;
+    }
+}
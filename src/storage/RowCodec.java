@@ -0,0 +1,186 @@
+package storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Binary row format used inside heap pages. A row starts with a null bitmap
+ * (one bit per column) followed by the non null values in column order:
+ * INT as 4 bytes, BIGINT and DOUBLE as 8 bytes, DATE as the epoch day and
+ * VARCHAR as a 2 byte length followed by UTF-8 bytes. Spill files use the
+ * same format for rows that may be larger than a page.
+ *
+ * Rows can be decoded where they lie, such as in a page of a mapped heap
+ * file, and only the columns asked for are turned into values; the others
+ * are stepped over by their length without being read.
+ */
+public class RowCodec {
+
+    private final ColumnType[] types;
+
+    public RowCodec(ColumnType[] types) {
+        this.types = types;
+    }
+
+    /**
+     * @return column types in storage order
+     */
+    public ColumnType[] getTypes() {
+        return types;
+    }
+
+    /**
+     * serializes a typed row to be stored in a page
+     *
+     * @param values
+     * @return byte[]
+     * @throws IOException if the row does not fit in a page
+     */
+    public byte[] encode(Object[] values) throws IOException {
+        byte[] row = encodeUnbounded(values);
+        if (row.length > Page.MAX_ROW_SIZE) {
+            throw new IOException("Row too large: " + row.length + " bytes");
+        }
+        return row;
+    }
+
+    /**
+     * serializes a typed row of any size, such as a joined row written to a
+     * spill file, which never goes into a page
+     *
+     * @param values
+     * @return byte[]
+     * @throws IOException
+     */
+    public byte[] encodeUnbounded(Object[] values) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte[] nulls = new byte[(types.length + 7) / 8];
+        for (int i = 0; i < types.length; i++) {
+            if (i >= values.length || values[i] == null) {
+                nulls[i / 8] |= (byte) (1 << (i % 8));
+            }
+        }
+        out.write(nulls);
+        for (int i = 0; i < types.length; i++) {
+            if (i < values.length && values[i] != null) {
+                writeValue(out, types[i], values[i]);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * deserializes a row produced by {@link #encode(Object[])} or
+     * {@link #encodeUnbounded(Object[])}
+     *
+     * @param row
+     * @return Object[]
+     */
+    public Object[] decode(byte[] row) {
+        return decode(ByteBuffer.wrap(row), 0, null);
+    }
+
+    /**
+     * deserializes some columns of a row produced by
+     * {@link #encode(Object[])} without copying it out of a buffer
+     *
+     * @param in      - the buffer holding the row
+     * @param offset  - position of the row in the buffer
+     * @param columns - whether each column is wanted, null for all of them
+     * @return Object[] with the wanted columns, the others null
+     */
+    public Object[] decode(ByteBuffer in, int offset, boolean[] columns) {
+        int position = offset + (types.length + 7) / 8;
+        Object[] values = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            if ((in.get(offset + i / 8) & (1 << (i % 8))) != 0) {
+                continue;
+            }
+            if (columns == null || columns[i]) {
+                values[i] = readValue(in, position, types[i]);
+            }
+            position += types[i] == ColumnType.VARCHAR ? 2 + (in.getShort(position) & 0xFFFF)
+                    : types[i] == ColumnType.BIGINT || types[i] == ColumnType.DOUBLE ? 8 : 4;
+        }
+        return values;
+    }
+
+    /**
+     * reads a single value at a position of a buffer, leaving the buffer's
+     * own position alone
+     */
+    private static Object readValue(ByteBuffer in, int position, ColumnType type) {
+        switch (type) {
+            case INT:
+                return in.getInt(position);
+            case BIGINT:
+                return in.getLong(position);
+            case DOUBLE:
+                return in.getDouble(position);
+            case DATE:
+                return java.sql.Date.valueOf(LocalDate.ofEpochDay(in.getInt(position)));
+            default:
+                int length = in.getShort(position) & 0xFFFF;
+                if (in.hasArray()) {
+                    return new String(in.array(), in.arrayOffset() + position + 2, length, StandardCharsets.UTF_8);
+                }
+                byte[] text = new byte[length];
+                in.get(position + 2, text);
+                return new String(text, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * writes a single non null value in its binary form
+     *
+     * @param out
+     * @param type
+     * @param value
+     * @throws IOException
+     */
+    public static void writeValue(DataOutput out, ColumnType type, Object value) throws IOException {
+        switch (type) {
+            case INT -> out.writeInt(((Number) value).intValue());
+            case BIGINT -> out.writeLong(((Number) value).longValue());
+            case DOUBLE -> out.writeDouble(((Number) value).doubleValue());
+            case DATE -> out.writeInt((int) ((java.sql.Date) value).toLocalDate().toEpochDay());
+            case VARCHAR -> {
+                byte[] text = value.toString().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(text.length);
+                out.write(text);
+            }
+        }
+    }
+
+    /**
+     * reads a single value written by {@link #writeValue(DataOutput, ColumnType, Object)}
+     *
+     * @param in
+     * @param type
+     * @return Object
+     */
+    public static Object readValue(ByteBuffer in, ColumnType type) {
+        switch (type) {
+            case INT:
+                return in.getInt();
+            case BIGINT:
+                return in.getLong();
+            case DOUBLE:
+                return in.getDouble();
+            case DATE:
+                return java.sql.Date.valueOf(LocalDate.ofEpochDay(in.getInt()));
+            default:
+                int length = in.getShort() & 0xFFFF;
+                String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+                in.position(in.position() + length);
+                return value;
+        }
+    }
+}
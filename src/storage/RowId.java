@@ -0,0 +1,48 @@
+package storage;
+
+/**
+ * Physical address of a row inside a table heap file: the page number and the
+ * slot within that page.
+ */
+public final class RowId {
+    private final int page;
+    private final int slot;
+
+    public RowId(int page, int slot) {
+        this.page = page;
+        this.slot = slot;
+    }
+
+    /**
+     * @return page number of the row
+     */
+    public int getPage() {
+        return page;
+    }
+
+    /**
+     * @return slot number of the row inside its page
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof RowId)) {
+            return false;
+        }
+        RowId other = (RowId) obj;
+        return other.page == page && other.slot == slot;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * page + slot;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + page + "," + slot + ")";
+    }
+}
@@ -0,0 +1,140 @@
+package storage;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage interface used by the database to persist tables. Rows are handed
+ * in and out as typed values in table column order and addressed by
+ * {@link RowId}.
+ */
+public interface StorageEngine {
+
+    /**
+     * callback used while scanning a table
+     */
+    interface RowVisitor {
+        void visit(RowId rowId, Object[] values) throws Exception;
+    }
+
+    /**
+     * @return column definitions of every table keyed by table name
+     */
+    Map<String, Map<String, String>> getTables();
+
+    /**
+     * @param tableName
+     * @return primary key column of the table or null if it has none
+     */
+    String getPrimaryKey(String tableName);
+
+    /**
+     * @param tableName
+     * @param columns
+     * @param primaryKey - primary key column or null
+     * @throws IOException
+     */
+    void createTable(String tableName, Map<String, String> columns, String primaryKey) throws IOException;
+
+    /**
+     * finds a row by its primary key using the table's hash index
+     *
+     * @param tableName
+     * @param key
+     * @return RowId of the row or null if no row has the key
+     * @throws IOException
+     */
+    RowId lookup(String tableName, Object key) throws IOException;
+
+    /**
+     * @param tableName
+     * @param rowId
+     * @return typed values of the row or null if it does not exist
+     * @throws IOException
+     */
+    Object[] read(String tableName, RowId rowId) throws IOException;
+
+    /**
+     * @param tableName
+     * @param values
+     * @return RowId of the inserted row
+     * @throws IOException
+     */
+    RowId insert(String tableName, Object[] values) throws IOException;
+
+    /**
+     * appends a batch of rows to a table in one pass
+     *
+     * @param tableName
+     * @param rows
+     * @return RowIds of the inserted rows in order
+     * @throws IOException
+     */
+    List<RowId> insertAll(String tableName, List<Object[]> rows) throws IOException;
+
+    /**
+     * @param tableName
+     * @param rowId
+     * @param values
+     * @return RowId of the row after the update
+     * @throws IOException
+     */
+    RowId update(String tableName, RowId rowId, Object[] values) throws IOException;
+
+    /**
+     * @param tableName
+     * @param rowId
+     * @throws IOException
+     */
+    void delete(String tableName, RowId rowId) throws IOException;
+
+    /**
+     * builds a B+tree index over a column of a table
+     *
+     * @param indexName
+     * @param tableName
+     * @param column
+     * @throws IOException
+     */
+    void createIndex(String indexName, String tableName, String column) throws IOException;
+
+    /**
+     * @param tableName
+     * @param column
+     * @return true if a secondary index exists on the column
+     */
+    boolean hasIndex(String tableName, String column);
+
+    /**
+     * finds rows whose column value lies in a range using the column's
+     * secondary index. A null bound leaves that side of the range open.
+     *
+     * @param tableName
+     * @param column
+     * @param low
+     * @param lowInclusive
+     * @param high
+     * @param highInclusive
+     * @return matching row ids or null if the column has no index
+     * @throws IOException
+     */
+    List<RowId> indexScan(String tableName, String column, Object low, boolean lowInclusive, Object high,
+            boolean highInclusive) throws IOException;
+
+    /**
+     * visits every live row of a table
+     *
+     * @param tableName
+     * @param visitor
+     * @throws Exception
+     */
+    void scan(String tableName, RowVisitor visitor) throws Exception;
+
+    /**
+     * releases all open files
+     *
+     * @throws IOException
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,285 @@
+package storage;
+
+import index.BPlusTree;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Unit of work against a {@link PagedStorageEngine}. Row changes are kept in
+ * memory, layered over the committed rows so the transaction reads its own
+ * writes, until {@link #commit()} hands them to the engine in one batch.
+ * Nothing reaches the data files before that, so {@link #rollback()} only has
+ * to forget the changes. Rows inserted by the transaction get provisional
+ * row ids with a negative page number until they are committed; they are
+ * unique across the transactions of an engine.
+ */
+public class Transaction implements StorageEngine {
+
+    private final PagedStorageEngine engine;
+    private final Map<String, TableChanges> changes = new LinkedHashMap<String, TableChanges>();
+
+    /**
+     * uncommitted changes to one table
+     */
+    static final class TableChanges {
+        final Map<RowId, Object[]> inserted = new LinkedHashMap<RowId, Object[]>();
+        final Map<RowId, Object[]> updated = new LinkedHashMap<RowId, Object[]>();
+        final Set<RowId> deleted = new LinkedHashSet<RowId>();
+        final Map<Object, RowId> keys = new HashMap<Object, RowId>();
+    }
+
+    Transaction(PagedStorageEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * @param rowId
+     * @return true if the row id was handed out for an uncommitted insert
+     */
+    public static boolean isPending(RowId rowId) {
+        return rowId.getPage() < 0;
+    }
+
+    /**
+     * @return true if the transaction changed nothing yet
+     */
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * makes the changes durable through the engine's write-ahead log and
+     * starts over with an empty change set. A failed commit discards the
+     * changes as well.
+     *
+     * @return final row ids of inserted and moved rows keyed by table and by
+     *         the row id the transaction used for them
+     * @throws IOException
+     */
+    public Map<String, Map<RowId, RowId>> commit() throws IOException {
+        if (changes.isEmpty()) {
+            return Map.of();
+        }
+        try {
+            return engine.commit(changes);
+        } finally {
+            changes.clear();
+        }
+    }
+
+    /**
+     * discards every change made since the transaction began or last
+     * committed
+     */
+    public void rollback() {
+        changes.clear();
+    }
+
+    @Override
+    public Map<String, Map<String, String>> getTables() {
+        return engine.getTables();
+    }
+
+    @Override
+    public String getPrimaryKey(String tableName) {
+        return engine.getPrimaryKey(tableName);
+    }
+
+    @Override
+    public void createTable(String tableName, Map<String, String> columns, String primaryKey) throws IOException {
+        engine.createTable(tableName, columns, primaryKey);
+    }
+
+    @Override
+    public RowId lookup(String tableName, Object key) throws IOException {
+        TableChanges tableChanges = changes.get(tableName);
+        if (tableChanges == null) {
+            return engine.lookup(tableName, key);
+        }
+        RowId rowId = tableChanges.keys.get(key);
+        if (rowId != null) {
+            return rowId;
+        }
+        rowId = engine.lookup(tableName, key);
+        if (rowId != null && (tableChanges.deleted.contains(rowId) || tableChanges.updated.containsKey(rowId))) {
+            return null;
+        }
+        return rowId;
+    }
+
+    @Override
+    public Object[] read(String tableName, RowId rowId) throws IOException {
+        TableChanges tableChanges = changes.get(tableName);
+        if (tableChanges == null) {
+            return engine.read(tableName, rowId);
+        }
+        if (isPending(rowId)) {
+            Object[] values = tableChanges.inserted.get(rowId);
+            return values == null ? null : values.clone();
+        }
+        if (tableChanges.deleted.contains(rowId)) {
+            return null;
+        }
+        Object[] values = tableChanges.updated.get(rowId);
+        return values != null ? values.clone() : engine.read(tableName, rowId);
+    }
+
+    @Override
+    public RowId insert(String tableName, Object[] values) throws IOException {
+        engine.encode(tableName, values);
+        int keyColumn = engine.primaryKeyColumn(tableName);
+        if (keyColumn != -1) {
+            checkKey(tableName, values[keyColumn]);
+        }
+        RowId rowId = new RowId(-1, engine.nextPendingSlot());
+        TableChanges tableChanges = tableChanges(tableName);
+        tableChanges.inserted.put(rowId, values.clone());
+        if (keyColumn != -1) {
+            tableChanges.keys.put(values[keyColumn], rowId);
+        }
+        return rowId;
+    }
+
+    @Override
+    public List<RowId> insertAll(String tableName, List<Object[]> rows) throws IOException {
+        List<RowId> rowIds = new ArrayList<RowId>(rows.size());
+        for (Object[] values : rows) {
+            rowIds.add(insert(tableName, values));
+        }
+        return rowIds;
+    }
+
+    @Override
+    public RowId update(String tableName, RowId rowId, Object[] values) throws IOException {
+        Object[] oldValues = read(tableName, rowId);
+        if (oldValues == null) {
+            throw new IOException("Row not found: " + rowId);
+        }
+        engine.encode(tableName, values);
+        int keyColumn = engine.primaryKeyColumn(tableName);
+        TableChanges tableChanges = tableChanges(tableName);
+        if (keyColumn != -1 && !Objects.equals(oldValues[keyColumn], values[keyColumn])) {
+            checkKey(tableName, values[keyColumn]);
+            tableChanges.keys.remove(oldValues[keyColumn], rowId);
+        }
+        if (isPending(rowId)) {
+            tableChanges.inserted.put(rowId, values.clone());
+        } else {
+            tableChanges.updated.put(rowId, values.clone());
+        }
+        if (keyColumn != -1) {
+            tableChanges.keys.put(values[keyColumn], rowId);
+        }
+        return rowId;
+    }
+
+    @Override
+    public void delete(String tableName, RowId rowId) throws IOException {
+        Object[] oldValues = read(tableName, rowId);
+        if (oldValues == null) {
+            return;
+        }
+        TableChanges tableChanges = tableChanges(tableName);
+        int keyColumn = engine.primaryKeyColumn(tableName);
+        if (keyColumn != -1) {
+            tableChanges.keys.remove(oldValues[keyColumn], rowId);
+        }
+        if (isPending(rowId)) {
+            tableChanges.inserted.remove(rowId);
+        } else {
+            tableChanges.updated.remove(rowId);
+            tableChanges.deleted.add(rowId);
+        }
+    }
+
+    @Override
+    public void createIndex(String indexName, String tableName, String column) throws IOException {
+        engine.createIndex(indexName, tableName, column);
+    }
+
+    @Override
+    public boolean hasIndex(String tableName, String column) {
+        return engine.hasIndex(tableName, column);
+    }
+
+    @Override
+    public List<RowId> indexScan(String tableName, String column, Object low, boolean lowInclusive, Object high,
+            boolean highInclusive) throws IOException {
+        List<RowId> committed = engine.indexScan(tableName, column, low, lowInclusive, high, highInclusive);
+        TableChanges tableChanges = changes.get(tableName);
+        if (committed == null || tableChanges == null) {
+            return committed;
+        }
+        List<RowId> rowIds = new ArrayList<RowId>();
+        for (RowId rowId : committed) {
+            if (!tableChanges.deleted.contains(rowId) && !tableChanges.updated.containsKey(rowId)) {
+                rowIds.add(rowId);
+            }
+        }
+        int columnIndex = engine.columnIndex(tableName, column);
+        for (Map<RowId, Object[]> changed : List.of(tableChanges.updated, tableChanges.inserted)) {
+            for (Map.Entry<RowId, Object[]> row : changed.entrySet()) {
+                if (BPlusTree.inRange(row.getValue()[columnIndex], low, lowInclusive, high, highInclusive)) {
+                    rowIds.add(row.getKey());
+                }
+            }
+        }
+        return rowIds;
+    }
+
+    @Override
+    public void scan(String tableName, RowVisitor visitor) throws Exception {
+        TableChanges tableChanges = changes.get(tableName);
+        if (tableChanges == null) {
+            engine.scan(tableName, visitor);
+            return;
+        }
+        engine.scan(tableName, (rowId, values) -> {
+            if (tableChanges.deleted.contains(rowId)) {
+                return;
+            }
+            Object[] updated = tableChanges.updated.get(rowId);
+            visitor.visit(rowId, updated != null ? updated.clone() : values);
+        });
+        for (Map.Entry<RowId, Object[]> row : tableChanges.inserted.entrySet()) {
+            visitor.visit(row.getKey(), row.getValue().clone());
+        }
+    }
+
+    /**
+     * discards the uncommitted changes; the engine itself stays open
+     */
+    @Override
+    public void close() {
+        rollback();
+    }
+
+    private void checkKey(String tableName, Object key) throws IOException {
+        if (key == null) {
+            throw new IOException("Primary key cannot be null");
+        }
+        if (lookup(tableName, key) != null) {
+            throw new IOException("Duplicate primary key: " + key);
+        }
+    }
+
+    private TableChanges tableChanges(String tableName) throws IOException {
+        TableChanges tableChanges = changes.get(tableName);
+        if (tableChanges == null) {
+            if (engine.getTables().get(tableName) == null) {
+                throw new IOException("Table not found: " + tableName);
+            }
+            tableChanges = new TableChanges();
+            changes.put(tableName, tableChanges);
+        }
+        return tableChanges;
+    }
+}
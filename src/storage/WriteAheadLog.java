@@ -0,0 +1,350 @@
+package storage;
+
+import metrics.Metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Redo log of a storage directory. A committing transaction appends one
+ * record per row change followed by a commit record, and the commit is
+ * durable once {@link #sync(long)} returns. Committers that arrive while a
+ * sync is running wait for it and are then covered together by the next one,
+ * so concurrent commits share a single fsync.
+ *
+ * <pre>
+ * | baseLsn | length | crc | type | table | page | slot | row length | row | ...
+ * </pre>
+ *
+ * The log sequence number of a record is the log position right after it,
+ * counted from {@code baseLsn}, so numbers keep growing across
+ * {@link #reset()}.
+ */
+public class WriteAheadLog implements Closeable {
+
+    public static final byte PUT = 1;
+    public static final byte REMOVE = 2;
+    public static final byte COMMIT = 3;
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final Path file;
+    private FileChannel channel;
+    private long baseLsn;
+    private long endLsn;
+    private long durableLsn;
+    private boolean isSyncing;
+
+    /**
+     * single logged change. PUT stores a row at a location, REMOVE clears it.
+     */
+    public static final class Record {
+        private final byte type;
+        private final String tableName;
+        private final RowId rowId;
+        private final byte[] row;
+        private long lsn;
+
+        private Record(byte type, String tableName, RowId rowId, byte[] row) {
+            this.type = type;
+            this.tableName = tableName;
+            this.rowId = rowId;
+            this.row = row;
+        }
+
+        public static Record put(String tableName, RowId rowId, byte[] row) {
+            return new Record(PUT, tableName, rowId, row);
+        }
+
+        public static Record remove(String tableName, RowId rowId) {
+            return new Record(REMOVE, tableName, rowId, null);
+        }
+
+        public static Record commit() {
+            return new Record(COMMIT, "", new RowId(0, 0), null);
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        public RowId getRowId() {
+            return rowId;
+        }
+
+        public byte[] getRow() {
+            return row;
+        }
+
+        /**
+         * @return log sequence number, known once the record was appended
+         */
+        public long getLsn() {
+            return lsn;
+        }
+    }
+
+    public WriteAheadLog(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (channel.size() < FILE_HEADER_SIZE) {
+            writeHeader(channel, 0);
+            channel.truncate(FILE_HEADER_SIZE);
+            channel.force(true);
+        }
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        channel.read(header, 0);
+        this.baseLsn = header.getLong(0);
+        this.endLsn = baseLsn;
+        this.durableLsn = baseLsn;
+    }
+
+    /**
+     * reads back the records of every committed transaction in log order and
+     * cuts off whatever follows the last commit record, such as a torn write
+     * or a transaction that never committed.
+     *
+     * @return committed records with their log sequence numbers
+     * @throws IOException
+     */
+    public synchronized List<Record> recover() throws IOException {
+        ByteBuffer in = ByteBuffer.allocate((int) (channel.size() - FILE_HEADER_SIZE));
+        while (in.hasRemaining()) {
+            if (channel.read(in, FILE_HEADER_SIZE + in.position()) < 0) {
+                break;
+            }
+        }
+        in.flip();
+        Metrics.shared().addLogBytesRead(in.limit());
+        List<Record> committed = new ArrayList<Record>();
+        List<Record> pending = new ArrayList<Record>();
+        int committedEnd = 0;
+        CRC32 crc = new CRC32();
+        try {
+            while (in.remaining() >= RECORD_HEADER_SIZE) {
+                int length = in.getInt();
+                int checksum = in.getInt();
+                if (length <= 0 || length > in.remaining()) {
+                    break;
+                }
+                crc.reset();
+                crc.update(in.array(), in.position(), length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                ByteBuffer body = ByteBuffer.wrap(in.array(), in.position(), length).slice();
+                in.position(in.position() + length);
+                Record record = decode(body);
+                record.lsn = baseLsn + in.position();
+                if (record.type == COMMIT) {
+                    committed.addAll(pending);
+                    pending.clear();
+                    committedEnd = in.position();
+                } else {
+                    pending.add(record);
+                }
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+            // torn record, everything from here on is discarded
+        }
+        channel.truncate(FILE_HEADER_SIZE + committedEnd);
+        endLsn = baseLsn + committedEnd;
+        durableLsn = endLsn;
+        return committed;
+    }
+
+    /**
+     * appends the records of one transaction as a single write. The records
+     * are not durable until {@link #sync(long)} is called with the returned
+     * position.
+     *
+     * @param records
+     * @return log sequence number of the last record
+     * @throws IOException
+     */
+    public synchronized long append(List<Record> records) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        CRC32 crc = new CRC32();
+        long lsn = endLsn;
+        for (Record record : records) {
+            byte[] body = encode(record);
+            crc.reset();
+            crc.update(body);
+            out.writeInt(body.length);
+            out.writeInt((int) crc.getValue());
+            out.write(body);
+            lsn += RECORD_HEADER_SIZE + body.length;
+            record.lsn = lsn;
+        }
+        out.flush();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        long position = FILE_HEADER_SIZE + endLsn - baseLsn;
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+        Metrics.shared().addLogBytesWritten(buffer.limit());
+        endLsn = lsn;
+        return lsn;
+    }
+
+    /**
+     * makes the log durable up to a position. If another thread is already
+     * syncing, the caller waits for it and only syncs itself when that did
+     * not cover its records; every record appended in the meantime rides
+     * along with the same fsync.
+     *
+     * @param lsn
+     * @throws IOException
+     */
+    public void sync(long lsn) throws IOException {
+        long target;
+        synchronized (this) {
+            while (durableLsn < lsn && isSyncing) {
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for log sync");
+                }
+            }
+            if (durableLsn >= lsn) {
+                return;
+            }
+            isSyncing = true;
+            target = endLsn;
+        }
+        boolean isSynced = false;
+        try {
+            channel.force(false);
+            isSynced = true;
+        } finally {
+            synchronized (this) {
+                isSyncing = false;
+                if (isSynced) {
+                    durableLsn = Math.max(durableLsn, target);
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return log sequence number up to which the log is on disk
+     */
+    public synchronized long getDurableLsn() {
+        return durableLsn;
+    }
+
+    /**
+     * @return log sequence number of the last appended record
+     */
+    public synchronized long getEndLsn() {
+        return endLsn;
+    }
+
+    /**
+     * @return bytes of records held in the log
+     */
+    public synchronized long size() {
+        return endLsn - baseLsn;
+    }
+
+    /**
+     * empties the log once every change it holds has been written to the data
+     * files. The empty log replaces the old one in a single rename, so a
+     * crash leaves either the complete old log or the new one.
+     *
+     * @throws IOException
+     */
+    public synchronized void reset() throws IOException {
+        if (endLsn == baseLsn) {
+            return;
+        }
+        while (isSyncing) {
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for log sync");
+            }
+        }
+        Path emptyLog = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(emptyLog, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(out, endLsn);
+            out.force(true);
+        }
+        channel.close();
+        Files.move(emptyLog, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        baseLsn = endLsn;
+        durableLsn = endLsn;
+    }
+
+    private static void writeHeader(FileChannel out, long lsn) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putLong(0, lsn);
+        while (header.hasRemaining()) {
+            out.write(header, header.position());
+        }
+    }
+
+    private static byte[] encode(Record record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(record.type);
+        if (record.type != COMMIT) {
+            out.writeUTF(record.tableName);
+            out.writeInt(record.rowId.getPage());
+            out.writeInt(record.rowId.getSlot());
+        }
+        if (record.type == PUT) {
+            out.writeInt(record.row.length);
+            out.write(record.row);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Record decode(ByteBuffer in) {
+        byte type = in.get();
+        if (type == COMMIT) {
+            return Record.commit();
+        }
+        byte[] name = new byte[in.getShort() & 0xFFFF];
+        in.get(name);
+        String tableName = new String(name, StandardCharsets.UTF_8);
+        RowId rowId = new RowId(in.getInt(), in.getInt());
+        if (type == REMOVE) {
+            return Record.remove(tableName, rowId);
+        }
+        byte[] row = new byte[in.getInt()];
+        in.get(row);
+        return Record.put(tableName, rowId, row);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,285 @@
+package utils;
+
+import cursor.Accumulator;
+import cursor.Cursor;
+import cursor.HashAggregateCursor;
+import cursor.MorselCursor;
+import cursor.ParallelScan;
+import cursor.ProjectCursor;
+import sql.Expression;
+import sql.Statement;
+import storage.ColumnType;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Plan of a SELECT with GROUP BY, aggregates or HAVING. The rows the FROM
+ * and WHERE clauses give, of one table or of joined tables, are reduced to
+ * the columns the groups and aggregates read and handed to a
+ * {@link HashAggregateCursor}. The result has a row per group, or a single
+ * row when there is no GROUP BY, and every column of the select list must
+ * either be grouped by or be an aggregate.
+ *
+ * HAVING is compiled against the result rows, so it can name the group
+ * columns the way GROUP BY names them and any aggregate, whether it is
+ * selected or not. The groups may use {@code aggregate.memory} bytes, 64 MB
+ * unless the system property says otherwise, before rows are spilled to
+ * disk.
+ *
+ * The rows of a {@link ParallelScan} are aggregated by each morsel into
+ * partial rows, which are merged into the groups of the result as they are
+ * handed back.
+ */
+public final class AggregatePlan {
+
+    private static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+    private final String[] names;
+    private final Map<String, String> columns;
+    private final List<Integer> inputs = new ArrayList<Integer>();
+    private final int[] groupColumns;
+    private final Expression.Aggregate.Function[] functions;
+    private final int[] aggregateColumns;
+    private final Condition having;
+    private final List<Integer> groups;
+    private final List<String> aggregateNames = new ArrayList<String>();
+    private final Map<String, String> resultColumns = new LinkedHashMap<String, String>();
+    private final int[] projection;
+    private final List<String> columnNames = new ArrayList<String>();
+
+    /**
+     * @param select     - a SELECT for which {@link Statement.Select#isAggregate()}
+     *                   holds
+     * @param columns    - names and types of the columns of the rows to
+     *                   group, {@code table.column} for joined rows
+     * @param parameters - values of the statement's placeholders
+     * @throws Exception
+     */
+    public AggregatePlan(Statement.Select select, Map<String, String> columns, Object[] parameters)
+            throws Exception {
+        this.columns = columns;
+        this.names = columns.keySet().toArray(new String[0]);
+        List<Integer> groups = new ArrayList<Integer>();
+        for (String name : select.getGroupBy()) {
+            int input = input(resolve(name));
+            if (!groups.contains(input)) {
+                groups.add(input);
+                resultColumns.put(name, columns.get(names[inputs.get(input)]));
+            }
+        }
+        this.groupColumns = groups.stream().mapToInt(Integer::intValue).toArray();
+        List<Expression.Aggregate> aggregates = select.getAggregates();
+        this.functions = new Expression.Aggregate.Function[aggregates.size()];
+        this.aggregateColumns = new int[aggregates.size()];
+        for (int i = 0; i < functions.length; i++) {
+            Expression.Aggregate aggregate = aggregates.get(i);
+            functions[i] = aggregate.getFunction();
+            ColumnType type = null;
+            aggregateColumns[i] = -1;
+            if (aggregate.getColumn() != null) {
+                int column = resolve(aggregate.getColumn());
+                type = ColumnType.of(columns.get(names[column]));
+                aggregateColumns[i] = input(column);
+            }
+            ColumnType resultType = Accumulator.resultType(functions[i], type);
+            if (resultType == null) {
+                fail("Cannot take " + functions[i] + " of " + type.name().toLowerCase() + " column "
+                        + aggregate.getColumn());
+            }
+            resultColumns.put(aggregate.getName(), resultType.name());
+        }
+        this.having = select.getHaving() == null ? null
+                : Condition.compile(select.getHaving(), resultColumns, parameters);
+        this.groups = groups;
+        this.projection = project(select);
+    }
+
+    /**
+     * @return position in the result row of each selected column
+     */
+    private int[] project(Statement.Select select) throws Exception {
+        if (select.getColumns().isEmpty()) {
+            fail("SELECT * cannot be used with GROUP BY or aggregates, list the columns instead");
+        }
+        for (Expression.Aggregate aggregate : select.getAggregates()) {
+            aggregateNames.add(aggregate.getName());
+        }
+        int[] projection = new int[select.getColumns().size()];
+        for (int i = 0; i < projection.length; i++) {
+            String name = select.getColumns().get(i);
+            projection[i] = getColumn(name);
+            columnNames.add(name);
+        }
+        return projection;
+    }
+
+    /**
+     * @param name - a group column or an aggregate as written
+     * @return its position in the result row
+     * @throws Exception if it is neither
+     */
+    public int getColumn(String name) throws Exception {
+        int aggregate = aggregateNames.indexOf(name);
+        if (aggregate != -1) {
+            return groupColumns.length + aggregate;
+        }
+        int column = groups.indexOf(inputs.indexOf(resolve(name)));
+        if (column == -1) {
+            fail("Column " + name + " must appear in GROUP BY or be used in an aggregate");
+        }
+        return column;
+    }
+
+    /**
+     * @return position of a column among those read, adding it if it is not
+     *         read yet
+     */
+    private int input(int column) {
+        int input = inputs.indexOf(column);
+        if (input == -1) {
+            inputs.add(column);
+            input = inputs.size() - 1;
+        }
+        return input;
+    }
+
+    /**
+     * @return position of a column in the rows to group
+     */
+    private int resolve(String name) throws Exception {
+        return resolve(names, name);
+    }
+
+    /**
+     * @param names - names of the columns of a row
+     * @param name  - a column as written
+     * @return position of the column in the row; an unqualified name also
+     *         matches {@code table.name} of joined rows
+     * @throws Exception
+     */
+    static int resolve(String[] names, String name) throws Exception {
+        int found = -1;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+            if (name.indexOf('.') == -1 && names[i].endsWith("." + name)) {
+                if (found != -1) {
+                    fail("Column " + name + " is ambiguous, qualify it with its table");
+                }
+                found = i;
+            }
+        }
+        if (found == -1) {
+            fail("Unknown column: " + name);
+        }
+        return found;
+    }
+
+    /**
+     * groups the rows of a cursor
+     *
+     * @param input - rows with the columns the plan was made for
+     * @return cursor over the groups, with the group columns followed by the
+     *         aggregates
+     */
+    public Cursor open(Cursor input) {
+        return new HashAggregateCursor(new ProjectCursor(input, read()), types(), groupColumns, functions,
+                aggregateColumns, having, memoryBudget(), HashAggregateCursor.Phase.COMPLETE);
+    }
+
+    /**
+     * groups the rows of a parallel scan, each morsel aggregating its own
+     * rows before they are merged
+     *
+     * @param scan - scan of the table the plan was made for
+     * @return cursor over the groups, with the group columns followed by the
+     *         aggregates
+     */
+    public Cursor open(ParallelScan scan) {
+        int[] read = read();
+        ColumnType[] types = types();
+        List<ColumnType> partialTypes = new ArrayList<ColumnType>();
+        int[] partialGroups = new int[groupColumns.length];
+        for (int i = 0; i < groupColumns.length; i++) {
+            partialGroups[i] = i;
+            partialTypes.add(types[groupColumns[i]]);
+        }
+        int[] partialColumns = new int[functions.length];
+        for (int i = 0; i < functions.length; i++) {
+            partialColumns[i] = partialTypes.size();
+            ColumnType type = aggregateColumns[i] == -1 ? null : types[aggregateColumns[i]];
+            partialTypes.addAll(List.of(Accumulator.partialTypes(functions[i], type)));
+        }
+        Function<Cursor, List<Object[]>> task = morsel -> {
+            Cursor partial = new HashAggregateCursor(new ProjectCursor(morsel, read), types, groupColumns,
+                    functions, aggregateColumns, null, Long.MAX_VALUE, HashAggregateCursor.Phase.PARTIAL);
+            List<Object[]> rows = new ArrayList<Object[]>();
+            while (partial.next()) {
+                Object[] row = new Object[partial.getColumnCount()];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = partial.get(i);
+                }
+                rows.add(row);
+            }
+            partial.close();
+            return rows;
+        };
+        return new HashAggregateCursor(new MorselCursor(scan, task, partialTypes.size()),
+                partialTypes.toArray(new ColumnType[0]), partialGroups, functions, partialColumns, having,
+                memoryBudget(), HashAggregateCursor.Phase.FINAL);
+    }
+
+    /**
+     * @return positions of the columns read in the rows to group
+     */
+    private int[] read() {
+        return inputs.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return types of the columns read
+     */
+    private ColumnType[] types() {
+        ColumnType[] types = new ColumnType[inputs.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = ColumnType.of(columns.get(names[inputs.get(i)]));
+        }
+        return types;
+    }
+
+    private static long memoryBudget() {
+        return Long.getLong("aggregate.memory", DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * @return names and types of the columns of the result rows, the group
+     *         columns as GROUP BY names them followed by the aggregates
+     */
+    public Map<String, String> getResultColumns() {
+        return resultColumns;
+    }
+
+    /**
+     * @return position in the result row of each selected column
+     */
+    public int[] getProjection() {
+        return projection;
+    }
+
+    /**
+     * @return names of the selected columns as written
+     */
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    private static void fail(String message) throws Exception {
+        System.out.println(message);
+        throw new Exception(message);
+    }
+}
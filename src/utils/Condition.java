@@ -0,0 +1,760 @@
+package utils;
+
+import column.ColumnVector;
+import column.DictionaryColumn;
+import sql.Expression;
+import sql.ExpressionParser;
+import sql.Statement;
+import sql.SyntaxException;
+import storage.ColumnType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled WHERE clause. The clause is parsed once into a tree of predicates
+ * bound to column positions, with every literal already cast to the type of
+ * the column it is compared with, so evaluating a row only walks the tree.
+ * Rows can be given either as typed values in column order or as a position
+ * in a table's {@link ColumnVector}s.
+ *
+ * Comparisons involving null are unknown, as in SQL: {@code NOT (a > 1)} does
+ * not match a row where {@code a} is null, and only rows for which the whole
+ * clause is true match.
+ */
+public class Condition {
+
+    private static final int FALSE = 0;
+    private static final int TRUE = 1;
+    private static final int UNKNOWN = 2;
+    private static final int HASHED_IN_LIST_SIZE = 8;
+
+    private final Node root;
+    private final List<Range> ranges;
+
+    private Condition(Node root, List<Range> ranges) {
+        this.root = root;
+        this.ranges = ranges;
+    }
+
+    /**
+     * parses a WHERE clause against the columns of a table
+     *
+     * @param whereClause
+     * @param columns     - column types in table order
+     * @return Condition
+     * @throws Exception
+     */
+    public static Condition parse(String whereClause, Map<String, String> columns) throws Exception {
+        Expression expression;
+        try {
+            expression = ExpressionParser.parseCondition(whereClause);
+        } catch (SyntaxException ex) {
+            System.out.println("Invalid WHERE clause: " + ex.getMessage());
+            throw new Exception("Invalid WHERE clause: " + ex.getMessage());
+        }
+        return compile(expression, columns, new Object[0]);
+    }
+
+    /**
+     * binds a parsed WHERE clause to the columns of a table
+     *
+     * @param expression
+     * @param columns    - column types in table order
+     * @param parameters - values of the {@code ?} parameters as text
+     * @return Condition
+     * @throws Exception
+     */
+    public static Condition compile(Expression expression, Map<String, String> columns, Object[] parameters)
+            throws Exception {
+        Compiler compiler = new Compiler(columns, parameters);
+        Node root = compiler.compile(expression);
+        Map<Integer, Range> ranges = new LinkedHashMap<Integer, Range>();
+        for (Node conjunct : root instanceof And ? ((And) root).operands : new Node[] { root }) {
+            Range range = conjunct.range(compiler.names);
+            if (range != null) {
+                Range other = ranges.get(range.columnIndex);
+                ranges.put(range.columnIndex, other == null ? range : other.intersect(range));
+            }
+        }
+        return new Condition(root, new ArrayList<Range>(ranges.values()));
+    }
+
+    /**
+     * checks a row given as typed values in column order
+     *
+     * @param row
+     * @return true if the clause holds for the row
+     */
+    public boolean matches(Object[] row) {
+        return root.test(row) == TRUE;
+    }
+
+    /**
+     * checks a row of an in-memory table, reading each column in its own
+     * representation
+     *
+     * @param columns - the table's vectors in column order
+     * @param row     - position of the row
+     * @return true if the clause holds for the row
+     */
+    public boolean matches(ColumnVector[] columns, int row) {
+        return root.test(columns, row) == TRUE;
+    }
+
+    /**
+     * Ranges of single columns that every matching row falls into, taken from
+     * the top level conjuncts of the clause. Any of them can be answered by an
+     * index; the rows found that way still have to be checked against the
+     * whole clause.
+     *
+     * @return List<Range>
+     */
+    public List<Range> getRanges() {
+        return ranges;
+    }
+
+    /**
+     * range of values of one column: {@code col = v}, {@code col < v},
+     * {@code col BETWEEN a AND b} and the like
+     */
+    public static final class Range {
+        private final String column;
+        private final int columnIndex;
+        private final Object low;
+        private final boolean lowInclusive;
+        private final Object high;
+        private final boolean highInclusive;
+
+        private Range(String column, int columnIndex, Object low, boolean lowInclusive, Object high,
+                boolean highInclusive) {
+            this.column = column;
+            this.columnIndex = columnIndex;
+            this.low = low;
+            this.lowInclusive = lowInclusive;
+            this.high = high;
+            this.highInclusive = highInclusive;
+        }
+
+        /**
+         * @return column the range applies to
+         */
+        public String getColumn() {
+            return column;
+        }
+
+        /**
+         * @return lower bound or null if unbounded
+         */
+        public Object getLow() {
+            return low;
+        }
+
+        /**
+         * @return whether the lower bound itself matches
+         */
+        public boolean isLowInclusive() {
+            return lowInclusive;
+        }
+
+        /**
+         * @return upper bound or null if unbounded
+         */
+        public Object getHigh() {
+            return high;
+        }
+
+        /**
+         * @return whether the upper bound itself matches
+         */
+        public boolean isHighInclusive() {
+            return highInclusive;
+        }
+
+        /**
+         * @return true for {@code col = value}
+         */
+        public boolean isEquality() {
+            return low != null && low == high;
+        }
+
+        private Range intersect(Range other) {
+            Object newLow = low;
+            boolean newLowInclusive = lowInclusive;
+            int cmp = low == null ? -1 : other.low == null ? 1 : compare(low, other.low);
+            if (cmp < 0 || cmp == 0 && !other.lowInclusive) {
+                newLow = other.low;
+                newLowInclusive = other.lowInclusive;
+            }
+            Object newHigh = high;
+            boolean newHighInclusive = highInclusive;
+            cmp = high == null ? 1 : other.high == null ? -1 : compare(high, other.high);
+            if (cmp > 0 || cmp == 0 && !other.highInclusive) {
+                newHigh = other.high;
+                newHighInclusive = other.highInclusive;
+            }
+            if (newLow != null && newHigh != null && compare(newLow, newHigh) == 0 && newLowInclusive
+                    && newHighInclusive) {
+                newHigh = newLow;
+            }
+            return new Range(column, columnIndex, newLow, newLowInclusive, newHigh, newHighInclusive);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object value, Object other) {
+        return ((Comparable<Object>) value).compareTo(other);
+    }
+
+    private static int truth(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    /**
+     * node of the compiled tree. Evaluates to TRUE, FALSE or UNKNOWN.
+     */
+    private abstract static class Node {
+        abstract int test(Object[] row);
+
+        abstract int test(ColumnVector[] columns, int row);
+
+        Range range(String[] names) {
+            return null;
+        }
+    }
+
+    private static final class And extends Node {
+        private final Node[] operands;
+
+        And(Node[] operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        int test(Object[] row) {
+            int result = TRUE;
+            for (Node operand : operands) {
+                int value = operand.test(row);
+                if (value == FALSE) {
+                    return FALSE;
+                }
+                if (value == UNKNOWN) {
+                    result = UNKNOWN;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        int test(ColumnVector[] columns, int row) {
+            int result = TRUE;
+            for (Node operand : operands) {
+                int value = operand.test(columns, row);
+                if (value == FALSE) {
+                    return FALSE;
+                }
+                if (value == UNKNOWN) {
+                    result = UNKNOWN;
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class Or extends Node {
+        private final Node[] operands;
+
+        Or(Node[] operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        int test(Object[] row) {
+            int result = FALSE;
+            for (Node operand : operands) {
+                int value = operand.test(row);
+                if (value == TRUE) {
+                    return TRUE;
+                }
+                if (value == UNKNOWN) {
+                    result = UNKNOWN;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        int test(ColumnVector[] columns, int row) {
+            int result = FALSE;
+            for (Node operand : operands) {
+                int value = operand.test(columns, row);
+                if (value == TRUE) {
+                    return TRUE;
+                }
+                if (value == UNKNOWN) {
+                    result = UNKNOWN;
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class Not extends Node {
+        private final Node operand;
+
+        Not(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        int test(Object[] row) {
+            int value = operand.test(row);
+            return value == UNKNOWN ? UNKNOWN : TRUE - value;
+        }
+
+        @Override
+        int test(ColumnVector[] columns, int row) {
+            int value = operand.test(columns, row);
+            return value == UNKNOWN ? UNKNOWN : TRUE - value;
+        }
+    }
+
+    /**
+     * result that does not depend on the row, such as a comparison with NULL
+     */
+    private static final class Constant extends Node {
+        private final int value;
+
+        Constant(int value) {
+            this.value = value;
+        }
+
+        @Override
+        int test(Object[] row) {
+            return value;
+        }
+
+        @Override
+        int test(ColumnVector[] columns, int row) {
+            return value;
+        }
+    }
+
+    /**
+     * {@code col op value}; the operator is turned into a test on the result
+     * of comparing the column with the value
+     */
+    private static final class Comparison extends Node {
+        private final int column;
+        private final Object value;
+        private final Expression.Operator operator;
+        private final IntPredicate accepts;
+
+        Comparison(int column, Expression.Operator operator, Object value) {
+            this.column = column;
+            this.value = value;
+            this.operator = operator;
+            this.accepts = switch (operator) {
+                case EQ -> cmp -> cmp == 0;
+                case NE -> cmp -> cmp != 0;
+                case LT -> cmp -> cmp < 0;
+                case LE -> cmp -> cmp <= 0;
+                case GT -> cmp -> cmp > 0;
+                case GE -> cmp -> cmp >= 0;
+            };
+        }
+
+        @Override
+        int test(Object[] row) {
+            Object cell = row[column];
+            return cell == null ? UNKNOWN : truth(accepts.test(compare(cell, value)));
+        }
+
+        @Override
+        int test(ColumnVector[] columns, int row) {
+            ColumnVector vector = columns[column];
+            return vector.isNull(row) ? UNKNOWN : truth(accepts.test(vector.compare(row, value)));
+        }
+
+        @Override
+        Range range(String[] names) {
+            return switch (operator) {
+                case EQ -> new Range(names[column], column, value, true, value, true);
+                case LT -> new Range(names[column], column, null, false, value, false);
+                case LE -> new Range(names[column], column, null, false, value, true);
+                case GT -> new Range(names[column], column, value, false, null, false);
+                case GE -> new Range(names[column], column, value, true, null, false);
+                default -> null;
+            };
+        }
+    }
+
+    /**
+     * {@code col BETWEEN low AND high}
+     */
+    private static final class Between extends Node {
+        private final int column;
+        private final Object low;
+        private final Object high;
+
+        Between(int column, Object low, Object high) {
+            this.column = column;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        int test(Object[] row) {
+            Object cell = row[column];
+            return cell == null ? UNKNOWN : truth(compare(cell, low) >= 0 && compare(cell, high) <= 0);
+        }
+
+        @Override
+        int test(ColumnVector[] columns, int row) {
+            ColumnVector vector = columns[column];
+            return vector.isNull(row) ? UNKNOWN
+                    : truth(vector.compare(row, low) >= 0 && vector.compare(row, high) <= 0);
+        }
+
+        @Override
+        Range range(String[] names) {
+            return new Range(names[column], column, low, true, high, true);
+        }
+    }
+
+    /**
+     * {@code col IN (...)}. Short lists are compared value by value, longer
+     * ones go through a hash set.
+     */
+    private static final class In extends Node {
+        private final int column;
+        private final Object[] values;
+        private final Set<Object> hashed;
+
+        In(int column, Object[] values) {
+            this.column = column;
+            this.values = values;
+            this.hashed = values.length > HASHED_IN_LIST_SIZE ? new HashSet<Object>(Arrays.asList(values)) : null;
+        }
+
+        @Override
+        int test(Object[] row) {
+            Object cell = row[column];
+            if (cell == null) {
+                return UNKNOWN;
+            }
+            if (hashed != null) {
+                return truth(hashed.contains(cell));
+            }
+            for (Object value : values) {
+                if (compare(cell, value) == 0) {
+                    return TRUE;
+                }
+            }
+            return FALSE;
+        }
+
+        @Override
+        int test(ColumnVector[] columns, int row) {
+            ColumnVector vector = columns[column];
+            if (vector.isNull(row)) {
+                return UNKNOWN;
+            }
+            if (hashed != null) {
+                return truth(hashed.contains(vector.get(row)));
+            }
+            for (Object value : values) {
+                if (vector.compare(row, value) == 0) {
+                    return TRUE;
+                }
+            }
+            return FALSE;
+        }
+
+        @Override
+        Range range(String[] names) {
+            return values.length == 1 ? new Range(names[column], column, values[0], true, values[0], true) : null;
+        }
+    }
+
+    /**
+     * {@code col LIKE pattern}, with {@code %} matching any run of characters
+     * and {@code _} a single one. On a dictionary encoded column each distinct
+     * string is matched once and the outcome remembered by its code.
+     */
+    private static final class Like extends Node {
+        private final int column;
+        private final Pattern pattern;
+        private final String prefix;
+        private volatile Memo memo = new Memo(null, new byte[0]);
+
+        /**
+         * match outcomes by dictionary code, 0 while not yet known. Replaced
+         * rather than changed when it grows, so concurrent readers at worst
+         * match a string twice.
+         */
+        private static final class Memo {
+            final DictionaryColumn column;
+            final byte[] outcomes;
+
+            Memo(DictionaryColumn column, byte[] outcomes) {
+                this.column = column;
+                this.outcomes = outcomes;
+            }
+        }
+
+        Like(int column, String likePattern, boolean isString) {
+            this.column = column;
+            StringBuilder regex = new StringBuilder();
+            StringBuilder literal = new StringBuilder();
+            int prefixEnd = -1;
+            for (int i = 0; i < likePattern.length(); i++) {
+                char c = likePattern.charAt(i);
+                if (c == '%' || c == '_') {
+                    if (prefixEnd == -1) {
+                        prefixEnd = i;
+                    }
+                    if (literal.length() > 0) {
+                        regex.append(Pattern.quote(literal.toString()));
+                        literal.setLength(0);
+                    }
+                    regex.append(c == '%' ? ".*" : ".");
+                } else {
+                    literal.append(c);
+                }
+            }
+            if (literal.length() > 0) {
+                regex.append(Pattern.quote(literal.toString()));
+            }
+            this.pattern = Pattern.compile(regex.toString(), Pattern.DOTALL);
+            this.prefix = !isString ? "" : prefixEnd == -1 ? likePattern : likePattern.substring(0, prefixEnd);
+        }
+
+        @Override
+        int test(Object[] row) {
+            Object cell = row[column];
+            return cell == null ? UNKNOWN : truth(pattern.matcher(cell.toString()).matches());
+        }
+
+        @Override
+        int test(ColumnVector[] columns, int row) {
+            ColumnVector vector = columns[column];
+            if (vector.isNull(row)) {
+                return UNKNOWN;
+            }
+            if (!(vector instanceof DictionaryColumn)) {
+                return truth(pattern.matcher(vector.get(row).toString()).matches());
+            }
+            DictionaryColumn dictionary = (DictionaryColumn) vector;
+            int code = dictionary.getCode(row);
+            Memo current = memo;
+            if (current.column != dictionary || code >= current.outcomes.length) {
+                byte[] outcomes = current.column != dictionary ? new byte[0] : current.outcomes;
+                current = new Memo(dictionary, Arrays.copyOf(outcomes, Math.max(code + 1, outcomes.length * 2)));
+                memo = current;
+            }
+            byte[] outcomes = current.outcomes;
+            if (outcomes[code] == 0) {
+                outcomes[code] = (byte) (pattern.matcher(dictionary.decode(code)).matches() ? TRUE + 1 : FALSE + 1);
+            }
+            return outcomes[code] - 1;
+        }
+
+        /**
+         * a pattern starting with fixed text only matches strings within
+         * {@code [prefix, prefix with its last character incremented)}
+         */
+        @Override
+        Range range(String[] names) {
+            if (prefix.isEmpty() || prefix.charAt(prefix.length() - 1) == Character.MAX_VALUE) {
+                return null;
+            }
+            String high = prefix.substring(0, prefix.length() - 1) + (char) (prefix.charAt(prefix.length() - 1) + 1);
+            return new Range(names[column], column, prefix, true, high, false);
+        }
+    }
+
+    /**
+     * {@code col IS NULL}
+     */
+    private static final class IsNull extends Node {
+        private final int column;
+
+        IsNull(int column) {
+            this.column = column;
+        }
+
+        @Override
+        int test(Object[] row) {
+            return truth(row[column] == null);
+        }
+
+        @Override
+        int test(ColumnVector[] columns, int row) {
+            return truth(columns[column].isNull(row));
+        }
+    }
+
+    /**
+     * turns a syntax tree into nodes, resolving names to column positions and
+     * casting literals to column types
+     */
+    private static final class Compiler {
+        private final Map<String, String> columns;
+        private final String[] names;
+        private final Object[] parameters;
+
+        Compiler(Map<String, String> columns, Object[] parameters) {
+            this.columns = columns;
+            this.names = columns.keySet().toArray(new String[0]);
+            this.parameters = parameters;
+        }
+
+        Node compile(Expression expression) throws Exception {
+            if (expression instanceof Expression.Logical) {
+                Expression.Logical logical = (Expression.Logical) expression;
+                List<Node> operands = new ArrayList<Node>();
+                for (Expression operand : logical.getOperands()) {
+                    Node node = compile(operand);
+                    // flatten nested ANDs so all conjuncts are visible for index selection
+                    if (logical.isAnd() && node instanceof And) {
+                        operands.addAll(Arrays.asList(((And) node).operands));
+                    } else {
+                        operands.add(node);
+                    }
+                }
+                Node[] nodes = operands.toArray(new Node[0]);
+                return logical.isAnd() ? new And(nodes) : new Or(nodes);
+            }
+            if (expression instanceof Expression.Not) {
+                return new Not(compile(((Expression.Not) expression).getOperand()));
+            }
+            if (expression instanceof Expression.Comparison) {
+                return comparison((Expression.Comparison) expression);
+            }
+            if (expression instanceof Expression.Between) {
+                Expression.Between between = (Expression.Between) expression;
+                int column = column(between.getOperand());
+                Object low = value(between.getLow(), column);
+                Object high = value(between.getHigh(), column);
+                Node node = low == null || high == null ? new Constant(UNKNOWN) : new Between(column, low, high);
+                return between.isNegated() ? new Not(node) : node;
+            }
+            if (expression instanceof Expression.In) {
+                Expression.In in = (Expression.In) expression;
+                int column = column(in.getOperand());
+                List<Object> values = new ArrayList<Object>();
+                boolean hasNull = false;
+                for (Expression item : in.getValues()) {
+                    Object value = value(item, column);
+                    if (value == null) {
+                        hasNull = true;
+                    } else {
+                        values.add(value);
+                    }
+                }
+                Node node = new In(column, values.toArray());
+                if (hasNull) {
+                    // x IN (.., NULL) is unknown rather than false when no value matches
+                    node = new Or(new Node[] { node, new Constant(UNKNOWN) });
+                }
+                return in.isNegated() ? new Not(node) : node;
+            }
+            if (expression instanceof Expression.Like) {
+                Expression.Like like = (Expression.Like) expression;
+                int column = column(like.getOperand());
+                String pattern = text(like.getPattern());
+                boolean isString = ColumnType.of(columns.get(names[column])) == ColumnType.VARCHAR;
+                Node node = pattern == null ? new Constant(UNKNOWN) : new Like(column, pattern, isString);
+                return like.isNegated() ? new Not(node) : node;
+            }
+            if (expression instanceof Expression.IsNull) {
+                Expression.IsNull isNull = (Expression.IsNull) expression;
+                Node node = new IsNull(column(isNull.getOperand()));
+                return isNull.isNegated() ? new Not(node) : node;
+            }
+            return fail("Expected a condition", expression);
+        }
+
+        private Node comparison(Expression.Comparison comparison) throws Exception {
+            Expression left = comparison.getLeft();
+            Expression right = comparison.getRight();
+            Expression.Operator operator = comparison.getOperator();
+            if (!isColumn(left) && isColumn(right)) {
+                left = comparison.getRight();
+                right = comparison.getLeft();
+                operator = operator.flip();
+            }
+            int column = column(left);
+            if (isColumn(right)) {
+                return fail("Comparing two columns is not supported", right);
+            }
+            Object value = value(right, column);
+            return value == null ? new Constant(UNKNOWN) : new Comparison(column, operator, value);
+        }
+
+        private boolean isColumn(Expression expression) {
+            String name = name(expression);
+            return name != null && columns.containsKey(name);
+        }
+
+        /**
+         * @return the column a name or an aggregate, which is a column of the
+         *         rows of a grouped result, stands for, or null
+         */
+        private static String name(Expression expression) {
+            if (expression instanceof Expression.Name) {
+                return ((Expression.Name) expression).getName();
+            }
+            return expression instanceof Expression.Aggregate ? ((Expression.Aggregate) expression).getName() : null;
+        }
+
+        private int column(Expression expression) throws Exception {
+            String name = name(expression);
+            if (name == null) {
+                fail("Expected a column", expression);
+            }
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+            return fail("Unknown column: " + name, expression);
+        }
+
+        /**
+         * @return text of a literal, a parameter or a word that names no
+         *         column, null for NULL
+         */
+        private String text(Expression expression) throws Exception {
+            if (expression instanceof Expression.Literal
+                    && ((Expression.Literal) expression).getKind() == Expression.Literal.Kind.PARAMETER
+                    && Integer.parseInt(((Expression.Literal) expression).getText()) >= parameters.length) {
+                fail("No value given for parameter", expression);
+            }
+            return Statement.text(expression, parameters);
+        }
+
+        private Object value(Expression expression, int column) throws Exception {
+            String text = text(expression);
+            try {
+                return ColumnType.of(columns.get(names[column])).parse(text);
+            } catch (IllegalArgumentException ex) {
+                return fail("Invalid value for column " + names[column] + ": " + text, expression);
+            }
+        }
+
+        private static <T> T fail(String message, Expression expression) throws Exception {
+            String error = message + " at position " + expression.getPosition();
+            System.out.println("Invalid WHERE clause: " + error);
+            throw new Exception("Invalid WHERE clause: " + error);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader for delimited text such as CSV. Records are read one at a
+ * time through a buffer, so a file of any size is read in constant memory.
+ * Fields may be quoted with double quotes, in which case they can hold the
+ * separator, line breaks and doubled quotes. An empty unquoted field is read
+ * as null, a quoted empty field as the empty string.
+ */
+public class CsvReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Reader in;
+    private final char separator;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder field = new StringBuilder();
+    private int position;
+    private int limit;
+    private long lineNumber = 1;
+    private long recordLine;
+
+    public CsvReader(Reader in, char separator) {
+        this.in = in;
+        this.separator = separator;
+    }
+
+    /**
+     * @return line the last record returned by {@link #next()} started on
+     */
+    public long getLineNumber() {
+        return recordLine;
+    }
+
+    /**
+     * reads the next record, skipping empty lines
+     *
+     * @return the fields of the record or null at the end of the input
+     * @throws IOException
+     */
+    public String[] next() throws IOException {
+        int c = read();
+        while (c == '\n' || c == '\r') {
+            skipLineBreak(c);
+            c = read();
+        }
+        if (c == -1) {
+            return null;
+        }
+        recordLine = lineNumber;
+        List<String> fields = new ArrayList<String>();
+        while (true) {
+            field.setLength(0);
+            boolean isQuoted = false;
+            if (c == '"') {
+                isQuoted = true;
+                while (true) {
+                    c = read();
+                    if (c == -1) {
+                        throw new IOException("Unterminated quoted field on line " + recordLine);
+                    }
+                    if (c == '"') {
+                        c = read();
+                        if (c != '"') {
+                            break;
+                        }
+                    } else if (c == '\n') {
+                        lineNumber++;
+                    }
+                    field.append((char) c);
+                }
+            }
+            while (c != separator && c != '\n' && c != '\r' && c != -1) {
+                field.append((char) c);
+                c = read();
+            }
+            fields.add(!isQuoted && field.length() == 0 ? null : field.toString());
+            if (c != separator) {
+                if (c != -1) {
+                    skipLineBreak(c);
+                }
+                return fields.toArray(new String[0]);
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * counts a line break whose first character was just read, consuming the
+     * \n of a \r\n pair
+     */
+    private void skipLineBreak(int c) throws IOException {
+        lineNumber++;
+        if (c == '\r' && read() != '\n' && limit > 0) {
+            position--;
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
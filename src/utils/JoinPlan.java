@@ -0,0 +1,570 @@
+package utils;
+
+import account.Database;
+import account.Table;
+import cursor.Cursor;
+import cursor.HashJoinCursor;
+import cursor.IndexJoinCursor;
+import cursor.JoinKeys;
+import cursor.MergeJoinCursor;
+import metrics.Metrics;
+import models.DatabaseManager;
+import mvcc.Snapshot;
+import sql.Expression;
+import sql.Statement;
+import storage.ColumnType;
+import storage.StorageEngine;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Plan of a SELECT over tables joined with {@code JOIN ... ON}. For inner
+ * joins the ON clauses and the WHERE clause mean the same, so their
+ * conditions are pooled and split by the tables they name: a condition on
+ * one table is checked while that table is scanned, where an index can
+ * answer it, an equality between columns of two tables becomes a join key,
+ * and the rest is checked on the joined rows as soon as all of its tables
+ * are joined.
+ *
+ * Tables are joined from left to right, each to the rows joined so far. A
+ * join is an index nested-loop join when the table has an index on a key
+ * column and looking up every row joined so far is estimated to be cheaper
+ * than reading the whole table, a hash join on the smaller side otherwise,
+ * and a sort-merge join when even the smaller side is too large to hash.
+ * The merge join sorts both sides the way ORDER BY does, spilling to disk
+ * once each side takes half of {@code sort.memory}, so it holds only the
+ * rows of one key at a time when they are merged.
+ * Row counts are estimated from the table sizes and the ranges of the
+ * conditions on each table. Setting the system property
+ * {@code join.strategy} to {@code hash}, {@code index} or {@code merge}
+ * forces a strategy wherever it can be used.
+ */
+public class JoinPlan {
+
+    /**
+     * ways of joining a table to the rows joined before it
+     */
+    public enum Strategy {
+        HASH, INDEX, MERGE
+    }
+
+    /**
+     * rows of the smaller side above which it is sorted and merged rather
+     * than hashed
+     */
+    private static final long HASH_JOIN_MAX_ROWS = 1 << 20;
+    /**
+     * cost of an index lookup relative to reading one row in a scan. The
+     * dead versions a join still sees are grouped by key once per join, so
+     * they add nothing per lookup.
+     */
+    private static final double INDEX_LOOKUP_COST = 4;
+    /**
+     * cost of adding a row to a hash table relative to reading it
+     */
+    private static final double HASH_BUILD_COST = 2;
+
+    private final List<Source> sources = new ArrayList<Source>();
+    private final List<Step> steps = new ArrayList<Step>();
+    private final Object[] parameters;
+    private final int[] projection;
+    private final List<String> columnNames = new ArrayList<String>();
+
+    /**
+     * a table of the FROM clause
+     */
+    private static final class Source {
+        final String alias;
+        final Table table;
+        final int offset;
+        final List<Expression> filters = new ArrayList<Expression>();
+        Condition condition;
+        long estimate;
+
+        Source(String alias, Table table, int offset) {
+            this.alias = alias;
+            this.table = table;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * the join of a table to the rows joined before it
+     */
+    private static final class Step {
+        final int source;
+        final List<Integer> leftKeys = new ArrayList<Integer>();
+        final List<Integer> rightKeys = new ArrayList<Integer>();
+        final List<Expression> residuals = new ArrayList<Expression>();
+        JoinKeys keys;
+        Condition residual;
+        Strategy strategy;
+        boolean isLeftBuilt;
+        int indexKey = -1;
+        boolean isPrimaryKey;
+
+        Step(int source) {
+            this.source = source;
+        }
+    }
+
+    /**
+     * @param select     - a SELECT with at least one JOIN or an alias
+     * @param database
+     * @param storage    - storage holding the tables' indexes
+     * @param parameters - values of the statement's placeholders
+     * @throws Exception
+     */
+    public JoinPlan(Statement.Select select, Database database, StorageEngine storage, Object[] parameters)
+            throws Exception {
+        this.parameters = parameters;
+        addSource(database, select.getTableName(), select.getAlias());
+        List<Expression> conjuncts = new ArrayList<Expression>();
+        for (Statement.Join join : select.getJoins()) {
+            addSource(database, join.getTableName(), join.getAlias());
+            steps.add(new Step(sources.size() - 1));
+            addConjuncts(join.getOn(), conjuncts);
+        }
+        addConjuncts(select.getWhere(), conjuncts);
+        for (Expression conjunct : conjuncts) {
+            place(conjunct);
+        }
+        for (Source source : sources) {
+            prepareSource(source);
+        }
+        long estimate = sources.get(0).estimate;
+        for (Step step : steps) {
+            estimate = prepareStep(step, storage, estimate);
+        }
+        this.projection = select.isAggregate() ? null : project(select.getColumns());
+    }
+
+    private void addSource(Database database, String tableName, String alias) throws Exception {
+        Table table = database.fetchTable(tableName);
+        if (table == null) {
+            fail("Table not found: " + tableName);
+        }
+        String name = alias == null ? tableName : alias;
+        for (Source source : sources) {
+            if (source.alias.equals(name)) {
+                fail("Table " + name + " is named twice, give one of them an alias");
+            }
+        }
+        Source last = sources.isEmpty() ? null : sources.get(sources.size() - 1);
+        int offset = last == null ? 0 : last.offset + last.table.getColumns().size();
+        sources.add(new Source(name, table, offset));
+    }
+
+    private static void addConjuncts(Expression expression, List<Expression> conjuncts) {
+        if (expression instanceof Expression.Logical && ((Expression.Logical) expression).isAnd()) {
+            for (Expression operand : ((Expression.Logical) expression).getOperands()) {
+                addConjuncts(operand, conjuncts);
+            }
+        } else if (expression != null) {
+            conjuncts.add(expression);
+        }
+    }
+
+    /**
+     * makes a condition a join key, a condition on one table or a condition
+     * on joined rows
+     */
+    private void place(Expression conjunct) throws Exception {
+        if (conjunct instanceof Expression.Comparison
+                && ((Expression.Comparison) conjunct).getOperator() == Expression.Operator.EQ) {
+            int[] left = resolve(((Expression.Comparison) conjunct).getLeft());
+            int[] right = resolve(((Expression.Comparison) conjunct).getRight());
+            if (left != null && right != null && left[0] != right[0]) {
+                int[] earlier = left[0] < right[0] ? left : right;
+                int[] later = left[0] < right[0] ? right : left;
+                Step step = steps.get(later[0] - 1);
+                step.leftKeys.add(sources.get(earlier[0]).offset + earlier[1]);
+                step.rightKeys.add(later[1]);
+                return;
+            }
+        }
+        TreeSet<Integer> used = new TreeSet<Integer>();
+        collectSources(conjunct, used);
+        if (used.size() <= 1) {
+            sources.get(used.isEmpty() ? 0 : used.first()).filters.add(conjunct);
+        } else {
+            steps.get(used.last() - 1).residuals.add(conjunct);
+        }
+    }
+
+    private void prepareSource(Source source) throws Exception {
+        Table table = source.table;
+        if (!source.filters.isEmpty()) {
+            String[] names = table.getColumns().keySet().toArray(new String[0]);
+            source.condition = Condition.compile(rename(and(source.filters), column -> names[column[1]]),
+                    table.getColumns(), parameters);
+        }
+        long rows = table.getRowCount();
+        long estimate = rows;
+        if (source.condition != null) {
+            estimate = rows / 2;
+            for (Condition.Range range : source.condition.getRanges()) {
+                if (range.isEquality() && range.getColumn().equals(table.getPrimaryKey())) {
+                    estimate = 1;
+                    break;
+                }
+                estimate = Math.min(estimate, range.isEquality() ? rows / 10 : rows / 3);
+            }
+        }
+        source.estimate = Math.max(estimate, 1);
+    }
+
+    /**
+     * compiles the keys and conditions of a join and picks its strategy
+     *
+     * @param estimate - estimated number of rows joined before it
+     * @return estimated number of rows after it
+     */
+    private long prepareStep(Step step, StorageEngine storage, long estimate) throws Exception {
+        Source source = sources.get(step.source);
+        Table table = source.table;
+        if (step.leftKeys.isEmpty()) {
+            fail("JOIN " + source.alias + " needs an ON condition equating its columns with those of the tables"
+                    + " before it");
+        }
+        Map<String, String> joinedColumns = new LinkedHashMap<String, String>();
+        for (int i = 0; i <= step.source; i++) {
+            for (Map.Entry<String, String> column : sources.get(i).table.getColumns().entrySet()) {
+                joinedColumns.put(sources.get(i).alias + "." + column.getKey(), column.getValue());
+            }
+        }
+        List<String> joinedNames = new ArrayList<String>(joinedColumns.keySet());
+        String[] rightNames = table.getColumns().keySet().toArray(new String[0]);
+        int size = step.leftKeys.size();
+        int[] left = new int[size];
+        int[] right = new int[size];
+        boolean[] asDouble = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            left[i] = step.leftKeys.get(i);
+            right[i] = step.rightKeys.get(i);
+            String leftName = joinedNames.get(left[i]);
+            ColumnType leftType = ColumnType.of(joinedColumns.get(leftName));
+            ColumnType rightType = ColumnType.of(table.getColumns().get(rightNames[right[i]]));
+            if (leftType != rightType && !(isNumber(leftType) && isNumber(rightType))) {
+                fail("Cannot join " + leftName + " (" + leftType.name().toLowerCase() + ") with " + source.alias
+                        + "." + rightNames[right[i]] + " (" + rightType.name().toLowerCase() + ")");
+            }
+            asDouble[i] = leftType == ColumnType.DOUBLE || rightType == ColumnType.DOUBLE;
+        }
+        step.keys = new JoinKeys(left, right, asDouble);
+        if (!step.residuals.isEmpty()) {
+            step.residual = Condition.compile(rename(and(step.residuals),
+                    column -> sources.get(column[0]).alias + "." + sources.get(column[0]).table.getColumns()
+                            .keySet().toArray(new String[0])[column[1]]),
+                    joinedColumns, parameters);
+        }
+        for (int i = 0; i < size && !step.isPrimaryKey; i++) {
+            String column = rightNames[right[i]];
+            if (column.equals(table.getPrimaryKey()) || step.indexKey == -1
+                    && storage.hasIndex(table.getTableName(), column)) {
+                step.indexKey = i;
+                step.isPrimaryKey = column.equals(table.getPrimaryKey());
+            }
+        }
+        double leftRows = estimate;
+        double rightRows = source.estimate;
+        double hashCost = leftRows + rightRows + HASH_BUILD_COST * Math.min(leftRows, rightRows);
+        double indexCost = step.indexKey == -1 ? Double.MAX_VALUE : leftRows * INDEX_LOOKUP_COST;
+        Strategy forced = forcedStrategy();
+        if (forced != null && (forced != Strategy.INDEX || step.indexKey != -1)) {
+            step.strategy = forced;
+        } else if (indexCost < hashCost) {
+            step.strategy = Strategy.INDEX;
+        } else if (Math.min(leftRows, rightRows) > HASH_JOIN_MAX_ROWS) {
+            step.strategy = Strategy.MERGE;
+        } else {
+            step.strategy = Strategy.HASH;
+        }
+        step.isLeftBuilt = leftRows < rightRows;
+        return step.isPrimaryKey ? estimate : Math.max(estimate, source.estimate);
+    }
+
+    private static boolean isNumber(ColumnType type) {
+        return type == ColumnType.INT || type == ColumnType.BIGINT || type == ColumnType.DOUBLE;
+    }
+
+    private static Strategy forcedStrategy() {
+        String strategy = System.getProperty("join.strategy");
+        if (strategy == null) {
+            return null;
+        }
+        try {
+            return Strategy.valueOf(strategy.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * @return position in the joined row of each selected column
+     */
+    private int[] project(List<String> selected) throws Exception {
+        List<Integer> columns = new ArrayList<Integer>();
+        if (selected.isEmpty()) {
+            for (Source source : sources) {
+                int i = 0;
+                for (String column : source.table.getColumns().keySet()) {
+                    boolean isShared = false;
+                    for (Source other : sources) {
+                        isShared |= other != source && other.table.isColumn(column);
+                    }
+                    columnNames.add(isShared ? source.alias + "." + column : column);
+                    columns.add(source.offset + i++);
+                }
+            }
+        } else {
+            for (String name : selected) {
+                int[] column = resolve(name);
+                if (column == null) {
+                    fail("Unknown column: " + name);
+                }
+                columnNames.add(name);
+                columns.add(sources.get(column[0]).offset + column[1]);
+            }
+        }
+        return columns.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return {source, column} of a column name, or null for an expression
+     *         that names no column, which is read as a value
+     */
+    private int[] resolve(Expression expression) throws Exception {
+        return expression instanceof Expression.Name ? resolve(((Expression.Name) expression).getName()) : null;
+    }
+
+    private int[] resolve(String name) throws Exception {
+        int dot = name.indexOf('.');
+        if (dot >= 0) {
+            String alias = name.substring(0, dot);
+            for (int i = 0; i < sources.size(); i++) {
+                if (sources.get(i).alias.equals(alias)) {
+                    int column = sources.get(i).table.getColumnIndex(name.substring(dot + 1));
+                    if (column == -1) {
+                        fail("Unknown column: " + name);
+                    }
+                    return new int[] { i, column };
+                }
+            }
+            fail("Unknown table: " + alias);
+        }
+        int[] found = null;
+        for (int i = 0; i < sources.size(); i++) {
+            int column = sources.get(i).table.getColumnIndex(name);
+            if (column != -1) {
+                if (found != null) {
+                    fail("Column " + name + " is ambiguous, qualify it with its table");
+                }
+                found = new int[] { i, column };
+            }
+        }
+        return found;
+    }
+
+    private void collectSources(Expression expression, TreeSet<Integer> used) throws Exception {
+        for (Expression child : children(expression)) {
+            collectSources(child, used);
+        }
+        int[] column = resolve(expression);
+        if (column != null) {
+            used.add(column[0]);
+        }
+    }
+
+    private static List<Expression> children(Expression expression) {
+        List<Expression> children = new ArrayList<Expression>();
+        if (expression instanceof Expression.Comparison) {
+            children.add(((Expression.Comparison) expression).getLeft());
+            children.add(((Expression.Comparison) expression).getRight());
+        } else if (expression instanceof Expression.Between) {
+            Expression.Between between = (Expression.Between) expression;
+            children.add(between.getOperand());
+            children.add(between.getLow());
+            children.add(between.getHigh());
+        } else if (expression instanceof Expression.In) {
+            children.add(((Expression.In) expression).getOperand());
+            children.addAll(((Expression.In) expression).getValues());
+        } else if (expression instanceof Expression.Like) {
+            children.add(((Expression.Like) expression).getOperand());
+            children.add(((Expression.Like) expression).getPattern());
+        } else if (expression instanceof Expression.IsNull) {
+            children.add(((Expression.IsNull) expression).getOperand());
+        } else if (expression instanceof Expression.Logical) {
+            children.addAll(((Expression.Logical) expression).getOperands());
+        } else if (expression instanceof Expression.Not) {
+            children.add(((Expression.Not) expression).getOperand());
+        }
+        return children;
+    }
+
+    private static Expression and(List<Expression> conjuncts) {
+        return conjuncts.size() == 1 ? conjuncts.get(0) : new Expression.Logical(true, conjuncts);
+    }
+
+    /**
+     * copies an expression with its column names written the way a
+     * condition is compiled against
+     *
+     * @param naming - name for a {source, column}
+     */
+    private Expression rename(Expression expression, Function<int[], String> naming) throws Exception {
+        if (expression instanceof Expression.Name) {
+            int[] column = resolve(expression);
+            return column == null ? expression : new Expression.Name(naming.apply(column), expression.getPosition());
+        } else if (expression instanceof Expression.Comparison) {
+            Expression.Comparison comparison = (Expression.Comparison) expression;
+            return new Expression.Comparison(rename(comparison.getLeft(), naming), comparison.getOperator(),
+                    rename(comparison.getRight(), naming));
+        } else if (expression instanceof Expression.Between) {
+            Expression.Between between = (Expression.Between) expression;
+            return new Expression.Between(rename(between.getOperand(), naming), rename(between.getLow(), naming),
+                    rename(between.getHigh(), naming), between.isNegated());
+        } else if (expression instanceof Expression.In) {
+            Expression.In in = (Expression.In) expression;
+            List<Expression> values = new ArrayList<Expression>();
+            for (Expression value : in.getValues()) {
+                values.add(rename(value, naming));
+            }
+            return new Expression.In(rename(in.getOperand(), naming), values, in.isNegated());
+        } else if (expression instanceof Expression.Like) {
+            Expression.Like like = (Expression.Like) expression;
+            return new Expression.Like(rename(like.getOperand(), naming), rename(like.getPattern(), naming),
+                    like.isNegated());
+        } else if (expression instanceof Expression.IsNull) {
+            Expression.IsNull isNull = (Expression.IsNull) expression;
+            return new Expression.IsNull(rename(isNull.getOperand(), naming), isNull.isNegated());
+        } else if (expression instanceof Expression.Logical) {
+            Expression.Logical logical = (Expression.Logical) expression;
+            List<Expression> operands = new ArrayList<Expression>();
+            for (Expression operand : logical.getOperands()) {
+                operands.add(rename(operand, naming));
+            }
+            return new Expression.Logical(logical.isAnd(), operands);
+        } else if (expression instanceof Expression.Not) {
+            return new Expression.Not(rename(((Expression.Not) expression).getOperand(), naming),
+                    expression.getPosition());
+        }
+        return expression;
+    }
+
+    /**
+     * opens a cursor over the joined rows, with the columns of every table
+     * in FROM and JOIN order
+     *
+     * @param storage
+     * @param snapshot - snapshot every row must belong to
+     * @return Cursor
+     * @throws Exception
+     */
+    public Cursor open(StorageEngine storage, Snapshot snapshot) throws Exception {
+        Source first = sources.get(0);
+        Cursor cursor = DatabaseManager.openReadCursor(storage, first.table, first.condition, snapshot);
+        try {
+            for (Step step : steps) {
+                Source source = sources.get(step.source);
+                switch (step.strategy) {
+                    case INDEX -> {
+                        String column = source.table.getColumns().keySet()
+                                .toArray(new String[0])[step.rightKeys.get(step.indexKey)];
+                        cursor = new IndexJoinCursor(cursor, storage, source.table, snapshot, source.condition,
+                                step.keys, step.leftKeys.get(step.indexKey), column, step.isPrimaryKey,
+                                step.residual);
+                    }
+                    case HASH -> cursor = new HashJoinCursor(cursor,
+                            DatabaseManager.openReadCursor(storage, source.table, source.condition, snapshot),
+                            step.keys, step.isLeftBuilt, step.residual);
+                    default -> cursor = new MergeJoinCursor(cursor, types(0, step.source),
+                            DatabaseManager.openReadCursor(storage, source.table, source.condition, snapshot),
+                            types(step.source, step.source + 1), step.keys, step.residual,
+                            SortPlan.memoryBudget() / 2);
+                }
+                Metrics.shared().recordJoin(step.strategy.name());
+            }
+        } catch (Exception ex) {
+            cursor.close();
+            throw ex;
+        }
+        return cursor;
+    }
+
+    /**
+     * @return types of the columns of the sources from one to another,
+     *         exclusive, in joined order
+     */
+    private ColumnType[] types(int from, int to) {
+        List<ColumnType> types = new ArrayList<ColumnType>();
+        for (int i = from; i < to; i++) {
+            for (String type : sources.get(i).table.getColumns().values()) {
+                types.add(ColumnType.of(type));
+            }
+        }
+        return types.toArray(new ColumnType[0]);
+    }
+
+    /**
+     * @return strategy of each join, in order
+     */
+    public List<Strategy> getStrategies() {
+        List<Strategy> strategies = new ArrayList<Strategy>();
+        for (Step step : steps) {
+            strategies.add(step.strategy);
+        }
+        return strategies;
+    }
+
+    /**
+     * @return names and types of the columns of the joined rows, as
+     *         {@code table.column}
+     */
+    public Map<String, String> getJoinedColumns() {
+        Map<String, String> columns = new LinkedHashMap<String, String>();
+        for (Source source : sources) {
+            for (Map.Entry<String, String> column : source.table.getColumns().entrySet()) {
+                columns.put(source.alias + "." + column.getKey(), column.getValue());
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * @return position in the joined row of each selected column, null for
+     *         a grouped SELECT
+     */
+    public int[] getProjection() {
+        return projection;
+    }
+
+    /**
+     * @return names of the selected columns, qualified where a name alone
+     *         would be ambiguous
+     */
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * @return the tables joined, for the result's heading
+     */
+    public String getName() {
+        List<String> names = new ArrayList<String>();
+        for (Source source : sources) {
+            names.add(source.table.getTableName());
+        }
+        return String.join(" JOIN ", names);
+    }
+
+    private static void fail(String message) throws Exception {
+        System.out.println(message);
+        throw new Exception(message);
+    }
+}
@@ -1,15 +1,10 @@
 package utils;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
-import java.time.LocalDateTime;
-import java.util.UUID;
-
 import account.User;
+import audit.AuditEntry;
+import audit.AuditLog;
 
 public class Logger {
-    private static final String LOG_FILE_PATH = "transactions.log";
-
     public User user;
     public String tableName;
     public String QUERY_TYPE;
@@ -41,17 +36,13 @@ public class Logger {
     }
 
     /**
-    * Writes the transaction log to the log file.
+    * Hands the entry to the audit log, which writes it to the log file in the
+    * background.
     */
     public void log() {
-        String username = String.valueOf(user.getUsername());
-        String timestamp = LocalDateTime.now().toString();
-        String transactionId = String.valueOf(UUID.randomUUID());
-        String logText = String.format("%s | %s | %s | %s | %s | %s %n", transactionId, timestamp, username,
-                        this.databaseName, this.tableName, queryString);;
-
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(LOG_FILE_PATH, true))) {
-            writer.write(logText);
+        try {
+            AuditLog.shared().append(new AuditEntry(QUERY_TYPE, String.valueOf(user.getUsername()),
+                    this.databaseName, this.tableName, queryString));
         } catch (Exception e) {
             System.out.println("Error while writing transaction log");
         }
@@ -2,368 +2,709 @@ package utils;
 
 import account.Table;
 import account.Database;
-import account.Authentication;
+import account.Session;
 import models.DatabaseManager;
+import audit.AuditCursor;
+import audit.AuditFilter;
+import audit.AuditLog;
+import metrics.Metrics;
+import mvcc.Snapshot;
+import cursor.Cursor;
+import cursor.LimitCursor;
+import cursor.ListCursor;
+import cursor.ParallelScan;
+import cursor.ParallelScanCursor;
+import cursor.ProjectCursor;
+import cursor.ResultSink;
+import sql.Expression;
+import sql.NormalizedStatement;
+import sql.Parser;
+import sql.PlanCache;
+import sql.PreparedStatement;
+import sql.Statement;
+import sql.SyntaxException;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+/**
+ * Runs statements against the current database. A statement is first
+ * normalized, with its literals lifted out as parameters, and the parsed plan
+ * is looked up in a cache under the normalized text, so a statement that
+ * differs from an earlier one only in its values is not parsed again.
+ * Statements can also be prepared by name with {@code ?} placeholders and
+ * run with {@code EXECUTE name USING value, ...}. The time each statement
+ * takes, from normalizing it to its last row, is recorded in the
+ * {@link Metrics} of its type.
+ */
 public class Query {
 
-    Authentication auth;
-    private static String query = "";
-    private static final List<Database> dbs = DatabaseManager.fetchDatabase();
+    private final Session session;
+    private String query = "";
 
-    public Query(List<String> queryInput, Authentication auth) throws Exception {
-        this.auth = auth;
+    public Query(List<String> queryInput, Session session) throws Exception {
+        this.session = session;
         sanitizeQuery(queryInput);
         parseQuery();
     }
 
+    /**
+     * creates a query runner for statements given through
+     * {@link #prepare(String, String)} and {@link #execute(String, Object...)}
+     *
+     * @param session
+     */
+    public Query(Session session) {
+        this.session = session;
+    }
+
     /**
      * @param queryInput
      */
-    public static void sanitizeQuery(List<String> queryInput) {
-        query = queryInput.stream().map(String::valueOf).collect(Collectors.joining(" ")).replace(";", "");
+    public void sanitizeQuery(List<String> queryInput) {
+        query = queryInput.stream().map(String::valueOf).collect(Collectors.joining(" ")).trim();
+        while (query.endsWith(";")) {
+            query = query.substring(0, query.length() - 1).trim();
+        }
     }
 
     /**
      * @throws Exception
      */
     public void parseQuery() throws Exception {
-        String[] queryParts = query.split(" ");
-        String operation = queryParts[0].toUpperCase();
-
-        switch (operation) {
-            case "CREATE" -> parseCreate(query);
-            case "SELECT" -> parseSelect(query);
-            case "UPDATE" -> parseUpdate(query);
-            case "INSERT" -> parseInsert(query);
-            case "DELETE" -> parseDelete(query);
-            case "BEGIN" -> parseBeginTransaction(query);
-            case "COMMIT" -> parseCommit(query);
-            case "ROLLBACK" -> parseRollback(query);
-            case "END" -> parseEndTransaction(query);
-            default -> throw new IllegalStateException("Unexpected value: " + operation);
-        }
-        ;
+        long started = System.nanoTime();
+        NormalizedStatement normalized = normalize(query);
+        execute(plan(normalized.getText(), query), normalized.bind(new Object[0]), query, started);
     }
 
     /**
-     * resolves the create query and identifies if its a database or table creation.
-     * 
-     * @param queryString
-     * @throws IOException
+     * prepares a statement with {@code ?} placeholders under a name
+     *
+     * @param name
+     * @param statement
+     * @throws Exception
+     */
+    public void prepare(String name, String statement) throws Exception {
+        executePrepare(new Statement.Prepare(name, statement), statement);
+    }
+
+    /**
+     * runs a prepared statement
+     *
+     * @param name
+     * @param values - a value for each placeholder, in order
+     * @throws Exception
      */
-    public void parseCreate(String queryString) throws IOException {
-        String[] queryParts = queryString.split(" ");
-        if (queryParts.length >= 3 && "DATABASE".equalsIgnoreCase(queryParts[1])) {
-            parseCreateDatabase(queryParts[2], queryString);
-        } else if (queryParts.length >= 3 && "TABLE".equalsIgnoreCase(queryParts[1])) {
-            parseCreateTable(queryString);
+    public void execute(String name, Object... values) throws Exception {
+        runPrepared(name, values, "EXECUTE " + name, System.nanoTime());
+    }
+
+    private static NormalizedStatement normalize(String statement) throws Exception {
+        try {
+            return NormalizedStatement.of(statement);
+        } catch (SyntaxException ex) {
+            System.out.println("Invalid statement: " + ex.getMessage());
+            throw new Exception("Invalid statement: " + ex.getMessage());
         }
     }
 
+    /**
+     * finds the plan of a normalized statement in the cache, parsing and
+     * caching it on a miss
+     *
+     * @param text     - normalized statement text
+     * @param original - the statement as written
+     * @return Statement
+     * @throws Exception
+     */
+    private Statement plan(String text, String original) throws Exception {
+        PlanCache plans = this.session.getEngine().getPlans();
+        Statement statement = plans.get(text);
+        if (statement == null) {
+            statement = parseStatement(text, original);
+            plans.put(text, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * parses normalized statement text. Errors are reported against the
+     * statement as written, so their positions point into what the user typed.
+     *
+     * @param text
+     * @param original - the statement before normalization
+     * @return Statement
+     * @throws Exception
+     */
+    private static Statement parseStatement(String text, String original) throws Exception {
+        try {
+            return Parser.parse(text);
+        } catch (SyntaxException ex) {
+            String message = ex.getMessage();
+            try {
+                Parser.parse(original);
+            } catch (SyntaxException originalEx) {
+                message = originalEx.getMessage();
+            }
+            System.out.println("Invalid statement: " + message);
+            throw new Exception("Invalid statement: " + message);
+        }
+    }
+
+    /**
+     * runs a parsed statement and records its latency. EXECUTE is recorded
+     * as the statement it runs.
+     *
+     * @param statement
+     * @param parameters  - a value for every placeholder of the statement
+     * @param queryString - the statement as written, for the log
+     * @param started     - {@link System#nanoTime()} when the statement arrived
+     * @throws Exception
+     */
+    private void execute(Statement statement, Object[] parameters, String queryString, long started)
+            throws Exception {
+        boolean succeeded = false;
+        try {
+            run(statement, parameters, queryString, started);
+            succeeded = true;
+        } finally {
+            if (!(statement instanceof Statement.Execute)) {
+                Metrics.shared().statement(statementType(statement)).record(System.nanoTime() - started,
+                        succeeded);
+            }
+        }
+    }
+
+    private void run(Statement statement, Object[] parameters, String queryString, long started)
+            throws Exception {
+        if (statement instanceof Statement.CreateDatabase) {
+            executeCreateDatabase((Statement.CreateDatabase) statement, queryString);
+        } else if (statement instanceof Statement.CreateTable) {
+            executeCreateTable((Statement.CreateTable) statement, queryString);
+        } else if (statement instanceof Statement.CreateIndex) {
+            executeCreateIndex((Statement.CreateIndex) statement, queryString);
+        } else if (statement instanceof Statement.Insert) {
+            executeInsert((Statement.Insert) statement, parameters, queryString);
+        } else if (statement instanceof Statement.LoadData) {
+            executeLoadData((Statement.LoadData) statement, queryString);
+        } else if (statement instanceof Statement.Select) {
+            executeSelect((Statement.Select) statement, parameters, queryString);
+        } else if (statement instanceof Statement.Update) {
+            executeUpdate((Statement.Update) statement, parameters, queryString);
+        } else if (statement instanceof Statement.Delete) {
+            executeDelete((Statement.Delete) statement, parameters, queryString);
+        } else if (statement instanceof Statement.TransactionControl) {
+            executeTransactionControl((Statement.TransactionControl) statement, queryString);
+        } else if (statement instanceof Statement.Prepare) {
+            executePrepare((Statement.Prepare) statement, queryString);
+        } else if (statement instanceof Statement.Execute) {
+            Statement.Execute execute = (Statement.Execute) statement;
+            Object[] values = new Object[execute.getArguments().size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = Statement.text(execute.getArguments().get(i), parameters);
+            }
+            runPrepared(execute.getName(), values, queryString, started);
+        } else if (statement instanceof Statement.Deallocate) {
+            String name = ((Statement.Deallocate) statement).getName();
+            if (this.session.getPreparedStatements().remove(name) == null) {
+                System.out.println("Unknown prepared statement: " + name);
+                throw new Exception("Unknown prepared statement: " + name);
+            }
+            System.out.println("Statement deallocated.");
+        } else if (statement instanceof Statement.ShowAudit) {
+            executeShowAudit((Statement.ShowAudit) statement, parameters, queryString);
+        } else if (statement instanceof Statement.ShowMetrics) {
+            executeShowMetrics(queryString);
+        }
+    }
+
+    /**
+     * @return name the metrics of a statement are kept under
+     */
+    private static String statementType(Statement statement) {
+        if (statement instanceof Statement.CreateDatabase) {
+            return "CREATE DATABASE";
+        } else if (statement instanceof Statement.CreateTable) {
+            return "CREATE TABLE";
+        } else if (statement instanceof Statement.CreateIndex) {
+            return "CREATE INDEX";
+        } else if (statement instanceof Statement.LoadData) {
+            return "LOAD DATA";
+        } else if (statement instanceof Statement.TransactionControl) {
+            Statement.TransactionControl.Kind kind = ((Statement.TransactionControl) statement).getKind();
+            return kind == Statement.TransactionControl.Kind.BEGIN || kind == Statement.TransactionControl.Kind.END
+                    ? kind + " TRANSACTION"
+                    : kind.toString();
+        } else if (statement instanceof Statement.ShowAudit) {
+            return "SHOW AUDIT";
+        } else if (statement instanceof Statement.ShowMetrics) {
+            return "SHOW METRICS";
+        }
+        return statement.getClass().getSimpleName().toUpperCase();
+    }
+
     /**
      * executes create database query
-     * 
-     * @param databaseName
+     *
+     * @param statement
      * @param queryString
      * @throws IOException
      */
-    public void parseCreateDatabase(String databaseName, String queryString) throws IOException {
+    private void executeCreateDatabase(Statement.CreateDatabase statement, String queryString) throws IOException {
+        String databaseName = statement.getDatabaseName();
         if (Objects.equals(databaseName, "")) {
             System.out.print("Error: Database name not provided!");
             return;
-        } else if (!dbs.isEmpty()) {
+        }
+        if (this.session.getEngine().createDatabase(databaseName) == null) {
             System.out.print("Error: Database already exists, can't create new one!!");
             return;
         }
-
-        String databaseId = String.valueOf(UUID.randomUUID());
-        Database db = new Database(databaseId, databaseName);
-        this.auth.setCurrentDatabase(db);
-        DatabaseManager.saveDatabase(db);
-        new Logger("CREATE DATABASE", this.auth.user, databaseName, queryString);
+        new Logger("CREATE DATABASE", this.session.getUser(), databaseName, queryString);
     }
 
     /**
-     * handles begin transaction by applying locking and duplication logic.
-     * 
+     * BEGIN TRANSACTION starts a transaction block. Changes made inside it are
+     * only written to the log and the tables on COMMIT or END TRANSACTION,
+     * which also ends the block, while COMMIT keeps it open. ROLLBACK discards
+     * the changes so far.
+     *
+     * @param statement
      * @param queryString
      * @throws Exception
      */
-    public void parseBeginTransaction(String queryString) throws Exception {
-        String[] queryParts = queryString.split(" ");
-        if (queryParts.length == 2 && "TRANSACTION".equalsIgnoreCase(queryParts[1])) {
-            String DB_COPY_PATH = "tables_copy.txt";
-            // copy all the records from original db to copy db
-            DatabaseManager.copyFile(this.auth.DB_FILE_PATH, DB_COPY_PATH, false);
-            this.auth.DB_FILE_PATH = DB_COPY_PATH;
-            this.auth.setCurrentDatabase(this.auth.getCurrentDatabase());
+    private void executeTransactionControl(Statement.TransactionControl statement, String queryString)
+            throws Exception {
+        Session session = this.session;
+        Database database = session.getDatabase();
+        if (statement.getKind() == Statement.TransactionControl.Kind.BEGIN) {
+            session.beginTransaction();
             System.out.println("Transaction has started. To end please write `END TRANSACTION;`");
-            new Logger("BEGIN TRANSACTION", this.auth.user, this.auth.getCurrentDatabase().getDatabaseName(),
-                    queryString);
-        } else {
-            System.out.println("Error: Invalid Statement");
+            new Logger("BEGIN TRANSACTION", this.session.getUser(), database.getDatabaseName(), queryString);
+            return;
+        }
+        if (!session.isInTransaction()) {
+            System.out.println("No transaction in progress.");
+            return;
+        }
+        switch (statement.getKind()) {
+            case COMMIT -> {
+                session.commit();
+                System.out.println("Transactions committed successfully!!");
+                new Logger("COMMIT", this.session.getUser(), database.getDatabaseName(), queryString);
+            }
+            case ROLLBACK -> {
+                session.rollback();
+                System.out.println("Transactions rolled back successfully!!");
+                new Logger("ROLLBACK", this.session.getUser(), database.getDatabaseName(), queryString);
+            }
+            default -> {
+                session.endTransaction();
+                System.out.println("Transaction ended!!");
+                new Logger("END TRANSACTION", this.session.getUser(), database.getDatabaseName(), queryString);
+            }
         }
     }
 
     /**
-     * copies the data from copy to original file and commits the transaction
-     * 
+     * creates a table
+     *
+     * @param statement
+     * @param queryString
+     * @throws IOException
+     */
+    private void executeCreateTable(Statement.CreateTable statement, String queryString) throws IOException {
+        String tableName = statement.getTableName();
+        this.session.getStorage().createTable(tableName,
+                new LinkedHashMap<String, String>(statement.getColumns()), statement.getPrimaryKey());
+        Table table = new Table(tableName);
+        table.setColumns(new LinkedHashMap<String, String>(statement.getColumns()));
+        table.setPrimaryKey(statement.getPrimaryKey());
+        this.session.getDatabase().addTable(table);
+        System.out.println("Table created successfully.");
+        new Logger("CREATE TABLE", this.session.getUser(), this.session.getDatabase().getDatabaseName(), queryString);
+    }
+
+    /**
+     * builds a B+tree index over a table column
+     *
+     * @param statement
      * @param queryString
      * @throws Exception
      */
-    public void parseCommit(String queryString) throws Exception {
-        String[] queryParts = queryString.split(" ");
-        if (queryParts.length == 1) {
-            String DB_COPY_PATH = "tables.txt";
-            DatabaseManager.copyFile(this.auth.DB_FILE_PATH, DB_COPY_PATH, false);
-            System.out.println("Transactions committed successfully!!");
-            new Logger("COMMIT", this.auth.user, this.auth.getCurrentDatabase().getDatabaseName(), queryString);
+    private void executeCreateIndex(Statement.CreateIndex statement, String queryString) throws Exception {
+        String tableName = statement.getTableName();
+        try {
+            this.session.getStorage().createIndex(statement.getIndexName(), tableName,
+                    statement.getColumn());
+        } catch (IOException ex) {
+            System.out.println("Error: " + ex.getMessage());
+            throw new Exception(ex.getMessage());
         }
+        System.out.println("Index created successfully.");
+        new Logger("CREATE INDEX", this.session.getUser(), this.session.getDatabase().getDatabaseName(), tableName,
+                queryString).log();
     }
 
     /**
-     * rollbacks all the transactions
-     * 
+     * inserts the rows of a statement in a table. All rows are cast before
+     * the first one is written and go to storage in one call, so a bad value
+     * in any row leaves the table unchanged.
+     *
+     * @param statement
+     * @param parameters
      * @param queryString
      * @throws Exception
      */
-    public void parseRollback(String queryString) throws Exception {
-        String[] queryParts = queryString.split(" ");
-        if (queryParts.length == 1) {
-            String DB_COPY_PATH = "tables_copy.txt";
-            DatabaseManager.copyFile("tables.txt", DB_COPY_PATH, false);
-            this.auth.DB_FILE_PATH = DB_COPY_PATH;
-            this.auth.setCurrentDatabase(this.auth.getCurrentDatabase());
-            System.out.println("Transactions rolled back successfully!!");
-            new Logger("ROLLBACK", this.auth.user, this.auth.getCurrentDatabase().getDatabaseName(), queryString);
+    private void executeInsert(Statement.Insert statement, Object[] parameters, String queryString)
+            throws Exception {
+        String tableName = statement.getTableName();
+        Table table = this.session.getDatabase().fetchTable(tableName);
+        if (table == null) {
+            throw new Exception("Invalid Table");
+        }
+        List<Object[]> rows = new ArrayList<Object[]>(statement.getRows().size());
+        for (List<Expression> row : statement.getRows()) {
+            List<String> values = new ArrayList<String>(row.size());
+            for (Expression value : row) {
+                values.add(Statement.text(value, parameters));
+            }
+            rows.add(table.castValues(statement.getColumns(), values));
         }
+        Session session = this.session;
+        try {
+            session.runInTransaction(() -> session.insertRows(table, rows));
+        } catch (IOException ex) {
+            System.out.println("Insert Failed: " + ex.getMessage());
+            throw new Exception("Insert Failed: " + ex.getMessage());
+        }
+        System.out.println(rows.size() == 1 ? "Record added successfully." : rows.size() + " records added successfully.");
+        new Logger("INSERT", this.session.getUser(), this.session.getDatabase().getDatabaseName(), tableName,
+                queryString).log();
     }
 
     /**
-     * auto commits everything with the transaction block
-     * 
+     * loads the records of a delimited text file into a table
+     *
+     * @param statement
      * @param queryString
      * @throws Exception
      */
-    public void parseEndTransaction(String queryString) throws Exception {
-        String[] queryParts = queryString.split(" ");
-        if (queryParts.length == 2 && "TRANSACTION".equalsIgnoreCase(queryParts[1])) {
-            String DB_COPY_PATH = "tables.txt";
-            // copy all the records from original db to copy db
-            DatabaseManager.copyFile(this.auth.DB_FILE_PATH, DB_COPY_PATH, true);
-            this.auth.DB_FILE_PATH = DB_COPY_PATH;
-            this.auth.setCurrentDatabase(this.auth.getCurrentDatabase());
-            System.out.println("Transaction ended!!");
-            new Logger("END TRANSACTION", this.auth.user, this.auth.getCurrentDatabase().getDatabaseName(),
-                    queryString);
-        } else {
-            System.out.println("Error: Invalid Statement");
+    private void executeLoadData(Statement.LoadData statement, String queryString) throws Exception {
+        String tableName = statement.getTableName();
+        Table table = this.session.getDatabase().fetchTable(tableName);
+        if (table == null) {
+            throw new Exception("Invalid Table");
         }
+        try (CsvReader reader = new CsvReader(new InputStreamReader(new FileInputStream(statement.getFileName()),
+                StandardCharsets.UTF_8), statement.getSeparator())) {
+            int ignored = 0;
+            while (ignored < statement.getIgnoredLines() && reader.next() != null) {
+                ignored++;
+            }
+            DatabaseManager.loadRecordsIntoTable(this.session, table, reader, statement.getColumns());
+        } catch (FileNotFoundException ex) {
+            System.out.println("File not found: " + statement.getFileName());
+            throw new Exception("File not found: " + statement.getFileName());
+        }
+        new Logger("LOAD DATA", this.session.getUser(), this.session.getDatabase().getDatabaseName(), tableName,
+                queryString).log();
     }
 
     /**
-     * parses query and creates table
-     * 
+     * performs fetching operation from database. A SELECT that joins tables,
+     * or names its table with an alias, is planned by {@link JoinPlan}, one
+     * that groups or aggregates its rows by {@link AggregatePlan} and one
+     * with ORDER BY by {@link SortPlan}.
+     *
+     * @param statement
+     * @param parameters
      * @param queryString
-     * @throws IOException
+     * @throws Exception
      */
-    public void parseCreateTable(String queryString) throws IOException {
-        Pattern pattern = Pattern.compile("CREATE\\s+TABLE\\s+(\\w+)\\s*\\(([^)]+)\\)", Pattern.CASE_INSENSITIVE);
-        Matcher matcher = pattern.matcher(queryString);
-        if (!matcher.matches()) {
-            System.out.println("Invalid CREATE TABLE query.");
-            return;
+    private void executeSelect(Statement.Select statement, Object[] parameters, String queryString)
+            throws Exception {
+        String tableName = statement.getTableName();
+        if (!this.session.getDatabase().isValidTable(tableName)) {
+            throw new Exception("Invalid Table");
         }
-
-        String tableName = matcher.group(1);
-        String columnsAndTypes = matcher.group(2);
-        FileWriter fileWriter = new FileWriter(this.auth.DB_FILE_PATH, true);
-        BufferedWriter bufferedWriter = new BufferedWriter(fileWriter);
-        PrintWriter printWriter = new PrintWriter(bufferedWriter);
-        printWriter.println("startTable - " + tableName);
-        printWriter.println("meta: " + columnsAndTypes);
-        printWriter.println("endTable - " + tableName + "\n");
-        printWriter.close();
-        bufferedWriter.close();
-        fileWriter.close();
-        System.out.println("Table created successfully.");
-        new Logger("CREATE TABLE", this.auth.user, this.auth.selectedDatabase.getDatabaseName(), queryString);
+        Table table = this.session.getDatabase().fetchTable(tableName);
+        Condition condition = null;
+        JoinPlan plan = null;
+        AggregatePlan aggregate = null;
+        String resultName = tableName;
+        List<String> cols;
+        int[] projection;
+        if (statement.getJoins().isEmpty() && statement.getAlias() == null) {
+            condition = statement.getWhere() == null ? null
+                    : Condition.compile(statement.getWhere(), table.getColumns(), parameters);
+        } else {
+            plan = new JoinPlan(statement, this.session.getDatabase(), this.session.getStorage(), parameters);
+            resultName = plan.getName();
+        }
+        if (statement.isAggregate()) {
+            aggregate = new AggregatePlan(statement, plan == null ? table.getColumns() : plan.getJoinedColumns(),
+                    parameters);
+            cols = aggregate.getColumnNames();
+            projection = aggregate.getProjection();
+        } else if (plan == null) {
+            cols = statement.getColumns().isEmpty() ? new ArrayList<String>(table.getColumns().keySet())
+                    : statement.getColumns();
+            projection = new int[cols.size()];
+            for (int i = 0; i < projection.length; i++) {
+                projection[i] = table.getColumnIndex(cols.get(i));
+            }
+        } else {
+            cols = plan.getColumnNames();
+            projection = plan.getProjection();
+        }
+        SortPlan sort = null;
+        if (!statement.getOrderBy().isEmpty()) {
+            Map<String, String> sorted = aggregate != null ? aggregate.getResultColumns()
+                    : plan == null ? table.getColumns() : plan.getJoinedColumns();
+            sort = new SortPlan(statement.getOrderBy(), sorted, projection, aggregate);
+            projection = sort.getProjection();
+        }
+        long limit = count(statement.getLimit(), parameters, "LIMIT", Long.MAX_VALUE);
+        long offset = count(statement.getOffset(), parameters, "OFFSET", 0);
+        Snapshot snapshot = this.session.snapshot();
+        try {
+            ParallelScan scan = plan == null
+                    ? DatabaseManager.openParallelScan(this.session.getStorage(), table, condition, snapshot)
+                    : null;
+            Cursor input;
+            if (scan != null) {
+                input = aggregate != null ? aggregate.open(scan) : new ParallelScanCursor(scan);
+            } else {
+                input = plan == null
+                        ? DatabaseManager.openCursor(this.session.getStorage(), table, condition, snapshot)
+                        : plan.open(this.session.getStorage(), snapshot);
+                if (aggregate != null) {
+                    input = aggregate.open(input);
+                }
+            }
+            if (sort != null) {
+                input = sort.open(input, limit > Long.MAX_VALUE - offset ? Long.MAX_VALUE : offset + limit);
+            }
+            Cursor cursor = new ProjectCursor(input, projection);
+            if (statement.getLimit() != null) {
+                cursor = new LimitCursor(cursor, offset, limit);
+            }
+            try {
+                ResultSink sink = this.session.getResultSink();
+                sink.begin(resultName, cols);
+                sink.writeAll(cursor);
+                sink.end();
+            } catch (UncheckedIOException ex) {
+                System.out.println("Error while reading table: " + ex.getMessage());
+                throw new Exception("Error while reading table: " + ex.getMessage());
+            } catch (ArithmeticException ex) {
+                System.out.println("Error while aggregating: " + ex.getMessage());
+                throw new Exception("Error while aggregating: " + ex.getMessage());
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            this.session.release(snapshot);
+        }
+        new Logger("SELECT", this.session.getUser(), this.session.getDatabase().getDatabaseName(), tableName,
+                queryString).log();
     }
 
     /**
-     * parses query and inserts record in table
-     * 
+     * lists the audit log entries matching the statement's condition
+     *
+     * @param statement
+     * @param parameters
      * @param queryString
-     * @throws IOException
+     * @throws Exception
      */
-    private void parseInsert(String queryString) throws IOException {
-        Pattern pattern = Pattern.compile("INSERT INTO (\\w+) \\((.*?)\\) VALUES \\((.*?)\\)",
-                Pattern.CASE_INSENSITIVE);
-        Matcher matcher = pattern.matcher(queryString);
-        if (!matcher.find()) {
-            System.out.println("Invalid INSERT query.");
-            return;
+    private void executeShowAudit(Statement.ShowAudit statement, Object[] parameters, String queryString)
+            throws Exception {
+        AuditFilter filter = AuditFilter.of(statement.getWhere(), parameters);
+        AuditCursor cursor;
+        try {
+            cursor = AuditLog.shared().read(filter);
+        } catch (IOException ex) {
+            System.out.println("Error while reading transaction log: " + ex.getMessage());
+            throw new Exception("Error while reading transaction log: " + ex.getMessage());
         }
-
-        String tableName = matcher.group(1);
-        String values = matcher.group(3);
-        BufferedReader bufferedReader = new BufferedReader(new FileReader(this.auth.DB_FILE_PATH));
-        StringBuilder fileContent = new StringBuilder();
-        String line;
-        while ((line = bufferedReader.readLine()) != null) {
-            fileContent.append(line).append("\n");
-        }
-
-        String startTableDelimiter = "startTable - " + tableName;
-        String endTableDelimiter = "endTable - " + tableName;
-        int startTableIndex = fileContent.indexOf(startTableDelimiter + "\n" + tableName + ":");
-        int endTableIndex = fileContent.indexOf(endTableDelimiter, startTableIndex);
-        fileContent.insert(endTableIndex, values + "\n");
-        FileWriter fileWriter = new FileWriter(this.auth.DB_FILE_PATH);
-        PrintWriter printWriter = new PrintWriter(fileWriter);
-        printWriter.print(fileContent.toString());
-        bufferedReader.close();
-        printWriter.close();
-        fileWriter.close();
-        System.out.println("Record added successfully.");
-        new Logger("INSERT", this.auth.user, this.auth.selectedDatabase.getDatabaseName(), tableName,
+        try (cursor) {
+            ResultSink sink = this.session.getResultSink();
+            sink.begin("audit", AuditCursor.COLUMNS);
+            sink.writeAll(cursor);
+            sink.end();
+        } catch (UncheckedIOException ex) {
+            System.out.println("Error while reading transaction log: " + ex.getMessage());
+            throw new Exception("Error while reading transaction log: " + ex.getMessage());
+        }
+        Database database = this.session.getDatabase();
+        new Logger("SHOW AUDIT", this.session.getUser(), database == null ? null : database.getDatabaseName(),
                 queryString).log();
     }
 
     /**
-     * parses query and performs fetching operation from database
-     * 
+     * lists the engine's metrics, with the plan cache's counters, as
+     * name and value rows
+     *
      * @param queryString
      * @throws Exception
      */
-    public void parseSelect(String queryString) throws Exception {
-        String tablePattern = "FROM\\s+(\\w+)";
-        String columnPattern = "SELECT\\s+(.*?)\\s+FROM";
-        String conditionPattern = "\\bWHERE\\b\\s*(.*)$";
-        Pattern tablePatternRegex = Pattern.compile(tablePattern, Pattern.CASE_INSENSITIVE);
-        Pattern columnPatternRegex = Pattern.compile(columnPattern, Pattern.CASE_INSENSITIVE);
-        Pattern conditionPatternRegex = Pattern.compile(conditionPattern, Pattern.CASE_INSENSITIVE);
-
-        Matcher tableMatcher = tablePatternRegex.matcher(queryString);
-        if (tableMatcher.find()) {
-            String tableName = tableMatcher.group(1);
-            String columns = null;
-            String whereClause = null;
-            Matcher columnMatcher = columnPatternRegex.matcher(queryString);
-            if (columnMatcher.find()) {
-                columns = columnMatcher.group(1).trim();
-            }
-            Matcher conditionMatcher = conditionPatternRegex.matcher(queryString);
-            if (conditionMatcher.find()) {
-                whereClause = conditionMatcher.group(1).trim();
-            }
-            if (this.auth.selectedDatabase.isValidTable(tableName)) {
-                Table table = this.auth.selectedDatabase.fetchTable(tableName);
-                List<Map<String, Object>> returnValues = table.getTableValues(whereClause);
-
-                System.out.println("Table: " + tableName);
-                if (columns.equals("*")) {
-                    columns = table.getColumns().keySet().toString();
-                    columns = columns.substring(1, columns.length() - 1);
-                }
-                System.out.println(columns);
-                String[] cols = columns.split(",");
-                for (Map<String, Object> row : returnValues) {
-                    for (int i = 0; i < cols.length - 1; i++) {
-                        System.out.print(row.get(cols[i].trim()) + ",");
-                    }
-                    System.out.print(row.get(cols[cols.length - 1].trim()) + "\n");
-                }
-                new Logger("SELECT", this.auth.user, this.auth.selectedDatabase.getDatabaseName(), tableName,
-                        queryString).log();
-            } else {
-                throw new Exception("Invalid Table");
+    private void executeShowMetrics(String queryString) throws Exception {
+        List<Object[]> rows = Metrics.shared().rows();
+        PlanCache plans = this.session.getEngine().getPlans();
+        Metrics.add(rows, "plans.size", plans.size());
+        Metrics.add(rows, "plans.hits", plans.getHits());
+        Metrics.add(rows, "plans.misses", plans.getMisses());
+        try (Cursor cursor = new ListCursor(rows, 2)) {
+            ResultSink sink = this.session.getResultSink();
+            sink.begin("metrics", List.of("metric", "value"));
+            sink.writeAll(cursor);
+            sink.end();
+        }
+        Database database = this.session.getDatabase();
+        new Logger("SHOW METRICS", this.session.getUser(), database == null ? null : database.getDatabaseName(),
+                queryString).log();
+    }
+
+    /**
+     * resolves the value of a LIMIT or OFFSET clause
+     *
+     * @param value      - the clause's value or null if it is absent
+     * @param parameters
+     * @param clause     - name of the clause for errors
+     * @param absent     - the count to use when the clause is absent
+     * @return long
+     * @throws Exception
+     */
+    private static long count(Expression value, Object[] parameters, String clause, long absent)
+            throws Exception {
+        if (value == null) {
+            return absent;
+        }
+        String text = Statement.text(value, parameters);
+        try {
+            long count = Long.parseLong(text);
+            if (count >= 0) {
+                return count;
             }
+        } catch (NumberFormatException ex) {
+            // reported below
         }
+        System.out.println("Invalid " + clause + " value: " + text);
+        throw new Exception("Invalid " + clause + " value: " + text);
     }
 
     /**
-     * updates the records in the table by parsing query
-     * 
+     * updates the records in the table
+     *
+     * @param statement
+     * @param parameters
      * @param queryString
      * @throws Exception
      */
-    public void parseUpdate(String queryString) throws Exception {
-        Pattern pattern = Pattern.compile("\\bUPDATE\\b\\s*(\\w+)\\s*SET\\s*(.*?)\\s*\\bWHERE\\b\\s*(.*)$",
-                Pattern.CASE_INSENSITIVE);
-        Matcher matcher = pattern.matcher(queryString);
-        if (matcher.find()) {
-            String tableName = matcher.group(1);
-            String setClause = matcher.group(2);
-            String whereClause = matcher.group(3);
-            if (whereClause != null && !whereClause.isEmpty()) {
-                if (setClause != null && !setClause.isEmpty()) {
-                    Map<String, String> setValues = new HashMap<String, String>();
-                    String[] setData = setClause.split(",");
-                    for (String data : setData) {
-                        String[] columnValues = data.split("=");
-                        setValues.put(columnValues[0].trim(), columnValues[1].trim());
-                    }
-                    if (this.auth.getCurrentDatabase().isValidTable(tableName)) {
-                        Table table = this.auth.getCurrentDatabase().fetchTable(tableName);
-                        String[] columns = table.getColumns().keySet().toArray(new String[0]);
-                        DatabaseManager.updateRecordInTable(this.auth, tableName, columns, whereClause, setValues);
-                        this.auth.selectedDatabase.prepareDatabase(this.auth.DB_FILE_PATH);
-                        new Logger("UPDATE", this.auth.user, this.auth.selectedDatabase.getDatabaseName(), tableName,
-                                queryString).log();
-                    } else {
-                        throw new Exception("Invalid Table");
-                    }
-                } else {
-                    System.out.println("Invalid Update Statement");
-                    throw new Exception("Invalid Update Statement");
-                }
-            } else {
-                System.out.println("Invalid Update Statement. Bulk Update not supported");
-                throw new Exception("Invalid Update Statement. Bulk Update not supported");
-            }
+    private void executeUpdate(Statement.Update statement, Object[] parameters, String queryString)
+            throws Exception {
+        if (statement.getWhere() == null) {
+            System.out.println("Invalid Update Statement. Bulk Update not supported");
+            throw new Exception("Invalid Update Statement. Bulk Update not supported");
+        }
+        String tableName = statement.getTableName();
+        if (!this.session.getDatabase().isValidTable(tableName)) {
+            throw new Exception("Invalid Table");
         }
+        Map<String, String> setValues = new HashMap<String, String>();
+        for (Map.Entry<String, Expression> assignment : statement.getAssignments().entrySet()) {
+            setValues.put(assignment.getKey(), Statement.text(assignment.getValue(), parameters));
+        }
+        Table table = this.session.getDatabase().fetchTable(tableName);
+        String[] columns = table.getColumns().keySet().toArray(new String[0]);
+        Condition condition = Condition.compile(statement.getWhere(), table.getColumns(), parameters);
+        this.session.runInTransaction(() -> DatabaseManager.updateRecordInTable(this.session, tableName, columns,
+                condition, setValues));
+        new Logger("UPDATE", this.session.getUser(), this.session.getDatabase().getDatabaseName(), tableName,
+                queryString).log();
     }
 
     /**
-     * deletes the given record in the query
-     * 
+     * deletes the records matching the statement's condition
+     *
+     * @param statement
+     * @param parameters
      * @param queryString
      * @throws Exception
      */
-    public void parseDelete(String queryString) throws Exception {
-        Pattern pattern = Pattern.compile("\\bDELETE\\b\\s*FROM\\s*(\\w+)\\s*\\bWHERE\\b\\s*(.*)$",
-                Pattern.CASE_INSENSITIVE);
-        Matcher matcher = pattern.matcher(queryString);
-        if (matcher.find()) {
-            String tableName = matcher.group(1);
-            if (this.auth.getCurrentDatabase().isValidTable(tableName)) {
-                String whereClause = matcher.group(2);
-                if (whereClause != null && !whereClause.isEmpty()) {
-                    Table table = this.auth.getCurrentDatabase().fetchTable(tableName);
-                    String[] columns = table.getColumns().keySet().toArray(new String[0]);
-                    DatabaseManager.deleteRecordInTable(this.auth, tableName, columns, whereClause);
-                    table.deleteRecord(whereClause);
-                    this.auth.selectedDatabase.prepareDatabase(this.auth.DB_FILE_PATH);
-                    new Logger("DELETE", this.auth.user, this.auth.selectedDatabase.getDatabaseName(), tableName,
-                            queryString).log();
-                } else {
-                    System.out.println("Bulk delete is not supported");
-                    throw new Exception("Bulk delete is not supported");
-                }
-            } else {
-                throw new Exception("Table not found!");
-            }
-        } else {
-            System.out.println("Invalid DELETE statement.");
-            throw new Exception("Invalid DELETE statement.");
+    private void executeDelete(Statement.Delete statement, Object[] parameters, String queryString)
+            throws Exception {
+        if (statement.getWhere() == null) {
+            System.out.println("Bulk delete is not supported");
+            throw new Exception("Bulk delete is not supported");
+        }
+        String tableName = statement.getTableName();
+        if (!this.session.getDatabase().isValidTable(tableName)) {
+            throw new Exception("Table not found!");
+        }
+        Table table = this.session.getDatabase().fetchTable(tableName);
+        String[] columns = table.getColumns().keySet().toArray(new String[0]);
+        Condition condition = Condition.compile(statement.getWhere(), table.getColumns(), parameters);
+        this.session.runInTransaction(() -> DatabaseManager.deleteRecordInTable(this.session, tableName, columns,
+                condition));
+        new Logger("DELETE", this.session.getUser(), this.session.getDatabase().getDatabaseName(), tableName,
+                queryString).log();
+    }
+
+    /**
+     * parses and checks a statement once and keeps it under a name for
+     * EXECUTE
+     *
+     * @param statement
+     * @param queryString
+     * @throws Exception
+     */
+    private void executePrepare(Statement.Prepare statement, String queryString) throws Exception {
+        NormalizedStatement text = normalize(statement.getText());
+        Statement plan = plan(text.getText(), statement.getText());
+        if (plan instanceof Statement.Prepare || plan instanceof Statement.Execute
+                || plan instanceof Statement.Deallocate) {
+            System.out.println("Cannot prepare " + statement.getText().trim().split("\\s+")[0].toUpperCase());
+            throw new Exception("Cannot prepare " + statement.getText().trim().split("\\s+")[0].toUpperCase());
         }
+        String tableName = tableName(plan);
+        if (tableName != null && !this.session.getDatabase().isValidTable(tableName)) {
+            System.out.println("Table not found: " + tableName);
+            throw new Exception("Table not found: " + tableName);
+        }
+        this.session.getPreparedStatements().put(statement.getName(), new PreparedStatement(text, plan));
+        System.out.println("Statement prepared.");
     }
+
+    /**
+     * @return table a data statement works on or null for other statements
+     */
+    private static String tableName(Statement statement) {
+        if (statement instanceof Statement.Insert) {
+            return ((Statement.Insert) statement).getTableName();
+        } else if (statement instanceof Statement.LoadData) {
+            return ((Statement.LoadData) statement).getTableName();
+        } else if (statement instanceof Statement.Select) {
+            return ((Statement.Select) statement).getTableName();
+        } else if (statement instanceof Statement.Update) {
+            return ((Statement.Update) statement).getTableName();
+        } else if (statement instanceof Statement.Delete) {
+            return ((Statement.Delete) statement).getTableName();
+        }
+        return null;
+    }
+
+    private void runPrepared(String name, Object[] values, String queryString, long started) throws Exception {
+        PreparedStatement prepared = this.session.getPreparedStatements().get(name);
+        if (prepared == null) {
+            System.out.println("Unknown prepared statement: " + name);
+            throw new Exception("Unknown prepared statement: " + name);
+        }
+        execute(prepared.getPlan(), prepared.bind(values), queryString, started);
+    }
+
 }
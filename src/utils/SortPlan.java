@@ -0,0 +1,102 @@
+package utils;
+
+import cursor.Cursor;
+import cursor.ProjectCursor;
+import cursor.SortCursor;
+import sql.Statement;
+import storage.ColumnType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plan of the ORDER BY of a SELECT. The rows are sorted after they are
+ * read, joined and grouped and before they are projected onto the select
+ * list, so a SELECT can be sorted by a column it does not return; they are
+ * first reduced to the selected columns and the sort keys. The rows may use
+ * {@code sort.memory} bytes, 64 MB unless the system property says
+ * otherwise, before they are spilled to disk.
+ */
+public class SortPlan {
+
+    private static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+    private final List<Integer> inputs = new ArrayList<Integer>();
+    private final ColumnType[] types;
+    private final int[] keyColumns;
+    private final boolean[] isDescending;
+    private final int[] projection;
+
+    /**
+     * @param orderBy    - the sort keys of the SELECT
+     * @param columns    - names and types of the columns of the rows to
+     *                   sort, {@code table.column} for joined rows and the
+     *                   group columns followed by the aggregates for groups
+     * @param projection - position in those rows of each selected column, -1
+     *                   for one that is always null
+     * @param aggregate  - the plan that grouped the rows or null
+     * @throws Exception
+     */
+    public SortPlan(List<Statement.SortKey> orderBy, Map<String, String> columns, int[] projection,
+            AggregatePlan aggregate) throws Exception {
+        String[] names = columns.keySet().toArray(new String[0]);
+        this.projection = new int[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            this.projection[i] = projection[i] == -1 ? -1 : input(projection[i]);
+        }
+        this.keyColumns = new int[orderBy.size()];
+        this.isDescending = new boolean[orderBy.size()];
+        for (int i = 0; i < keyColumns.length; i++) {
+            String name = orderBy.get(i).getColumn();
+            keyColumns[i] = input(aggregate != null ? aggregate.getColumn(name) : AggregatePlan.resolve(names, name));
+            isDescending[i] = orderBy.get(i).isDescending();
+        }
+        this.types = new ColumnType[inputs.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = ColumnType.of(columns.get(names[inputs.get(i)]));
+        }
+    }
+
+    /**
+     * @return position of a column among those sorted, adding it if it is
+     *         not sorted yet
+     */
+    private int input(int column) {
+        int input = inputs.indexOf(column);
+        if (input == -1) {
+            inputs.add(column);
+            input = inputs.size() - 1;
+        }
+        return input;
+    }
+
+    /**
+     * sorts the rows of a cursor
+     *
+     * @param input - rows with the columns the plan was made for
+     * @param limit - number of rows wanted from the start, Long.MAX_VALUE
+     *              for all
+     * @return cursor over the sorted rows, with the columns of
+     *         {@link #getProjection()}
+     */
+    public Cursor open(Cursor input, long limit) {
+        int[] read = inputs.stream().mapToInt(Integer::intValue).toArray();
+        return new SortCursor(new ProjectCursor(input, read), types, keyColumns, isDescending, limit,
+                memoryBudget());
+    }
+
+    /**
+     * @return bytes rows being sorted may take before they are spilled
+     */
+    static long memoryBudget() {
+        return Long.getLong("sort.memory", DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * @return position in the sorted row of each selected column
+     */
+    public int[] getProjection() {
+        return projection;
+    }
+}